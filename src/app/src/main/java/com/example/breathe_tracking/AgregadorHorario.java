@@ -0,0 +1,312 @@
+/**
+ * @file AgregadorHorario.java
+ * @brief Agregados por hora (muestras, mínimo, máximo, media y último valor) de cada canal de cada sensor.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * @class AgregadorHorario
+ * @brief Mantiene en streaming el resumen horario del día en curso y lo publica de forma incremental.
+ *
+ * Copyrigth © 2025
+ *
+ * El servicio agrega cada muestra decodificada (también las que el \ref FiltroCambios no sube) en la
+ * hora local a la que pertenece y publica un documento diario por sensor en
+ * sensores/{codigo}/rollups/{yyyyMMdd}, que es lo que dibuja la gráfica de InformacionActivity:
+ *
+ *     { "dia": "20251017",
+ *       "co2": { "h13": { "n": 412, "min": 598, "max": 655, "media": 611.2, "ultimo": 603 }, ... },
+ *       "ozono": { ... }, "temperatura": { ... }, "bateria": { ... }, "co": { ... }, "no2": { ... }, "so2": { ... } }
+ *
+ * Cada publicación solo incluye las horas que han cambiado desde la anterior (set con merge), de modo
+ * que la gráfica necesita una única lectura pequeña en lugar de recorrer las mediciones. CO, NO2 y
+ * SO2 solo llegan en algunas tramas: cada canal cuenta sus propias muestras, los valores NaN no se
+ * agregan y un canal sin muestras en las horas publicadas no aparece en el documento.
+ *
+ * Agregar una muestra es O(1) y no crea objetos: los acumuladores son arrays planos preasignados
+ * (sensor x hora x canal) y no se guarda ninguna muestra cruda. Las horas se calculan con los límites
+ * del día local, así que los días de cambio de hora tienen 23 o 25 horas reales bien repartidas.
+ */
+public class AgregadorHorario {
+
+    /** @brief Horas por día (índices 0-23 de la hora local). */
+    public static final int HORAS = 24;
+    /** @brief Canales opcionales (mismos índices que en \ref FiltroCambios). */
+    public static final int CANAL_CO = FiltroCambios.CANAL_CO;
+    public static final int CANAL_NO2 = FiltroCambios.CANAL_NO2;
+    public static final int CANAL_SO2 = FiltroCambios.CANAL_SO2;
+    /** @brief Canales agregados (los de \ref FiltroCambios). */
+    public static final int NUM_CANALES = FiltroCambios.NUM_CANALES;
+    /** @brief Nombre de cada canal en el documento (mismos nombres que los campos directos del sensor). */
+    public static final String[] NOMBRES_CANALES = {"ozono", "temperatura", "co2", "bateria", "co", "no2", "so2"};
+
+    /** @brief Destino de los documentos diarios. */
+    public interface Destino {
+        /**
+         * @brief Guarda (con merge) los campos de las horas modificadas del documento diario de un sensor.
+         * @param codigoSensor Código del sensor.
+         * @param dia Día en formato yyyyMMdd (ID del documento).
+         * @param campos Campos a fusionar en el documento.
+         */
+        void publicar(String codigoSensor, String dia, Map<String, Object> campos);
+    }
+
+    private final Destino destino;
+    private final TimeZone zona;
+    private final int maxSensores;
+    private final SimpleDateFormat formatoDia;
+
+    /** @brief Código de cada sensor agregado (null si la ranura está libre). */
+    private final String[] codigos;
+    /** @brief Muestras por [sensor * HORAS + hora]. */
+    private final int[] muestras;
+    /** @brief Acumuladores por [(sensor * HORAS + hora) * NUM_CANALES + canal]. */
+    private final int[] muestrasCanal;
+    private final float[] minimo;
+    private final float[] maximo;
+    private final float[] ultimo;
+    private final double[] suma;
+    /** @brief Horas modificadas desde la última publicación (un bit por hora) de cada sensor. */
+    private final int[] horasModificadas;
+    /** @brief Inicio de cada hora del día en curso (epoch ms); la posición 24 es el inicio del día siguiente. */
+    private final long[] inicioHora = new long[HORAS + 1];
+    /** @brief Hora de la última muestra (atajo para el caso normal). */
+    private int horaActual = -1;
+    /** @brief Día en curso (yyyyMMdd); null hasta la primera muestra. */
+    private String dia;
+
+    // Métricas
+    private long agregadas = 0;
+    private long publicaciones = 0;
+
+    /**
+     * @brief Constructor del agregador.
+     * (destino:Destino, zona:TimeZone, maxSensores:int) -> AgregadorHorario() -> ()
+     * @param destino Destino de los documentos diarios.
+     * @param zona Zona horaria de las horas del día.
+     * @param maxSensores Sensores como máximo (índices de \ref RegistroSensores).
+     */
+    public AgregadorHorario(Destino destino, TimeZone zona, int maxSensores) {
+        this.destino = destino;
+        this.zona = zona;
+        this.maxSensores = maxSensores;
+        this.formatoDia = new SimpleDateFormat("yyyyMMdd", Locale.ROOT);
+        formatoDia.setTimeZone(zona);
+        codigos = new String[maxSensores];
+        muestras = new int[maxSensores * HORAS];
+        int celdas = maxSensores * HORAS * NUM_CANALES;
+        muestrasCanal = new int[celdas];
+        minimo = new float[celdas];
+        maximo = new float[celdas];
+        ultimo = new float[celdas];
+        suma = new double[celdas];
+        horasModificadas = new int[maxSensores];
+    }
+
+    /**
+     * @brief Agrega una muestra a la hora a la que pertenece. Si es de otro día, publica y empieza el día nuevo.
+     * (estado:EstadoSensor, lectura:LecturaBeacon, epochMs:long) -> agregar() -> boolean
+     * @param estado Sensor emisor (se usan su índice y su código).
+     * @param lectura Valores decodificados.
+     * @param epochMs Hora de la muestra.
+     * @return false si el sensor queda fuera de \ref getMaxSensores().
+     */
+    public synchronized boolean agregar(EstadoSensor estado, LecturaBeacon lectura, long epochMs) {
+        int sensor = estado.indice;
+        if (sensor < 0 || sensor >= maxSensores) return false;
+        if (dia == null || epochMs < inicioHora[0] || epochMs >= inicioHora[HORAS]) cambiarDia(epochMs);
+        codigos[sensor] = estado.codigo;
+
+        int hora = hora(epochMs);
+        int celdaHora = sensor * HORAS + hora;
+        muestras[celdaHora]++;
+        int base = celdaHora * NUM_CANALES;
+        acumular(base + FiltroCambios.CANAL_O3, lectura.o3);
+        acumular(base + FiltroCambios.CANAL_TEMPERATURA, lectura.temperatura);
+        acumular(base + FiltroCambios.CANAL_CO2, lectura.co2);
+        acumular(base + FiltroCambios.CANAL_BATERIA, lectura.bateria);
+        acumular(base + CANAL_CO, lectura.co);
+        acumular(base + CANAL_NO2, lectura.no2);
+        acumular(base + CANAL_SO2, lectura.so2);
+        horasModificadas[sensor] |= 1 << hora;
+        agregadas++;
+        return true;
+    }
+
+    /** @brief Suma un valor a una celda; NaN (canal que la trama no trae) no cuenta como muestra. */
+    private void acumular(int celda, float valor) {
+        if (Float.isNaN(valor)) return;
+        if (++muestrasCanal[celda] == 1) {
+            minimo[celda] = valor;
+            maximo[celda] = valor;
+            suma[celda] = valor;
+        } else {
+            if (valor < minimo[celda]) minimo[celda] = valor;
+            if (valor > maximo[celda]) maximo[celda] = valor;
+            suma[celda] += valor;
+        }
+        ultimo[celda] = valor;
+    }
+
+    /** @brief Hora local (0-23) de un instante del día en curso: O(1) salvo al cambiar de hora. */
+    private int hora(long epochMs) {
+        int h = horaActual;
+        if (h >= 0 && epochMs >= inicioHora[h] && epochMs < inicioHora[h + 1]) return h;
+        h = 0;
+        while (h < HORAS - 1 && epochMs >= inicioHora[h + 1]) h++;
+        horaActual = h;
+        return h;
+    }
+
+    /** @brief Publica lo pendiente del día anterior, vacía los acumuladores y calcula los límites del día nuevo. */
+    private void cambiarDia(long epochMs) {
+        if (dia != null) publicar();
+        Arrays.fill(muestras, 0);
+        Arrays.fill(muestrasCanal, 0);
+        Arrays.fill(codigos, null);
+
+        Calendar calendario = Calendar.getInstance(zona, Locale.ROOT);
+        calendario.setTimeInMillis(epochMs);
+        calendario.set(Calendar.HOUR_OF_DAY, 0);
+        calendario.set(Calendar.MINUTE, 0);
+        calendario.set(Calendar.SECOND, 0);
+        calendario.set(Calendar.MILLISECOND, 0);
+        dia = formatoDia.format(calendario.getTime());
+        int diaDelAnio = calendario.get(Calendar.DAY_OF_YEAR);
+        Calendar sonda = Calendar.getInstance(zona, Locale.ROOT);
+        int ajusteVerano = zona.getDSTSavings();
+        for (int h = 0; h < HORAS; h++) {
+            calendario.set(Calendar.HOUR_OF_DAY, h);
+            // La hora que no existe en el cambio de horario se queda vacía (mismo inicio que la siguiente)
+            if (calendario.get(Calendar.DAY_OF_YEAR) != diaDelAnio || calendario.get(Calendar.HOUR_OF_DAY) != h) {
+                inicioHora[h] = -1;
+                continue;
+            }
+            long inicio = calendario.getTimeInMillis();
+            // La hora que se repite se resuelve a su segunda aparición: la hora empieza en la primera
+            if (h > 0 && ajusteVerano > 0) {
+                sonda.setTimeInMillis(inicio - ajusteVerano);
+                if (sonda.get(Calendar.HOUR_OF_DAY) == h && sonda.get(Calendar.DAY_OF_YEAR) == diaDelAnio) inicio -= ajusteVerano;
+            }
+            inicioHora[h] = inicio;
+        }
+        calendario.set(Calendar.HOUR_OF_DAY, 0);
+        calendario.add(Calendar.DAY_OF_MONTH, 1);
+        inicioHora[HORAS] = calendario.getTimeInMillis();
+        for (int h = HORAS - 1; h >= 0; h--) {
+            if (inicioHora[h] < 0) inicioHora[h] = inicioHora[h + 1];
+        }
+        horaActual = -1;
+    }
+
+    /**
+     * @brief Publica las horas modificadas de cada sensor desde la última publicación.
+     * () -> publicar() -> int
+     * @return Documentos publicados.
+     */
+    public synchronized int publicar() {
+        int documentos = 0;
+        for (int sensor = 0; sensor < maxSensores; sensor++) {
+            int horas = horasModificadas[sensor];
+            if (horas == 0 || codigos[sensor] == null) continue;
+            horasModificadas[sensor] = 0;
+            destino.publicar(codigos[sensor], dia, camposHoras(sensor, horas));
+            documentos++;
+        }
+        publicaciones += documentos;
+        return documentos;
+    }
+
+    private Map<String, Object> camposHoras(int sensor, int horas) {
+        Map<String, Object> campos = new HashMap<>();
+        campos.put("dia", dia);
+        for (int canal = 0; canal < NUM_CANALES; canal++) {
+            Map<String, Object> porHora = new HashMap<>();
+            for (int h = 0; h < HORAS; h++) {
+                if ((horas & (1 << h)) == 0) continue;
+                int celda = (sensor * HORAS + h) * NUM_CANALES + canal;
+                int n = muestrasCanal[celda];
+                if (n == 0) continue;
+                Map<String, Object> hora = new HashMap<>();
+                hora.put("n", n);
+                hora.put("min", minimo[celda]);
+                hora.put("max", maximo[celda]);
+                hora.put("media", (float) (suma[celda] / n));
+                hora.put("ultimo", ultimo[celda]);
+                porHora.put(claveHora(h), hora);
+            }
+            if (!porHora.isEmpty()) campos.put(NOMBRES_CANALES[canal], porHora);
+        }
+        return campos;
+    }
+
+    /**
+     * @brief Clave de una hora dentro del mapa de un canal ("h00" ... "h23").
+     * (hora:int) -> claveHora() -> String
+     */
+    public static String claveHora(int hora) {
+        return hora < 10 ? "h0" + hora : "h" + hora;
+    }
+
+    // --- Consultas y métricas ---
+
+    /** @brief Día en curso (yyyyMMdd), o null antes de la primera muestra. */
+    public synchronized String getDia() {
+        return dia;
+    }
+
+    /** @brief Sensores como máximo. */
+    public int getMaxSensores() {
+        return maxSensores;
+    }
+
+    /** @brief Muestras de un sensor en una hora del día en curso. */
+    public synchronized int getMuestras(int sensor, int hora) {
+        return muestras[sensor * HORAS + hora];
+    }
+
+    /** @brief Muestras de un canal de un sensor en una hora del día en curso (sin las tramas que no lo traen). */
+    public synchronized int getMuestras(int sensor, int hora, int canal) {
+        return muestrasCanal[(sensor * HORAS + hora) * NUM_CANALES + canal];
+    }
+
+    /** @brief Media de un canal de un sensor en una hora del día en curso (NaN si no hay muestras). */
+    public synchronized float getMedia(int sensor, int hora, int canal) {
+        int celda = (sensor * HORAS + hora) * NUM_CANALES + canal;
+        int n = muestrasCanal[celda];
+        return n == 0 ? Float.NaN : (float) (suma[celda] / n);
+    }
+
+    /** @brief Mínimo de un canal de un sensor en una hora del día en curso. */
+    public synchronized float getMinimo(int sensor, int hora, int canal) {
+        return minimo[(sensor * HORAS + hora) * NUM_CANALES + canal];
+    }
+
+    /** @brief Máximo de un canal de un sensor en una hora del día en curso. */
+    public synchronized float getMaximo(int sensor, int hora, int canal) {
+        return maximo[(sensor * HORAS + hora) * NUM_CANALES + canal];
+    }
+
+    /** @brief Último valor de un canal de un sensor en una hora del día en curso. */
+    public synchronized float getUltimo(int sensor, int hora, int canal) {
+        return ultimo[(sensor * HORAS + hora) * NUM_CANALES + canal];
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     */
+    public synchronized String resumen() {
+        return String.format(Locale.ROOT, "Agregados horarios: %d muestras agregadas, %d documentos diarios publicados.",
+                agregadas, publicaciones);
+    }
+}
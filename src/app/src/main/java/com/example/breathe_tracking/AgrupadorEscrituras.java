@@ -0,0 +1,244 @@
+/**
+ * @file AgrupadorEscrituras.java
+ * @brief Acumula las lecturas que hay que subir y las confirma por lotes (por tamaño o por tiempo).
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class AgrupadorEscrituras
+ * @brief Etapa de agrupación de escrituras entre el servicio y Firestore.
+ *
+ * Copyrigth © 2025
+ *
+ * Las lecturas se acumulan y se confirman en un solo lote cuando se llega a \ref getMaxLecturas()
+ * lecturas o cuando la más antigua lleva \ref getMaxEsperaMs() esperando, lo que ocurra antes. Cada
+ * lectura va a la colección de mediciones de su sensor; de los campos directos del documento del
+ * sensor solo se envía el último estado del lote (un merge por sensor y lote).
+ *
+ * El destino real se abstrae en \ref Sumidero (\ref SumideroFirestore en la app, uno en memoria en los tests).
+ */
+public class AgrupadorEscrituras {
+
+    /** @brief Lecturas por lote por defecto. */
+    public static final int MAX_LECTURAS_POR_DEFECTO = 50;
+    /** @brief Espera máxima por defecto de la lectura más antigua (30 segundos). */
+    public static final long MAX_ESPERA_POR_DEFECTO_MS = 30 * 1000;
+
+    /**
+     * @class Escritura
+     * @brief Una lectura pendiente de un sensor.
+     */
+    public static final class Escritura {
+        /** @brief Código del sensor (ID del documento en "sensores"). */
+        public final String codigoSensor;
+        /** @brief Lectura que se añadirá a la subcolección "mediciones". */
+        public final LecturaSensor lectura;
+
+        Escritura(String codigoSensor, LecturaSensor lectura) {
+            this.codigoSensor = codigoSensor;
+            this.lectura = lectura;
+        }
+    }
+
+    /** @brief Resultado asíncrono de la confirmación de un lote. */
+    public interface Confirmacion {
+        void alTerminar(boolean exito, Exception error);
+    }
+
+    /** @brief Destino de los lotes. */
+    public interface Sumidero {
+        /**
+         * @brief Escribe un lote de forma atómica y llama a \p confirmacion al terminar (en cualquier hilo).
+         * @param lecturas Lecturas del lote, en orden de llegada.
+         * @param camposPorSensor Último estado de los campos directos de cada sensor del lote (merge).
+         * @param confirmacion Resultado de la escritura.
+         */
+        void confirmar(List<Escritura> lecturas, Map<String, Map<String, Object>> camposPorSensor, Confirmacion confirmacion);
+    }
+
+    private final Sumidero sumidero;
+    private final Reloj reloj;
+    private final int maxLecturas;
+    private final long maxEsperaMs;
+
+    /** @brief Lecturas del lote en curso. */
+    private List<Escritura> pendientes = new ArrayList<>();
+    /** @brief Campos directos del lote en curso, por sensor (el último gana). */
+    private Map<String, Map<String, Object>> camposPendientes = new LinkedHashMap<>();
+    /** @brief Instante en que entró la lectura más antigua del lote en curso. */
+    private long inicioLote;
+
+    // Métricas
+    private long lotesConfirmados = 0;
+    private long lotesFallidos = 0;
+    private long lecturasConfirmadas = 0;
+    private int maxTamanoLote = 0;
+    private long latenciaAcumuladaMs = 0;
+    private long latenciaMaximaMs = 0;
+    private int lotesEnVuelo = 0;
+
+    /**
+     * @brief Constructor con los disparadores por defecto (50 lecturas o 30 segundos).
+     * (sumidero:Sumidero, reloj:Reloj) -> AgrupadorEscrituras() -> ()
+     */
+    public AgrupadorEscrituras(Sumidero sumidero, Reloj reloj) {
+        this(sumidero, reloj, MAX_LECTURAS_POR_DEFECTO, MAX_ESPERA_POR_DEFECTO_MS);
+    }
+
+    /**
+     * @brief Constructor del agrupador.
+     * (sumidero:Sumidero, reloj:Reloj, maxLecturas:int, maxEsperaMs:long) -> AgrupadorEscrituras() -> ()
+     * @param sumidero Destino de los lotes.
+     * @param reloj Reloj monótono en milisegundos.
+     * @param maxLecturas Lecturas que disparan la confirmación (un WriteBatch admite 500 operaciones).
+     * @param maxEsperaMs Espera máxima de la lectura más antigua.
+     */
+    public AgrupadorEscrituras(Sumidero sumidero, Reloj reloj, int maxLecturas, long maxEsperaMs) {
+        this.sumidero = sumidero;
+        this.reloj = reloj;
+        this.maxLecturas = maxLecturas;
+        this.maxEsperaMs = maxEsperaMs;
+    }
+
+    /**
+     * @brief Añade una lectura al lote en curso; si se llena, lo confirma.
+     * (codigoSensor:String, lectura:LecturaSensor, camposDirectos:Map<String,Object>) -> agregar() -> boolean
+     * @param codigoSensor Código del sensor.
+     * @param lectura Lectura para el historial.
+     * @param camposDirectos Campos del documento del sensor tras esta lectura.
+     * @return true si la lectura ha abierto un lote nuevo (el llamante debe programar \ref revisar en \ref getMaxEsperaMs()).
+     */
+    public synchronized boolean agregar(String codigoSensor, LecturaSensor lectura, Map<String, Object> camposDirectos) {
+        boolean nuevo = pendientes.isEmpty();
+        if (nuevo) inicioLote = reloj.ahoraMs();
+        pendientes.add(new Escritura(codigoSensor, lectura));
+        camposPendientes.put(codigoSensor, camposDirectos);
+        if (pendientes.size() >= maxLecturas) {
+            confirmarLote();
+            return false;
+        }
+        return nuevo;
+    }
+
+    /**
+     * @brief Confirma el lote en curso si la lectura más antigua ha agotado su espera.
+     * () -> revisar() -> long
+     * @return Milisegundos hasta la próxima revisión necesaria, o -1 si no hay lecturas pendientes.
+     */
+    public synchronized long revisar() {
+        if (pendientes.isEmpty()) return -1;
+        long restante = inicioLote + maxEsperaMs - reloj.ahoraMs();
+        if (restante > 0) return restante;
+        confirmarLote();
+        return -1;
+    }
+
+    /**
+     * @brief Confirma ya lo que haya pendiente (al detener el servicio o antes de una escritura que debe ir detrás).
+     * () -> vaciar() -> ()
+     */
+    public synchronized void vaciar() {
+        if (!pendientes.isEmpty()) confirmarLote();
+    }
+
+    private void confirmarLote() {
+        final List<Escritura> lote = pendientes;
+        final Map<String, Map<String, Object>> campos = camposPendientes;
+        // El sumidero es asíncrono: el lote en vuelo no se reutiliza
+        pendientes = new ArrayList<>();
+        camposPendientes = new LinkedHashMap<>();
+        final int tamano = lote.size();
+        final long inicio = reloj.ahoraMs();
+        lotesEnVuelo++;
+        if (tamano > maxTamanoLote) maxTamanoLote = tamano;
+        sumidero.confirmar(lote, campos, (exito, error) -> alConfirmar(tamano, reloj.ahoraMs() - inicio, exito));
+    }
+
+    private synchronized void alConfirmar(int tamano, long latenciaMs, boolean exito) {
+        lotesEnVuelo--;
+        if (exito) {
+            lotesConfirmados++;
+            lecturasConfirmadas += tamano;
+        } else {
+            lotesFallidos++;
+        }
+        latenciaAcumuladaMs += latenciaMs;
+        if (latenciaMs > latenciaMaximaMs) latenciaMaximaMs = latenciaMs;
+    }
+
+    // --- Configuración y métricas ---
+
+    /** @brief Lecturas que disparan la confirmación. */
+    public int getMaxLecturas() {
+        return maxLecturas;
+    }
+
+    /** @brief Espera máxima de la lectura más antigua (ms). */
+    public long getMaxEsperaMs() {
+        return maxEsperaMs;
+    }
+
+    /** @brief Lecturas en el lote en curso. */
+    public synchronized int getPendientes() {
+        return pendientes.size();
+    }
+
+    /** @brief Lotes enviados sin respuesta todavía. */
+    public synchronized int getLotesEnVuelo() {
+        return lotesEnVuelo;
+    }
+
+    /** @brief Lotes confirmados con éxito. */
+    public synchronized long getLotesConfirmados() {
+        return lotesConfirmados;
+    }
+
+    /** @brief Lotes que han fallado. */
+    public synchronized long getLotesFallidos() {
+        return lotesFallidos;
+    }
+
+    /** @brief Lecturas confirmadas con éxito. */
+    public synchronized long getLecturasConfirmadas() {
+        return lecturasConfirmadas;
+    }
+
+    /** @brief Tamaño medio de los lotes confirmados. */
+    public synchronized double getTamanoMedioLote() {
+        return lotesConfirmados == 0 ? 0 : (double) lecturasConfirmadas / lotesConfirmados;
+    }
+
+    /** @brief Tamaño del mayor lote enviado. */
+    public synchronized int getMaxTamanoLote() {
+        return maxTamanoLote;
+    }
+
+    /** @brief Latencia media de confirmación (ms). */
+    public synchronized long getLatenciaMediaMs() {
+        long lotes = lotesConfirmados + lotesFallidos;
+        return lotes == 0 ? 0 : latenciaAcumuladaMs / lotes;
+    }
+
+    /** @brief Peor latencia de confirmación (ms). */
+    public synchronized long getLatenciaMaximaMs() {
+        return latenciaMaximaMs;
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     * @return Lotes, tamaño medio y latencias de confirmación.
+     */
+    public synchronized String resumen() {
+        return String.format(Locale.ROOT, "Escrituras: %d lecturas en %d lotes (media %.1f, máx. %d), %d fallidos, latencia media %d ms (máx. %d ms).",
+                lecturasConfirmadas, lotesConfirmados, getTamanoMedioLote(), maxTamanoLote, lotesFallidos,
+                getLatenciaMediaMs(), latenciaMaximaMs);
+    }
+}
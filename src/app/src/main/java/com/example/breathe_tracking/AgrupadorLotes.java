@@ -0,0 +1,143 @@
+/**
+ * @file AgrupadorLotes.java
+ * @brief Reduce un lote de resultados de escaneo (onBatchScanResults) a una única lectura por sensor.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @class AgrupadorLotes
+ * @brief Agrupa los anuncios de un lote por dirección del sensor, conservando la trama más reciente
+ * y la media del RSSI de todo el lote.
+ *
+ * Copyrigth © 2025
+ *
+ * En modo por lotes el controlador acumula los anuncios durante el retardo configurado
+ * (ScanSettings.setReportDelay) y los entrega de una sola vez. Como el sensor anuncia varias veces
+ * por segundo, un lote contiene muchas tramas repetidas del mismo sensor: aquí se quedan solo las
+ * más recientes, de modo que el resto del servicio procesa una lectura por sensor y por lote.
+ *
+ * Las entradas se reutilizan entre lotes (una por dirección vista), así que en régimen estable
+ * no se crean objetos nuevos.
+ */
+public class AgrupadorLotes {
+
+    /**
+     * @class Entrada
+     * @brief Lectura agregada de un sensor dentro del lote actual.
+     */
+    public static final class Entrada {
+        /** @brief Dirección MAC del sensor. */
+        public final String direccion;
+        /** @brief Nombre BLE del sensor (puede ser null). */
+        public String nombre;
+        /** @brief Trama más reciente del sensor en el lote. */
+        public final LecturaBeacon lectura = new LecturaBeacon();
+        /** @brief Bytes crudos del anuncio más reciente (el array de ScanRecord.getBytes(), sin copiar). */
+        public byte[] tramaCruda;
+        /** @brief Instante (ns) de la trama más reciente. */
+        public long instanteNanos;
+        /** @brief Suma de RSSI de todas las tramas del sensor en el lote. */
+        private int sumaRssi;
+        /** @brief Número de tramas del sensor en el lote. */
+        public int muestras;
+        /** @brief Número del lote en el que se actualizó la entrada por última vez. */
+        private int lote = -1;
+
+        Entrada(String direccion) {
+            this.direccion = direccion;
+        }
+
+        /** @brief RSSI medio del sensor en el lote (dBm). */
+        public int rssiMedio() {
+            return muestras == 0 ? 0 : sumaRssi / muestras;
+        }
+    }
+
+    /** @brief Entradas por dirección MAC, persistentes entre lotes. */
+    private final Map<String, Entrada> entradas = new HashMap<>();
+    /** @brief Entradas actualizadas en el lote actual, en orden de llegada. */
+    private final List<Entrada> delLote = new ArrayList<>();
+    /** @brief Lectura temporal para decodificar antes de decidir si la trama es la más reciente. */
+    private final LecturaBeacon temporal = new LecturaBeacon();
+    /** @brief Número del lote en curso. */
+    private int loteActual = 0;
+
+    /** @brief Total de tramas válidas recibidas en lotes. */
+    private long tramasRecibidas = 0;
+    /** @brief Total de lecturas entregadas tras agrupar. */
+    private long lecturasEntregadas = 0;
+
+    /**
+     * @brief Empieza un lote nuevo, descartando la agrupación anterior.
+     * () -> iniciarLote() -> ()
+     */
+    public void iniciarLote() {
+        loteActual++;
+        delLote.clear();
+    }
+
+    /**
+     * @brief Decodifica un anuncio del lote y lo agrega a la entrada de su sensor.
+     * (direccion:String, nombre:String, scanRecord:byte[], rssi:int, instanteNanos:long) -> agregar() -> boolean
+     * @param direccion Dirección MAC del emisor.
+     * @param nombre Nombre BLE del emisor.
+     * @param scanRecord Bytes crudos del anuncio.
+     * @param rssi RSSI del anuncio.
+     * @param instanteNanos Marca temporal del anuncio (ScanResult.getTimestampNanos()).
+     * @return true si el anuncio contenía una trama válida del sensor.
+     */
+    public boolean agregar(String direccion, String nombre, byte[] scanRecord, int rssi, long instanteNanos) {
+        if (direccion == null || !DecodificadorTrama.decodificar(scanRecord, temporal)) return false;
+        tramasRecibidas++;
+
+        Entrada entrada = entradas.get(direccion);
+        if (entrada == null) {
+            entrada = new Entrada(direccion);
+            entradas.put(direccion, entrada);
+        }
+        if (entrada.lote != loteActual) {
+            // Primera trama de este sensor en el lote
+            entrada.lote = loteActual;
+            entrada.sumaRssi = 0;
+            entrada.muestras = 0;
+            entrada.instanteNanos = Long.MIN_VALUE;
+            delLote.add(entrada);
+        }
+        entrada.sumaRssi += rssi;
+        entrada.muestras++;
+        if (instanteNanos >= entrada.instanteNanos) {
+            entrada.instanteNanos = instanteNanos;
+            entrada.nombre = nombre;
+            entrada.tramaCruda = scanRecord;
+            entrada.lectura.copiarDe(temporal);
+        }
+        return true;
+    }
+
+    /**
+     * @brief Devuelve las lecturas agrupadas del lote actual (una por sensor).
+     * () -> lecturasDelLote() -> List<Entrada>
+     * @note La lista se reutiliza: solo es válida hasta la siguiente llamada a \ref iniciarLote().
+     * @return Lista de entradas del lote.
+     */
+    public List<Entrada> lecturasDelLote() {
+        lecturasEntregadas += delLote.size();
+        return delLote;
+    }
+
+    /** @brief Total de tramas válidas recibidas en lotes. */
+    public long getTramasRecibidas() {
+        return tramasRecibidas;
+    }
+
+    /** @brief Total de lecturas entregadas tras agrupar. */
+    public long getLecturasEntregadas() {
+        return lecturasEntregadas;
+    }
+}
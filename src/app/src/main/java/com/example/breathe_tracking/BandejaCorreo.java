@@ -0,0 +1,560 @@
+/**
+ * @file BandejaCorreo.java
+ * @brief Bandeja de salida de correo: cola persistente que se envía por lotes en un hilo propio, con una conexión SMTP reutilizada y reintentos con espera creciente.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @class BandejaCorreo
+ * @brief Envía los correos de la app sin abrir una conexión por mensaje y sin perderlos si falla la red.
+ *
+ * Copyrigth © 2025
+ *
+ * Quien encola no espera ni ve errores de red: el mensaje queda en disco y su resultado llega después
+ * a su \ref Escucha.
+ *
+ * - **Hilo propio:** todo el envío ocurre en un ejecutor de un solo hilo; quien encola no espera.
+ * - **Conexión reutilizada:** el \ref Transporte se conecta (y autentica) una vez y se reutiliza para
+ *   los lotes siguientes; se cierra tras \ref getInactividadMs() ms sin enviar.
+ * - **Lotes:** como mucho \ref getTamanoLote() mensajes seguidos por la misma conexión antes de
+ *   devolver el hilo al ejecutor.
+ * - **Reintentos:** un fallo transitorio cierra la conexión y reintenta el mismo mensaje (el orden se
+ *   respeta) tras una espera que se dobla en cada fallo, hasta \ref getMaxIntentos() intentos de
+ *   envío. Un error permanente (destinatario no válido) no se reintenta; un fallo al conectar no
+ *   gasta intentos (el mensaje espera a que vuelva la red), salvo si el servidor rechaza las
+ *   credenciales: entonces cada conexión fallida gasta un intento del primer mensaje.
+ * - **Persistencia:** cada mensaje es un fichero "correo-N.msg" (escrito en un temporal y renombrado)
+ *   que se borra al terminar; al crear la bandeja se recuperan los que quedaron sin enviar.
+ * - **Resultado real:** cada mensaje termina con una llamada a su \ref Escucha (enviado o no, y por qué).
+ */
+public class BandejaCorreo {
+
+    /** @brief Mensajes por lote por defecto. */
+    public static final int TAMANO_LOTE_POR_DEFECTO = 10;
+    /** @brief Tiempo sin enviar tras el que se cierra la conexión. */
+    public static final long INACTIVIDAD_POR_DEFECTO_MS = 60 * 1000;
+    /** @brief Espera tras el primer fallo; se dobla en cada fallo seguido. */
+    public static final long ESPERA_INICIAL_POR_DEFECTO_MS = 5 * 1000;
+    /** @brief Espera máxima entre reintentos. */
+    public static final long ESPERA_MAXIMA_POR_DEFECTO_MS = 15 * 60 * 1000;
+    /** @brief Intentos por mensaje antes de darlo por fallido. */
+    public static final int MAX_INTENTOS_POR_DEFECTO = 8;
+
+    /** @brief Marca de fichero de mensaje válido ("BCO1"). */
+    private static final int MARCA = 0x42434F31;
+    private static final String PREFIJO = "correo-";
+    private static final String EXTENSION = ".msg";
+
+    /**
+     * @interface Transporte
+     * @brief Conexión con el servidor de correo (SMTP en la app, un doble en memoria en los tests).
+     * Solo se usa desde el hilo de la bandeja.
+     */
+    public interface Transporte {
+        /** @brief Abre la conexión y se autentica. */
+        void conectar() throws ErrorEnvio;
+
+        /** @brief true si hay una conexión abierta que se puede reutilizar. */
+        boolean isConectado();
+
+        /** @brief Envía un mensaje por la conexión abierta. */
+        void enviar(Correo correo) throws ErrorEnvio;
+
+        /** @brief Cierra la conexión (sin lanzar). */
+        void cerrar();
+    }
+
+    /**
+     * @interface Escucha
+     * @brief Resultado final de un mensaje. Se llama en el hilo de la bandeja.
+     */
+    public interface Escucha {
+        /**
+         * @param correo Mensaje terminado.
+         * @param enviado true si el servidor lo ha aceptado.
+         * @param error Motivo del fallo (null si se ha enviado).
+         */
+        void alTerminar(Correo correo, boolean enviado, String error);
+    }
+
+    /**
+     * @class ErrorEnvio
+     * @brief Fallo al conectar o enviar. Los permanentes no se reintentan.
+     */
+    public static class ErrorEnvio extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean permanente;
+
+        public ErrorEnvio(String mensaje, boolean permanente, Throwable causa) {
+            super(mensaje, causa);
+            this.permanente = permanente;
+        }
+
+        public boolean isPermanente() {
+            return permanente;
+        }
+    }
+
+    /**
+     * @class Correo
+     * @brief Mensaje de la bandeja.
+     */
+    public static final class Correo {
+        /** @brief Identificador creciente (también da nombre al fichero). */
+        public final long id;
+        public final String para;
+        public final String asunto;
+        /** @brief Cuerpo HTML ya generado. */
+        public final String html;
+        /** @brief Intentos fallidos (solo en memoria: tras reiniciar se vuelve a empezar). */
+        int intentos;
+
+        Correo(long id, String para, String asunto, String html) {
+            this.id = id;
+            this.para = para;
+            this.asunto = asunto;
+            this.html = html;
+        }
+
+        public int getIntentos() {
+            return intentos;
+        }
+    }
+
+    private final File directorio;
+    private final Transporte transporte;
+    private final Reloj reloj;
+    private final ScheduledExecutorService ejecutor;
+    private volatile Escucha escuchaPorDefecto;
+
+    private int tamanoLote = TAMANO_LOTE_POR_DEFECTO;
+    private long inactividadMs = INACTIVIDAD_POR_DEFECTO_MS;
+    private long esperaInicialMs = ESPERA_INICIAL_POR_DEFECTO_MS;
+    private long esperaMaximaMs = ESPERA_MAXIMA_POR_DEFECTO_MS;
+    private int maxIntentos = MAX_INTENTOS_POR_DEFECTO;
+
+    // --- Cola (protegida por this) ---
+    private final ArrayDeque<Correo> pendientes = new ArrayDeque<>();
+    private final Map<Long, Escucha> escuchas = new HashMap<>();
+    private long siguienteId = 1;
+
+    // --- Estado del hilo de envío (solo se toca en el ejecutor) ---
+    private long esperaMs = 0;
+    private long reintentarEnMs = Long.MIN_VALUE;
+    private long ultimoEnvioMs;
+    private ScheduledFuture<?> programada;
+    private ScheduledFuture<?> cierre;
+
+    // Métricas (protegidas por this)
+    private long enviados = 0;
+    private long fallidos = 0;
+    private long reintentos = 0;
+    private long conexiones = 0;
+    private long lotes = 0;
+    private long cierresPorInactividad = 0;
+    private long recuperados = 0;
+    private long sinPersistir = 0;
+
+    /**
+     * @brief Constructor con su propio hilo de envío.
+     * (directorio:File, transporte:Transporte, reloj:Reloj) -> BandejaCorreo() -> ()
+     * @param directorio Carpeta de los mensajes pendientes (se crea si no existe).
+     * @param transporte Conexión con el servidor.
+     * @param reloj Reloj monótono para la inactividad y las esperas.
+     */
+    public BandejaCorreo(File directorio, Transporte transporte, Reloj reloj) {
+        this(directorio, transporte, reloj, Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bandeja-correo");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    /**
+     * @brief Constructor con un ejecutor dado (debe ser de un solo hilo).
+     * (directorio:File, transporte:Transporte, reloj:Reloj, ejecutor:ScheduledExecutorService) -> BandejaCorreo() -> ()
+     */
+    public BandejaCorreo(File directorio, Transporte transporte, Reloj reloj, ScheduledExecutorService ejecutor) {
+        this.directorio = directorio;
+        this.transporte = transporte;
+        this.reloj = reloj;
+        this.ejecutor = ejecutor;
+        long[] ids = idsEnDisco();
+        // Los mensajes nuevos siempre tienen un id mayor que los del disco
+        if (ids.length > 0) siguienteId = ids[ids.length - 1] + 1;
+        ejecutor.execute(() -> recuperar(ids));
+    }
+
+    /**
+     * @brief Cambia los parámetros de envío (antes de encolar).
+     * (tamanoLote:int, inactividadMs:long, esperaInicialMs:long, esperaMaximaMs:long, maxIntentos:int) -> configurar() -> BandejaCorreo
+     */
+    public synchronized BandejaCorreo configurar(int tamanoLote, long inactividadMs, long esperaInicialMs, long esperaMaximaMs, int maxIntentos) {
+        if (tamanoLote < 1 || maxIntentos < 1 || esperaInicialMs < 0 || esperaMaximaMs < esperaInicialMs) {
+            throw new IllegalArgumentException("Parámetros de envío no válidos");
+        }
+        this.tamanoLote = tamanoLote;
+        this.inactividadMs = inactividadMs;
+        this.esperaInicialMs = esperaInicialMs;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.maxIntentos = maxIntentos;
+        return this;
+    }
+
+    /**
+     * @brief Escucha de los mensajes encolados sin escucha propia (p. ej. los recuperados del disco).
+     * (escucha:Escucha) -> setEscuchaPorDefecto() -> ()
+     */
+    public void setEscuchaPorDefecto(Escucha escucha) {
+        this.escuchaPorDefecto = escucha;
+    }
+
+    // --- Encolar ---
+
+    /**
+     * @brief Encola un mensaje. Se guarda en disco y se envía en el hilo de la bandeja.
+     * (para:String, asunto:String, html:String, escucha:Escucha) -> encolar() -> long
+     * @param para Destinatario.
+     * @param asunto Asunto.
+     * @param html Cuerpo HTML.
+     * @param escucha Recibe el resultado final (puede ser null).
+     * @return Identificador del mensaje.
+     */
+    public long encolar(String para, String asunto, String html, Escucha escucha) {
+        Correo correo;
+        synchronized (this) {
+            correo = new Correo(siguienteId++, para, asunto, html);
+            if (escucha != null) escuchas.put(correo.id, escucha);
+        }
+        ejecutor.execute(() -> {
+            if (!guardar(correo)) {
+                synchronized (this) {
+                    sinPersistir++;
+                }
+            }
+            synchronized (this) {
+                pendientes.addLast(correo);
+            }
+            // Detrás de los demás encolados que ya esperan en el ejecutor: una ráfaga sale en lotes llenos
+            if (reloj.ahoraMs() >= reintentarEnMs) programar(0);
+        });
+        return correo.id;
+    }
+
+    // --- Hilo de envío ---
+
+    /**
+     * @brief Ids de los mensajes que quedaron en disco, en orden.
+     * Solo se lista la carpeta: el contenido se lee en el hilo de la bandeja (\ref recuperar).
+     */
+    private long[] idsEnDisco() {
+        File[] ficheros = directorio.listFiles((d, nombre) -> nombre.startsWith(PREFIJO) && nombre.endsWith(EXTENSION));
+        if (ficheros == null) return new long[0];
+        long[] ids = new long[ficheros.length];
+        int n = 0;
+        for (File f : ficheros) {
+            String nombre = f.getName();
+            try {
+                ids[n++] = Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length()));
+            } catch (NumberFormatException e) {
+                // Fichero ajeno
+            }
+        }
+        ids = Arrays.copyOf(ids, n);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /** @brief Carga los mensajes que quedaron en disco. Es la primera tarea del ejecutor: van delante de los nuevos. */
+    private void recuperar(long[] ids) {
+        for (long id : ids) {
+            Correo c = leer(id);
+            if (c == null) continue;
+            synchronized (this) {
+                pendientes.addLast(c);
+                recuperados++;
+            }
+        }
+        drenar();
+    }
+
+    /**
+     * @brief Envía un lote por la conexión abierta (conectando si hace falta) y programa lo siguiente:
+     * otro lote, un reintento o el cierre por inactividad.
+     */
+    private void drenar() {
+        long ahora = reloj.ahoraMs();
+        if (ahora < reintentarEnMs) {
+            // Hay un reintento programado: no se adelanta
+            programar(reintentarEnMs - ahora);
+            return;
+        }
+        int lote;
+        int intentosMaximos;
+        synchronized (this) {
+            lote = tamanoLote;
+            intentosMaximos = maxIntentos;
+        }
+        int enviadosLote = 0;
+        boolean comprobada = false;
+        while (enviadosLote < lote) {
+            Correo correo;
+            synchronized (this) {
+                correo = pendientes.peekFirst();
+            }
+            if (correo == null) break;
+            boolean conectando = false;
+            try {
+                // isConectado() puede costar una ida y vuelta: una vez por lote
+                if (!comprobada && !transporte.isConectado()) {
+                    conectando = true;
+                    transporte.conectar();
+                    synchronized (this) {
+                        conexiones++;
+                    }
+                }
+                comprobada = true;
+                conectando = false;
+                transporte.enviar(correo);
+            } catch (ErrorEnvio e) {
+                if (!e.isPermanente()) {
+                    // La conexión puede haber quedado a medias: la siguiente se abre de nuevo
+                    transporte.cerrar();
+                    comprobada = false;
+                }
+                // Sin conexión (sin red, servidor caído) el mensaje espera sin gastar intentos; si el
+                // servidor rechaza la autenticación sí los gasta, pero no se descarta al primero
+                boolean descartar = conectando
+                        ? e.isPermanente() && ++correo.intentos >= intentosMaximos
+                        : e.isPermanente() || ++correo.intentos >= intentosMaximos;
+                if (descartar) {
+                    terminar(correo, false, e.getMessage());
+                    continue;
+                }
+                synchronized (this) {
+                    reintentos++;
+                    esperaMs = esperaMs == 0 ? esperaInicialMs : Math.min(esperaMs * 2, esperaMaximaMs);
+                }
+                // Reintento del mismo mensaje (el orden de la cola se respeta)
+                reintentarEnMs = reloj.ahoraMs() + esperaMs;
+                programar(esperaMs);
+                return;
+            }
+            esperaMs = 0;
+            ultimoEnvioMs = reloj.ahoraMs();
+            terminar(correo, true, null);
+            enviadosLote++;
+        }
+        boolean quedan;
+        synchronized (this) {
+            if (enviadosLote > 0) lotes++;
+            quedan = !pendientes.isEmpty();
+        }
+        if (quedan) {
+            // Siguiente lote en otra tarea (deja pasar las que estén esperando en el ejecutor)
+            programar(0);
+        } else if (enviadosLote > 0) {
+            programarCierre(inactividadMs);
+        }
+    }
+
+    /** @brief Cierra la conexión si no se ha usado en \ref getInactividadMs() ms. */
+    private void cerrarSiInactiva() {
+        cierre = null;
+        if (!transporte.isConectado()) return;
+        long inactiva = reloj.ahoraMs() - ultimoEnvioMs;
+        if (inactiva < inactividadMs) {
+            programarCierre(inactividadMs - inactiva);
+            return;
+        }
+        transporte.cerrar();
+        synchronized (this) {
+            cierresPorInactividad++;
+        }
+    }
+
+    private void programar(long ms) {
+        if (programada != null) programada.cancel(false);
+        programada = ejecutor.schedule(this::drenar, Math.max(0, ms), TimeUnit.MILLISECONDS);
+    }
+
+    private void programarCierre(long ms) {
+        if (cierre != null) cierre.cancel(false);
+        cierre = ejecutor.schedule(this::cerrarSiInactiva, ms, TimeUnit.MILLISECONDS);
+    }
+
+    /** @brief Saca el mensaje de la cola y del disco y avisa de su resultado. */
+    private void terminar(Correo correo, boolean enviado, String error) {
+        Escucha escucha;
+        synchronized (this) {
+            pendientes.remove(correo);
+            escucha = escuchas.remove(correo.id);
+            if (enviado) enviados++;
+            else fallidos++;
+        }
+        fichero(correo.id).delete();
+        if (escucha == null) escucha = escuchaPorDefecto;
+        if (escucha != null) escucha.alTerminar(correo, enviado, error);
+    }
+
+    // --- Disco ---
+
+    private File fichero(long id) {
+        return new File(directorio, String.format(Locale.ROOT, "%s%019d%s", PREFIJO, id, EXTENSION));
+    }
+
+    /** @brief Escribe el mensaje en un temporal y lo renombra (un fichero a medias nunca tiene el nombre final). */
+    private boolean guardar(Correo c) {
+        if (!directorio.isDirectory() && !directorio.mkdirs()) return false;
+        File destino = fichero(c.id);
+        File temporal = new File(directorio, destino.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temporal);
+             DataOutputStream out = new DataOutputStream(fos)) {
+            out.writeInt(MARCA);
+            out.writeLong(c.id);
+            escribirCadena(out, c.para);
+            escribirCadena(out, c.asunto);
+            escribirCadena(out, c.html);
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            temporal.delete();
+            return false;
+        }
+        return temporal.renameTo(destino);
+    }
+
+    /** @brief Lee un mensaje del disco; si está dañado se borra. */
+    private Correo leer(long id) {
+        File f = fichero(id);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+            if (in.readInt() != MARCA || in.readLong() != id) throw new IOException("Cabecera no válida");
+            return new Correo(id, leerCadena(in), leerCadena(in), leerCadena(in));
+        } catch (IOException e) {
+            f.delete();
+            return null;
+        }
+    }
+
+    private static void escribirCadena(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String leerCadena(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > 16 * 1024 * 1024) throw new IOException("Longitud no válida: " + n);
+        byte[] b = new byte[n];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // --- Ciclo de vida ---
+
+    /**
+     * @brief Cierra la conexión y detiene el hilo. Lo que no se ha enviado queda en disco.
+     * Después no se puede encolar.
+     * (esperaMs:long) -> cerrar() -> ()
+     * @param esperaMs Tiempo máximo para que termine el lote en curso.
+     */
+    public void cerrar(long esperaMs) {
+        // Primero se cancelan el reintento y el cierre programados: un shutdown() esperaría a que vencieran
+        Future<?> parada = ejecutor.submit(() -> {
+            if (programada != null) programada.cancel(false);
+            if (cierre != null) cierre.cancel(false);
+            transporte.cerrar();
+        });
+        try {
+            parada.get(esperaMs, TimeUnit.MILLISECONDS);
+            ejecutor.shutdown();
+            ejecutor.awaitTermination(esperaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    // --- Configuración y métricas ---
+
+    public synchronized int getTamanoLote() {
+        return tamanoLote;
+    }
+
+    public synchronized long getInactividadMs() {
+        return inactividadMs;
+    }
+
+    public synchronized int getMaxIntentos() {
+        return maxIntentos;
+    }
+
+    /** @brief Mensajes en cola (en memoria; incluye el que se está enviando). */
+    public synchronized int getPendientes() {
+        return pendientes.size();
+    }
+
+    public synchronized long getEnviados() {
+        return enviados;
+    }
+
+    public synchronized long getFallidos() {
+        return fallidos;
+    }
+
+    public synchronized long getReintentos() {
+        return reintentos;
+    }
+
+    /** @brief Lotes enviados (mensajes seguidos por la misma conexión). */
+    public synchronized long getLotes() {
+        return lotes;
+    }
+
+    /** @brief Conexiones (con autenticación) abiertas. */
+    public synchronized long getConexiones() {
+        return conexiones;
+    }
+
+    public synchronized long getCierresPorInactividad() {
+        return cierresPorInactividad;
+    }
+
+    /** @brief Mensajes recuperados del disco al arrancar. */
+    public synchronized long getRecuperados() {
+        return recuperados;
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     */
+    public synchronized String resumen() {
+        return String.format(Locale.ROOT, "Correo: %d enviados en %d lotes por %d conexiones, %d fallidos, %d reintentos, %d pendientes"
+                        + " (%d recuperados del disco, %d sin guardar), %d cierres por inactividad.",
+                enviados, lotes, conexiones, fallidos, reintentos, pendientes.size(), recuperados, sinPersistir, cierresPorInactividad);
+    }
+}
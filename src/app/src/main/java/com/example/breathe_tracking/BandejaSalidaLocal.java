@@ -0,0 +1,623 @@
+/**
+ * @file BandejaSalidaLocal.java
+ * @brief Bandeja de salida persistente: registro de solo-añadir en segmentos mapeados en memoria con las lecturas pendientes de subir.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * @class BandejaSalidaLocal
+ * @brief Cola en disco, propia de la app, de las lecturas que no se han podido subir.
+ *
+ * Copyrigth © 2025
+ *
+ * Sin red, las lecturas se guardan aquí (acotadas y a salvo de la muerte del proceso) y
+ * \ref SubidorBandeja las sube en orden cuando vuelve la conexión.
+ *
+ * - **Segmentos:** ficheros "segmento-NNNNNNNNNN.bin" de \ref getRegistrosPorSegmento() registros de
+ *   \ref TAM_REGISTRO bytes, mapeados en memoria. Solo se añade al final; al llenarse uno se fuerza
+ *   a disco y se abre el siguiente.
+ * - **Registro:** tamaño fijo con marca, datos de la lectura y CRC32 al final. Un registro a medio
+ *   escribir (proceso o móvil apagados a mitad) no pasa el CRC. Los gases opcionales (CO, NO2, SO2)
+ *   van justo antes del CRC y el byte de flags lleva una máscara con los que trae la lectura. La
+ *   ubicación ocupa como mucho \ref MAX_BYTES_UBICACION bytes UTF-8: las direcciones más largas se
+ *   guardan (y se suben) truncadas, sin partir ningún carácter.
+ * - **Sincronización por lotes:** force() cada \ref SINCRONIZAR_CADA_REGISTROS registros o
+ *   \ref SINCRONIZAR_CADA_MS ms. Lo escrito en el mapa sobrevive a la muerte del proceso; el force
+ *   lo protege también de un apagado del móvil.
+ * - **Cursor de subida:** fichero "cursor.bin" con dos ranuras que se escriben alternadas (secuencia y CRC);
+ *   si una queda rota se usa la otra y, como mucho, se repite la subida de un lote.
+ * - **Límites:** como máximo \ref getMaxSegmentos() segmentos en disco (se descarta el más antiguo) y dos
+ *   segmentos mapeados a la vez (escritura y lectura), dure lo que dure la falta de red.
+ *
+ * Al abrir se recupera el final del último segmento: la escritura continúa en el primer registro
+ * que no es válido y el resto del segmento se pone a cero.
+ */
+public class BandejaSalidaLocal {
+
+    /** @brief Tamaño de cada registro en bytes. */
+    public static final int TAM_REGISTRO = 128;
+    /** @brief Registros por segmento por defecto (64 KiB por segmento). */
+    public static final int REGISTROS_POR_SEGMENTO_POR_DEFECTO = 512;
+    /** @brief Segmentos en disco por defecto (4 MiB, 32768 lecturas). */
+    public static final int MAX_SEGMENTOS_POR_DEFECTO = 64;
+    /** @brief Registros escritos que disparan un force(). */
+    public static final int SINCRONIZAR_CADA_REGISTROS = 32;
+    /** @brief Tiempo máximo sin force() con registros pendientes de sincronizar. */
+    public static final long SINCRONIZAR_CADA_MS = 5 * 1000;
+
+    // --- Formato del registro ---
+    /** @brief Marca de registro válido ("BSL1"). */
+    private static final int MARCA = 0x42534C31;
+    private static final int POS_CODIGO = 29;
+    /** @brief Bytes UTF-8 máximos del código del sensor. */
+    static final int MAX_BYTES_CODIGO = 24;
+    private static final int POS_UBICACION = POS_CODIGO + 1 + MAX_BYTES_CODIGO;
+    private static final int POS_CRC = TAM_REGISTRO - 4;
+    /** @brief CO, NO2 y SO2 (float cada uno); solo se leen si su bit de la máscara está puesto. */
+    private static final int POS_GASES = POS_CRC - 3 * 4;
+    /**
+     * @brief Bytes UTF-8 máximos de la ubicación (57). Las direcciones más largas se truncan en el último
+     * carácter completo y se suben así desde la bandeja.
+     */
+    static final int MAX_BYTES_UBICACION = POS_GASES - POS_UBICACION - 1;
+    private static final int FLAG_CONECTADO = 1;
+    private static final int FLAG_CO = 1 << 1;
+    private static final int FLAG_NO2 = 1 << 2;
+    private static final int FLAG_SO2 = 1 << 3;
+
+    // --- Formato del cursor: dos ranuras de 32 bytes (secuencia, segmento, índice, CRC) ---
+    private static final int TAM_RANURA_CURSOR = 32;
+    private static final int DATOS_RANURA_CURSOR = 20;
+
+    /**
+     * @class Registro
+     * @brief Lectura guardada en la bandeja.
+     */
+    public static final class Registro {
+        /** @brief Código del sensor (ID del documento en "sensores"). */
+        public String codigo;
+        /** @brief Hora de la lectura (epoch en ms). */
+        public long fechaMs;
+        /** @brief Ozono (ppm). */
+        public float o3;
+        /** @brief Temperatura (ºC). */
+        public float temperatura;
+        /** @brief CO2 (ppm). */
+        public int co2;
+        /** @brief Batería (%). */
+        public int bateria;
+        /** @brief Dirección legible (truncada a \ref MAX_BYTES_UBICACION bytes UTF-8 sin partir caracteres). */
+        public String ubicacion;
+        /** @brief Estado del sensor al tomar la lectura. */
+        public boolean conectado;
+        /** @brief Monóxido de carbono en mg/m³ (NaN si la lectura no lo trae). */
+        public float co = Float.NaN;
+        /** @brief Dióxido de nitrógeno en µg/m³ (NaN si la lectura no lo trae). */
+        public float no2 = Float.NaN;
+        /** @brief Dióxido de azufre en µg/m³ (NaN si la lectura no lo trae). */
+        public float so2 = Float.NaN;
+
+        public Registro() {}
+
+        /**
+         * @brief Constructor con los canales de siempre (sin CO, NO2 ni SO2).
+         * (codigo:String, fechaMs:long, o3:float, temperatura:float, co2:int, bateria:int, ubicacion:String, conectado:boolean) -> Registro() -> ()
+         */
+        public Registro(String codigo, long fechaMs, float o3, float temperatura, int co2, int bateria, String ubicacion, boolean conectado) {
+            this(codigo, fechaMs, o3, temperatura, co2, bateria, ubicacion, conectado, Float.NaN, Float.NaN, Float.NaN);
+        }
+
+        /**
+         * @brief Constructor con todos los campos.
+         * (codigo:String, fechaMs:long, o3:float, temperatura:float, co2:int, bateria:int, ubicacion:String, conectado:boolean, co:float, no2:float, so2:float) -> Registro() -> ()
+         */
+        public Registro(String codigo, long fechaMs, float o3, float temperatura, int co2, int bateria, String ubicacion, boolean conectado,
+                        float co, float no2, float so2) {
+            this.codigo = codigo;
+            this.fechaMs = fechaMs;
+            this.o3 = o3;
+            this.temperatura = temperatura;
+            this.co2 = co2;
+            this.bateria = bateria;
+            this.ubicacion = ubicacion;
+            this.conectado = conectado;
+            this.co = co;
+            this.no2 = no2;
+            this.so2 = so2;
+        }
+    }
+
+    private final File directorio;
+    private final Reloj reloj;
+    private final int registrosPorSegmento;
+    private final int maxSegmentos;
+    private final int tamSegmento;
+    private int sincronizarCadaRegistros = SINCRONIZAR_CADA_REGISTROS;
+    private long sincronizarCadaMs = SINCRONIZAR_CADA_MS;
+
+    /** @brief Segmento más antiguo en disco. */
+    private long primerSegmento;
+    /** @brief Segmento en el que se escribe y primer registro libre. */
+    private long segmentoEscritura;
+    private int indiceEscritura;
+    private MappedByteBuffer mapaEscritura;
+    /** @brief Segmento mapeado para leer (si no es el de escritura); -1 si ninguno. */
+    private long segmentoLectura = -1;
+    private MappedByteBuffer mapaLectura;
+
+    /** @brief Próximo registro por subir. */
+    private long segmentoCursor;
+    private int indiceCursor;
+    private long secuenciaCursor;
+    private MappedByteBuffer mapaCursor;
+
+    private final byte[] bufferRegistro = new byte[TAM_REGISTRO];
+    private final ByteBuffer registro = ByteBuffer.wrap(bufferRegistro);
+    private final CRC32 crc = new CRC32();
+    private int sinSincronizar = 0;
+    private long ultimaSincronizacion;
+    private boolean cerrada = false;
+
+    // Métricas
+    private long escritos = 0;
+    private long confirmados = 0;
+    private long descartados = 0;
+    private long corruptos = 0;
+    private long sincronizaciones = 0;
+    /** @brief Posición absoluta del último registro corrupto contado (para no contarlo en cada lectura). */
+    private long ultimoCorruptoContado = -1;
+
+    /**
+     * @brief Abre (o crea) la bandeja con los tamaños por defecto.
+     * (directorio:File, reloj:Reloj) -> BandejaSalidaLocal() -> ()
+     * @throws IOException Si no se puede crear o mapear el directorio o sus ficheros.
+     */
+    public BandejaSalidaLocal(File directorio, Reloj reloj) throws IOException {
+        this(directorio, reloj, REGISTROS_POR_SEGMENTO_POR_DEFECTO, MAX_SEGMENTOS_POR_DEFECTO);
+    }
+
+    /**
+     * @brief Abre (o crea) la bandeja y recupera su estado tras un cierre limpio o una caída.
+     * (directorio:File, reloj:Reloj, registrosPorSegmento:int, maxSegmentos:int) -> BandejaSalidaLocal() -> ()
+     * @param directorio Directorio propio de la bandeja (se crea si no existe).
+     * @param reloj Reloj monótono en milisegundos para la sincronización por tiempo.
+     * @param registrosPorSegmento Registros por fichero de segmento.
+     * @param maxSegmentos Segmentos máximos en disco (al menos 2).
+     * @throws IOException Si no se puede crear o mapear el directorio o sus ficheros.
+     */
+    public BandejaSalidaLocal(File directorio, Reloj reloj, int registrosPorSegmento, int maxSegmentos) throws IOException {
+        if (registrosPorSegmento < 1 || maxSegmentos < 2) throw new IllegalArgumentException("Tamaños de bandeja no válidos");
+        if (!directorio.isDirectory() && !directorio.mkdirs()) throw new IOException("No se puede crear " + directorio);
+        this.directorio = directorio;
+        this.reloj = reloj;
+        this.registrosPorSegmento = registrosPorSegmento;
+        this.maxSegmentos = maxSegmentos;
+        this.tamSegmento = registrosPorSegmento * TAM_REGISTRO;
+        this.ultimaSincronizacion = reloj.ahoraMs();
+        recuperar();
+    }
+
+    /**
+     * @brief Cambia la política de sincronización por lotes.
+     * (registros:int, ms:long) -> sincronizarCada() -> BandejaSalidaLocal
+     * @param registros Registros que disparan un force() (1 = cada registro).
+     * @param ms Tiempo máximo sin force() con registros pendientes.
+     * @return Esta bandeja, para encadenar llamadas.
+     */
+    public synchronized BandejaSalidaLocal sincronizarCada(int registros, long ms) {
+        sincronizarCadaRegistros = Math.max(1, registros);
+        sincronizarCadaMs = ms;
+        return this;
+    }
+
+    // --- Recuperación ---
+
+    private void recuperar() throws IOException {
+        mapaCursor = mapear(new File(directorio, "cursor.bin"), 2 * TAM_RANURA_CURSOR);
+        boolean hayCursor = leerCursor();
+
+        long minimo = Long.MAX_VALUE;
+        long maximo = -1;
+        File[] ficheros = directorio.listFiles();
+        if (ficheros != null) {
+            for (File f : ficheros) {
+                long numero = numeroSegmento(f.getName());
+                if (numero < 0) continue;
+                minimo = Math.min(minimo, numero);
+                maximo = Math.max(maximo, numero);
+            }
+        }
+        if (maximo < 0) {
+            // Bandeja vacía: la numeración sigue donde la dejó el cursor
+            minimo = maximo = hayCursor ? segmentoCursor : 0;
+        }
+        primerSegmento = minimo;
+        segmentoEscritura = maximo;
+        mapaEscritura = mapearSegmento(segmentoEscritura);
+
+        // Final del último segmento: primer registro no válido; lo que haya detrás se pone a cero
+        indiceEscritura = 0;
+        while (indiceEscritura < registrosPorSegmento && registroValido(mapaEscritura, indiceEscritura)) indiceEscritura++;
+        if (indiceEscritura < registrosPorSegmento) {
+            if (!registroVacio(mapaEscritura, indiceEscritura)) corruptos++;
+            limpiarDesde(indiceEscritura);
+        }
+
+        if (!hayCursor || segmentoCursor < primerSegmento) {
+            segmentoCursor = primerSegmento;
+            indiceCursor = 0;
+        } else if (segmentoCursor > segmentoEscritura
+                || (segmentoCursor == segmentoEscritura && indiceCursor > indiceEscritura)) {
+            // Se han perdido registros ya subidos (segmento truncado): se sigue desde el final
+            segmentoCursor = segmentoEscritura;
+            indiceCursor = indiceEscritura;
+        }
+        normalizarCursor();
+        guardarCursor();
+        if (indiceEscritura == registrosPorSegmento) rotar();
+    }
+
+    private void limpiarDesde(int indice) {
+        int fin = tamSegmento;
+        byte[] ceros = new byte[TAM_REGISTRO];
+        for (int pos = indice * TAM_REGISTRO; pos < fin; pos += TAM_REGISTRO) {
+            mapaEscritura.position(pos);
+            mapaEscritura.put(ceros);
+        }
+        mapaEscritura.force();
+    }
+
+    // --- Escritura ---
+
+    /**
+     * @brief Añade una lectura al final de la bandeja.
+     * (r:Registro) -> agregar() -> ()
+     * @param r Lectura a guardar (se copia; el objeto se puede reutilizar).
+     * @throws IOException Si no se puede crear el siguiente segmento.
+     */
+    public synchronized void agregar(Registro r) throws IOException {
+        if (cerrada) throw new IOException("Bandeja cerrada");
+        codificar(r);
+        mapaEscritura.position(indiceEscritura * TAM_REGISTRO);
+        mapaEscritura.put(bufferRegistro);
+        indiceEscritura++;
+        escritos++;
+        sinSincronizar++;
+        if (indiceEscritura == registrosPorSegmento) {
+            rotar();
+        } else if (sinSincronizar >= sincronizarCadaRegistros
+                || reloj.ahoraMs() - ultimaSincronizacion >= sincronizarCadaMs) {
+            sincronizar();
+        }
+    }
+
+    /**
+     * @brief Fuerza a disco los registros escritos y el cursor.
+     * () -> sincronizar() -> ()
+     */
+    public synchronized void sincronizar() {
+        if (cerrada) return;
+        if (sinSincronizar > 0) {
+            mapaEscritura.force();
+            sincronizaciones++;
+            sinSincronizar = 0;
+        }
+        mapaCursor.force();
+        ultimaSincronizacion = reloj.ahoraMs();
+    }
+
+    /** @brief Cierra el segmento lleno y abre el siguiente; si se supera el límite descarta el más antiguo. */
+    private void rotar() throws IOException {
+        sincronizar();
+        segmentoEscritura++;
+        indiceEscritura = 0;
+        mapaEscritura = mapearSegmento(segmentoEscritura);
+        while (segmentoEscritura - primerSegmento + 1 > maxSegmentos) {
+            if (segmentoCursor == primerSegmento) {
+                descartados += registrosPorSegmento - indiceCursor;
+                segmentoCursor++;
+                indiceCursor = 0;
+                guardarCursor();
+            }
+            borrarSegmento(primerSegmento++);
+        }
+        normalizarCursor();
+    }
+
+    private void codificar(Registro r) {
+        registro.clear();
+        registro.putInt(MARCA);
+        registro.putLong(r.fechaMs);
+        registro.putFloat(r.o3);
+        registro.putFloat(r.temperatura);
+        registro.putInt(r.co2);
+        registro.putInt(r.bateria);
+        int flags = r.conectado ? FLAG_CONECTADO : 0;
+        if (!Float.isNaN(r.co)) flags |= FLAG_CO;
+        if (!Float.isNaN(r.no2)) flags |= FLAG_NO2;
+        if (!Float.isNaN(r.so2)) flags |= FLAG_SO2;
+        registro.put((byte) flags);
+        escribirTexto(r.codigo, MAX_BYTES_CODIGO);
+        escribirTexto(r.ubicacion, MAX_BYTES_UBICACION);
+        registro.putFloat(r.co);
+        registro.putFloat(r.no2);
+        registro.putFloat(r.so2);
+        crc.reset();
+        crc.update(bufferRegistro, 0, POS_CRC);
+        registro.putInt((int) crc.getValue());
+    }
+
+    private void escribirTexto(String texto, int maxBytes) {
+        byte[] bytes = texto == null ? new byte[0] : texto.getBytes(StandardCharsets.UTF_8);
+        int n = Math.min(bytes.length, maxBytes);
+        // No se corta un carácter UTF-8 por la mitad
+        while (n < bytes.length && n > 0 && (bytes[n] & 0xC0) == 0x80) n--;
+        registro.put((byte) n);
+        registro.put(bytes, 0, n);
+        for (int i = n; i < maxBytes; i++) registro.put((byte) 0);
+    }
+
+    // --- Lectura y confirmación ---
+
+    /**
+     * @brief Lee los registros siguientes al cursor sin avanzarlo.
+     * (destino:List<Registro>, max:int) -> leer() -> int
+     * @param destino Lista donde se añaden los registros válidos, en orden.
+     * @param max Registros máximos a leer.
+     * @return Posiciones recorridas (incluye registros corruptos saltados); es lo que hay que pasar a
+     * \ref confirmar cuando se hayan subido.
+     */
+    public synchronized int leer(List<Registro> destino, int max) {
+        long segmento = segmentoCursor;
+        int indice = indiceCursor;
+        int recorridas = 0;
+        int leidos = 0;
+        while (leidos < max && !(segmento == segmentoEscritura && indice == indiceEscritura)) {
+            if (indice == registrosPorSegmento) {
+                segmento++;
+                indice = 0;
+                continue;
+            }
+            ByteBuffer mapa = mapaLectura(segmento);
+            if (mapa != null && registroValido(mapa, indice)) {
+                destino.add(decodificar());
+                leidos++;
+            } else {
+                long posicion = segmento * registrosPorSegmento + indice;
+                if (posicion > ultimoCorruptoContado) {
+                    corruptos++;
+                    ultimoCorruptoContado = posicion;
+                }
+            }
+            indice++;
+            recorridas++;
+        }
+        return recorridas;
+    }
+
+    /**
+     * @brief Avanza el cursor tras subir lo leído y borra los segmentos ya consumidos.
+     * (posiciones:int) -> confirmar() -> ()
+     * @param posiciones Valor devuelto por \ref leer.
+     */
+    public synchronized void confirmar(int posiciones) {
+        if (posiciones <= 0) return;
+        if (posiciones > getPendientes()) throw new IllegalArgumentException("Se confirman más registros de los pendientes");
+        indiceCursor += posiciones;
+        confirmados += posiciones;
+        normalizarCursor();
+        guardarCursor();
+    }
+
+    /** @brief Pasa el cursor al siguiente segmento si ha agotado el suyo y borra los segmentos consumidos. */
+    private void normalizarCursor() {
+        while (indiceCursor >= registrosPorSegmento && segmentoCursor < segmentoEscritura) {
+            indiceCursor -= registrosPorSegmento;
+            segmentoCursor++;
+        }
+        while (primerSegmento < segmentoCursor) borrarSegmento(primerSegmento++);
+    }
+
+    private Registro decodificar() {
+        registro.clear();
+        Registro r = new Registro();
+        registro.getInt();
+        r.fechaMs = registro.getLong();
+        r.o3 = registro.getFloat();
+        r.temperatura = registro.getFloat();
+        r.co2 = registro.getInt();
+        r.bateria = registro.getInt();
+        int flags = registro.get();
+        r.conectado = (flags & FLAG_CONECTADO) != 0;
+        r.codigo = leerTexto(POS_CODIGO, MAX_BYTES_CODIGO);
+        r.ubicacion = leerTexto(POS_UBICACION, MAX_BYTES_UBICACION);
+        if ((flags & FLAG_CO) != 0) r.co = registro.getFloat(POS_GASES);
+        if ((flags & FLAG_NO2) != 0) r.no2 = registro.getFloat(POS_GASES + 4);
+        if ((flags & FLAG_SO2) != 0) r.so2 = registro.getFloat(POS_GASES + 8);
+        return r;
+    }
+
+    private String leerTexto(int posicion, int maxBytes) {
+        int n = Math.min(bufferRegistro[posicion] & 0xFF, maxBytes);
+        return new String(bufferRegistro, posicion + 1, n, StandardCharsets.UTF_8);
+    }
+
+    /** @brief Copia el registro a \ref bufferRegistro y comprueba marca y CRC. */
+    private boolean registroValido(ByteBuffer mapa, int indice) {
+        mapa.position(indice * TAM_REGISTRO);
+        mapa.get(bufferRegistro);
+        if (registro.getInt(0) != MARCA) return false;
+        crc.reset();
+        crc.update(bufferRegistro, 0, POS_CRC);
+        return registro.getInt(POS_CRC) == (int) crc.getValue();
+    }
+
+    private boolean registroVacio(ByteBuffer mapa, int indice) {
+        mapa.position(indice * TAM_REGISTRO);
+        for (int i = 0; i < TAM_REGISTRO; i++) {
+            if (mapa.get() != 0) return false;
+        }
+        return true;
+    }
+
+    private ByteBuffer mapaLectura(long segmento) {
+        if (segmento == segmentoEscritura) return mapaEscritura;
+        if (segmento != segmentoLectura) {
+            try {
+                mapaLectura = mapearSegmento(segmento);
+                segmentoLectura = segmento;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return mapaLectura;
+    }
+
+    // --- Ficheros ---
+
+    private MappedByteBuffer mapearSegmento(long numero) throws IOException {
+        return mapear(ficheroSegmento(numero), tamSegmento);
+    }
+
+    /** @brief Mapea un fichero completo; si es más corto (truncado o nuevo) se amplía con ceros. */
+    private static MappedByteBuffer mapear(File fichero, int tam) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(fichero, "rw")) {
+            // El mapa sigue siendo válido después de cerrar el canal
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, tam);
+        }
+    }
+
+    private void borrarSegmento(long numero) {
+        if (numero == segmentoLectura) {
+            segmentoLectura = -1;
+            mapaLectura = null;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        ficheroSegmento(numero).delete();
+    }
+
+    private File ficheroSegmento(long numero) {
+        return new File(directorio, String.format(Locale.ROOT, "segmento-%010d.bin", numero));
+    }
+
+    private static long numeroSegmento(String nombre) {
+        if (!nombre.startsWith("segmento-") || !nombre.endsWith(".bin")) return -1;
+        try {
+            return Long.parseLong(nombre.substring(9, nombre.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean leerCursor() {
+        boolean valido = false;
+        for (int ranura = 0; ranura < 2; ranura++) {
+            int base = ranura * TAM_RANURA_CURSOR;
+            mapaCursor.position(base);
+            mapaCursor.get(bufferRegistro, 0, TAM_RANURA_CURSOR);
+            crc.reset();
+            crc.update(bufferRegistro, 0, DATOS_RANURA_CURSOR);
+            if (registro.getInt(DATOS_RANURA_CURSOR) != (int) crc.getValue()) continue;
+            long secuencia = registro.getLong(0);
+            if (secuencia <= 0 || (valido && secuencia <= secuenciaCursor)) continue;
+            secuenciaCursor = secuencia;
+            segmentoCursor = registro.getLong(8);
+            indiceCursor = registro.getInt(16);
+            valido = true;
+        }
+        return valido;
+    }
+
+    /** @brief Escribe el cursor en la ranura que no contiene la última versión. */
+    private void guardarCursor() {
+        secuenciaCursor++;
+        ByteBuffer ranura = ByteBuffer.allocate(TAM_RANURA_CURSOR);
+        ranura.putLong(secuenciaCursor).putLong(segmentoCursor).putInt(indiceCursor);
+        crc.reset();
+        crc.update(ranura.array(), 0, DATOS_RANURA_CURSOR);
+        ranura.putInt((int) crc.getValue());
+        mapaCursor.position((int) (secuenciaCursor % 2) * TAM_RANURA_CURSOR);
+        mapaCursor.put(ranura.array());
+    }
+
+    /**
+     * @brief Sincroniza y deja de usar la bandeja. Los mapas se liberan cuando los recoge el GC.
+     * () -> cerrar() -> ()
+     */
+    public synchronized void cerrar() {
+        sincronizar();
+        cerrada = true;
+        mapaEscritura = null;
+        mapaLectura = null;
+        segmentoLectura = -1;
+    }
+
+    // --- Configuración y métricas ---
+
+    /** @brief Registros por segmento. */
+    public int getRegistrosPorSegmento() {
+        return registrosPorSegmento;
+    }
+
+    /** @brief Segmentos máximos en disco. */
+    public int getMaxSegmentos() {
+        return maxSegmentos;
+    }
+
+    /** @brief Posiciones entre el cursor y el final (registros pendientes de subir). */
+    public synchronized long getPendientes() {
+        return (segmentoEscritura - segmentoCursor) * registrosPorSegmento + indiceEscritura - indiceCursor;
+    }
+
+    /** @brief Segmentos que hay ahora en disco. */
+    public synchronized int getSegmentos() {
+        return (int) (segmentoEscritura - primerSegmento + 1);
+    }
+
+    /** @brief Registros escritos desde que se abrió. */
+    public synchronized long getEscritos() {
+        return escritos;
+    }
+
+    /** @brief Posiciones confirmadas (subidas) desde que se abrió. */
+    public synchronized long getConfirmados() {
+        return confirmados;
+    }
+
+    /** @brief Registros sin subir descartados por el límite de segmentos. */
+    public synchronized long getDescartados() {
+        return descartados;
+    }
+
+    /** @brief Registros rotos encontrados (al recuperar o al leer). */
+    public synchronized long getCorruptos() {
+        return corruptos;
+    }
+
+    /** @brief force() de segmento realizados. */
+    public synchronized long getSincronizaciones() {
+        return sincronizaciones;
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     * @return Pendientes, segmentos, descartes y sincronizaciones.
+     */
+    public synchronized String resumen() {
+        return String.format(Locale.ROOT, "Bandeja de salida: %d pendientes en %d segmentos, %d escritos, %d subidos, %d descartados por límite, %d corruptos, %d sincronizaciones.",
+                getPendientes(), getSegmentos(), escritos, confirmados, descartados, corruptos, sincronizaciones);
+    }
+}
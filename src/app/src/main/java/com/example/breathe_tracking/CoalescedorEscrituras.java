@@ -0,0 +1,222 @@
+/**
+ * @file CoalescedorEscrituras.java
+ * @brief Fusiona las escrituras del documento de último valor de cada sensor respetando un intervalo mínimo por documento.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class CoalescedorEscrituras
+ * @brief Última escritura gana para los documentos sensores/{codigo}.
+ *
+ * Copyrigth © 2025
+ *
+ * Los campos se acumulan en un mapa pendiente por documento (los más recientes ganan) y se escriben
+ * con un set con merge como mucho una vez cada \ref getIntervaloMinimoMs() milisegundos, por debajo
+ * del ritmo de escritura que Firestore sostiene en un mismo documento.
+ *
+ * Los cambios del campo "estado" (conexión y desconexión) se escriben al momento, junto con lo que
+ * hubiese pendiente. El llamante programa \ref revisar con la espera que devuelven \ref escribir y
+ * \ref revisar.
+ */
+public class CoalescedorEscrituras {
+
+    /** @brief Intervalo mínimo por defecto entre escrituras de un mismo documento (1 segundo). */
+    public static final long INTERVALO_MINIMO_POR_DEFECTO_MS = 1000;
+    /** @brief Campo cuyo cambio de valor fuerza la escritura inmediata. */
+    public static final String CAMPO_ESTADO = "estado";
+
+    /** @brief Destino de las escrituras fusionadas. */
+    public interface Destino {
+        /**
+         * @brief Escribe (set con merge) los campos en el documento del sensor.
+         * @param codigoSensor Código del sensor (ID del documento).
+         * @param campos Campos fusionados.
+         */
+        void escribir(String codigoSensor, Map<String, Object> campos);
+    }
+
+    /** @brief Estado de un documento. */
+    private static final class Documento {
+        /** @brief Campos pendientes de escribir; null si no hay nada pendiente. */
+        Map<String, Object> pendiente;
+        /** @brief Instante de la última escritura (Long.MIN_VALUE si nunca se ha escrito). */
+        long ultimaEscrituraMs = Long.MIN_VALUE;
+        /** @brief Último valor escrito o pendiente del campo de estado. */
+        Object ultimoEstado;
+    }
+
+    private final Destino destino;
+    private final Reloj reloj;
+    private final long intervaloMinimoMs;
+    private final Map<String, Documento> documentos = new HashMap<>();
+
+    // Métricas
+    private long solicitudes = 0;
+    private long escrituras = 0;
+    private long fusionadas = 0;
+    private long inmediatas = 0;
+
+    /**
+     * @brief Constructor con el intervalo por defecto (1 segundo).
+     * (destino:Destino, reloj:Reloj) -> CoalescedorEscrituras() -> ()
+     */
+    public CoalescedorEscrituras(Destino destino, Reloj reloj) {
+        this(destino, reloj, INTERVALO_MINIMO_POR_DEFECTO_MS);
+    }
+
+    /**
+     * @brief Constructor del coalescedor.
+     * (destino:Destino, reloj:Reloj, intervaloMinimoMs:long) -> CoalescedorEscrituras() -> ()
+     * @param destino Destino de las escrituras.
+     * @param reloj Reloj monótono en milisegundos.
+     * @param intervaloMinimoMs Separación mínima entre dos escrituras del mismo documento.
+     */
+    public CoalescedorEscrituras(Destino destino, Reloj reloj, long intervaloMinimoMs) {
+        this.destino = destino;
+        this.reloj = reloj;
+        this.intervaloMinimoMs = intervaloMinimoMs;
+    }
+
+    /**
+     * @brief Fusiona los campos con los pendientes del documento y escribe si el intervalo lo permite.
+     * (codigoSensor:String, campos:Map<String,Object>) -> escribir() -> long
+     * @param codigoSensor Código del sensor.
+     * @param campos Campos a escribir (se copian).
+     * @return Milisegundos hasta la próxima llamada necesaria a \ref revisar, o -1 si no queda nada pendiente.
+     */
+    public synchronized long escribir(String codigoSensor, Map<String, Object> campos) {
+        return escribir(codigoSensor, campos, false);
+    }
+
+    /**
+     * @brief Igual que \ref escribir(String, Map), pero con \p inmediato se escribe ya aunque no haya pasado el intervalo.
+     * (codigoSensor:String, campos:Map<String,Object>, inmediato:boolean) -> escribir() -> long
+     */
+    public synchronized long escribir(String codigoSensor, Map<String, Object> campos, boolean inmediato) {
+        solicitudes++;
+        Documento doc = documentos.get(codigoSensor);
+        if (doc == null) {
+            doc = new Documento();
+            documentos.put(codigoSensor, doc);
+        }
+        if (doc.pendiente == null) {
+            doc.pendiente = new HashMap<>(campos);
+        } else {
+            doc.pendiente.putAll(campos);
+            fusionadas++;
+        }
+
+        Object estado = campos.get(CAMPO_ESTADO);
+        boolean cambioEstado = estado != null && !estado.equals(doc.ultimoEstado);
+        if (estado != null) doc.ultimoEstado = estado;
+
+        long ahora = reloj.ahoraMs();
+        if (inmediato || cambioEstado) {
+            if (restante(doc, ahora) > 0) inmediatas++;
+            volcar(codigoSensor, doc, ahora);
+        } else if (restante(doc, ahora) == 0) {
+            volcar(codigoSensor, doc, ahora);
+        }
+        return proximaRevision(ahora);
+    }
+
+    /**
+     * @brief Escribe los documentos cuyo intervalo mínimo ya ha pasado.
+     * () -> revisar() -> long
+     * @return Milisegundos hasta la próxima revisión necesaria, o -1 si no queda nada pendiente.
+     */
+    public synchronized long revisar() {
+        long ahora = reloj.ahoraMs();
+        for (Map.Entry<String, Documento> entrada : documentos.entrySet()) {
+            Documento doc = entrada.getValue();
+            if (doc.pendiente != null && restante(doc, ahora) == 0) volcar(entrada.getKey(), doc, ahora);
+        }
+        return proximaRevision(ahora);
+    }
+
+    /**
+     * @brief Escribe ya todo lo pendiente (al detener el servicio).
+     * () -> vaciar() -> ()
+     */
+    public synchronized void vaciar() {
+        long ahora = reloj.ahoraMs();
+        for (Map.Entry<String, Documento> entrada : documentos.entrySet()) {
+            if (entrada.getValue().pendiente != null) volcar(entrada.getKey(), entrada.getValue(), ahora);
+        }
+    }
+
+    private void volcar(String codigoSensor, Documento doc, long ahora) {
+        Map<String, Object> campos = doc.pendiente;
+        doc.pendiente = null;
+        doc.ultimaEscrituraMs = ahora;
+        escrituras++;
+        destino.escribir(codigoSensor, campos);
+    }
+
+    private long proximaRevision(long ahora) {
+        long espera = -1;
+        for (Documento doc : documentos.values()) {
+            if (doc.pendiente == null) continue;
+            long restante = restante(doc, ahora);
+            if (espera < 0 || restante < espera) espera = restante;
+        }
+        return espera;
+    }
+
+    /** @brief Milisegundos que faltan para poder escribir el documento (0 si ya se puede). */
+    private long restante(Documento doc, long ahora) {
+        if (doc.ultimaEscrituraMs == Long.MIN_VALUE) return 0;
+        return Math.max(0, doc.ultimaEscrituraMs + intervaloMinimoMs - ahora);
+    }
+
+    // --- Métricas ---
+
+    /** @brief Separación mínima entre escrituras de un documento (ms). */
+    public long getIntervaloMinimoMs() {
+        return intervaloMinimoMs;
+    }
+
+    /** @brief Escrituras pedidas. */
+    public synchronized long getSolicitudes() {
+        return solicitudes;
+    }
+
+    /** @brief Escrituras realizadas en Firestore. */
+    public synchronized long getEscrituras() {
+        return escrituras;
+    }
+
+    /** @brief Escrituras ahorradas: pedidas que se fusionaron con otras pendientes. */
+    public synchronized long getFusionadas() {
+        return fusionadas;
+    }
+
+    /** @brief Escrituras adelantadas al intervalo mínimo por un cambio de estado o una petición inmediata. */
+    public synchronized long getInmediatas() {
+        return inmediatas;
+    }
+
+    /** @brief Documentos con campos pendientes. */
+    public synchronized int getPendientes() {
+        int n = 0;
+        for (Documento doc : documentos.values()) {
+            if (doc.pendiente != null) n++;
+        }
+        return n;
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     * @return Escrituras pedidas, realizadas y fusionadas.
+     */
+    public synchronized String resumen() {
+        return String.format(Locale.ROOT, "Coalescedor: %d escrituras pedidas -> %d realizadas (%d fusionadas, %.1f%% menos; %d inmediatas por cambio de estado).",
+                solicitudes, escrituras, fusionadas, solicitudes == 0 ? 0 : 100.0 * fusionadas / solicitudes, inmediatas);
+    }
+}
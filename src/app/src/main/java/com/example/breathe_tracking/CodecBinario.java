@@ -0,0 +1,217 @@
+/**
+ * @file CodecBinario.java
+ * @brief Lectura y escritura de enteros en arrays de bytes (big y little endian), hexadecimal por tabla y UUIDs, sin asignar memoria.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.UUID;
+
+/**
+ * @class CodecBinario
+ * @brief Conversiones binarias de bajo nivel que usan las tramas BLE y \ref Utilidades.
+ *
+ * Copyrigth © 2025
+ *
+ * Ninguna conversión crea objetos intermedios:
+ *
+ * - **Enteros:** campos de 8, 16, 24, 32 y 64 bits, con y sin signo, en big y little endian, leídos
+ *   en una posición del array. Solo desplazamientos y máscaras: no asignan memoria.
+ * - **Hexadecimal:** cada byte se traduce con una tabla de 16 caracteres y se escribe en un char[]
+ *   del llamante.
+ * - **UUID:** se leen los 16 bytes (o los 16 caracteres de 8 bits) directamente en los dos long.
+ *
+ * Los métodos no comprueban los límites más allá de lo que ya hace Java con los arrays: un
+ * desplazamiento fuera de rango lanza ArrayIndexOutOfBoundsException.
+ */
+public final class CodecBinario {
+
+    /** @brief Dígitos hexadecimales en minúscula (como "%02x"). */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** @brief Sin separador en \ref hex. */
+    public static final char SIN_SEPARADOR = '\0';
+
+    private CodecBinario() {
+    }
+
+    // --- Genéricos (1 a 8 bytes) ---
+
+    /**
+     * @brief Lee un entero sin signo de \p bytes bytes.
+     * (datos:byte[], inicio:int, bytes:int, bigEndian:boolean) -> leerSinSigno() -> long
+     * @param datos Array de origen.
+     * @param inicio Posición del primer byte del campo.
+     * @param bytes Anchura del campo (1 - 8). Con 8 bytes el resultado son los 64 bits tal cual.
+     * @param bigEndian true si el byte más significativo va primero.
+     */
+    public static long leerSinSigno(byte[] datos, int inicio, int bytes, boolean bigEndian) {
+        if (bytes < 1 || bytes > 8) throw new IllegalArgumentException("Anchura no válida: " + bytes);
+        long valor = 0;
+        if (bigEndian) {
+            for (int i = 0; i < bytes; i++) valor = (valor << 8) | (datos[inicio + i] & 0xFFL);
+        } else {
+            for (int i = bytes - 1; i >= 0; i--) valor = (valor << 8) | (datos[inicio + i] & 0xFFL);
+        }
+        return valor;
+    }
+
+    /**
+     * @brief Lee un entero con signo (complemento a 2) de \p bytes bytes, extendiendo el signo a 64 bits.
+     * (datos:byte[], inicio:int, bytes:int, bigEndian:boolean) -> leerConSigno() -> long
+     */
+    public static long leerConSigno(byte[] datos, int inicio, int bytes, boolean bigEndian) {
+        int desplazamiento = 64 - 8 * bytes;
+        return (leerSinSigno(datos, inicio, bytes, bigEndian) << desplazamiento) >> desplazamiento;
+    }
+
+    /**
+     * @brief Escribe los \p bytes bytes menos significativos de \p valor.
+     * (valor:long, destino:byte[], inicio:int, bytes:int, bigEndian:boolean) -> escribir() -> ()
+     */
+    public static void escribir(long valor, byte[] destino, int inicio, int bytes, boolean bigEndian) {
+        if (bytes < 1 || bytes > 8) throw new IllegalArgumentException("Anchura no válida: " + bytes);
+        for (int i = 0; i < bytes; i++) {
+            destino[bigEndian ? inicio + bytes - 1 - i : inicio + i] = (byte) valor;
+            valor >>>= 8;
+        }
+    }
+
+    // --- 8 bits ---
+
+    public static int u8(byte[] d, int i) {
+        return d[i] & 0xFF;
+    }
+
+    public static int s8(byte[] d, int i) {
+        return d[i];
+    }
+
+    // --- 16 bits ---
+
+    public static int u16le(byte[] d, int i) {
+        return (d[i] & 0xFF) | (d[i + 1] & 0xFF) << 8;
+    }
+
+    public static int s16le(byte[] d, int i) {
+        return (short) u16le(d, i);
+    }
+
+    public static int u16be(byte[] d, int i) {
+        return (d[i] & 0xFF) << 8 | (d[i + 1] & 0xFF);
+    }
+
+    public static int s16be(byte[] d, int i) {
+        return (short) u16be(d, i);
+    }
+
+    // --- 24 bits ---
+
+    public static int u24le(byte[] d, int i) {
+        return (d[i] & 0xFF) | (d[i + 1] & 0xFF) << 8 | (d[i + 2] & 0xFF) << 16;
+    }
+
+    public static int s24le(byte[] d, int i) {
+        return u24le(d, i) << 8 >> 8;
+    }
+
+    public static int u24be(byte[] d, int i) {
+        return (d[i] & 0xFF) << 16 | (d[i + 1] & 0xFF) << 8 | (d[i + 2] & 0xFF);
+    }
+
+    public static int s24be(byte[] d, int i) {
+        return u24be(d, i) << 8 >> 8;
+    }
+
+    // --- 32 bits ---
+
+    public static int s32le(byte[] d, int i) {
+        return (d[i] & 0xFF) | (d[i + 1] & 0xFF) << 8 | (d[i + 2] & 0xFF) << 16 | d[i + 3] << 24;
+    }
+
+    public static long u32le(byte[] d, int i) {
+        return s32le(d, i) & 0xFFFFFFFFL;
+    }
+
+    public static int s32be(byte[] d, int i) {
+        return d[i] << 24 | (d[i + 1] & 0xFF) << 16 | (d[i + 2] & 0xFF) << 8 | (d[i + 3] & 0xFF);
+    }
+
+    public static long u32be(byte[] d, int i) {
+        return s32be(d, i) & 0xFFFFFFFFL;
+    }
+
+    // --- 64 bits (con signo; sin signo son los mismos bits) ---
+
+    public static long s64le(byte[] d, int i) {
+        return (s32le(d, i) & 0xFFFFFFFFL) | (long) s32le(d, i + 4) << 32;
+    }
+
+    public static long s64be(byte[] d, int i) {
+        return (long) s32be(d, i) << 32 | (s32be(d, i + 4) & 0xFFFFFFFFL);
+    }
+
+    // --- Hexadecimal ---
+
+    /**
+     * @brief Escribe en hexadecimal \p n bytes, cada uno seguido de \p separador (si no es \ref SIN_SEPARADOR).
+     * (datos:byte[], inicio:int, n:int, separador:char, destino:char[], desde:int) -> hex() -> int
+     * @param destino Buffer del llamante; necesita 2 (o 3 con separador) caracteres por byte.
+     * @return Caracteres escritos.
+     */
+    public static int hex(byte[] datos, int inicio, int n, char separador, char[] destino, int desde) {
+        int j = desde;
+        for (int i = inicio; i < inicio + n; i++) {
+            int b = datos[i] & 0xFF;
+            destino[j++] = HEX[b >>> 4];
+            destino[j++] = HEX[b & 0x0F];
+            if (separador != SIN_SEPARADOR) destino[j++] = separador;
+        }
+        return j - desde;
+    }
+
+    /**
+     * @brief Hexadecimal de un array completo (una sola asignación: la del String).
+     * (datos:byte[], separador:char) -> hex() -> String
+     */
+    public static String hex(byte[] datos, char separador) {
+        char[] destino = new char[datos.length * (separador == SIN_SEPARADOR ? 2 : 3)];
+        return new String(destino, 0, hex(datos, 0, datos.length, separador, destino, 0));
+    }
+
+    // --- UUID ---
+
+    /**
+     * @brief Lee un UUID de 16 bytes en big endian (como lo escriben los iBeacon).
+     * (datos:byte[], inicio:int) -> uuid() -> UUID
+     */
+    public static UUID uuid(byte[] datos, int inicio) {
+        return new UUID(s64be(datos, inicio), s64be(datos, inicio + 8));
+    }
+
+    /**
+     * @brief Escribe un UUID en 16 bytes big endian.
+     * (uuid:UUID, destino:byte[], inicio:int) -> escribirUuid() -> ()
+     */
+    public static void escribirUuid(UUID uuid, byte[] destino, int inicio) {
+        escribir(uuid.getMostSignificantBits(), destino, inicio, 8, true);
+        escribir(uuid.getLeastSignificantBits(), destino, inicio + 8, 8, true);
+    }
+
+    /**
+     * @brief Lee un UUID de 16 caracteres de 8 bits (cada carácter es un byte; la inversa de
+     * Utilidades.uuidToString), sin pasar por un juego de caracteres ni por cadenas intermedias.
+     * (texto:CharSequence) -> uuidDeTexto() -> UUID
+     * @throws IllegalArgumentException Si no tiene 16 caracteres.
+     */
+    public static UUID uuidDeTexto(CharSequence texto) {
+        if (texto.length() != 16) throw new IllegalArgumentException("El UUID debe tener 16 caracteres: " + texto.length());
+        return new UUID(ochoCaracteres(texto, 0), ochoCaracteres(texto, 8));
+    }
+
+    private static long ochoCaracteres(CharSequence texto, int inicio) {
+        long valor = 0;
+        for (int i = inicio; i < inicio + 8; i++) valor = (valor << 8) | (texto.charAt(i) & 0xFF);
+        return valor;
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * @file ColaIngesta.java
+ * @brief Cola acotada de un productor y un consumidor para los paquetes BLE crudos que llegan del escáner.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @class ColaIngesta
+ * @brief Buffer circular preasignado entre el callback del escaneo (productor) y el hilo de
+ * procesamiento de \ref PipelineIngesta (consumidor).
+ *
+ * Copyrigth © 2025
+ *
+ * El productor copia los bytes del anuncio en una ranura preasignada, así que encolar no crea
+ * objetos. Cuando la cola está llena se aplica la política de desbordamiento configurada:
+ *
+ * - DESCARTAR_ANTIGUO: anillo de paquetes. Si no hay hueco, el productor avanza la cabeza con un
+ *   CAS (descarta el paquete más antiguo). El consumidor copia la ranura y confirma con otro CAS;
+ *   si el productor se le adelantó, la copia se descarta y vuelve a intentarlo.
+ * - FUSIONAR_POR_SENSOR: una ranura por sensor con el último paquete y un anillo de índices de
+ *   sensores pendientes. Un sensor solo puede estar una vez en el anillo, de modo que nunca se
+ *   desborda y un sensor rápido no desplaza a los lentos: solo se pierde información ya superada.
+ */
+public class ColaIngesta {
+
+    /**
+     * @brief Política que se aplica cuando llega un paquete y no hay hueco.
+     */
+    public enum PoliticaDesbordamiento {
+        /** @brief Se descarta el paquete más antiguo de la cola. */
+        DESCARTAR_ANTIGUO,
+        /** @brief Se conserva solo el último paquete pendiente de cada sensor. */
+        FUSIONAR_POR_SENSOR
+    }
+
+    /** @brief Bytes que se copian de cada anuncio (anuncio + respuesta de escaneo legacy: 62 bytes). */
+    public static final int MAX_BYTES_ANUNCIO = 64;
+
+    /**
+     * @class Ranura
+     * @brief Paquete crudo: bytes del anuncio, RSSI, instante y clave del sensor.
+     */
+    public static final class Ranura {
+        /** @brief Copia de los bytes del anuncio. */
+        public final byte[] datos = new byte[MAX_BYTES_ANUNCIO];
+        /** @brief Número de bytes válidos en \ref datos. */
+        public int longitud;
+        /** @brief RSSI del anuncio en dBm. */
+        public int rssi;
+        /** @brief Instante de recepción en nanosegundos (reloj monótono). */
+        public long instanteNanos;
+        /** @brief Índice del sensor emisor en \ref RegistroSensores. */
+        public int clave;
+
+        void copiarDe(Ranura otra) {
+            System.arraycopy(otra.datos, 0, datos, 0, otra.longitud);
+            longitud = otra.longitud;
+            rssi = otra.rssi;
+            instanteNanos = otra.instanteNanos;
+            clave = otra.clave;
+        }
+
+        void escribir(int clave, byte[] origen, int rssi, long instanteNanos) {
+            // Los anuncios extendidos se truncan: el decodificador ignora las estructuras AD incompletas
+            int n = Math.min(origen.length, MAX_BYTES_ANUNCIO);
+            System.arraycopy(origen, 0, datos, 0, n);
+            this.longitud = n;
+            this.rssi = rssi;
+            this.instanteNanos = instanteNanos;
+            this.clave = clave;
+        }
+    }
+
+    /** @brief Política de desbordamiento de esta cola. */
+    private final PoliticaDesbordamiento politica;
+
+    // --- DESCARTAR_ANTIGUO: anillo de paquetes ---
+    /** @brief Ranuras del anillo (capacidad potencia de 2). */
+    private final Ranura[] anillo;
+    /** @brief Máscara para convertir una secuencia en posición del anillo. */
+    private final int mascara;
+    /** @brief Siguiente secuencia a consumir. La modifican el consumidor y, al desbordar, el productor. */
+    private final AtomicLong cabeza = new AtomicLong();
+    /** @brief Siguiente secuencia a producir. Solo la escribe el productor. */
+    private final AtomicLong cola = new AtomicLong();
+
+    // --- FUSIONAR_POR_SENSOR: última ranura por sensor + anillo de índices ---
+    /** @brief Último paquete pendiente de cada sensor. */
+    private final Ranura[] porClave;
+    /** @brief 1 si el sensor está en el anillo de pendientes. */
+    private final AtomicIntegerArray pendiente;
+    /** @brief Anillo de índices de sensores pendientes. */
+    private final int[] anilloClaves;
+    /** @brief Máscara del anillo de índices. */
+    private final int mascaraClaves;
+
+    /** @brief Paquetes descartados por desbordamiento o por clave de sensor fuera de rango. */
+    private final AtomicLong descartados = new AtomicLong();
+    /** @brief Paquetes fusionados con otro pendiente del mismo sensor. */
+    private final AtomicLong fusionados = new AtomicLong();
+    /** @brief Profundidad máxima observada. */
+    private volatile int profundidadMaxima = 0;
+
+    /**
+     * @brief Constructor de la cola.
+     * (capacidad:int, maxSensores:int, politica:PoliticaDesbordamiento) -> ColaIngesta() -> ()
+     * @param capacidad Número de paquetes del anillo (DESCARTAR_ANTIGUO); se redondea a potencia de 2.
+     * @param maxSensores Número máximo de sensores distintos (FUSIONAR_POR_SENSOR).
+     * @param politica Política de desbordamiento.
+     */
+    public ColaIngesta(int capacidad, int maxSensores, PoliticaDesbordamiento politica) {
+        this.politica = politica;
+        if (politica == PoliticaDesbordamiento.DESCARTAR_ANTIGUO) {
+            int tamano = potenciaDeDos(capacidad);
+            anillo = new Ranura[tamano];
+            for (int i = 0; i < tamano; i++) anillo[i] = new Ranura();
+            mascara = tamano - 1;
+            porClave = null;
+            pendiente = null;
+            anilloClaves = null;
+            mascaraClaves = 0;
+        } else {
+            porClave = new Ranura[maxSensores];
+            for (int i = 0; i < maxSensores; i++) porClave[i] = new Ranura();
+            pendiente = new AtomicIntegerArray(maxSensores);
+            int tamano = potenciaDeDos(maxSensores);
+            anilloClaves = new int[tamano];
+            mascaraClaves = tamano - 1;
+            anillo = null;
+            mascara = 0;
+        }
+    }
+
+    private static int potenciaDeDos(int n) {
+        int p = 1;
+        while (p < n) p <<= 1;
+        return p;
+    }
+
+    /**
+     * @brief Encola un paquete (solo desde el hilo productor).
+     * (clave:int, datos:byte[], rssi:int, instanteNanos:long) -> ofrecer() -> boolean
+     * @param clave Índice del sensor emisor.
+     * @param datos Bytes del anuncio (se copian).
+     * @param rssi RSSI del anuncio.
+     * @param instanteNanos Instante de recepción.
+     * @return false si el paquete se ha descartado sin encolar.
+     */
+    public boolean ofrecer(int clave, byte[] datos, int rssi, long instanteNanos) {
+        if (datos == null) return false;
+        return politica == PoliticaDesbordamiento.DESCARTAR_ANTIGUO
+                ? ofrecerEnAnillo(clave, datos, rssi, instanteNanos)
+                : ofrecerFusionando(clave, datos, rssi, instanteNanos);
+    }
+
+    private boolean ofrecerEnAnillo(int clave, byte[] datos, int rssi, long instanteNanos) {
+        long t = cola.get();
+        while (true) {
+            long h = cabeza.get();
+            if (t - h < anillo.length) break;
+            // Cola llena: descartamos el más antiguo avanzando la cabeza
+            if (cabeza.compareAndSet(h, h + 1)) {
+                descartados.incrementAndGet();
+                break;
+            }
+        }
+        anillo[(int) (t & mascara)].escribir(clave, datos, rssi, instanteNanos);
+        cola.set(t + 1); // Publica la ranura al consumidor
+        actualizarProfundidadMaxima();
+        return true;
+    }
+
+    private boolean ofrecerFusionando(int clave, byte[] datos, int rssi, long instanteNanos) {
+        if (clave < 0 || clave >= porClave.length) {
+            descartados.incrementAndGet();
+            return false;
+        }
+        Ranura ranura = porClave[clave];
+        synchronized (ranura) {
+            ranura.escribir(clave, datos, rssi, instanteNanos);
+        }
+        if (pendiente.compareAndSet(clave, 0, 1)) {
+            long t = cola.get();
+            anilloClaves[(int) (t & mascaraClaves)] = clave;
+            cola.set(t + 1);
+            actualizarProfundidadMaxima();
+        } else {
+            fusionados.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * @brief Extrae el siguiente paquete copiándolo en una ranura del consumidor (solo desde el hilo consumidor).
+     * (destino:Ranura) -> tomar() -> boolean
+     * @param destino Ranura propiedad del consumidor.
+     * @return true si se ha extraído un paquete; false si la cola está vacía.
+     */
+    public boolean tomar(Ranura destino) {
+        if (politica == PoliticaDesbordamiento.DESCARTAR_ANTIGUO) {
+            while (true) {
+                long h = cabeza.get();
+                if (h >= cola.get()) return false;
+                destino.copiarDe(anillo[(int) (h & mascara)]);
+                // Si el productor ha descartado esta ranura mientras la copiábamos, el CAS falla y se reintenta
+                if (cabeza.compareAndSet(h, h + 1)) return true;
+            }
+        }
+        long h = cabeza.get();
+        if (h >= cola.get()) return false;
+        int clave = anilloClaves[(int) (h & mascaraClaves)];
+        cabeza.set(h + 1);
+        // Se libera antes de copiar: si llega otro paquete del sensor, volverá a encolarse
+        pendiente.set(clave, 0);
+        Ranura ranura = porClave[clave];
+        synchronized (ranura) {
+            destino.copiarDe(ranura);
+        }
+        return true;
+    }
+
+    private void actualizarProfundidadMaxima() {
+        int profundidad = profundidad();
+        if (profundidad > profundidadMaxima) profundidadMaxima = profundidad;
+    }
+
+    /** @brief Número de paquetes pendientes en este momento. */
+    public int profundidad() {
+        return (int) Math.max(0, cola.get() - cabeza.get());
+    }
+
+    /** @brief Profundidad máxima observada desde la creación. */
+    public int getProfundidadMaxima() {
+        return profundidadMaxima;
+    }
+
+    /** @brief Paquetes descartados (desbordamiento o clave fuera de rango). */
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    /** @brief Paquetes fusionados con otro pendiente del mismo sensor. */
+    public long getFusionados() {
+        return fusionados.get();
+    }
+
+    /** @brief Política de desbordamiento configurada. */
+    public PoliticaDesbordamiento getPolitica() {
+        return politica;
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * @file ControladorNotificaciones.java
+ * @brief Lleva la cuenta de las notificaciones de alerta visibles y solo llama al sistema cuando algo cambia.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class ControladorNotificaciones
+ * @brief Filtra las llamadas a NotificationManager (notify y cancel) de las alertas del servicio.
+ *
+ * Copyrigth © 2025
+ *
+ * Cada notify o cancel es una llamada entre procesos (binder) al NotificationManager, así que el
+ * controlador recuerda qué notificaciones están visibles y con qué texto y solo llama cuando algo cambia:
+ *
+ * - **notify** solo si la notificación no está visible o su texto cambia.
+ * - **cancel** solo si está visible.
+ * - **Límite por canal:** una notificación no se vuelve a publicar antes de que pasen
+ *   \ref intervaloMinimoMs(String) milisegundos desde su última publicación. Mientras tanto se guarda
+ *   el último texto (el más reciente gana) y se publica en \ref revisar. La primera vez se publica al
+ *   momento.
+ *
+ * Quien construye la notificación es el \ref Notificador, que en el servicio reutiliza el builder y
+ * el PendingIntent de cada ID. Si el usuario descarta una notificación, el controlador la sigue
+ * creyendo visible: el siguiente cancel llega al sistema sin hacer daño.
+ *
+ * El llamante programa \ref revisar con la espera que devuelven \ref mostrar, \ref cancelar y \ref revisar.
+ */
+public class ControladorNotificaciones {
+
+    /** @brief Separación mínima por defecto entre dos publicaciones de una misma notificación (30 segundos). */
+    public static final long INTERVALO_MINIMO_POR_DEFECTO_MS = 30 * 1000;
+
+    /** @brief Quien habla con el sistema (NotificationManager). */
+    public interface Notificador {
+        /**
+         * @brief Publica (o actualiza) una notificación.
+         * @param id ID de la notificación.
+         * @param canal ID del canal de notificaciones.
+         * @param titulo Título.
+         * @param mensaje Texto.
+         */
+        void notificar(int id, String canal, String titulo, String mensaje);
+
+        /** @brief Quita una notificación. */
+        void cancelar(int id);
+    }
+
+    /** @brief Estado de una notificación. */
+    private static final class Aviso {
+        String canal;
+        /** @brief Texto publicado (válido si \ref visible). */
+        String titulo;
+        String mensaje;
+        boolean visible;
+        /** @brief Instante de la última publicación (Long.MIN_VALUE si nunca se ha publicado). */
+        long ultimaMs = Long.MIN_VALUE;
+        /** @brief Texto pendiente de publicar por el límite del canal; null si no hay nada pendiente. */
+        String tituloPendiente;
+        String mensajePendiente;
+    }
+
+    private final Notificador notificador;
+    private final Reloj reloj;
+    private final long intervaloPorDefectoMs;
+    private final Map<String, Long> intervaloPorCanal = new HashMap<>();
+    private final Map<Integer, Aviso> avisos = new HashMap<>();
+
+    // Métricas
+    private long notificaciones = 0;
+    private long cancelaciones = 0;
+    private long iguales = 0;
+    private long sinMostrar = 0;
+    private long aplazadas = 0;
+    private long fusionadas = 0;
+
+    /**
+     * @brief Constructor con el intervalo por defecto (30 segundos) para todos los canales.
+     * (notificador:Notificador, reloj:Reloj) -> ControladorNotificaciones() -> ()
+     */
+    public ControladorNotificaciones(Notificador notificador, Reloj reloj) {
+        this(notificador, reloj, INTERVALO_MINIMO_POR_DEFECTO_MS);
+    }
+
+    /**
+     * @brief Constructor del controlador.
+     * (notificador:Notificador, reloj:Reloj, intervaloPorDefectoMs:long) -> ControladorNotificaciones() -> ()
+     * @param notificador Destino de las llamadas al sistema.
+     * @param reloj Reloj monótono en milisegundos.
+     * @param intervaloPorDefectoMs Separación mínima entre publicaciones de una notificación en los canales sin configurar.
+     */
+    public ControladorNotificaciones(Notificador notificador, Reloj reloj, long intervaloPorDefectoMs) {
+        this.notificador = notificador;
+        this.reloj = reloj;
+        this.intervaloPorDefectoMs = intervaloPorDefectoMs;
+    }
+
+    /**
+     * @brief Configura la separación mínima entre publicaciones de una notificación de un canal.
+     * (canal:String, intervaloMs:long) -> canal() -> ControladorNotificaciones
+     * @param canal ID del canal de notificaciones.
+     * @param intervaloMs Separación mínima (0 para no limitar).
+     * @return Este controlador, para encadenar llamadas.
+     */
+    public synchronized ControladorNotificaciones canal(String canal, long intervaloMs) {
+        intervaloPorCanal.put(canal, intervaloMs);
+        return this;
+    }
+
+    /** @brief Separación mínima entre publicaciones de una notificación del canal (ms). */
+    public synchronized long intervaloMinimoMs(String canal) {
+        Long intervalo = intervaloPorCanal.get(canal);
+        return intervalo != null ? intervalo : intervaloPorDefectoMs;
+    }
+
+    /**
+     * @brief Pide mostrar una notificación. Solo se publica si no está visible con el mismo texto.
+     * (id:int, canal:String, titulo:String, mensaje:String) -> mostrar() -> long
+     * @param id ID de la notificación.
+     * @param canal ID del canal de notificaciones.
+     * @param titulo Título.
+     * @param mensaje Texto.
+     * @return Milisegundos hasta la próxima llamada necesaria a \ref revisar, o -1 si no queda nada pendiente.
+     */
+    public synchronized long mostrar(int id, String canal, String titulo, String mensaje) {
+        Aviso aviso = avisos.get(id);
+        if (aviso == null) {
+            aviso = new Aviso();
+            avisos.put(id, aviso);
+        }
+        aviso.canal = canal;
+        long ahora = reloj.ahoraMs();
+        if (aviso.visible && titulo.equals(aviso.titulo) && mensaje.equals(aviso.mensaje)) {
+            // Ya se ve eso mismo: lo que hubiese pendiente deja de hacer falta
+            if (aviso.tituloPendiente != null) fusionadas++;
+            aviso.tituloPendiente = null;
+            aviso.mensajePendiente = null;
+            iguales++;
+        } else if (restante(aviso, ahora) == 0) {
+            publicar(id, aviso, titulo, mensaje, ahora);
+        } else {
+            if (aviso.tituloPendiente != null) fusionadas++;
+            else aplazadas++;
+            aviso.tituloPendiente = titulo;
+            aviso.mensajePendiente = mensaje;
+        }
+        return proximaRevision(ahora);
+    }
+
+    /**
+     * @brief Pide quitar una notificación. Solo se llama al sistema si está visible.
+     * (id:int) -> cancelar() -> long
+     * @param id ID de la notificación.
+     * @return Milisegundos hasta la próxima llamada necesaria a \ref revisar, o -1 si no queda nada pendiente.
+     */
+    public synchronized long cancelar(int id) {
+        Aviso aviso = avisos.get(id);
+        long ahora = reloj.ahoraMs();
+        if (aviso != null && aviso.tituloPendiente != null) {
+            // Lo aplazado ya no llega a publicarse
+            fusionadas++;
+            aviso.tituloPendiente = null;
+            aviso.mensajePendiente = null;
+        }
+        if (aviso == null || !aviso.visible) {
+            sinMostrar++;
+        } else {
+            aviso.visible = false;
+            cancelaciones++;
+            notificador.cancelar(id);
+        }
+        return proximaRevision(ahora);
+    }
+
+    /**
+     * @brief Publica las notificaciones aplazadas cuyo intervalo ya ha pasado.
+     * () -> revisar() -> long
+     * @return Milisegundos hasta la próxima revisión necesaria, o -1 si no queda nada pendiente.
+     */
+    public synchronized long revisar() {
+        long ahora = reloj.ahoraMs();
+        for (Map.Entry<Integer, Aviso> entrada : avisos.entrySet()) {
+            Aviso aviso = entrada.getValue();
+            if (aviso.tituloPendiente != null && restante(aviso, ahora) == 0) {
+                publicar(entrada.getKey(), aviso, aviso.tituloPendiente, aviso.mensajePendiente, ahora);
+            }
+        }
+        return proximaRevision(ahora);
+    }
+
+    /**
+     * @brief Indica si una notificación está visible (según lo que se ha pedido al sistema).
+     * (id:int) -> visible() -> boolean
+     */
+    public synchronized boolean visible(int id) {
+        Aviso aviso = avisos.get(id);
+        return aviso != null && aviso.visible;
+    }
+
+    private void publicar(int id, Aviso aviso, String titulo, String mensaje, long ahora) {
+        aviso.titulo = titulo;
+        aviso.mensaje = mensaje;
+        aviso.visible = true;
+        aviso.ultimaMs = ahora;
+        aviso.tituloPendiente = null;
+        aviso.mensajePendiente = null;
+        notificaciones++;
+        notificador.notificar(id, aviso.canal, titulo, mensaje);
+    }
+
+    private long proximaRevision(long ahora) {
+        long espera = -1;
+        for (Aviso aviso : avisos.values()) {
+            if (aviso.tituloPendiente == null) continue;
+            long restante = restante(aviso, ahora);
+            if (espera < 0 || restante < espera) espera = restante;
+        }
+        return espera;
+    }
+
+    /** @brief Milisegundos que faltan para poder volver a publicar la notificación (0 si ya se puede). */
+    private long restante(Aviso aviso, long ahora) {
+        if (aviso.ultimaMs == Long.MIN_VALUE) return 0;
+        return Math.max(0, aviso.ultimaMs + intervaloMinimoMs(aviso.canal) - ahora);
+    }
+
+    // --- Métricas ---
+
+    /** @brief Llamadas notify hechas al sistema. */
+    public synchronized long getNotificaciones() {
+        return notificaciones;
+    }
+
+    /** @brief Llamadas cancel hechas al sistema. */
+    public synchronized long getCancelaciones() {
+        return cancelaciones;
+    }
+
+    /**
+     * @brief Llamadas al sistema ahorradas: avisos iguales al visible, cancelaciones de notificaciones
+     * que no se veían y avisos aplazados que se fusionaron con otros o se cancelaron antes de publicarse.
+     * () -> getLlamadasEvitadas() -> long
+     */
+    public synchronized long getLlamadasEvitadas() {
+        return iguales + sinMostrar + fusionadas;
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     */
+    public synchronized String resumen() {
+        long pedidas = notificaciones + cancelaciones + getLlamadasEvitadas();
+        return String.format(Locale.ROOT, "Notificaciones: %d notify y %d cancel al sistema, %d llamadas evitadas de %d (%.1f%%; iguales %d, sin mostrar %d, aplazadas %d, fusionadas %d).",
+                notificaciones, cancelaciones, getLlamadasEvitadas(), pedidas,
+                pedidas == 0 ? 0 : 100.0 * getLlamadasEvitadas() / pedidas, iguales, sinMostrar, aplazadas, fusionadas);
+    }
+}
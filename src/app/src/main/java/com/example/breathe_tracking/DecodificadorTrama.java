@@ -0,0 +1,126 @@
+/**
+ * @file DecodificadorTrama.java
+ * @brief Decodificador sin asignaciones de memoria de la trama de anuncio BLE del sensor.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+/**
+ * @class DecodificadorTrama
+ * @brief Recorre las estructuras AD (Advertising Data) de los bytes crudos de un ScanRecord
+ * y extrae las mediciones del sensor directamente sobre una \ref LecturaBeacon reutilizable.
+ *
+ * Copyrigth © 2025
+ *
+ * Formato de una estructura AD: [longitud][tipo][datos...], donde longitud incluye el byte de tipo.
+ * Los datos de fabricante (tipo 0xFF) empiezan por el ID de compañía en little endian (0x004C)
+ * seguido del payload del sensor, cuyo primer byte es el tipo de trama (familia 0xA_). El resto
+ * lo describe el esquema de ese tipo en \ref ProtocoloTrama; la trama original sigue siendo:
+ *
+ *   [0xAA][O3 lo][O3 hi][T lo][T hi][CO2 lo][CO2 hi][BAT lo][BAT hi]
+ *
+ * Lee el payload directamente de los bytes crudos del anuncio, sin la copia en un array nuevo por
+ * anuncio que hace ScanRecord.getManufacturerSpecificData().
+ */
+public final class DecodificadorTrama {
+
+    /** @brief ID de fabricante usado por el sensor en los datos de fabricante. */
+    public static final int ID_FABRICANTE = 0x004C;
+    /** @brief Tipo de la trama original de mediciones (la familia se comprueba con ProtocoloTrama.MASCARA_FAMILIA). */
+    public static final byte PREFIJO_TRAMA = (byte) ProtocoloTrama.TIPO_HEREDADO;
+    /** @brief Longitud del payload de la trama original (sin el ID de fabricante). */
+    public static final int LONGITUD_PAYLOAD = 9;
+    /** @brief Tipo AD "Manufacturer Specific Data". */
+    private static final int AD_DATOS_FABRICANTE = 0xFF;
+
+    /**
+     * @brief Constructor privado: clase de utilidades estáticas.
+     */
+    private DecodificadorTrama() {}
+
+    /**
+     * @brief Decodifica la trama completa del anuncio sobre la lectura de destino.
+     * (scanRecord:byte[], destino:LecturaBeacon) -> decodificar() -> boolean
+     * @param scanRecord Bytes crudos del anuncio (ScanRecord.getBytes()).
+     * @param destino Lectura reutilizable donde se escriben los valores. Solo se modifica si la trama es válida.
+     * @return true si se ha encontrado y decodificado un payload válido del sensor.
+     */
+    public static boolean decodificar(byte[] scanRecord, LecturaBeacon destino) {
+        return scanRecord != null && decodificar(scanRecord, scanRecord.length, destino);
+    }
+
+    /**
+     * @brief Decodifica la trama de los primeros bytes de un buffer reutilizado (p. ej. una ranura de \ref ColaIngesta).
+     * (datos:byte[], longitud:int, destino:LecturaBeacon) -> decodificar() -> boolean
+     * @param datos Buffer con el anuncio al principio.
+     * @param longitud Número de bytes válidos; lo que haya detrás se ignora.
+     * @param destino Lectura reutilizable donde se escriben los valores. Solo se modifica si la trama es válida.
+     * @return true si se ha encontrado y decodificado un payload válido del sensor.
+     */
+    public static boolean decodificar(byte[] datos, int longitud, LecturaBeacon destino) {
+        int inicio = buscarPayload(datos, longitud);
+        return inicio >= 0
+                && ProtocoloTrama.ESTANDAR.decodificar(datos, inicio, longitudPayload(datos, inicio), destino) == ProtocoloTrama.COMPLETA;
+    }
+
+    /**
+     * @brief Bytes del payload (desde el byte de tipo) que devolvió \ref buscarPayload.
+     * (scanRecord:byte[], inicio:int) -> longitudPayload() -> int
+     */
+    public static int longitudPayload(byte[] scanRecord, int inicio) {
+        // [longitud][0xFF][ID lo][ID hi][payload...]: la longitud cuenta el tipo AD y el ID
+        return (scanRecord[inicio - 4] & 0xFF) - 3;
+    }
+
+    /**
+     * @brief Busca el payload de mediciones del sensor dentro de las estructuras AD.
+     * (scanRecord:byte[]) -> buscarPayload() -> int
+     * @param scanRecord Bytes crudos del anuncio.
+     * @return Índice del byte de tipo dentro del array, o -1 si no hay payload del sensor.
+     */
+    public static int buscarPayload(byte[] scanRecord) {
+        return scanRecord == null ? -1 : buscarPayload(scanRecord, scanRecord.length);
+    }
+
+    /**
+     * @brief Busca el payload de mediciones en los primeros bytes de un buffer.
+     * (scanRecord:byte[], limite:int) -> buscarPayload() -> int
+     * @param scanRecord Buffer con el anuncio al principio.
+     * @param limite Número de bytes válidos del buffer.
+     * @return Índice del byte de tipo (familia 0xA_), o -1 si no hay payload del sensor.
+     */
+    public static int buscarPayload(byte[] scanRecord, int limite) {
+        if (scanRecord == null) return -1;
+        limite = Math.min(limite, scanRecord.length);
+        int i = 0;
+        while (i < limite) {
+            int longitud = scanRecord[i] & 0xFF;
+            if (longitud == 0) break; // Relleno del final del anuncio
+            int fin = i + 1 + longitud;
+            if (fin > limite) break; // Estructura truncada
+
+            int tipo = scanRecord[i + 1] & 0xFF;
+            // Datos de fabricante: tipo + 2 bytes de ID + payload (la longitud la valida el esquema)
+            if (tipo == AD_DATOS_FABRICANTE && longitud >= 4) {
+                int idFabricante = CodecBinario.u16le(scanRecord, i + 2);
+                int inicioPayload = i + 4;
+                if (idFabricante == ID_FABRICANTE && ProtocoloTrama.esDeLaFamilia(scanRecord[inicioPayload])) {
+                    return inicioPayload;
+                }
+            }
+            i = fin;
+        }
+        return -1;
+    }
+
+    /**
+     * @brief Extrae los valores de un payload de la trama original (0xAA, 9 bytes) a partir de un desplazamiento.
+     * (datos:byte[], inicio:int, destino:LecturaBeacon) -> decodificarPayload() -> ()
+     * @param datos Array que contiene el payload.
+     * @param inicio Índice del byte de prefijo (0xAA).
+     * @param destino Lectura donde se escriben los valores.
+     */
+    public static void decodificarPayload(byte[] datos, int inicio, LecturaBeacon destino) {
+        ProtocoloTrama.ESTANDAR.decodificar(datos, inicio, LONGITUD_PAYLOAD, destino);
+    }
+}
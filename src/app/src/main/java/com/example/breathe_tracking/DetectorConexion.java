@@ -0,0 +1,303 @@
+/**
+ * @file DetectorConexion.java
+ * @brief Detector de conexión por marcas de tiempo: aprende cada cuánto se oye a cada sensor y detecta los silencios.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * @class DetectorConexion
+ * @brief Decide cuándo un sensor se ha desconectado y cuándo vuelve, sin tareas por paquete.
+ *
+ * Copyrigth © 2025
+ *
+ * Cada anuncio solo anota su instante (\ref registrarAnuncio) y una única tarea del servicio llama a
+ * \ref revisar cuando vence el primer plazo. Un sensor registrado del que nunca se ha oído nada se da
+ * por desconectado al vencer el límite máximo.
+ *
+ * - **Intervalo esperado:** por sensor se estiman la media y la desviación del tiempo entre
+ *   recepciones (medias móviles exponenciales, como el RTO de TCP). Es el intervalo con el que se
+ *   OYE al sensor, no el de su radio: con el escaneo por ventanas o por lotes es mayor.
+ * - **Desconexión:** si pasan \ref FALLOS_PARA_DESCONEXION intervalos esperados (más 4 desviaciones)
+ *   sin oírlo, acotado entre \ref getLimiteMinimoMs() y \ref getLimiteMaximoMs(). Mientras no hay
+ *   \ref MUESTRAS_MINIMAS intervalos medidos se usa el límite máximo. El
+ *   límite mínimo cubre los huecos en los que la radio no escucha (\ref setLimiteMinimoMs).
+ * - **Reconexión con histéresis:** tras una desconexión hacen falta \ref CONFIRMACIONES_RECONEXION
+ *   anuncios seguidos, separados menos que el límite, para volver a darlo por conectado. Un anuncio
+ *   suelto de un sensor que está en el límite del alcance no lo reconecta.
+ *
+ * No depende de Android; los índices son los de \ref RegistroSensores.
+ */
+public class DetectorConexion {
+
+    // --- Resultados de registrarAnuncio ---
+    /** @brief Nada cambia. */
+    public static final int SIN_CAMBIO = 0;
+    /** @brief El sensor pasa a conectado (primer anuncio o reconexión confirmada). */
+    public static final int CONECTADO = 1;
+
+    /** @brief Recibe las desconexiones que detecta \ref revisar. */
+    public interface Oyente {
+        /**
+         * @brief Un sensor lleva demasiado tiempo sin oírse.
+         * @param indice Índice del sensor.
+         * @param silencioMs Tiempo desde el último anuncio.
+         */
+        void alPerderConexion(int indice, long silencioMs);
+    }
+
+    // --- Constantes ---
+    /** @brief Intervalos esperados sin oír al sensor que cuentan como desconexión. */
+    public static final int FALLOS_PARA_DESCONEXION = 3;
+    /** @brief Intervalos medidos a partir de los que se usa la estimación. */
+    public static final int MUESTRAS_MINIMAS = 3;
+    /** @brief Anuncios seguidos necesarios para reconectar tras una desconexión. */
+    public static final int CONFIRMACIONES_RECONEXION = 2;
+    /** @brief Límite mínimo por defecto (10 segundos). */
+    public static final long LIMITE_MINIMO_POR_DEFECTO_MS = 10 * 1000;
+    /** @brief Anuncios más próximos que esto son el mismo evento (p. ej. respuesta de escaneo). */
+    private static final long INTERVALO_MINIMO_MS = 20;
+    /** @brief Suavizado de la media y de la desviación del intervalo. */
+    private static final float ALPHA_MEDIA = 0.125f;
+    private static final float BETA_DESVIACION = 0.25f;
+    private static final long NUNCA = Long.MIN_VALUE / 2;
+
+    // --- Estados ---
+    private static final byte SIN_REGISTRAR = 0;
+    /** @brief Registrado y aún sin oír: vale el límite máximo desde el registro. */
+    private static final byte ESPERANDO = 1;
+    private static final byte EN_LINEA = 2;
+    private static final byte DESCONECTADO = 3;
+
+    private final Reloj reloj;
+    private final Oyente oyente;
+    /** @brief Lo ajusta el servicio según los huecos que deja el escaneo (ventanas o lotes). */
+    private long limiteMinimoMs;
+    private final long limiteMaximoMs;
+
+    // --- Estado por sensor (por índice de registro) ---
+    private final byte[] estado;
+    private final long[] ultimo;
+    private final float[] media;
+    private final float[] desviacion;
+    private final int[] muestras;
+    private final int[] confirmaciones;
+    /** @brief Índices que \ref revisar ha dado por desconectados (se avisa fuera del cerrojo). */
+    private final int[] caidos;
+    private final long[] silencios;
+
+    // --- Métricas ---
+    private long anuncios = 0;
+    private long revisiones = 0;
+    private long desconexiones = 0;
+    private long reconexiones = 0;
+    private long reconexionesDescartadas = 0;
+
+    /**
+     * @brief Constructor con el límite mínimo por defecto.
+     * (reloj:Reloj, oyente:Oyente, maxSensores:int, limiteMaximoMs:long) -> DetectorConexion() -> ()
+     */
+    public DetectorConexion(Reloj reloj, Oyente oyente, int maxSensores, long limiteMaximoMs) {
+        this(reloj, oyente, maxSensores, Math.min(LIMITE_MINIMO_POR_DEFECTO_MS, limiteMaximoMs), limiteMaximoMs);
+    }
+
+    /**
+     * @brief Constructor del detector.
+     * (reloj:Reloj, oyente:Oyente, maxSensores:int, limiteMinimoMs:long, limiteMaximoMs:long) -> DetectorConexion() -> ()
+     * @param reloj Reloj monótono en milisegundos (el mismo que los instantes de los anuncios).
+     * @param oyente Recibe las desconexiones.
+     * @param maxSensores Número máximo de sensores (índices de \ref RegistroSensores).
+     * @param limiteMinimoMs Silencio mínimo para declarar una desconexión, por rápido que anuncie el sensor.
+     * @param limiteMaximoMs Silencio máximo: pasado este tiempo el sensor se da por desconectado siempre.
+     */
+    public DetectorConexion(Reloj reloj, Oyente oyente, int maxSensores, long limiteMinimoMs, long limiteMaximoMs) {
+        if (limiteMinimoMs <= 0 || limiteMaximoMs < limiteMinimoMs) throw new IllegalArgumentException("Límites no válidos");
+        this.reloj = reloj;
+        this.oyente = oyente;
+        this.limiteMinimoMs = limiteMinimoMs;
+        this.limiteMaximoMs = limiteMaximoMs;
+        estado = new byte[maxSensores];
+        ultimo = new long[maxSensores];
+        media = new float[maxSensores];
+        desviacion = new float[maxSensores];
+        muestras = new int[maxSensores];
+        confirmaciones = new int[maxSensores];
+        caidos = new int[maxSensores];
+        silencios = new long[maxSensores];
+        Arrays.fill(ultimo, NUNCA);
+    }
+
+    /**
+     * @brief Empieza a vigilar un sensor. Si no se le oye en el límite máximo, se da por desconectado.
+     * (indice:int) -> registrarSensor() -> ()
+     * @param indice Índice de registro del sensor.
+     */
+    public synchronized void registrarSensor(int indice) {
+        if (indice < 0 || indice >= estado.length || estado[indice] != SIN_REGISTRAR) return;
+        estado[indice] = ESPERANDO;
+        ultimo[indice] = reloj.ahoraMs();
+    }
+
+    /**
+     * @brief Anota un anuncio de un sensor. Es lo único que se hace por paquete.
+     * (indice:int, instanteMs:long) -> registrarAnuncio() -> int
+     * @param indice Índice del sensor.
+     * @param instanteMs Instante de recepción en el reloj del detector.
+     * @return CONECTADO si el sensor pasa a conectado; SIN_CAMBIO en otro caso.
+     */
+    public synchronized int registrarAnuncio(int indice, long instanteMs) {
+        if (indice < 0 || indice >= estado.length || estado[indice] == SIN_REGISTRAR) return SIN_CAMBIO;
+        anuncios++;
+        long delta = instanteMs - ultimo[indice];
+        boolean conAnterior = estado[indice] != ESPERANDO && ultimo[indice] != NUNCA;
+        if (conAnterior && delta < INTERVALO_MINIMO_MS) return SIN_CAMBIO;
+
+        switch (estado[indice]) {
+            case ESPERANDO:
+                ultimo[indice] = instanteMs;
+                estado[indice] = EN_LINEA;
+                return CONECTADO;
+            case EN_LINEA:
+                medir(indice, delta);
+                ultimo[indice] = instanteMs;
+                return SIN_CAMBIO;
+            default:
+                // Desconectado: el hueco no es un intervalo; cuenta para la reconexión si es seguido del anterior
+                if (confirmaciones[indice] > 0 && delta <= limite(indice)) {
+                    confirmaciones[indice]++;
+                } else {
+                    if (confirmaciones[indice] > 0) reconexionesDescartadas++;
+                    confirmaciones[indice] = 1;
+                }
+                ultimo[indice] = instanteMs;
+                if (confirmaciones[indice] < CONFIRMACIONES_RECONEXION) return SIN_CAMBIO;
+                confirmaciones[indice] = 0;
+                estado[indice] = EN_LINEA;
+                reconexiones++;
+                return CONECTADO;
+        }
+    }
+
+    /** @brief Actualiza la media y la desviación del intervalo con una medida nueva. */
+    private void medir(int i, long delta) {
+        if (muestras[i] == 0) {
+            media[i] = delta;
+            desviacion[i] = delta / 2f;
+        } else {
+            float error = delta - media[i];
+            media[i] += ALPHA_MEDIA * error;
+            desviacion[i] += BETA_DESVIACION * (Math.abs(error) - desviacion[i]);
+        }
+        muestras[i]++;
+    }
+
+    /** @brief Silencio tras el que se da por desconectado al sensor (ms). */
+    private long limite(int i) {
+        if (muestras[i] < MUESTRAS_MINIMAS) return limiteMaximoMs;
+        long estimado = (long) (FALLOS_PARA_DESCONEXION * media[i] + 4 * desviacion[i]);
+        return Math.max(limiteMinimoMs, Math.min(limiteMaximoMs, estimado));
+    }
+
+    /**
+     * @brief Comprueba los plazos y avisa al oyente de las desconexiones (fuera del cerrojo).
+     * () -> revisar() -> long
+     * @return Milisegundos hasta el próximo plazo, o -1 si no hay ningún sensor que vigilar.
+     */
+    public long revisar() {
+        int n = 0;
+        long espera;
+        synchronized (this) {
+            revisiones++;
+            long ahora = reloj.ahoraMs();
+            for (int i = 0; i < estado.length; i++) {
+                if (estado[i] != ESPERANDO && estado[i] != EN_LINEA) continue;
+                long silencio = ahora - ultimo[i];
+                if (silencio > limite(i)) {
+                    estado[i] = DESCONECTADO;
+                    confirmaciones[i] = 0;
+                    desconexiones++;
+                    caidos[n] = i;
+                    silencios[n++] = silencio;
+                }
+            }
+            espera = esperaMs(ahora);
+        }
+        for (int k = 0; k < n; k++) oyente.alPerderConexion(caidos[k], silencios[k]);
+        return espera;
+    }
+
+    /**
+     * @brief Milisegundos hasta el próximo plazo, sin revisar nada.
+     * () -> getEsperaMs() -> long
+     * @return Espera (0 si ya ha vencido alguno), o -1 si no hay ningún sensor que vigilar.
+     */
+    public synchronized long getEsperaMs() {
+        return esperaMs(reloj.ahoraMs());
+    }
+
+    private long esperaMs(long ahora) {
+        long espera = -1;
+        for (int i = 0; i < estado.length; i++) {
+            if (estado[i] != ESPERANDO && estado[i] != EN_LINEA) continue;
+            // +1: el plazo vence cuando el silencio SUPERA el límite
+            long restante = Math.max(0, ultimo[i] + limite(i) + 1 - ahora);
+            if (espera < 0 || restante < espera) espera = restante;
+        }
+        return espera;
+    }
+
+    // --- Métricas ---
+
+    /** @brief true si el sensor se considera conectado. */
+    public synchronized boolean conectado(int indice) {
+        return estado[indice] == EN_LINEA;
+    }
+
+    /** @brief Intervalo medio estimado entre recepciones del sensor (ms), o 0 si no se ha medido. */
+    public synchronized float getIntervaloMs(int indice) {
+        return muestras[indice] == 0 ? 0 : media[indice];
+    }
+
+    /** @brief Silencio tras el que el sensor se daría por desconectado ahora mismo (ms). */
+    public synchronized long getLimiteMs(int indice) {
+        return limite(indice);
+    }
+
+    /** @brief Límite mínimo configurado (ms). */
+    public synchronized long getLimiteMinimoMs() {
+        return limiteMinimoMs;
+    }
+
+    /**
+     * @brief Cambia el límite mínimo. Con el escaneo por ventanas o por lotes hay huecos sin recepción
+     * aunque el sensor siga anunciando; el límite mínimo debe cubrirlos para no dar falsas desconexiones.
+     * (limiteMinimoMs:long) -> setLimiteMinimoMs() -> ()
+     * @param limiteMinimoMs Nuevo límite mínimo (se acota entre 1 ms y el límite máximo).
+     */
+    public synchronized void setLimiteMinimoMs(long limiteMinimoMs) {
+        this.limiteMinimoMs = Math.max(1, Math.min(limiteMaximoMs, limiteMinimoMs));
+    }
+
+    /** @brief Límite máximo configurado (ms). */
+    public long getLimiteMaximoMs() {
+        return limiteMaximoMs;
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     */
+    public synchronized String resumen() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "Conexión: %d anuncios anotados con %d revisiones (antes %d operaciones del Handler), %d desconexiones, %d reconexiones (%d anuncios sueltos descartados).",
+                anuncios, revisiones, 2 * anuncios, desconexiones, reconexiones, reconexionesDescartadas));
+        for (int i = 0; i < estado.length; i++) {
+            if (estado[i] == SIN_REGISTRAR) continue;
+            sb.append(String.format(Locale.ROOT, " [%d] intervalo %.0f ms, límite %d ms.", i, getIntervaloMs(i), limite(i)));
+        }
+        return sb.toString();
+    }
+}
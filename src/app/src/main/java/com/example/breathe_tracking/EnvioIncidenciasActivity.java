@@ -10,7 +10,6 @@ import android.os.Bundle;
 import android.text.TextUtils;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
@@ -109,9 +108,10 @@ public class EnvioIncidenciasActivity extends AppCompatActivity {
             }
 
             // ------ Implementación Envío de Correo (JavaMail) -----------------
-            String emailDestino = "sandralovesel@gmail.com";
-            JavaMailAPI mailSender = new JavaMailAPI(this, emailDestino, tituloIncidencia, mensajeIncidencia);
-            mailSender.execute();
+            // Va al resumen de correo: varias incidencias seguidas llegan al administrador en un solo correo
+            String horaIncidencia = new SimpleDateFormat("HH:mm", Locale.getDefault()).format(new Date());
+            JavaMailAPI.agregarAlResumen(this, sensorIdRecibido != null ? sensorIdRecibido : "Sin sensor",
+                    tituloIncidencia, mensajeIncidencia, horaIncidencia, false);
             // ------------------------------------------------------------------
 
             // ------ Implementación Firebase ---------------------------
@@ -156,7 +156,7 @@ public class EnvioIncidenciasActivity extends AppCompatActivity {
 
                         new AlertDialog.Builder(this)
                                 .setTitle("Enviado")
-                                .setMessage("Incidencia registrada en el sistema y correo enviado al administrador.")
+                                .setMessage("Incidencia registrada en el sistema. Se enviará al administrador en el próximo resumen de correo.")
                                 .setPositiveButton("Aceptar", (dialog, which) -> finish())
                                 .setCancelable(false)
                                 .show();
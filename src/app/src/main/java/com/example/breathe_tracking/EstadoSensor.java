@@ -0,0 +1,180 @@
+/**
+ * @file EstadoSensor.java
+ * @brief Estado en memoria de un sensor monitorizado por el servicio (suavizado, deduplicación, conexión).
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import com.google.firebase.firestore.DocumentReference;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @class EstadoSensor
+ * @brief Agrupa todo el estado que el servicio mantiene por cada sensor, con campos primitivos.
+ *
+ * Copyrigth © 2025
+ *
+ * El servicio mantiene una instancia por sensor dentro de \ref RegistroSensores, cada una con su
+ * documento de Firestore (las desconexiones las vigila \ref DetectorConexion).
+ *
+ * Concurrencia:
+ * - **Un solo escritor:** los campos de lectura (RSSI suavizado, últimos valores publicados, alertas)
+ *   solo los escribe el hilo del pipeline de ingesta. La UI no los lee: recibe instantáneas
+ *   inmutables a través de \ref TrackingDataHolder.
+ * - **Conexión:** el estado (sin oír todavía, conectado o desconectado) y una época (número de
+ *   desconexiones) van empaquetados en un único AtomicLong. Las transiciones (\ref marcarConectado y
+ *   \ref marcarDesconectado) son compareAndSet: de dos hilos que intentan la misma transición, solo
+ *   uno la consigue.
+ * - **Reinicio diferido:** quien desconecta no toca la memoria del pipeline; solo incrementa la
+ *   época. El pipeline ve la época nueva en la siguiente lectura y reinicia el suavizado.
+ */
+public class EstadoSensor {
+
+    /** @brief Valor centinela para "todavía no se ha recibido ningún valor". */
+    public static final float SIN_VALOR = -999.0f;
+
+    /** @brief Código único del sensor (ID del documento en la colección "sensores"). */
+    public final String codigo;
+    /** @brief Nombre BLE del sensor (puede ser null si se registró por MAC). */
+    public final String nombre;
+    /** @brief Posición de registro (0 = sensor principal, el que se muestra en la UI). */
+    public final int indice;
+    /** @brief Última dirección MAC desde la que se ha recibido el sensor. */
+    public volatile String direccion;
+
+    // --- Conexión: bit 0 = conectado, bit 1 = aún sin oír, resto = época (desconexiones) ---
+    private static final long BIT_CONECTADO = 1L;
+    /** @brief Estado inicial: no se ha oído nunca; el primer plazo vencido cuenta como desconexión. */
+    private static final long BIT_SIN_OIR = 2L;
+    private static final int BITS_ESTADO = 2;
+    private final AtomicLong conexion = new AtomicLong(BIT_SIN_OIR);
+
+    // --- Solo el hilo del pipeline (un escritor) ---
+    // Memoria de los últimos valores para evitar actualizaciones innecesarias
+    /** @brief Última temperatura recibida. */
+    public float lastUpdatedTemp = SIN_VALOR;
+    /** @brief Último valor de ozono recibido. */
+    public float lastUpdatedOzono = SIN_VALOR;
+    /** @brief Último valor de CO2 recibido. */
+    public int lastUpdatedCo2 = (int) SIN_VALOR;
+    /** @brief Último porcentaje de batería publicado. */
+    public int lastUpdatedBateria = (int) SIN_VALOR;
+    /** @brief Últimos CO, NO2 y SO2 publicados (NaN si el sensor aún no los ha enviado). */
+    public float lastUpdatedCo = Float.NaN;
+    public float lastUpdatedNo2 = Float.NaN;
+    public float lastUpdatedSo2 = Float.NaN;
+    /** @brief Instante (ms) de la última lectura publicada, para el latido de \ref FiltroCambios. */
+    public long ultimaPublicacionMs = 0;
+    /** @brief Último porcentaje de batería enviado a la UI (puede cambiar sin publicar la lectura). */
+    public int bateriaMostrada = (int) SIN_VALOR;
+    /** @brief Estado de las reglas de alerta de este sensor (activas y desde cuándo se cumple cada condición). */
+    public final MotorAlertas.Estado alertas = new MotorAlertas.Estado();
+    /** @brief RSSI suavizado (media ponderada). \ref SIN_VALOR si no hay señal. */
+    private float smoothedRssi = SIN_VALOR;
+    /** @brief Época de conexión con la que se calculó \ref smoothedRssi. */
+    private long epocaRssi = 0;
+
+    /** @brief Referencia al documento del sensor en Firestore (sensores/{codigo}). */
+    public DocumentReference docRef;
+
+    /**
+     * @brief Constructor del estado de un sensor.
+     * (codigo:String, nombre:String, indice:int) -> EstadoSensor() -> ()
+     * @param codigo Código único del sensor.
+     * @param nombre Nombre BLE del sensor.
+     * @param indice Posición de registro.
+     */
+    public EstadoSensor(String codigo, String nombre, int indice) {
+        this.codigo = codigo;
+        this.nombre = nombre;
+        this.indice = indice;
+    }
+
+    /**
+     * @brief Indica si es el sensor principal (el vinculado en la sesión y mostrado en la UI).
+     * () -> esPrincipal() -> boolean
+     * @return true si el índice de registro es 0.
+     */
+    public boolean esPrincipal() {
+        return indice == 0;
+    }
+
+    // --- Conexión (cualquier hilo) ---
+
+    /**
+     * @brief Indica si el sensor se considera conectado.
+     * () -> isConectado() -> boolean
+     */
+    public boolean isConectado() {
+        return (conexion.get() & BIT_CONECTADO) != 0;
+    }
+
+    /**
+     * @brief Número de desconexiones desde que se creó el estado.
+     * () -> getEpoca() -> long
+     */
+    public long getEpoca() {
+        return conexion.get() >>> BITS_ESTADO;
+    }
+
+    /**
+     * @brief Pasa el sensor a conectado si no lo estaba.
+     * () -> marcarConectado() -> boolean
+     * @return true si este hilo ha hecho la transición; false si ya estaba conectado.
+     */
+    public boolean marcarConectado() {
+        while (true) {
+            long actual = conexion.get();
+            if ((actual & BIT_CONECTADO) != 0) return false;
+            if (conexion.compareAndSet(actual, (actual & ~BIT_SIN_OIR) | BIT_CONECTADO)) return true;
+        }
+    }
+
+    /**
+     * @brief Pasa el sensor a desconectado si estaba conectado, o si aún no se había oído nunca (el
+     * primer plazo vencido también es una desconexión), y abre una época nueva (el pipeline
+     * reiniciará el RSSI suavizado en la siguiente lectura).
+     * () -> marcarDesconectado() -> boolean
+     * @return true si este hilo ha hecho la transición; false si ya estaba desconectado.
+     */
+    public boolean marcarDesconectado() {
+        while (true) {
+            long actual = conexion.get();
+            if ((actual & (BIT_CONECTADO | BIT_SIN_OIR)) == 0) return false;
+            // Época + 1 con los bits de estado a 0
+            long siguiente = ((actual >>> BITS_ESTADO) + 1) << BITS_ESTADO;
+            if (conexion.compareAndSet(actual, siguiente)) return true;
+        }
+    }
+
+    // --- Lecturas (solo el hilo del pipeline) ---
+
+    /**
+     * @brief Aplica un nuevo RSSI al filtro de media ponderada. Si ha habido una desconexión desde la
+     * última lectura, el filtro empieza de nuevo.
+     * (rssi:int, alpha:float) -> suavizarRssi() -> int
+     * @param rssi RSSI recibido en dBm.
+     * @param alpha Factor de suavizado (0.0 - 1.0).
+     * @return El RSSI suavizado resultante.
+     */
+    public int suavizarRssi(int rssi, float alpha) {
+        long epoca = getEpoca();
+        if (smoothedRssi == SIN_VALOR || epoca != epocaRssi) {
+            smoothedRssi = rssi; // Primer valor (o primero tras una desconexión), inicializamos
+            epocaRssi = epoca;
+        } else {
+            // Fórmula: NuevoPromedio = (alpha * NuevoValor) + ((1 - alpha) * PromedioAnterior)
+            smoothedRssi = (alpha * rssi) + ((1.0f - alpha) * smoothedRssi);
+        }
+        return (int) smoothedRssi;
+    }
+
+    /**
+     * @brief Olvida la última lectura publicada: la siguiente lectura se publicará como si fuera la primera.
+     * () -> olvidarPublicacion() -> ()
+     */
+    public void olvidarPublicacion() {
+        lastUpdatedCo2 = (int) SIN_VALOR;
+    }
+}
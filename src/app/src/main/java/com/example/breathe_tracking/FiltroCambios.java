@@ -0,0 +1,256 @@
+/**
+ * @file FiltroCambios.java
+ * @brief Política de "envío por cambio" (send-on-delta): bandas muertas por canal, latido y cruces de umbral.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.Locale;
+
+/**
+ * @class FiltroCambios
+ * @brief Decide si una lectura es un cambio significativo respecto a la última publicada de su sensor.
+ *
+ * Copyrigth © 2025
+ *
+ * Una lectura se sube y se muestra si se cumple alguna de estas condiciones:
+ *
+ * - **Primera lectura** del sensor (o tras una desconexión).
+ * - **Banda muerta:** algún canal se aleja del último valor publicado más que
+ *   max(banda absoluta, banda relativa * |valor publicado|).
+ * - **Cruce de umbral:** algún canal cambia de lado respecto al umbral de su alerta
+ *   (condición de disparo de las reglas de \ref MotorAlertas). Pasa siempre, aunque el cambio sea pequeño.
+ * - **Latido:** han pasado \ref getLatidoMs() milisegundos sin publicar nada.
+ *
+ * La referencia son los campos lastUpdated* de \ref EstadoSensor, que solo se actualizan al
+ * publicar (\ref publicar): una deriva lenta acaba superando la banda aunque cada paso sea pequeño.
+ * CO, NO2 y SO2 solo llegan en algunas tramas: una lectura sin el gas (NaN) no lo cambia ni borra su
+ * referencia, y su primer valor cuenta como cambio.
+ *
+ * \ref evaluar, \ref publicar, \ref alertas y los contadores son synchronized: las dos primeras se
+ * llaman en el hilo del pipeline y las reglas nuevas y el \ref resumen llegan desde el hilo principal.
+ * Las bandas y el latido se configuran antes de empezar a evaluar.
+ */
+public class FiltroCambios {
+
+    // --- Canales ---
+    /** @brief Canal de Ozono (ppm). */
+    public static final int CANAL_O3 = 0;
+    /** @brief Canal de temperatura (ºC). */
+    public static final int CANAL_TEMPERATURA = 1;
+    /** @brief Canal de CO2 (ppm). */
+    public static final int CANAL_CO2 = 2;
+    /** @brief Canal de batería (%). */
+    public static final int CANAL_BATERIA = 3;
+    /** @brief Canal de monóxido de carbono (mg/m³); opcional, NaN si la trama no lo trae. */
+    public static final int CANAL_CO = 4;
+    /** @brief Canal de dióxido de nitrógeno (µg/m³); opcional. */
+    public static final int CANAL_NO2 = 5;
+    /** @brief Canal de dióxido de azufre (µg/m³); opcional. */
+    public static final int CANAL_SO2 = 6;
+    /** @brief Número de canales. */
+    public static final int NUM_CANALES = 7;
+
+    // --- Motivos de publicación (máscara de bits devuelta por evaluar) ---
+    /** @brief Primera lectura del sensor. */
+    public static final int MOTIVO_PRIMERA = 1;
+    /** @brief Algún canal ha salido de su banda muerta. */
+    public static final int MOTIVO_BANDA = 1 << 1;
+    /** @brief Algún canal ha cruzado el umbral de su alerta. */
+    public static final int MOTIVO_UMBRAL = 1 << 2;
+    /** @brief Latido: demasiado tiempo sin publicar. */
+    public static final int MOTIVO_LATIDO = 1 << 3;
+
+    /** @brief Latido por defecto (5 minutos). */
+    public static final long LATIDO_POR_DEFECTO_MS = 5 * 60 * 1000;
+
+    /** @brief Banda muerta absoluta por canal. */
+    private final float[] bandaAbsoluta = new float[NUM_CANALES];
+    /** @brief Banda muerta relativa por canal (fracción del valor publicado). */
+    private final float[] bandaRelativa = new float[NUM_CANALES];
+    /** @brief Silencio máximo antes de publicar aunque no haya cambios. */
+    private long latidoMs = LATIDO_POR_DEFECTO_MS;
+    /** @brief Reglas cuyos umbrales se vigilan para MOTIVO_UMBRAL. */
+    private MotorAlertas alertas = MotorAlertas.predeterminado();
+
+    // Métricas
+    private long evaluadas = 0;
+    private long publicadas = 0;
+    private final long[] porMotivo = new long[4];
+
+    /**
+     * @brief Filtro con las bandas por defecto, algo por encima de la resolución de la trama:
+     * O3 0.01 ppm, temperatura 0.2 ºC, CO2 2 % (mínimo 10 ppm), batería 5 puntos, CO 5 % (mínimo
+     * 0.1 mg/m³) y NO2 y SO2 5 % (mínimo 2 µg/m³).
+     * () -> porDefecto() -> FiltroCambios
+     * @return Un filtro nuevo con la configuración por defecto.
+     */
+    public static FiltroCambios porDefecto() {
+        return new FiltroCambios()
+                .banda(CANAL_O3, 0.01f, 0f)
+                .banda(CANAL_TEMPERATURA, 0.2f, 0f)
+                .banda(CANAL_CO2, 10f, 0.02f)
+                .banda(CANAL_BATERIA, 5f, 0f)
+                .banda(CANAL_CO, 0.1f, 0.05f)
+                .banda(CANAL_NO2, 2f, 0.05f)
+                .banda(CANAL_SO2, 2f, 0.05f);
+    }
+
+    /**
+     * @brief Configura la banda muerta de un canal. Con ambas bandas a 0 cualquier cambio se publica.
+     * (canal:int, absoluta:float, relativa:float) -> banda() -> FiltroCambios
+     * @param canal Canal (CANAL_*).
+     * @param absoluta Variación mínima en unidades del canal.
+     * @param relativa Variación mínima como fracción del último valor publicado.
+     * @return Este filtro, para encadenar llamadas.
+     */
+    public FiltroCambios banda(int canal, float absoluta, float relativa) {
+        bandaAbsoluta[canal] = absoluta;
+        bandaRelativa[canal] = relativa;
+        return this;
+    }
+
+    /**
+     * @brief Configura el latido.
+     * (ms:long) -> latido() -> FiltroCambios
+     * @param ms Silencio máximo en milisegundos (0 o negativo lo desactiva).
+     * @return Este filtro, para encadenar llamadas.
+     */
+    public FiltroCambios latido(long ms) {
+        latidoMs = ms;
+        return this;
+    }
+
+    /**
+     * @brief Cambia las reglas de alerta cuyos umbrales fuerzan la publicación.
+     * (motor:MotorAlertas) -> alertas() -> FiltroCambios
+     * @param motor Motor de alertas vigente.
+     * @return Este filtro, para encadenar llamadas.
+     */
+    public synchronized FiltroCambios alertas(MotorAlertas motor) {
+        alertas = motor;
+        return this;
+    }
+
+    /** @brief Silencio máximo configurado (ms). */
+    public long getLatidoMs() {
+        return latidoMs;
+    }
+
+    /**
+     * @brief Evalúa una lectura frente a la última publicada del sensor. No modifica el estado.
+     * (estado:EstadoSensor, lectura:LecturaBeacon, ahoraMs:long) -> evaluar() -> int
+     * @param estado Estado del sensor (valores publicados e instante de la última publicación).
+     * @param lectura Lectura recibida.
+     * @param ahoraMs Instante de la lectura.
+     * @return Máscara de MOTIVO_*; 0 si la lectura no aporta nada y se puede descartar.
+     */
+    public synchronized int evaluar(EstadoSensor estado, LecturaBeacon lectura, long ahoraMs) {
+        evaluadas++;
+        if (estado.lastUpdatedCo2 == (int) EstadoSensor.SIN_VALOR) return contar(MOTIVO_PRIMERA);
+
+        int motivos = 0;
+        if (fueraDeBanda(CANAL_O3, lectura.o3, estado.lastUpdatedOzono)
+                || fueraDeBanda(CANAL_TEMPERATURA, lectura.temperatura, estado.lastUpdatedTemp)
+                || fueraDeBanda(CANAL_CO2, lectura.co2, estado.lastUpdatedCo2)
+                || fueraDeBanda(CANAL_BATERIA, lectura.bateria, estado.lastUpdatedBateria)
+                || gasFueraDeBanda(CANAL_CO, lectura.co, estado.lastUpdatedCo)
+                || gasFueraDeBanda(CANAL_NO2, lectura.no2, estado.lastUpdatedNo2)
+                || gasFueraDeBanda(CANAL_SO2, lectura.so2, estado.lastUpdatedSo2)) {
+            motivos |= MOTIVO_BANDA;
+        }
+        if (cruzaUmbral(CANAL_O3, lectura.o3, estado.lastUpdatedOzono)
+                || cruzaUmbral(CANAL_TEMPERATURA, lectura.temperatura, estado.lastUpdatedTemp)
+                || cruzaUmbral(CANAL_CO2, lectura.co2, estado.lastUpdatedCo2)
+                || cruzaUmbral(CANAL_BATERIA, lectura.bateria, estado.lastUpdatedBateria)
+                || gasCruzaUmbral(CANAL_CO, lectura.co, estado.lastUpdatedCo)
+                || gasCruzaUmbral(CANAL_NO2, lectura.no2, estado.lastUpdatedNo2)
+                || gasCruzaUmbral(CANAL_SO2, lectura.so2, estado.lastUpdatedSo2)) {
+            motivos |= MOTIVO_UMBRAL;
+        }
+        if (latidoMs > 0 && ahoraMs - estado.ultimaPublicacionMs >= latidoMs) motivos |= MOTIVO_LATIDO;
+        return contar(motivos);
+    }
+
+    /**
+     * @brief Toma la lectura como la nueva referencia del sensor (tras decidir publicarla).
+     * (estado:EstadoSensor, lectura:LecturaBeacon, ahoraMs:long) -> publicar() -> ()
+     * @param estado Estado del sensor.
+     * @param lectura Lectura publicada.
+     * @param ahoraMs Instante de la publicación.
+     */
+    public synchronized void publicar(EstadoSensor estado, LecturaBeacon lectura, long ahoraMs) {
+        estado.lastUpdatedTemp = lectura.temperatura;
+        estado.lastUpdatedOzono = lectura.o3;
+        estado.lastUpdatedCo2 = lectura.co2;
+        estado.lastUpdatedBateria = lectura.bateria;
+        // Una trama sin el gas no borra su referencia
+        if (!Float.isNaN(lectura.co)) estado.lastUpdatedCo = lectura.co;
+        if (!Float.isNaN(lectura.no2)) estado.lastUpdatedNo2 = lectura.no2;
+        if (!Float.isNaN(lectura.so2)) estado.lastUpdatedSo2 = lectura.so2;
+        estado.ultimaPublicacionMs = ahoraMs;
+    }
+
+    private boolean fueraDeBanda(int canal, float valor, float publicado) {
+        float banda = Math.max(bandaAbsoluta[canal], bandaRelativa[canal] * Math.abs(publicado));
+        // Holgura relativa para el redondeo de float: 21.2f - 21.0f = 0.2000008 no debe superar una banda de 0.2
+        return Math.abs(valor - publicado) > banda * 1.0001f;
+    }
+
+    private boolean cruzaUmbral(int canal, float valor, float publicado) {
+        return alertas.supera(canal, valor) != alertas.supera(canal, publicado);
+    }
+
+    /** @brief Banda de un gas opcional: sin valor no hay cambio; el primer valor del gas sí lo es. */
+    private boolean gasFueraDeBanda(int canal, float valor, float publicado) {
+        if (Float.isNaN(valor)) return false;
+        return Float.isNaN(publicado) || fueraDeBanda(canal, valor, publicado);
+    }
+
+    /** @brief Umbral de un gas opcional: sin valor publicado, cuenta como cruce si el valor ya lo supera. */
+    private boolean gasCruzaUmbral(int canal, float valor, float publicado) {
+        if (Float.isNaN(valor)) return false;
+        return Float.isNaN(publicado) ? alertas.supera(canal, valor) : cruzaUmbral(canal, valor, publicado);
+    }
+
+    private int contar(int motivos) {
+        if (motivos == 0) return 0;
+        publicadas++;
+        for (int i = 0; i < porMotivo.length; i++) {
+            if ((motivos & (1 << i)) != 0) porMotivo[i]++;
+        }
+        return motivos;
+    }
+
+    // --- Métricas ---
+
+    /** @brief Lecturas evaluadas. */
+    public synchronized long getEvaluadas() {
+        return evaluadas;
+    }
+
+    /** @brief Lecturas que han pasado el filtro. */
+    public synchronized long getPublicadas() {
+        return publicadas;
+    }
+
+    /**
+     * @brief Lecturas publicadas por un motivo (una lectura puede tener varios).
+     * (motivo:int) -> getPublicadasPor() -> long
+     * @param motivo Uno de los MOTIVO_*.
+     */
+    public synchronized long getPublicadasPor(int motivo) {
+        return porMotivo[Integer.numberOfTrailingZeros(motivo)];
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     * @return Texto con lecturas evaluadas, publicadas y desglose por motivo.
+     */
+    public synchronized String resumen() {
+        return String.format(Locale.ROOT, "Filtro de cambios: %d de %d lecturas publicadas (%.1f%% menos escrituras; banda %d, umbral %d, latido %d, primera %d).",
+                publicadas, evaluadas, evaluadas == 0 ? 0 : 100.0 * (evaluadas - publicadas) / evaluadas,
+                porMotivo[1], porMotivo[2], porMotivo[3], porMotivo[0]);
+    }
+}
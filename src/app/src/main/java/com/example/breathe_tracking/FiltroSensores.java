@@ -0,0 +1,133 @@
+/**
+ * @file FiltroSensores.java
+ * @brief Reglas de filtrado de anuncios BLE para los sensores registrados (hardware y software).
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import android.bluetooth.le.ScanFilter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @class FiltroSensores
+ * @brief Construye los ScanFilter que se entregan al controlador Bluetooth y aplica las mismas reglas en software.
+ *
+ * Copyrigth © 2025
+ *
+ * Con startScan(null, ...) el sistema despierta la app por cada dispositivo BLE al alcance.
+ * Esta clase genera un ScanFilter por cada sensor registrado (por nombre o por MAC), siempre
+ * combinado con los datos de fabricante 0x004C cuyo primer byte es de la familia 0xA_ (\ref ProtocoloTrama), de forma que
+ * el propio controlador descarta los paquetes que no son nuestros.
+ *
+ * Algunos chipsets ignoran los filtros, por lo que \ref acepta() aplica las mismas reglas a cada
+ * resultado recibido y lleva la cuenta de callbacks recibidos y rechazados.
+ */
+public class FiltroSensores {
+
+    /** @brief Datos de fabricante esperados: solo se comprueba la familia del byte de tipo de la trama. */
+    private static final byte[] DATOS_PREFIJO = {(byte) ProtocoloTrama.FAMILIA};
+    /** @brief Máscara del nibble alto del primer byte del payload (cualquier versión de \ref ProtocoloTrama). */
+    private static final byte[] MASCARA_PREFIJO = {(byte) ProtocoloTrama.MASCARA_FAMILIA};
+
+    /** @brief Nombres BLE de los sensores registrados (ej: "rocio"). */
+    private final Set<String> nombres = new HashSet<>();
+    /** @brief Direcciones MAC conocidas de los sensores registrados. */
+    private final Set<String> direcciones = new HashSet<>();
+
+    /** @brief Número de resultados de escaneo que han llegado a la app. */
+    private long recibidos = 0;
+    /** @brief Número de resultados descartados por el filtro software. */
+    private long rechazados = 0;
+
+    /**
+     * @brief Registra un sensor por su nombre BLE.
+     * (nombre:String) -> registrarNombre() -> ()
+     * @param nombre Nombre anunciado por el sensor.
+     */
+    public void registrarNombre(String nombre) {
+        if (nombre != null && !nombre.isEmpty()) nombres.add(nombre);
+    }
+
+    /**
+     * @brief Registra un sensor por su dirección MAC.
+     * (direccion:String) -> registrarDireccion() -> ()
+     * @param direccion Dirección MAC en formato "AA:BB:CC:DD:EE:FF".
+     */
+    public void registrarDireccion(String direccion) {
+        if (direccion != null && !direccion.isEmpty()) direcciones.add(RegistroSensores.normalizarMac(direccion));
+    }
+
+    /**
+     * @brief Genera la lista de ScanFilter para el escáner a partir de los sensores registrados.
+     * () -> construirFiltros() -> List<ScanFilter>
+     * @note Los filtros de la lista se combinan con OR; dentro de cada filtro los criterios se combinan con AND.
+     * @return Lista de filtros. Si no hay sensores registrados, un único filtro por datos de fabricante.
+     */
+    public List<ScanFilter> construirFiltros() {
+        List<ScanFilter> filtros = new ArrayList<>();
+        for (String nombre : nombres) {
+            filtros.add(filtroFabricante().setDeviceName(nombre).build());
+        }
+        for (String direccion : direcciones) {
+            filtros.add(filtroFabricante().setDeviceAddress(direccion).build());
+        }
+        if (filtros.isEmpty()) {
+            filtros.add(filtroFabricante().build());
+        }
+        return filtros;
+    }
+
+    /**
+     * @brief Crea un constructor de filtro con los datos de fabricante del sensor (0x004C + familia 0xA_).
+     * () -> filtroFabricante() -> ScanFilter.Builder
+     * @return El constructor de filtro configurado.
+     */
+    private ScanFilter.Builder filtroFabricante() {
+        return new ScanFilter.Builder()
+                .setManufacturerData(DecodificadorTrama.ID_FABRICANTE, DATOS_PREFIJO, MASCARA_PREFIJO);
+    }
+
+    /**
+     * @brief Filtro software: aplica a un resultado las mismas reglas que los ScanFilter.
+     * (nombre:String, direccion:String, scanRecord:byte[]) -> acepta() -> boolean
+     * @param nombre Nombre del dispositivo (puede ser null).
+     * @param direccion Dirección MAC del dispositivo (puede ser null).
+     * @param scanRecord Bytes crudos del anuncio.
+     * @return true si el anuncio pertenece a un sensor registrado y contiene una trama válida.
+     */
+    public boolean acepta(String nombre, String direccion, byte[] scanRecord) {
+        recibidos++;
+        boolean registrado = (nombres.isEmpty() && direcciones.isEmpty())
+                || (nombre != null && nombres.contains(nombre))
+                || (direccion != null && direcciones.contains(RegistroSensores.normalizarMac(direccion)));
+        if (!registrado || DecodificadorTrama.buscarPayload(scanRecord) < 0) {
+            rechazados++;
+            return false;
+        }
+        return true;
+    }
+
+    /** @brief Devuelve cuántos resultados de escaneo han llegado a la app. */
+    public long getRecibidos() {
+        return recibidos;
+    }
+
+    /** @brief Devuelve cuántos resultados ha descartado el filtro software. */
+    public long getRechazados() {
+        return rechazados;
+    }
+
+    /**
+     * @brief Resumen legible de los contadores para los logs.
+     * () -> resumen() -> String
+     * @return Texto con recibidos, rechazados y porcentaje de rechazo.
+     */
+    public String resumen() {
+        long porcentaje = recibidos == 0 ? 0 : (rechazados * 100) / recibidos;
+        return "Callbacks recibidos: " + recibidos + ", rechazados: " + rechazados + " (" + porcentaje + "%)";
+    }
+}
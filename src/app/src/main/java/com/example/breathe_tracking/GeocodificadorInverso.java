@@ -0,0 +1,287 @@
+/**
+ * @file GeocodificadorInverso.java
+ * @brief Geocodificación inversa en segundo plano con caché LRU (con caducidad) por celda geohash.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * @class GeocodificadorInverso
+ * @brief Convierte coordenadas en "Calle, Ciudad" sin bloquear a quien recibe las ubicaciones.
+ *
+ * Copyrigth © 2025
+ *
+ * Geocoder.getFromLocation es bloqueante y las ubicaciones llegan cada pocos segundos, así que solo
+ * se consulta al cambiar de zona:
+ *
+ * - Las coordenadas se cuantizan a una celda geohash de \ref getPrecision() caracteres
+ *   (7 por defecto, unos 150 x 150 m).
+ * - Si la ubicación sigue en la misma celda que la anterior, no se hace nada (la dirección ya publicada sigue valiendo).
+ * - Si la celda está en la caché LRU y no ha caducado, se entrega al momento.
+ * - Si no, la consulta se hace en el \ref Executor recibido (nunca en el hilo que llama), una sola
+ *   vez por celda aunque lleguen varias ubicaciones mientras tanto.
+ *
+ * El servicio real (Geocoder de Android) se abstrae en \ref FuenteGeocodificacion.
+ */
+public class GeocodificadorInverso {
+
+    /** @brief Precisión geohash por defecto (7 caracteres, ~153 x 153 m). */
+    public static final int PRECISION_POR_DEFECTO = 7;
+    /** @brief Celdas en caché por defecto. */
+    public static final int CAPACIDAD_POR_DEFECTO = 64;
+    /** @brief Caducidad por defecto de una dirección en caché (1 hora). */
+    public static final long CADUCIDAD_POR_DEFECTO_MS = 60 * 60 * 1000;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    /** @brief Servicio de geocodificación (bloqueante). */
+    public interface FuenteGeocodificacion {
+        /**
+         * @brief Dirección legible de unas coordenadas.
+         * @return "Calle, Ciudad", o null si no se conoce.
+         * @throws IOException Si el servicio no responde.
+         */
+        String direccion(double latitud, double longitud) throws IOException;
+    }
+
+    /** @brief Recibe la dirección resuelta (en el hilo que llama o en el del ejecutor). */
+    public interface Receptor {
+        void alResolver(String direccion);
+    }
+
+    /** @brief Dirección en caché y cuándo se obtuvo. */
+    private static final class Entrada {
+        final String direccion;
+        final long instanteMs;
+
+        Entrada(String direccion, long instanteMs) {
+            this.direccion = direccion;
+            this.instanteMs = instanteMs;
+        }
+    }
+
+    private final FuenteGeocodificacion fuente;
+    private final Executor ejecutor;
+    private final Reloj reloj;
+    private final int precision;
+    private final long caducidadMs;
+    /** @brief Caché LRU por celda (orden de acceso). */
+    private final LinkedHashMap<String, Entrada> cache;
+    /** @brief Celdas con una consulta en curso. */
+    private final Set<String> enCurso = new HashSet<>();
+    /** @brief Celda de la última ubicación recibida. */
+    private String ultimaCelda;
+
+    // Métricas
+    private long consultas = 0;
+    private long mismaCelda = 0;
+    private long aciertos = 0;
+    private long fallos = 0;
+    private long errores = 0;
+    private long caducadas = 0;
+
+    /**
+     * @brief Constructor con precisión 7, 64 celdas y caducidad de 1 hora.
+     * (fuente:FuenteGeocodificacion, ejecutor:Executor, reloj:Reloj) -> GeocodificadorInverso() -> ()
+     */
+    public GeocodificadorInverso(FuenteGeocodificacion fuente, Executor ejecutor, Reloj reloj) {
+        this(fuente, ejecutor, reloj, PRECISION_POR_DEFECTO, CAPACIDAD_POR_DEFECTO, CADUCIDAD_POR_DEFECTO_MS);
+    }
+
+    /**
+     * @brief Constructor del geocodificador.
+     * (fuente:FuenteGeocodificacion, ejecutor:Executor, reloj:Reloj, precision:int, capacidad:int, caducidadMs:long) -> GeocodificadorInverso() -> ()
+     * @param fuente Servicio de geocodificación.
+     * @param ejecutor Donde se hacen las consultas bloqueantes.
+     * @param reloj Reloj monótono en milisegundos.
+     * @param precision Caracteres de geohash de cada celda (1-12).
+     * @param capacidad Celdas como máximo en la caché.
+     * @param caducidadMs Vida de una dirección en caché.
+     */
+    public GeocodificadorInverso(FuenteGeocodificacion fuente, Executor ejecutor, Reloj reloj,
+                                 int precision, final int capacidad, long caducidadMs) {
+        if (precision < 1 || precision > 12) throw new IllegalArgumentException("Precisión geohash fuera de rango: " + precision);
+        this.fuente = fuente;
+        this.ejecutor = ejecutor;
+        this.reloj = reloj;
+        this.precision = precision;
+        this.caducidadMs = caducidadMs;
+        this.cache = new LinkedHashMap<String, Entrada>(capacidad, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> masAntigua) {
+                return size() > capacidad;
+            }
+        };
+    }
+
+    /**
+     * @brief Resuelve la dirección de una ubicación.
+     * (latitud:double, longitud:double, receptor:Receptor) -> resolver() -> ()
+     * @param latitud Latitud en grados.
+     * @param longitud Longitud en grados.
+     * @param receptor Recibe la dirección si cambia de celda (al momento si está en caché, si no desde el ejecutor).
+     */
+    public void resolver(final double latitud, final double longitud, final Receptor receptor) {
+        final String celda = geohash(latitud, longitud, precision);
+        String enCache;
+        synchronized (this) {
+            consultas++;
+            long ahora = reloj.ahoraMs();
+            Entrada entrada = cache.get(celda);
+            if (entrada != null && ahora - entrada.instanteMs >= caducidadMs) {
+                cache.remove(celda);
+                caducadas++;
+                entrada = null;
+            }
+            if (celda.equals(ultimaCelda) && (entrada != null || enCurso.contains(celda))) {
+                mismaCelda++;
+                return;
+            }
+            ultimaCelda = celda;
+            if (entrada != null) {
+                aciertos++;
+                enCache = entrada.direccion;
+            } else {
+                if (!enCurso.add(celda)) return;
+                fallos++;
+                enCache = null;
+            }
+        }
+        if (enCache != null) {
+            receptor.alResolver(enCache);
+            return;
+        }
+        ejecutor.execute(() -> consultar(celda, latitud, longitud, receptor));
+    }
+
+    private void consultar(String celda, double latitud, double longitud, Receptor receptor) {
+        String direccion = null;
+        boolean vigente;
+        try {
+            direccion = fuente.direccion(latitud, longitud);
+        } catch (IOException e) {
+            synchronized (this) {
+                errores++;
+            }
+        } finally {
+            // También si la fuente lanza otra excepción: la celda no puede quedarse "en curso" para siempre
+            synchronized (this) {
+                enCurso.remove(celda);
+                if (direccion != null) cache.put(celda, new Entrada(direccion, reloj.ahoraMs()));
+                else if (celda.equals(ultimaCelda)) ultimaCelda = null; // La próxima ubicación lo vuelve a intentar
+                // Si el usuario ya está en otra celda, esta respuesta llega tarde y no se publica
+                vigente = celda.equals(ultimaCelda);
+            }
+        }
+        if (direccion != null && vigente) receptor.alResolver(direccion);
+    }
+
+    /**
+     * @brief Codifica unas coordenadas en geohash.
+     * (latitud:double, longitud:double, precision:int) -> geohash() -> String
+     * @param latitud Latitud en grados (-90 a 90).
+     * @param longitud Longitud en grados (-180 a 180).
+     * @param precision Caracteres del resultado.
+     * @return Geohash en base32 (bits alternos de longitud y latitud, empezando por longitud).
+     */
+    public static String geohash(double latitud, double longitud, int precision) {
+        double latMin = -90, latMax = 90, lonMin = -180, lonMax = 180;
+        char[] resultado = new char[precision];
+        boolean esLongitud = true;
+        int bit = 0;
+        int valor = 0;
+        int i = 0;
+        while (i < precision) {
+            if (esLongitud) {
+                double medio = (lonMin + lonMax) / 2;
+                if (longitud >= medio) {
+                    valor = (valor << 1) | 1;
+                    lonMin = medio;
+                } else {
+                    valor <<= 1;
+                    lonMax = medio;
+                }
+            } else {
+                double medio = (latMin + latMax) / 2;
+                if (latitud >= medio) {
+                    valor = (valor << 1) | 1;
+                    latMin = medio;
+                } else {
+                    valor <<= 1;
+                    latMax = medio;
+                }
+            }
+            esLongitud = !esLongitud;
+            if (++bit == 5) {
+                resultado[i++] = BASE32[valor];
+                bit = 0;
+                valor = 0;
+            }
+        }
+        return new String(resultado);
+    }
+
+    // --- Métricas ---
+
+    /** @brief Caracteres de geohash por celda. */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /** @brief Ubicaciones recibidas. */
+    public synchronized long getConsultas() {
+        return consultas;
+    }
+
+    /** @brief Ubicaciones ignoradas por seguir en la misma celda. */
+    public synchronized long getMismaCelda() {
+        return mismaCelda;
+    }
+
+    /** @brief Celdas nuevas resueltas con la caché. */
+    public synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    /** @brief Consultas al servicio de geocodificación. */
+    public synchronized long getFallos() {
+        return fallos;
+    }
+
+    /** @brief Consultas que el servicio no pudo responder. */
+    public synchronized long getErrores() {
+        return errores;
+    }
+
+    /** @brief Entradas de la caché descartadas por caducidad. */
+    public synchronized long getCaducadas() {
+        return caducadas;
+    }
+
+    /** @brief Celdas en caché. */
+    public synchronized int getTamanoCache() {
+        return cache.size();
+    }
+
+    /** @brief Fracción de ubicaciones resueltas sin consultar el servicio (misma celda o caché). */
+    public synchronized double getTasaAciertos() {
+        return consultas == 0 ? 0 : (double) (mismaCelda + aciertos) / consultas;
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     */
+    public synchronized String resumen() {
+        return String.format(Locale.ROOT, "Geocodificación: %d ubicaciones, %d misma celda, %d aciertos de caché, %d consultas (%d errores), tasa de aciertos %.1f%%.",
+                consultas, mismaCelda, aciertos, fallos, errores, 100 * getTasaAciertos());
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * @file HistorialAlertas.java
+ * @brief Historial de alertas compartido: anillo de capacidad fija con índice hash y copia en disco.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @class HistorialAlertas
+ * @brief Últimas alertas de mediciones, sin repetidas, de la más reciente a la más antigua.
+ *
+ * Copyrigth © 2025
+ *
+ * Hay un único historial por proceso, que comparten el servicio y IncidenciasActivity a través de
+ * \ref TrackingDataHolder#getHistorialAlertas, y que sobrevive a los reinicios en un fichero:
+ * - **Anillo:** array de \ref getRetencion() posiciones; al llenarse, la alerta nueva sustituye a la
+ *   más antigua.
+ * - **Índice hash:** un HashSet con las alertas que hay en el anillo para descartar repetidas en O(1).
+ * - **Instantánea (copia al escribir):** cada alerta nueva crea una lista inmutable que se entrega a
+ *   los observadores y se lee sin cerrojos. Leer no copia nada.
+ * - **Persistencia:** la instantánea se escribe en un fichero (temporal y rename, para no dejarlo a
+ *   medias) en el Executor indicado, fuera del hilo que añade. Si se añaden varias alertas antes de
+ *   que se escriba, solo se escribe la última instantánea. La carga inicial también va en ese
+ *   Executor: el constructor no toca el disco y la instantánea cargada llega por el observador.
+ */
+public class HistorialAlertas {
+
+    /** @brief Alertas que se conservan por defecto (las que muestra IncidenciasActivity). */
+    public static final int RETENCION_POR_DEFECTO = 6;
+
+    /** @brief Marca del fichero ("HAL1"). */
+    private static final int MARCA = 0x48414C31;
+
+    /** @brief Recibe cada instantánea nueva del historial. */
+    public interface Observador {
+        void alCambiar(List<String> instantanea);
+    }
+
+    private final String[] anillo;
+    /** @brief Posición en la que se escribe la próxima alerta. */
+    private int cabeza = 0;
+    private int tamano = 0;
+    /** @brief Alertas que hay en el anillo (deduplicación). */
+    private final Set<String> presentes;
+
+    /** @brief Última instantánea (inmutable, de la más reciente a la más antigua). */
+    private volatile List<String> instantanea = Collections.emptyList();
+
+    private final File fichero;
+    private final Executor ejecutorDisco;
+    private final Observador observador;
+    /** @brief true si hay una escritura encargada que aún no ha empezado. */
+    private final AtomicBoolean escrituraPendiente = new AtomicBoolean(false);
+
+    // Métricas
+    private long anadidas = 0;
+    private long repetidas = 0;
+    private volatile long escrituras = 0;
+    private volatile long erroresDisco = 0;
+
+    /**
+     * @brief Crea el historial y encarga a \p ejecutorDisco la carga de \p fichero (si existe).
+     * Las alertas que se añadan antes de que termine la carga se conservan como las más recientes.
+     * (retencion:int, fichero:File, ejecutorDisco:Executor, observador:Observador) -> HistorialAlertas() -> ()
+     * @param retencion Número de alertas que se conservan.
+     * @param fichero Fichero donde se guarda el historial; null para no guardarlo.
+     * @param ejecutorDisco Executor de la carga y las escrituras en disco (de un solo hilo, para que
+     *                      la carga vaya antes que cualquier escritura).
+     * @param observador Recibe la instantánea cargada y cada una de las siguientes.
+     */
+    public HistorialAlertas(int retencion, File fichero, Executor ejecutorDisco, Observador observador) {
+        if (retencion <= 0) throw new IllegalArgumentException("Retención no válida: " + retencion);
+        this.anillo = new String[retencion];
+        this.presentes = new HashSet<>(retencion * 2);
+        this.fichero = fichero;
+        this.ejecutorDisco = ejecutorDisco;
+        this.observador = observador;
+        if (fichero != null) {
+            ejecutorDisco.execute(this::cargar);
+        } else {
+            observador.alCambiar(instantanea);
+        }
+    }
+
+    /**
+     * @brief Añade una alerta si no está ya en el historial.
+     * (alerta:String) -> agregar() -> boolean
+     * @param alerta Texto de la alerta.
+     * @return true si es nueva y se ha añadido; false si ya estaba.
+     */
+    public boolean agregar(String alerta) {
+        synchronized (this) {
+            if (!presentes.add(alerta)) {
+                repetidas++;
+                return false;
+            }
+            meter(alerta);
+            anadidas++;
+            instantanea = construirInstantanea();
+            // Dentro del cerrojo para que los observadores reciban las instantáneas en orden
+            observador.alCambiar(instantanea);
+        }
+        guardar();
+        return true;
+    }
+
+    /** @brief Coloca una alerta (ya registrada en \ref presentes) en el anillo, desplazando la más antigua. */
+    private void meter(String alerta) {
+        if (tamano == anillo.length) {
+            presentes.remove(anillo[cabeza]);
+        } else {
+            tamano++;
+        }
+        anillo[cabeza] = alerta;
+        cabeza = (cabeza + 1) % anillo.length;
+    }
+
+    private List<String> construirInstantanea() {
+        String[] copia = new String[tamano];
+        for (int i = 0; i < tamano; i++) {
+            copia[i] = anillo[(cabeza - 1 - i + anillo.length) % anillo.length];
+        }
+        return Collections.unmodifiableList(Arrays.asList(copia));
+    }
+
+    /**
+     * @brief Alertas actuales, de la más reciente a la más antigua. No copia: la lista es inmutable.
+     * () -> getInstantanea() -> List<String>
+     */
+    public List<String> getInstantanea() {
+        return instantanea;
+    }
+
+    /** @brief Número de alertas que se conservan. */
+    public int getRetencion() {
+        return anillo.length;
+    }
+
+    // --- Persistencia ---
+
+    /** @brief Encarga la escritura de la instantánea actual (una sola si hay varias seguidas). */
+    private void guardar() {
+        if (fichero == null || !escrituraPendiente.compareAndSet(false, true)) return;
+        ejecutorDisco.execute(() -> {
+            escrituraPendiente.set(false);
+            escribir(instantanea);
+        });
+    }
+
+    private void escribir(List<String> alertas) {
+        File temporal = new File(fichero.getPath() + ".tmp");
+        try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporal)))) {
+            salida.writeInt(MARCA);
+            salida.writeInt(alertas.size());
+            for (String alerta : alertas) salida.writeUTF(alerta);
+        } catch (IOException e) {
+            erroresDisco++;
+            return;
+        }
+        if (temporal.renameTo(fichero)) {
+            escrituras++;
+        } else {
+            erroresDisco++;
+        }
+    }
+
+    /**
+     * @brief Carga el fichero (de la más reciente a la más antigua) y publica la instantánea; si no es
+     * válido se empieza vacío. Las alertas añadidas mientras tanto quedan por delante de las cargadas.
+     */
+    private void cargar() {
+        String[] leidas = new String[0];
+        if (fichero.exists()) {
+            try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(new FileInputStream(fichero)))) {
+                if (entrada.readInt() != MARCA) throw new IOException("No es un historial de alertas");
+                int n = entrada.readInt();
+                if (n < 0 || n > 10_000) throw new IOException("Número de alertas no válido: " + n);
+                leidas = new String[n];
+                for (int i = 0; i < n; i++) leidas[i] = entrada.readUTF();
+            } catch (IOException e) {
+                erroresDisco++;
+                leidas = new String[0];
+            }
+        }
+        synchronized (this) {
+            List<String> nuevas = construirInstantanea();
+            Arrays.fill(anillo, null);
+            presentes.clear();
+            cabeza = 0;
+            tamano = 0;
+            // Se meten de la más antigua a la más reciente; si la retención es menor, se quedan las últimas
+            for (int i = Math.min(leidas.length, anillo.length) - 1; i >= 0; i--) {
+                if (presentes.add(leidas[i])) meter(leidas[i]);
+            }
+            for (int i = nuevas.size() - 1; i >= 0; i--) {
+                if (presentes.add(nuevas.get(i))) {
+                    meter(nuevas.get(i));
+                } else {
+                    // Ya estaba en el fichero: la que se añadió antes de la carga no era nueva
+                    anadidas--;
+                    repetidas++;
+                }
+            }
+            instantanea = construirInstantanea();
+            observador.alCambiar(instantanea);
+        }
+    }
+
+    // --- Métricas ---
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     */
+    public synchronized String resumen() {
+        return "Historial de alertas: " + tamano + "/" + anillo.length + " guardadas, " + anadidas + " añadidas, "
+                + repetidas + " repetidas, " + escrituras + " escrituras en disco (" + erroresDisco + " errores).";
+    }
+}
@@ -8,8 +8,6 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
 import java.util.List;
 
 public class IncidenciasActivity extends AppCompatActivity {
@@ -19,15 +17,12 @@ public class IncidenciasActivity extends AppCompatActivity {
     private ImageView backArrow;
     private Button reportarIncidenciaButton;
     private TrackingDataHolder dataHolder;
+    /** @brief Historial de alertas compartido con el servicio (sin repetidas y con las más recientes primero). */
+    private HistorialAlertas historialAlertas;
     private String sensorId;
     private String ubicacion;
 
 
-    /** @brief Lista que almacena las últimas 6 alertas de mediciones para mostrar en la UI. */
-    private final List<String> ultimasSeisAlertas = new ArrayList<>();
-    /** @brief Constante que define el número máximo de alertas a mostrar en la UI. */
-    private static final int MAX_ALERTS_IN_UI = 6;
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -45,6 +40,8 @@ public class IncidenciasActivity extends AppCompatActivity {
         reportarIncidenciaButton = findViewById(R.id.button_incidenciasManuales);
 
         dataHolder = TrackingDataHolder.getInstance();
+        // Si el servicio no está en marcha, el historial se carga aquí desde el disco (en otro hilo; llega por alertData)
+        historialAlertas = dataHolder.getHistorialAlertas(getFilesDir());
 
         backArrow.setOnClickListener(v -> finish());
 
@@ -60,33 +57,10 @@ public class IncidenciasActivity extends AppCompatActivity {
 
     /**
      * @brief Configura los observadores de datos para actualizar la UI en tiempo real.
-     *        La lógica de alertas utiliza un Set para garantizar que no se muestren alertas duplicadas
-     *        y mantiene la lista de la UI con un máximo de 6 alertas únicas.
+     *        Las alertas llegan ya sin repetidas y recortadas por \ref HistorialAlertas: se muestran tal cual.
      */
     private void setupObservers() {
-        dataHolder.alertData.observe(this, newAlerts -> {
-            if (newAlerts != null && !newAlerts.isEmpty()) {
-
-                // Usamos un LinkedHashSet para preservar el orden y garantizar la unicidad.
-                // 1. Se añaden las alertas nuevas que llegan del servicio para darles prioridad.
-                LinkedHashSet<String> uniqueAlerts = new LinkedHashSet<>(newAlerts);
-                // 2. Luego, se añaden las alertas antiguas que ya teníamos. Las duplicadas serán ignoradas por el Set.
-                uniqueAlerts.addAll(ultimasSeisAlertas);
-
-                // 3. Reconstruimos la lista a partir del conjunto único de alertas.
-                ultimasSeisAlertas.clear();
-                ultimasSeisAlertas.addAll(uniqueAlerts);
-
-                // 4. --- GESTIÓN DEL LÍMITE DE 6 ALERTAS ---
-                // Si la lista ahora tiene más de 6 elementos, se eliminan los más antiguos (los del final).
-                while (ultimasSeisAlertas.size() > MAX_ALERTS_IN_UI) {
-                    ultimasSeisAlertas.remove(ultimasSeisAlertas.size() - 1);
-                }
-
-                // 5. Se actualiza la interfaz gráfica con la lista limpia y ordenada.
-                actualizarTextoAlertas();
-            }
-        });
+        dataHolder.alertData.observe(this, this::actualizarTextoAlertas);
 
         // Observador para el historial de incidencias enviadas
         dataHolder.incidenciasEnviadasData.observe(this, history -> {
@@ -97,17 +71,18 @@ public class IncidenciasActivity extends AppCompatActivity {
             }
         });
 
-        actualizarTextoAlertas();
+        actualizarTextoAlertas(historialAlertas.getInstantanea());
     }
 
     /**
-     * @brief Actualiza el TextView de alertas con el contenido de la lista.
+     * @brief Actualiza el TextView de alertas con una instantánea del historial.
+     * @param alertas Alertas de la más reciente a la más antigua.
      */
-    private void actualizarTextoAlertas() {
-        if (ultimasSeisAlertas.isEmpty()) {
+    private void actualizarTextoAlertas(List<String> alertas) {
+        if (alertas == null || alertas.isEmpty()) {
             ultimasAlertasTextView.setText("No hay alertas");
         } else {
-            String textoAlertas = TextUtils.join("\n\n", ultimasSeisAlertas);
+            String textoAlertas = TextUtils.join("\n\n", alertas);
             ultimasAlertasTextView.setText(textoAlertas);
         }
     }
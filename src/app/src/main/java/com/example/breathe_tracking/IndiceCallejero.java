@@ -0,0 +1,233 @@
+/**
+ * @file IndiceCallejero.java
+ * @brief Geocodificación inversa sin red: k-d tree de puntos de calles y localidades en un fichero mapeado en memoria.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * @class IndiceCallejero
+ * @brief Responde "Calle, Ciudad" para unas coordenadas consultando un callejero local, sin Geocoder ni red.
+ *
+ * Copyrigth © 2025
+ *
+ * En sótanos y naves industriales el Geocoder de Android falla o tarda. Este índice se genera en el
+ * ordenador con \ref ConstructorIndiceCallejero (en el código de test: no va en el APK) a partir de
+ * un extracto CSV del callejero, se copia al directorio de la app y se mapea en memoria en modo solo
+ * lectura: no se carga en el heap y una consulta solo toca las páginas del camino que recorre.
+ *
+ * Formato del fichero (big-endian):
+ * - **Cabecera** (\ref TAM_CABECERA bytes): marca "ICJ1", versión, número de puntos, número de cadenas,
+ *   posición de la tabla de cadenas y posición de los datos de cadenas.
+ * - **Puntos** (\ref TAM_PUNTO bytes): latitud y longitud en 1e-7 grados, índice de la calle (-1 si es
+ *   una localidad) e índice de la localidad. Están en orden de k-d tree implícito: el nodo de un rango
+ *   [desde, hasta) es el del medio, el subárbol izquierdo queda antes y el derecho después, y el eje
+ *   alterna entre latitud (profundidad par) y longitud. No hacen falta punteros.
+ * - **Cadenas:** tabla de posiciones (una más que cadenas) y los nombres en UTF-8, sin repetir.
+ *
+ * Las calles se guardan como puntos cada \ref ConstructorIndiceCallejero#PASO_M metros a lo largo de
+ * cada tramo, así que el punto más cercano da la calle más cercana con ese error.
+ */
+public class IndiceCallejero implements GeocodificadorInverso.FuenteGeocodificacion {
+
+    /** @brief Marca del fichero ("ICJ1"). */
+    static final int MARCA = 0x49434A31;
+    /** @brief Versión del formato. */
+    static final int VERSION = 1;
+    /** @brief Tamaño de la cabecera en bytes. */
+    static final int TAM_CABECERA = 32;
+    /** @brief Tamaño de cada punto en bytes. */
+    static final int TAM_PUNTO = 16;
+    /** @brief Escala de las coordenadas (1e-7 grados, ~1 cm). */
+    static final double ESCALA = 1e7;
+    /** @brief Más lejos que esto de cualquier calle solo se devuelve la localidad. */
+    public static final double DISTANCIA_MAXIMA_CALLE_M = 150;
+    /** @brief Más lejos que esto de cualquier punto no se devuelve nada (fuera del extracto). */
+    public static final double DISTANCIA_MAXIMA_M = 20_000;
+    private static final double METROS_POR_GRADO = 111_320.0;
+
+    private final MappedByteBuffer datos;
+    private final int puntos;
+    private final int cadenas;
+    private final int posTablaCadenas;
+    private final int posDatosCadenas;
+
+    /** @brief Estado de una búsqueda del vecino más cercano. */
+    private static final class Busqueda {
+        final int latitud;
+        final int longitud;
+        /** @brief Factor de la longitud para medir en la misma escala que la latitud. */
+        final double cosLatitud;
+        /** @brief Si es true solo se aceptan puntos de calle. */
+        final boolean soloCalles;
+        int mejor = -1;
+        double mejorD2 = Double.MAX_VALUE;
+
+        Busqueda(double latitud, double longitud, boolean soloCalles) {
+            this.latitud = (int) Math.round(latitud * ESCALA);
+            this.longitud = (int) Math.round(longitud * ESCALA);
+            this.cosLatitud = Math.cos(Math.toRadians(latitud));
+            this.soloCalles = soloCalles;
+        }
+    }
+
+    /**
+     * @brief Abre y mapea un índice generado por \ref ConstructorIndiceCallejero.
+     * (fichero:File) -> IndiceCallejero() -> ()
+     * @param fichero Fichero del índice.
+     * @throws IOException Si no se puede leer o el formato no es válido.
+     */
+    public IndiceCallejero(File fichero) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(fichero, "r"); FileChannel canal = raf.getChannel()) {
+            long tamano = canal.size();
+            if (tamano < TAM_CABECERA || tamano > Integer.MAX_VALUE) throw new IOException("Índice callejero con tamaño no válido: " + tamano);
+            datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+        }
+        if (datos.getInt(0) != MARCA) throw new IOException("No es un índice callejero: " + fichero);
+        if (datos.getInt(4) != VERSION) throw new IOException("Versión de índice callejero no soportada: " + datos.getInt(4));
+        puntos = datos.getInt(8);
+        cadenas = datos.getInt(12);
+        posTablaCadenas = datos.getInt(16);
+        posDatosCadenas = datos.getInt(20);
+        long finPuntos = TAM_CABECERA + (long) puntos * TAM_PUNTO;
+        if (puntos < 0 || cadenas < 0 || finPuntos > posTablaCadenas
+                || posTablaCadenas + 4L * (cadenas + 1) > posDatosCadenas || posDatosCadenas > datos.capacity()) {
+            throw new IOException("Índice callejero corrupto: " + fichero);
+        }
+    }
+
+    /**
+     * @brief Dirección legible de unas coordenadas, con el mismo formato que el Geocoder del servicio.
+     * (latitud:double, longitud:double) -> direccion() -> String
+     * @return "Calle, Ciudad"; ", Ciudad" si no hay calle a menos de \ref DISTANCIA_MAXIMA_CALLE_M; null si
+     *         el punto queda fuera del extracto.
+     */
+    @Override
+    public String direccion(double latitud, double longitud) {
+        Busqueda busqueda = new Busqueda(latitud, longitud, true);
+        buscar(busqueda, 0, puntos, 0);
+        double distancia = distanciaM(busqueda);
+        if (busqueda.mejor >= 0 && distancia <= DISTANCIA_MAXIMA_CALLE_M) {
+            return cadena(calle(busqueda.mejor)) + ", " + cadena(localidad(busqueda.mejor));
+        }
+        // Sin calle cerca: la localidad del punto más cercano de cualquier tipo
+        Busqueda cualquiera = new Busqueda(latitud, longitud, false);
+        buscar(cualquiera, 0, puntos, 0);
+        if (cualquiera.mejor < 0 || distanciaM(cualquiera) > DISTANCIA_MAXIMA_M) return null;
+        return ", " + cadena(localidad(cualquiera.mejor));
+    }
+
+    /**
+     * @brief Índice del punto de calle más cercano (para pruebas y la herramienta de benchmark).
+     * (latitud:double, longitud:double) -> masCercano() -> int
+     * @return Posición del punto en el índice, o -1 si el índice no tiene calles.
+     */
+    int masCercano(double latitud, double longitud) {
+        Busqueda busqueda = new Busqueda(latitud, longitud, true);
+        buscar(busqueda, 0, puntos, 0);
+        return busqueda.mejor;
+    }
+
+    /** @brief Vecino más cercano en el subárbol del rango [desde, hasta). */
+    private void buscar(Busqueda b, int desde, int hasta, int profundidad) {
+        if (desde >= hasta) return;
+        int medio = (desde + hasta) >>> 1;
+        int base = TAM_CABECERA + medio * TAM_PUNTO;
+        int lat = datos.getInt(base);
+        int lon = datos.getInt(base + 4);
+        if (!b.soloCalles || datos.getInt(base + 8) >= 0) {
+            double dy = (double) lat - b.latitud;
+            double dx = ((double) lon - b.longitud) * b.cosLatitud;
+            double d2 = dx * dx + dy * dy;
+            if (d2 < b.mejorD2) {
+                b.mejorD2 = d2;
+                b.mejor = medio;
+            }
+        }
+        // Distancia (con signo) de la consulta al plano de corte
+        double corte = (profundidad & 1) == 0 ? (double) b.latitud - lat : ((double) b.longitud - lon) * b.cosLatitud;
+        boolean primeroIzquierda = corte < 0;
+        if (primeroIzquierda) buscar(b, desde, medio, profundidad + 1);
+        else buscar(b, medio + 1, hasta, profundidad + 1);
+        // El otro lado solo puede tener algo mejor si el plano está más cerca que el mejor encontrado
+        if (corte * corte < b.mejorD2) {
+            if (primeroIzquierda) buscar(b, medio + 1, hasta, profundidad + 1);
+            else buscar(b, desde, medio, profundidad + 1);
+        }
+    }
+
+    private static double distanciaM(Busqueda b) {
+        return b.mejor < 0 ? Double.MAX_VALUE : Math.sqrt(b.mejorD2) / ESCALA * METROS_POR_GRADO;
+    }
+
+    // --- Acceso a los puntos ---
+
+    /** @brief Latitud del punto en grados. */
+    double latitud(int punto) {
+        return datos.getInt(TAM_CABECERA + punto * TAM_PUNTO) / ESCALA;
+    }
+
+    /** @brief Longitud del punto en grados. */
+    double longitud(int punto) {
+        return datos.getInt(TAM_CABECERA + punto * TAM_PUNTO + 4) / ESCALA;
+    }
+
+    /** @brief Índice de la cadena de la calle del punto (-1 si es una localidad). */
+    int calle(int punto) {
+        return datos.getInt(TAM_CABECERA + punto * TAM_PUNTO + 8);
+    }
+
+    /** @brief Índice de la cadena de la localidad del punto (-1 si no se conoce). */
+    int localidad(int punto) {
+        return datos.getInt(TAM_CABECERA + punto * TAM_PUNTO + 12);
+    }
+
+    /**
+     * @brief Cadena del índice (calle o localidad).
+     * (indice:int) -> cadena() -> String
+     * @return La cadena, o "" si el índice es -1.
+     */
+    String cadena(int indice) {
+        if (indice < 0 || indice >= cadenas) return "";
+        int inicio = datos.getInt(posTablaCadenas + 4 * indice);
+        int fin = datos.getInt(posTablaCadenas + 4 * (indice + 1));
+        byte[] bytes = new byte[fin - inicio];
+        ByteBuffer vista = datos.duplicate();
+        vista.position(posDatosCadenas + inicio);
+        vista.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** @brief Puntos del índice. */
+    public int getPuntos() {
+        return puntos;
+    }
+
+    /** @brief Cadenas distintas (calles y localidades). */
+    public int getCadenas() {
+        return cadenas;
+    }
+
+    /** @brief Tamaño del fichero mapeado en bytes. */
+    public int getTamanoBytes() {
+        return datos.capacity();
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     */
+    public String resumen() {
+        return String.format(Locale.ROOT, "Callejero local: %d puntos, %d nombres, %.1f KiB mapeados.",
+                puntos, cadenas, datos.capacity() / 1024.0);
+    }
+}
@@ -28,10 +28,10 @@ import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -40,7 +40,8 @@ import java.util.Map;
  * Copyrigth © 2025
  *
  * Esta actividad carga los datos de firebase para mostrar la evolución de cada contaminante en un periodo de 24h
- * recogiendo los datos de la colección "datos_grafico".
+ * recogiendo los datos del documento diario de agregados del sensor (sensores/{codigo}/rollups/{yyyyMMdd}),
+ * o de la colección "datos_grafico" si no se conoce el sensor.
  * 27/11 - Sandra: creacion actividad y xml
  * 06/12 - Rocio: conexión con base de datos
  */
@@ -122,6 +123,8 @@ public class InformacionActivity extends AppCompatActivity {
     private FirebaseFirestore db;
     private String sensorId;
     private List<GasData> historicalData = new ArrayList<>();
+    /** @brief Gases del gráfico: nombre del campo en el documento de agregados. */
+    private static final String[] CANALES_GRAFICO = {"ozono", "co", "no2", "so2", "co2"};
     // -----------------------------
 
     // ALMACENA EL TIMESTAMP DE MEDIANOCHE DE HOY
@@ -140,6 +143,7 @@ public class InformacionActivity extends AppCompatActivity {
 
         // 1. Inicialización de Firebase y obtención del ID
         db = FirebaseFirestore.getInstance();
+        sensorId = getIntent().getStringExtra("SENSOR_CODE");
 
         //views
         chart = findViewById(R.id.chart_gases);
@@ -185,73 +189,118 @@ public class InformacionActivity extends AppCompatActivity {
 
         Toast.makeText(this, "Cargando datos por hora...", Toast.LENGTH_SHORT).show();
 
-        // IDs de documento que esperamos encontrar en Firestore
-        final String CO_ID = "co";
-        final String CO2_ID = "co2";
-        final String NO2_ID = "no2";
-        final String O3_ID = "ozono";
-        final String SO2_ID = "so2";
+        if (sensorId != null) {
+            cargarAgregadosDelSensor();
+            return;
+        }
+        cargarDatosGrafico();
+    }
 
+    /**
+     * @brief Lee de la colección "datos_grafico" los arrays de 24 valores de cada gas (datos de demostración,
+     * sin sensor) y redibuja.
+     */
+    private void cargarDatosGrafico() {
         db.collection("datos_grafico").get()
                 .addOnSuccessListener(queryDocumentSnapshots -> {
 
-                    Map<String, List<Number>> hourlyArrays = new HashMap<>();
-
                     if (queryDocumentSnapshots.isEmpty()) {
                         Toast.makeText(this, "Colección 'datos_grafico' vacía.", Toast.LENGTH_LONG).show();
                         return;
                     }
 
-                    // 1. Procesar los documentos y guardar los arrays
+                    // Inicializar la lista final con 24 entradas (una por hora)
+                    historicalData.clear();
+                    for (int i = 0; i < 24; i++) {
+                        historicalData.add(new GasData(0L)); // Inicializa todos los valores en 0
+                    }
+
+                    // Procesar los documentos y llenar los datos de cada hora
                     for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
                         String contaminantId = document.getId();
                         // Firestore devuelve arrays de números como List<Number>
                         List<Number> values = (List<Number>) document.get("valor");
+                        if (values == null || values.size() < 24) continue;
 
-                        if (values != null && values.size() >= 24) {
-                            hourlyArrays.put(contaminantId, values);
+                        for (int h = 0; h < 24 && h < historicalData.size(); h++) {
+                            // Conversión segura a float (ya que todos los valores son numéricos en la BD)
+                            asignar(historicalData.get(h), contaminantId, values.get(h).floatValue());
                         }
                     }
 
-                    // 2. Inicializar la lista final con 24 entradas (una por hora)
-                    historicalData.clear();
-                    for (int i = 0; i < 24; i++) {
-                        historicalData.add(new GasData(0L)); // Inicializa todos los valores en 0
-                    }
+                    // Configurar el Eje X y cargar la gráfica del gas seleccionado
+                    configurarEjeXDemo();
+                    cargarDatosGas(spinner.getSelectedItemPosition());
+                    Toast.makeText(InformacionActivity.this, "Datos cargados con éxito (24 horas).", Toast.LENGTH_SHORT).show();
+
+                })
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDebug", "Error al leer datos DEMO: " + e.getMessage(), e);
+                    Toast.makeText(InformacionActivity.this, "Error lectura datos", Toast.LENGTH_LONG).show();
+                });
+    }
 
-                    // 3. Llenar los datos de cada hora
-                    for (Map.Entry<String, List<Number>> entry : hourlyArrays.entrySet()) {
-                        String contaminantId = entry.getKey();
-                        List<Number> values = entry.getValue();
+    /**
+     * @brief Guarda el valor de un gas (por su nombre de campo) en los datos de una hora.
+     * (data:GasData, canal:String, valor:float) -> asignar() -> ()
+     */
+    private static void asignar(GasData data, String canal, float valor) {
+        switch (canal) {
+            case "co": data.co = valor; break;
+            case "co2": data.co2 = valor; break;
+            case "no2": data.no2 = valor; break;
+            case "ozono": data.ozono = valor; break;
+            case "so2": data.so2 = valor; break;
+        }
+    }
 
-                        for (int h = 0; h < 24 && h < values.size(); h++) {
-                            GasData data = historicalData.get(h);
 
-                            // Conversión segura a float (ya que todos los valores son numéricos en la BD)
-                            float value = values.get(h).floatValue();
-
-                            switch (contaminantId) {
-                                case CO_ID: data.co = value; break;
-                                case CO2_ID: data.co2 = value; break;
-                                case NO2_ID: data.no2 = value; break;
-                                case O3_ID: data.ozono = value; break;
-                                case SO2_ID: data.so2 = value; break;
+    /**
+     * @brief Lee el documento de agregados horarios de hoy del sensor (una sola lectura) y usa la media de cada hora.
+     * Lo escribe SensorTrackingService con \ref AgregadorHorario. Las horas sin muestras no se dibujan (no son
+     * ceros medidos): un gas que el documento no trae (el sensor no lo mide) o un documento que aún no existe
+     * se muestran igual, sin mediciones.
+     */
+    private void cargarAgregadosDelSensor() {
+        String hoy = new SimpleDateFormat("yyyyMMdd", Locale.ROOT).format(new Date());
+        db.collection("sensores").document(sensorId).collection("rollups").document(hoy).get()
+                .addOnSuccessListener(documento -> {
+                    historicalData.clear();
+                    for (int i = 0; i < AgregadorHorario.HORAS; i++) {
+                        historicalData.add(new GasData(Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN, 0L));
+                    }
+                    if (!documento.exists()) {
+                        Toast.makeText(this, "Todavía no hay datos de hoy para este sensor.", Toast.LENGTH_LONG).show();
+                    } else {
+                        for (String canal : CANALES_GRAFICO) {
+                            // Sin el campo, mediaHora da NaN en todas las horas
+                            Object porHora = documento.get(canal);
+                            for (int h = 0; h < AgregadorHorario.HORAS; h++) {
+                                asignar(historicalData.get(h), canal, mediaHora(porHora, h));
                             }
                         }
                     }
-
-                    // 4. Configurar el Eje X y cargar la gráfica por defecto (Ozono = índice 0)
                     configurarEjeXDemo();
                     cargarDatosGas(spinner.getSelectedItemPosition());
-                    Toast.makeText(InformacionActivity.this, "Datos cargados con éxito (24 horas).", Toast.LENGTH_SHORT).show();
-
                 })
                 .addOnFailureListener(e -> {
-                    Log.e("FirebaseDebug", "Error al leer datos DEMO: " + e.getMessage(), e);
+                    Log.e("FirebaseDebug", "Error al leer los agregados del sensor: " + e.getMessage(), e);
                     Toast.makeText(InformacionActivity.this, "Error lectura datos", Toast.LENGTH_LONG).show();
                 });
     }
 
+    /**
+     * @brief Media de una hora dentro del mapa de un canal del documento de agregados.
+     * (canal:Object, hora:int) -> mediaHora() -> float
+     * @return La media, o NaN si esa hora no tiene muestras.
+     */
+    private static float mediaHora(Object canal, int hora) {
+        if (!(canal instanceof Map)) return Float.NaN;
+        Object datosHora = ((Map<?, ?>) canal).get(AgregadorHorario.claveHora(hora));
+        if (!(datosHora instanceof Map)) return Float.NaN;
+        Object media = ((Map<?, ?>) datosHora).get("media");
+        return media instanceof Number ? ((Number) media).floatValue() : Float.NaN;
+    }
 
     private void configurarEstiloGrafico() {
         chart.getDescription().setEnabled(false);
@@ -346,6 +395,8 @@ public class InformacionActivity extends AppCompatActivity {
                         limiteSeguro = 800f; limitePeligro = 1200f; yMax = 1300f;
                         break;
                 }
+                // Hora sin muestras: no se dibuja un cero que no se ha medido
+                if (Float.isNaN(valueY)) continue;
                 entries.add(new Entry(valueX, valueY));
             }
         }
@@ -414,6 +465,12 @@ public class InformacionActivity extends AppCompatActivity {
         int contadorPeligroso = 0;
         int contadorRiesgo = 0;
 
+        if (datos.isEmpty()) {
+            imgCarita.setImageResource(R.drawable.ic_face_neutral);
+            txtExplicacion.setText("Sin mediciones de este gas en las últimas 24 horas.");
+            return;
+        }
+
         for (Entry e : datos) {
             float val = e.getY();
             if (val > limitePeligro) {
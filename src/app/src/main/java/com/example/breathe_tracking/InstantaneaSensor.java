@@ -0,0 +1,278 @@
+/**
+ * @file InstantaneaSensor.java
+ * @brief Estado inmutable que muestra la UI de un sensor, con la máscara de campos que han cambiado.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+/**
+ * @class InstantaneaSensor
+ * @brief Foto completa y coherente de lo que se muestra de un sensor (mediciones, RSSI, estado e incidencia).
+ *
+ * Copyrigth © 2025
+ *
+ * Cada lectura publica en \ref TrackingDataHolder una sola instantánea inmutable con todos los campos,
+ * de modo que la Activity nunca ve un estado a medias (el CO2 nuevo con la hora antigua).
+ *
+ * \ref getCambios() es una máscara de bits (CAMPO_*) con los campos que difieren de la última
+ * instantánea entregada a los observadores. Quien observa puede saltarse el trabajo de los campos
+ * que no han cambiado. Si el observador se ha perdido instantáneas (por ejemplo, estaba parado),
+ * \ref cambiosDesde calcula los cambios respecto a la última que pintó.
+ *
+ * Se crea a partir de la anterior con \ref editar(), que copia todos los valores; solo se cambian
+ * los campos que se indiquen.
+ */
+public final class InstantaneaSensor {
+
+    // --- Campos (bits de la máscara de cambios) ---
+    /** @brief Código del sensor. */
+    public static final int CAMPO_CODIGO = 1;
+    /** @brief Texto de la hora de la última lectura aceptada. */
+    public static final int CAMPO_HORA = 1 << 1;
+    /** @brief Ozono en ppm. */
+    public static final int CAMPO_OZONO = 1 << 2;
+    /** @brief Temperatura en ºC. */
+    public static final int CAMPO_TEMPERATURA = 1 << 3;
+    /** @brief CO2 en ppm. */
+    public static final int CAMPO_CO2 = 1 << 4;
+    /** @brief Batería en %. */
+    public static final int CAMPO_BATERIA = 1 << 5;
+    /** @brief RSSI suavizado en dBm. */
+    public static final int CAMPO_RSSI = 1 << 6;
+    /** @brief Estado de conexión ("Conectado" / "Desconectado"). */
+    public static final int CAMPO_ESTADO = 1 << 7;
+    /** @brief Mensaje de incidencia. */
+    public static final int CAMPO_INCIDENCIA = 1 << 8;
+    /** @brief Todos los campos. */
+    public static final int TODOS = (1 << 9) - 1;
+
+    /** @brief Instantánea inicial: ningún campo tiene valor. */
+    public static final InstantaneaSensor VACIA = new InstantaneaSensor(new Edicion(), 0, 0, 0);
+
+    private final String codigo;
+    private final String hora;
+    private final Float ozono;
+    private final Float temperatura;
+    private final Integer co2;
+    private final Integer bateria;
+    private final Integer rssi;
+    private final String estado;
+    private final String incidencia;
+    private final int cambios;
+    private final long secuencia;
+    /** @brief Secuencia de la instantánea respecto a la que se calculó \ref cambios. */
+    private final long secuenciaBase;
+
+    private InstantaneaSensor(Edicion e, int cambios, long secuencia, long secuenciaBase) {
+        this.codigo = e.codigo;
+        this.hora = e.hora;
+        this.ozono = e.ozono;
+        this.temperatura = e.temperatura;
+        this.co2 = e.co2;
+        this.bateria = e.bateria;
+        this.rssi = e.rssi;
+        this.estado = e.estado;
+        this.incidencia = e.incidencia;
+        this.cambios = cambios;
+        this.secuencia = secuencia;
+        this.secuenciaBase = secuenciaBase;
+    }
+
+    /**
+     * @class Edicion
+     * @brief Valores de la próxima instantánea. Empieza con los de la instantánea de la que sale.
+     */
+    public static final class Edicion {
+        private final long secuenciaBase;
+        private String codigo;
+        private String hora;
+        private Float ozono;
+        private Float temperatura;
+        private Integer co2;
+        private Integer bateria;
+        private Integer rssi;
+        private String estado;
+        private String incidencia;
+
+        private Edicion() {
+            secuenciaBase = 0;
+        }
+
+        private Edicion(InstantaneaSensor de) {
+            secuenciaBase = de.secuencia;
+            codigo = de.codigo;
+            hora = de.hora;
+            ozono = de.ozono;
+            temperatura = de.temperatura;
+            co2 = de.co2;
+            bateria = de.bateria;
+            rssi = de.rssi;
+            estado = de.estado;
+            incidencia = de.incidencia;
+        }
+
+        // --- Valores (cada uno devuelve la propia edición para encadenar) ---
+
+        public Edicion codigo(String valor) {
+            codigo = valor;
+            return this;
+        }
+
+        public Edicion hora(String valor) {
+            hora = valor;
+            return this;
+        }
+
+        public Edicion ozono(float valor) {
+            ozono = valor;
+            return this;
+        }
+
+        public Edicion temperatura(float valor) {
+            temperatura = valor;
+            return this;
+        }
+
+        public Edicion co2(int valor) {
+            co2 = valor;
+            return this;
+        }
+
+        public Edicion bateria(int valor) {
+            bateria = valor;
+            return this;
+        }
+
+        public Edicion rssi(int valor) {
+            rssi = valor;
+            return this;
+        }
+
+        public Edicion estado(String valor) {
+            estado = valor;
+            return this;
+        }
+
+        public Edicion incidencia(String valor) {
+            incidencia = valor;
+            return this;
+        }
+
+        /**
+         * @brief Crea la instantánea con la máscara de cambios respecto a \p base.
+         * (base:InstantaneaSensor) -> crear() -> InstantaneaSensor
+         * @param base Instantánea con la que se compara (la última entregada a los observadores).
+         * @return Nueva instantánea, con secuencia una más que aquella de la que salió la edición.
+         */
+        public InstantaneaSensor crear(InstantaneaSensor base) {
+            return new InstantaneaSensor(this, diferencias(base), secuenciaBase + 1, base.secuencia);
+        }
+
+        /**
+         * @brief Campos (máscara CAMPO_*) en los que esta edición difiere de una instantánea.
+         * (otra:InstantaneaSensor) -> diferencias() -> int
+         */
+        public int diferencias(InstantaneaSensor otra) {
+            int mascara = 0;
+            if (!igual(codigo, otra.codigo)) mascara |= CAMPO_CODIGO;
+            if (!igual(hora, otra.hora)) mascara |= CAMPO_HORA;
+            if (!igual(ozono, otra.ozono)) mascara |= CAMPO_OZONO;
+            if (!igual(temperatura, otra.temperatura)) mascara |= CAMPO_TEMPERATURA;
+            if (!igual(co2, otra.co2)) mascara |= CAMPO_CO2;
+            if (!igual(bateria, otra.bateria)) mascara |= CAMPO_BATERIA;
+            if (!igual(rssi, otra.rssi)) mascara |= CAMPO_RSSI;
+            if (!igual(estado, otra.estado)) mascara |= CAMPO_ESTADO;
+            if (!igual(incidencia, otra.incidencia)) mascara |= CAMPO_INCIDENCIA;
+            return mascara;
+        }
+
+        private static boolean igual(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * @brief Empieza una edición con los valores de esta instantánea.
+     * () -> editar() -> Edicion
+     */
+    public Edicion editar() {
+        return new Edicion(this);
+    }
+
+    /**
+     * @brief Indica si alguno de los campos de la máscara ha cambiado.
+     * (campos:int) -> cambiado() -> boolean
+     * @param campos Uno o varios CAMPO_* combinados con |.
+     */
+    public boolean cambiado(int campos) {
+        return (cambios & campos) != 0;
+    }
+
+    /**
+     * @brief Campos que han cambiado respecto a la instantánea que pintó un observador.
+     * Si es la base de la máscara se usa la máscara; si no, se comparan los campos.
+     * (anterior:InstantaneaSensor) -> cambiosDesde() -> int
+     * @param anterior Última instantánea procesada por el observador, o null si es la primera.
+     * @return Máscara CAMPO_* (\ref TODOS si \p anterior es null).
+     */
+    public int cambiosDesde(InstantaneaSensor anterior) {
+        if (anterior == null) return TODOS;
+        if (anterior.secuencia == secuenciaBase) return cambios;
+        return editar().diferencias(anterior);
+    }
+
+    /** @brief Máscara (CAMPO_*) de los campos que difieren de la instantánea entregada antes. */
+    public int getCambios() {
+        return cambios;
+    }
+
+    /** @brief Número de instantánea (crece en cada publicación). */
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    /** @brief Código del sensor, o null si aún no hay ninguno. */
+    public String getCodigo() {
+        return codigo;
+    }
+
+    /** @brief Texto de la hora de la última lectura (ej: "Última conex. 14:30"), o null. */
+    public String getHora() {
+        return hora;
+    }
+
+    /** @brief Ozono en ppm, o null si aún no hay lectura. */
+    public Float getOzono() {
+        return ozono;
+    }
+
+    /** @brief Temperatura en ºC, o null si aún no hay lectura. */
+    public Float getTemperatura() {
+        return temperatura;
+    }
+
+    /** @brief CO2 en ppm, o null si aún no hay lectura. */
+    public Integer getCo2() {
+        return co2;
+    }
+
+    /** @brief Batería en %, o null si aún no hay lectura. */
+    public Integer getBateria() {
+        return bateria;
+    }
+
+    /** @brief RSSI suavizado en dBm (-999 al desconectarse), o null. */
+    public Integer getRssi() {
+        return rssi;
+    }
+
+    /** @brief Estado de conexión, o null. */
+    public String getEstado() {
+        return estado;
+    }
+
+    /** @brief Mensaje de incidencia, o null. */
+    public String getIncidencia() {
+        return incidencia;
+    }
+}
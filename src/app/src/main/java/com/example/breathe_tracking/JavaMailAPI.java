@@ -1,130 +1,244 @@
 package com.example.breathe_tracking;
 
 import android.content.Context;
-import android.os.AsyncTask;
-import android.widget.Toast;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.mail.Address;
+import javax.mail.AuthenticationFailedException;
 import javax.mail.Message;
 import javax.mail.MessagingException;
-import javax.mail.PasswordAuthentication;
+import javax.mail.SendFailedException;
 import javax.mail.Session;
 import javax.mail.Transport;
+import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 
 /**
  * @class JavaMailAPI
- * @brief Clase asíncrona encargada de gestionar el envío de correos electrónicos en segundo plano.
+ * @brief Transporte SMTP (Gmail) de la \ref BandejaCorreo, con una sola Session y una conexión que se reutiliza.
+ *
+ * Copyrigth © 2025
  *
- * Esta clase extiende de AsyncTask para realizar operaciones de red (SMTP) sin bloquear
- * el hilo principal de la interfaz de usuario (UI Thread). Utiliza la librería JavaMail
- * para conectar con el servidor SMTP de Gmail.
+ * La bandeja abre la conexión con \ref conectar, envía por ella todos los mensajes pendientes y la
+ * cierra con \ref cerrar tras un rato sin uso. Los errores se devuelven como \ref BandejaCorreo.ErrorEnvio,
+ * permanentes (credenciales o destinatario rechazados, mensaje mal formado) o transitorios, para que
+ * la bandeja decida si reintenta. También da acceso a la bandeja y al resumen de correo de la app
+ * (\ref bandeja, \ref resumen).
  *
- * @extends AsyncTask<Void, Void, Void>
+ * Solo se usa desde el hilo de la bandeja.
  */
-public class JavaMailAPI extends AsyncTask<Void, Void, Void> {
+public class JavaMailAPI implements BandejaCorreo.Transporte {
 
     // --- CONFIGURACIÓN DEL ROBOT ---
     /** @brief Dirección de correo electrónico del remitente (Cuenta Robot). */
-    private String EMAIL_ROBOT = "rousio2211@gmail.com";
+    private static final String EMAIL_ROBOT = "rousio2211@gmail.com";
 
     /** @brief Contraseña de aplicación (App Password) generada por Google para autenticación segura. */
-    private String PASSWORD_ROBOT = "qksu kdas eluz wofs";
+    private static final String PASSWORD_ROBOT = "qksu kdas eluz wofs";
+
+    /** @brief Destinatario de las incidencias y de los resúmenes de alertas. */
+    public static final String EMAIL_ADMINISTRADOR = "sandralovesel@gmail.com";
+
+    /** @brief Alias visible del remitente. */
+    private static final String NOMBRE_ROBOT = "⚠️ Alertas Breathe Tracking";
+
+    /** @brief Servidor SMTP (SSL en el puerto 465). */
+    private static final String HOST = "smtp.gmail.com";
+    private static final int PUERTO = 465;
+    /** @brief Tiempo máximo para conectar y para cada lectura/escritura del socket. */
+    private static final String TIMEOUT_MS = "20000";
     // -------------------------------
 
-    /** @brief Contexto de la aplicación, necesario para mostrar mensajes Toast en la UI. */
-    private Context context;
+    private static final String ETIQUETA_LOG = "JavaMailAPI";
 
-    /** @brief Sesión de correo que mantiene la configuración y autenticación. */
-    private Session session;
+    /** @brief Bandeja de la app (una por proceso, compartida por las pantallas y el servicio). */
+    private static BandejaCorreo bandeja;
+    /** @brief Resumen de alertas e incidencias de la app (uno por proceso, sobre la \ref bandeja). */
+    private static ResumenAlertas resumen;
+    /** @brief Hilo que envía el resumen al cerrarse su ventana. */
+    private static ScheduledExecutorService ejecutorResumen;
+    private static ScheduledFuture<?> revisionResumen;
 
-    /** @brief Dirección de correo electrónico del destinatario (Administrador). */
-    private String emailDestino;
+    /** @brief Sesión de correo: configuración creada una sola vez. */
+    private final Session session;
 
-    /** @brief Asunto del correo electrónico. */
-    private String asunto;
+    /** @brief Servidor y credenciales con los que se conecta. */
+    private final String host;
+    private final int puerto;
+    private final String usuario;
+    private final String password;
 
-    /** @brief Cuerpo del mensaje (texto base que será formateado a HTML). */
-    private String mensaje;
+    /** @brief Conexión abierta (null si no hay). */
+    private Transport transport;
 
     /**
-     * @brief Constructor de la clase JavaMailAPI.
-     *
-     * Inicializa los datos necesarios para componer y enviar el correo.
-     *
-     * @param context Contexto de la actividad o aplicación.
-     * @param emailDestino Dirección de email a la que se enviará la alerta.
-     * @param asunto Título del correo.
-     * @param mensaje Contenido del mensaje.
+     * @brief Constructor: prepara la Session contra el servidor del robot (no conecta).
      */
-    public JavaMailAPI(Context context, String emailDestino, String asunto, String mensaje) {
-        this.context = context;
-        this.emailDestino = emailDestino;
-        this.asunto = asunto;
-        this.mensaje = mensaje;
+    public JavaMailAPI() {
+        this(HOST, PUERTO, true, EMAIL_ROBOT, PASSWORD_ROBOT);
     }
 
     /**
-     * @brief Ejecuta la tarea de envío de correo en un hilo secundario.
-     *
-     * Configura las propiedades del servidor SMTP de Gmail (Host, Puerto 465, SSL),
-     * realiza la autenticación, construye el mensaje MIME con formato HTML y máscara
-     * de remitente, y finalmente envía el correo.
-     *
-     * @param params Parámetros de entrada (no utilizados en esta implementación).
-     * @return null
+     * @brief Constructor con servidor propio (en los tests, un servidor SMTP local sin SSL).
+     * (host:String, puerto:int, ssl:boolean, usuario:String, password:String) -> JavaMailAPI
      */
-    @Override
-    protected Void doInBackground(Void... params) {
+    JavaMailAPI(String host, int puerto, boolean ssl, String usuario, String password) {
+        this.host = host;
+        this.puerto = puerto;
+        this.usuario = usuario;
+        this.password = password;
         Properties props = new Properties();
-        // Configuración para conectarse a Gmail
-        props.put("mail.smtp.host", "smtp.gmail.com");
-        props.put("mail.smtp.socketFactory.port", "465");
-        props.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
+        props.put("mail.smtp.host", host);
+        props.put("mail.smtp.port", String.valueOf(puerto));
+        props.put("mail.smtp.ssl.enable", String.valueOf(ssl));
         props.put("mail.smtp.auth", "true");
-        props.put("mail.smtp.port", "465");
+        props.put("mail.smtp.connectiontimeout", TIMEOUT_MS);
+        props.put("mail.smtp.timeout", TIMEOUT_MS);
+        props.put("mail.smtp.writetimeout", TIMEOUT_MS);
+        // getInstance y no getDefaultInstance: la sesión por defecto es global y la primera configuración gana
+        session = Session.getInstance(props);
+    }
 
-        // Iniciar sesión
-        session = Session.getDefaultInstance(props, new javax.mail.Authenticator() {
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(EMAIL_ROBOT, PASSWORD_ROBOT);
-            }
-        });
+    /**
+     * @brief Bandeja de correo de la app, creada la primera vez (recupera lo que quedó sin enviar).
+     * (context:Context) -> bandeja() -> BandejaCorreo
+     * @param context Cualquier contexto (se usa el de la aplicación).
+     */
+    public static synchronized BandejaCorreo bandeja(Context context) {
+        if (bandeja == null) {
+            File directorio = new File(context.getApplicationContext().getFilesDir(), "correo");
+            bandeja = new BandejaCorreo(directorio, new JavaMailAPI(), SystemClock::elapsedRealtime);
+            // Los recuperados del disco no tienen pantalla a la que avisar: su resultado queda en el log
+            bandeja.setEscuchaPorDefecto((correo, enviado, error) ->
+                    Log.i(ETIQUETA_LOG, "Correo " + correo.id + " (" + correo.asunto + "): " + (enviado ? "enviado" : "no enviado, " + error)));
+        }
+        return bandeja;
+    }
 
-        try {
-            MimeMessage mm = new MimeMessage(session);
+    /**
+     * @brief Resumen de correo de la app, creado la primera vez. Lo comparten las incidencias que
+     * reporta el usuario y, si están activadas, las alertas automáticas del servicio.
+     * (context:Context) -> resumen() -> ResumenAlertas
+     * @param context Cualquier contexto (se usa el de la aplicación).
+     */
+    public static synchronized ResumenAlertas resumen(Context context) {
+        if (resumen == null) {
+            final BandejaCorreo destino = bandeja(context);
+            resumen = new ResumenAlertas((asunto, html) -> destino.encolar(EMAIL_ADMINISTRADOR, asunto, html, null),
+                    SystemClock::elapsedRealtime);
+            ejecutorResumen = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "resumen-alertas");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return resumen;
+    }
 
-            /** @brief Configuración del remitente con alias visual personalizado para apariencia profesional. */
-            mm.setFrom(new InternetAddress(EMAIL_ROBOT, "⚠️ Alertas Breathe Tracking"));
-            // ---------------------------
+    /**
+     * @brief Añade una alerta o incidencia al resumen de correo y programa su envío.
+     * (context:Context, sensor:String, tipo:String, mensaje:String, hora:String, critica:boolean) -> agregarAlResumen() -> ()
+     * @param context Cualquier contexto.
+     * @param sensor Código del sensor.
+     * @param tipo Tipo de alerta o título de la incidencia.
+     * @param mensaje Texto.
+     * @param hora Hora tal y como se muestra (ej: "14:05").
+     * @param critica true si sale al momento en su propio correo.
+     */
+    public static void agregarAlResumen(Context context, String sensor, String tipo, String mensaje, String hora, boolean critica) {
+        programarResumen(resumen(context).agregar(sensor, tipo, mensaje, hora, critica));
+    }
 
-            mm.addRecipient(Message.RecipientType.TO, new InternetAddress(emailDestino));
-            mm.setSubject(asunto);
+    /** @brief Programa la próxima revisión del resumen (sustituye a la anterior). */
+    private static synchronized void programarResumen(long espera) {
+        if (revisionResumen != null) revisionResumen.cancel(false);
+        revisionResumen = espera < 0 ? null
+                : ejecutorResumen.schedule(() -> programarResumen(resumen.revisar()), espera, TimeUnit.MILLISECONDS);
+    }
 
-            String contenidoHTML = construirHTML(asunto, mensaje);
-            /** @brief Establece el contenido como HTML con codificación UTF-8 para soporte de tildes. */
-            mm.setContent(contenidoHTML, "text/html; charset=utf-8");
+    /**
+     * @brief Abre la conexión TLS con el servidor y se autentica.
+     * () -> conectar() -> ()
+     */
+    @Override
+    public void conectar() throws BandejaCorreo.ErrorEnvio {
+        cerrar();
+        try {
+            Transport t = session.getTransport("smtp");
+            t.connect(host, puerto, usuario, password);
+            transport = t;
+        } catch (AuthenticationFailedException e) {
+            // Credenciales rechazadas: reintentar no las arregla (la bandeja lo cuenta como intento)
+            throw new BandejaCorreo.ErrorEnvio("Autenticación rechazada por el servidor", true, e);
+        } catch (MessagingException e) {
+            throw new BandejaCorreo.ErrorEnvio("No se pudo conectar con el servidor de correo", false, e);
+        }
+    }
 
-            Transport.send(mm);
+    /**
+     * @brief true si la conexión sigue abierta (el servidor la cierra tras un rato sin uso).
+     * () -> isConectado() -> boolean
+     */
+    @Override
+    public boolean isConectado() {
+        return transport != null && transport.isConnected();
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * @brief Construye el mensaje MIME (HTML en UTF-8) y lo envía por la conexión abierta.
+     * (correo:BandejaCorreo.Correo) -> enviar() -> ()
+     */
+    @Override
+    public void enviar(BandejaCorreo.Correo correo) throws BandejaCorreo.ErrorEnvio {
+        MimeMessage mm = new MimeMessage(session);
+        try {
+            mm.setFrom(new InternetAddress(usuario, NOMBRE_ROBOT, "UTF-8"));
+            mm.addRecipient(Message.RecipientType.TO, new InternetAddress(correo.para, true));
+            mm.setSubject(correo.asunto, "UTF-8");
+            /** @brief Establece el contenido como HTML con codificación UTF-8 para soporte de tildes. */
+            mm.setContent(correo.html, "text/html; charset=utf-8");
+            mm.saveChanges();
+        } catch (AddressException e) {
+            throw new BandejaCorreo.ErrorEnvio("Dirección no válida: " + correo.para, true, e);
+        } catch (MessagingException | UnsupportedEncodingException e) {
+            throw new BandejaCorreo.ErrorEnvio("No se pudo construir el mensaje", true, e);
+        }
+
+        if (transport == null) throw new BandejaCorreo.ErrorEnvio("Sin conexión", false, null);
+        try {
+            transport.sendMessage(mm, mm.getAllRecipients());
+        } catch (SendFailedException e) {
+            // El servidor rechaza al destinatario: repetir no sirve de nada
+            Address[] invalidas = e.getInvalidAddresses();
+            boolean permanente = invalidas != null && invalidas.length > 0;
+            throw new BandejaCorreo.ErrorEnvio("Envío rechazado: " + e.getMessage(), permanente, e);
+        } catch (MessagingException e) {
+            throw new BandejaCorreo.ErrorEnvio("Error al enviar: " + e.getMessage(), false, e);
         }
-        return null;
     }
 
     /**
-     * @brief Se ejecuta en el hilo principal (UI Thread) al finalizar el envío.
-     *
-     * Muestra una notificación Toast al usuario indicando que la incidencia se ha enviado.
-     *
-     * @param result Resultado de doInBackground (siempre null en este caso).
+     * @brief Cierra la conexión (si la hay) sin lanzar.
+     * () -> cerrar() -> ()
      */
     @Override
-    protected void onPostExecute(Void result) {
-        super.onPostExecute(result);
-        // Mostrar aviso al usuario cuando termine
-        Toast.makeText(context, "Incidencia enviada correctamente", Toast.LENGTH_LONG).show();
+    public void cerrar() {
+        if (transport == null) return;
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            // Ya estaba cerrada
+        }
+        transport = null;
     }
 
     // --- NUEVO MÉTODO PARA CREAR EL DISEÑO HTML ---
@@ -132,52 +246,14 @@ public class JavaMailAPI extends AsyncTask<Void, Void, Void> {
      * @brief Genera una estructura HTML con estilos CSS integrados para el cuerpo del correo.
      *
      * Crea un diseño visual profesional con cabecera corporativa, contenedor de datos
-     * y pie de página, insertando dinámicamente el título y el mensaje.
+     * y pie de página, insertando el título y el mensaje (escapados) en la plantilla
+     * precompilada \ref PlantillaCorreo#INCIDENCIA.
      *
      * @param titulo El título de la incidencia.
      * @param mensaje El mensaje descriptivo de la incidencia.
      * @return String que contiene el código HTML completo del correo.
      */
-    private String construirHTML(String titulo, String mensaje) {
-        return "<!DOCTYPE html>" +
-                "<html>" +
-                "<head>" +
-                "<style>" +
-                "body {font-family: Arial, sans-serif; margin: 0; padding: 0; background-color: #f4f4f4;}" +
-                ".container {max-width: 600px; margin: 20px auto; background-color: #ffffff; border-radius: 8px; overflow: hidden; box-shadow: 0 2px 5px rgba(0,0,0,0.1);}" +
-                ".header {background-color: #0E344C; color: #ffffff; padding: 20px; text-align: center;}" +
-                ".header h1 {margin: 0; font-size: 24px; letter-spacing: 2px;}" +
-                ".content {padding: 30px; color: #333333; line-height: 1.6;}" +
-                ".label {font-weight: bold; color: #0E344C; display: block; margin-top: 15px;}" +
-                ".value {background-color: #f9f9f9; padding: 10px; border-left: 4px solid #0E344C; margin-top: 5px;}" +
-                ".footer {background-color: #eeeeee; text-align: center; padding: 15px; font-size: 12px; color: #777777;}" +
-                "</style>" +
-                "</head>" +
-                "<body>" +
-                "  <div class='container'>" +
-                "    <div class='header'>" +
-                "      <h1>BREATHE TRACKING</h1>" +
-                "      <p>Sistema de Gestión de Incidencias</p>" +
-                "    </div>" +
-                "    <div class='content'>" +
-                "      <p>Hola Administrador,</p>" +
-                "      <p>Se ha recibido un nuevo reporte automático desde la aplicación móvil.</p>" +
-                "      <hr style='border: 0; border-top: 1px solid #eee; margin: 20px 0;'>" +
-
-                "      <span class='label'>TÍTULO:</span>" +
-                "      <div class='value'>" + titulo + "</div>" +
-
-                "      <span class='label'>DETALLE DEL MENSAJE:</span>" +
-                "      <div class='value'>" + mensaje + "</div>" +
-
-                "      <p style='margin-top: 30px; font-size: 0.9em;'><em>Por favor, revise el panel de control para más detalles técnicos del sensor afectado.</em></p>" +
-                "    </div>" +
-                "    <div class='footer'>" +
-                "      <p>Este es un mensaje automático. No responder a este correo.</p>" +
-                "      <p>&copy; 2025 Breathe Tracking System</p>" +
-                "    </div>" +
-                "  </div>" +
-                "</body>" +
-                "</html>";
+    public static String construirHTML(String titulo, String mensaje) {
+        return PlantillaCorreo.INCIDENCIA.generar(titulo, mensaje);
     }
-}
\ No newline at end of file
+}
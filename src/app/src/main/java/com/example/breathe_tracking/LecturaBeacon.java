@@ -0,0 +1,105 @@
+/**
+ * @file LecturaBeacon.java
+ * @brief Contenedor mutable y reutilizable con los valores primitivos decodificados de una trama del sensor.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+/**
+ * @class LecturaBeacon
+ * @brief Lectura "en crudo" del beacon, pensada para reutilizarse en cada paquete recibido.
+ *
+ * Copyrigth © 2025
+ *
+ * A diferencia de \ref LecturaSensor (que es el modelo que se sube a Firestore), esta clase
+ * solo contiene campos primitivos y se rellena in situ por \ref DecodificadorTrama, de forma
+ * que el camino caliente del escaneo BLE no crea objetos nuevos por cada anuncio.
+ */
+public final class LecturaBeacon {
+    /** @brief Nivel de Ozono (O3) en ppm. */
+    public float o3;
+    /** @brief Temperatura en grados Celsius. */
+    public float temperatura;
+    /** @brief Concentración de CO2 en ppm. */
+    public int co2;
+    /** @brief Porcentaje de batería del sensor. */
+    public int bateria;
+    /** @brief Monóxido de carbono en mg/m³ (NaN si la trama no lo trae). */
+    public float co = Float.NaN;
+    /** @brief Dióxido de nitrógeno en µg/m³ (NaN si la trama no lo trae). */
+    public float no2 = Float.NaN;
+    /** @brief Dióxido de azufre en µg/m³ (NaN si la trama no lo trae). */
+    public float so2 = Float.NaN;
+    /** @brief Canales presentes en la última trama (bit 1 << ProtocoloTrama.CANAL_*). */
+    public int canales;
+
+    /**
+     * @brief Olvida los canales de la trama anterior antes de decodificar otra.
+     * () -> limpiarCanales() -> ()
+     */
+    void limpiarCanales() {
+        canales = 0;
+        co = Float.NaN;
+        no2 = Float.NaN;
+        so2 = Float.NaN;
+    }
+
+    /**
+     * @brief Escribe el valor (ya escalado) de un canal. CO2 y batería se redondean al entero.
+     * (canal:int, valor:float) -> asignar() -> ()
+     * @param canal Canal (ProtocoloTrama.CANAL_*).
+     * @param valor Valor en las unidades del canal.
+     */
+    public void asignar(int canal, float valor) {
+        switch (canal) {
+            case ProtocoloTrama.CANAL_O3: o3 = valor; break;
+            case ProtocoloTrama.CANAL_TEMPERATURA: temperatura = valor; break;
+            case ProtocoloTrama.CANAL_CO2: co2 = Math.round(valor); break;
+            case ProtocoloTrama.CANAL_BATERIA: bateria = Math.round(valor); break;
+            case ProtocoloTrama.CANAL_CO: co = valor; break;
+            case ProtocoloTrama.CANAL_NO2: no2 = valor; break;
+            case ProtocoloTrama.CANAL_SO2: so2 = valor; break;
+            default: return;
+        }
+        canales |= 1 << canal;
+    }
+
+    /**
+     * @brief Valor de un canal.
+     * (canal:int) -> valor() -> float
+     * @return El valor, o NaN si el canal no existe.
+     */
+    public float valor(int canal) {
+        switch (canal) {
+            case ProtocoloTrama.CANAL_O3: return o3;
+            case ProtocoloTrama.CANAL_TEMPERATURA: return temperatura;
+            case ProtocoloTrama.CANAL_CO2: return co2;
+            case ProtocoloTrama.CANAL_BATERIA: return bateria;
+            case ProtocoloTrama.CANAL_CO: return co;
+            case ProtocoloTrama.CANAL_NO2: return no2;
+            case ProtocoloTrama.CANAL_SO2: return so2;
+            default: return Float.NaN;
+        }
+    }
+
+    /** @brief true si la última trama traía el canal. */
+    public boolean tiene(int canal) {
+        return (canales & 1 << canal) != 0;
+    }
+
+    /**
+     * @brief Copia los valores de otra lectura en esta instancia (sin crear objetos).
+     * (otra:LecturaBeacon) -> copiarDe() -> ()
+     * @param otra Lectura de origen.
+     */
+    public void copiarDe(LecturaBeacon otra) {
+        this.o3 = otra.o3;
+        this.temperatura = otra.temperatura;
+        this.co2 = otra.co2;
+        this.bateria = otra.bateria;
+        this.co = otra.co;
+        this.no2 = otra.no2;
+        this.so2 = otra.so2;
+        this.canales = otra.canales;
+    }
+}
@@ -17,8 +17,9 @@ import java.util.Date;
  * Esta clase define la estructura de datos que se guarda como documento dentro de la subcolección
  * "mediciones" de cada sensor en Firestore, utilizada para mantener un historial de datos.
  *
- * @note El campo 'fecha' está anotado con @ServerTimestamp para asegurar que el servidor de Firebase
- * registre la hora exacta de la subida, garantizando precisión en el historial.
+ * @note El campo 'fecha' está anotado con @ServerTimestamp: si se sube a null, el servidor de Firebase
+ * registra la hora de la subida. Las lecturas que se suben por lotes (\ref AgrupadorEscrituras) la
+ * rellenan en el cliente con la hora de la medición, porque pueden esperar hasta 30 s en el lote.
  */
 public class LecturaSensor {
     /** @brief Nivel de Ozono (O3) medido, en partes por millón (ppm). */
@@ -33,9 +34,15 @@ public class LecturaSensor {
     public String ubicacion;
     /** @brief Estado de conexión del sensor ("Conectado" o "Desconectado") en el momento de la lectura. */
     public String estado;
+    /** @brief Monóxido de carbono en mg/m³; null si la trama del sensor no lo trae. */
+    public Float co;
+    /** @brief Dióxido de nitrógeno en µg/m³; null si la trama del sensor no lo trae. */
+    public Float no2;
+    /** @brief Dióxido de azufre en µg/m³; null si la trama del sensor no lo trae. */
+    public Float so2;
 
     /**
-     * @brief Timestamp del servidor que registra la hora exacta en la que la lectura fue subida a Firestore.
+     * @brief Hora de la lectura. Si es null, Firestore la rellena con la hora del servidor al subirla.
      * @see com.google.firebase.firestore.ServerTimestamp
      */
     @ServerTimestamp
@@ -65,4 +72,19 @@ public class LecturaSensor {
         this.estado = estado;
         // El campo 'fecha' se inicializa automáticamente por Firestore al subir el objeto.
     }
+
+    /**
+     * @brief Añade los gases opcionales de la lectura.
+     * (co:Float, no2:Float, so2:Float) -> gases() -> LecturaSensor
+     * @param co Monóxido de carbono (mg/m³), o null.
+     * @param no2 Dióxido de nitrógeno (µg/m³), o null.
+     * @param so2 Dióxido de azufre (µg/m³), o null.
+     * @return Esta lectura, para encadenar.
+     */
+    public LecturaSensor gases(Float co, Float no2, Float so2) {
+        this.co = co;
+        this.no2 = no2;
+        this.so2 = so2;
+        return this;
+    }
 }
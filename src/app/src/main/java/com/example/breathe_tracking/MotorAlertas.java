@@ -0,0 +1,451 @@
+/**
+ * @file MotorAlertas.java
+ * @brief Motor de reglas de alerta: tabla declarativa compilada en arrays primitivos y evaluada sin asignar memoria.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class MotorAlertas
+ * @brief Evalúa las lecturas de un sensor contra una tabla de reglas (canal, comparador, umbral,
+ * histéresis y duración mínima).
+ *
+ * Copyrigth © 2025
+ *
+ * Es la única fuente de los umbrales de alerta (\ref predeterminado: CO2 ≥ 1200, O3 ≥ 0.9,
+ * temperatura > 35, batería ≤ 15...). Las reglas se describen con \ref Regla (o se leen de un documento de configuración con
+ * \ref desdeDocumento) y se compilan en arrays primitivos con un paso fijo por regla. \ref evaluar
+ * recorre esos arrays sin crear objetos; el texto de la alerta solo se construye con \ref mensaje
+ * cuando una regla salta.
+ *
+ * Cada regla es una pequeña máquina de estados por sensor (\ref Estado):
+ * - **Inactiva:** si la condición se cumple durante la duración mínima, se activa (dispara).
+ * - **Activa:** se rearma cuando el valor sale de la banda de histéresis (por ejemplo, con
+ *   CO2 ≥ 1200 e histéresis 50, cuando baja de 1150). Así un valor que oscila en el umbral no
+ *   dispara una alerta en cada lectura.
+ *
+ * El motor es inmutable: para cambiar las reglas se crea otro y se sustituye la referencia.
+ */
+public final class MotorAlertas {
+
+    // --- Comparadores ---
+    /** @brief valor ≥ umbral. */
+    public static final int MAYOR_IGUAL = 0;
+    /** @brief valor > umbral. */
+    public static final int MAYOR = 1;
+    /** @brief valor ≤ umbral. */
+    public static final int MENOR_IGUAL = 2;
+    /** @brief valor < umbral. */
+    public static final int MENOR = 3;
+
+    /** @brief Máximo de reglas (la máscara de cambios de \ref evaluar es un int). */
+    public static final int MAX_REGLAS = 32;
+
+    // --- Tabla compilada: paso fijo por regla ---
+    private static final int E_CANAL = 0;
+    private static final int E_COMPARADOR = 1;
+    private static final int E_DURACION_MS = 2;
+    private static final int E_DECIMALES = 3;
+    private static final int E_SOLO_NOTIFICACION = 4;
+    private static final int E_CRITICA = 5;
+    private static final int PASO_ENTEROS = 6;
+    private static final int F_UMBRAL = 0;
+    private static final int F_REARME = 1;
+    private static final int PASO_UMBRALES = 2;
+
+    /** @brief Instante "sin empezar" en \ref Estado. */
+    private static final long SIN_INICIO = Long.MIN_VALUE;
+
+    /** @brief Reglas por defecto (los umbrales de siempre), compartidas por los métodos estáticos del servicio. */
+    private static final MotorAlertas PREDETERMINADO = porDefecto();
+
+    private final int numReglas;
+    /** @brief Canal, comparador, duración mínima (ms), decimales, "solo notificación" y "crítica" de cada regla. */
+    private final int[] enteros;
+    /** @brief Umbral de disparo y umbral de rearme (umbral -/+ histéresis) de cada regla. */
+    private final float[] umbrales;
+    // Textos: solo se leen cuando una regla salta
+    private final String[] titulos;
+    private final String[] plantillas;
+
+    /**
+     * @class Regla
+     * @brief Descripción de una regla antes de compilarla. Los valores se encadenan.
+     */
+    public static final class Regla {
+        private final int canal;
+        private final int comparador;
+        private final float umbral;
+        private float histeresis = 0f;
+        private long duracionMs = 0;
+        private String titulo;
+        private String plantilla;
+        private int decimales = 0;
+        private boolean soloNotificacion = false;
+        private boolean critica = false;
+
+        /**
+         * @brief Regla que salta en cuanto se cumple la condición, sin histéresis.
+         * (canal:int, comparador:int, umbral:float) -> Regla() -> ()
+         * @param canal Canal de \ref ProtocoloTrama (CANAL_*; los cuatro primeros son los de \ref FiltroCambios).
+         * @param comparador MAYOR_IGUAL, MAYOR, MENOR_IGUAL o MENOR.
+         * @param umbral Umbral en unidades del canal.
+         */
+        public Regla(int canal, int comparador, float umbral) {
+            if (canal < 0 || canal >= ProtocoloTrama.NUM_CANALES) throw new IllegalArgumentException("Canal no válido: " + canal);
+            if (comparador < MAYOR_IGUAL || comparador > MENOR) throw new IllegalArgumentException("Comparador no válido: " + comparador);
+            if (Float.isNaN(umbral)) throw new IllegalArgumentException("Umbral no válido");
+            this.canal = canal;
+            this.comparador = comparador;
+            this.umbral = umbral;
+            this.titulo = "Alerta";
+            this.plantilla = "Valor fuera de rango: {valor}";
+        }
+
+        /** @brief Cuánto debe volver el valor por debajo (o por encima) del umbral para rearmar la regla. */
+        public Regla histeresis(float valor) {
+            if (!(valor >= 0)) throw new IllegalArgumentException("Histéresis no válida: " + valor);
+            histeresis = valor;
+            return this;
+        }
+
+        /** @brief Tiempo que debe cumplirse la condición sin interrupción antes de disparar. */
+        public Regla duracionMs(long valor) {
+            if (valor < 0 || valor > Integer.MAX_VALUE) throw new IllegalArgumentException("Duración no válida: " + valor);
+            duracionMs = valor;
+            return this;
+        }
+
+        /**
+         * @brief Textos de la alerta.
+         * (titulo:String, plantilla:String, decimales:int) -> texto() -> Regla
+         * @param titulo Título de la notificación (ej: "Alerta de CO2").
+         * @param plantilla Mensaje; "{valor}" se sustituye por el valor medido.
+         * @param decimales Decimales con los que se escribe el valor.
+         */
+        public Regla texto(String titulo, String plantilla, int decimales) {
+            if (decimales < 0 || decimales > 6) throw new IllegalArgumentException("Decimales no válidos: " + decimales);
+            this.titulo = titulo;
+            this.plantilla = plantilla;
+            this.decimales = decimales;
+            return this;
+        }
+
+        /** @brief La alerta solo se notifica; no se añade a la lista de alertas (como la de batería). */
+        public Regla soloNotificacion() {
+            soloNotificacion = true;
+            return this;
+        }
+
+        /** @brief La alerta es crítica: su correo sale en cuanto salta, sin esperar al resumen (ver \ref ResumenAlertas). */
+        public Regla critica() {
+            critica = true;
+            return this;
+        }
+    }
+
+    /**
+     * @class Estado
+     * @brief Estado de las reglas para un sensor (reglas activas y desde cuándo se cumple cada condición).
+     * Tiene tamaño fijo: evaluar no asigna memoria aunque cambie el motor.
+     */
+    public static final class Estado {
+        private MotorAlertas motor;
+        private int activas = 0;
+        private final long[] desde = new long[MAX_REGLAS];
+
+        public Estado() {
+            Arrays.fill(desde, SIN_INICIO);
+        }
+
+        /** @brief true si la regla está activa (ha saltado y no se ha rearmado). */
+        public synchronized boolean activa(int regla) {
+            return (activas & (1 << regla)) != 0;
+        }
+
+        /** @brief Olvida las reglas activas (las condiciones vuelven a contar desde cero). */
+        public synchronized void reiniciar() {
+            activas = 0;
+            Arrays.fill(desde, SIN_INICIO);
+        }
+    }
+
+    /**
+     * @brief Compila una tabla de reglas.
+     * (reglas:List<Regla>) -> MotorAlertas() -> ()
+     * @param reglas Reglas en orden (el índice de cada una es el bit en la máscara de \ref evaluar).
+     */
+    public MotorAlertas(List<Regla> reglas) {
+        if (reglas.size() > MAX_REGLAS) throw new IllegalArgumentException("Demasiadas reglas: " + reglas.size());
+        numReglas = reglas.size();
+        enteros = new int[numReglas * PASO_ENTEROS];
+        umbrales = new float[numReglas * PASO_UMBRALES];
+        titulos = new String[numReglas];
+        plantillas = new String[numReglas];
+        for (int i = 0; i < numReglas; i++) {
+            Regla r = reglas.get(i);
+            int e = i * PASO_ENTEROS;
+            enteros[e + E_CANAL] = r.canal;
+            enteros[e + E_COMPARADOR] = r.comparador;
+            enteros[e + E_DURACION_MS] = (int) r.duracionMs;
+            enteros[e + E_DECIMALES] = r.decimales;
+            enteros[e + E_SOLO_NOTIFICACION] = r.soloNotificacion ? 1 : 0;
+            enteros[e + E_CRITICA] = r.critica ? 1 : 0;
+            int f = i * PASO_UMBRALES;
+            umbrales[f + F_UMBRAL] = r.umbral;
+            // Rearme: la condición deja de cumplirse con el umbral desplazado por la histéresis
+            boolean haciaArriba = r.comparador == MAYOR_IGUAL || r.comparador == MAYOR;
+            umbrales[f + F_REARME] = haciaArriba ? r.umbral - r.histeresis : r.umbral + r.histeresis;
+            titulos[i] = r.titulo;
+            plantillas[i] = r.plantilla;
+        }
+    }
+
+    /**
+     * @brief Reglas por defecto: los umbrales de siempre, con una pequeña histéresis y disparo inmediato.
+     * () -> porDefecto() -> MotorAlertas
+     */
+    public static MotorAlertas porDefecto() {
+        return new MotorAlertas(Arrays.asList(
+                new Regla(FiltroCambios.CANAL_CO2, MAYOR_IGUAL, 1200).histeresis(50)
+                        .texto("Alerta de CO2", "Nivel de CO2 elevado: {valor} ppm", 0),
+                new Regla(FiltroCambios.CANAL_O3, MAYOR_IGUAL, 0.9f).histeresis(0.05f)
+                        .texto("Alerta de O3", "Nivel de O3 elevado: {valor} ppm", 3),
+                new Regla(FiltroCambios.CANAL_TEMPERATURA, MAYOR, 35).histeresis(0.5f)
+                        .texto("Alerta de Temperatura", "Temperatura elevada: {valor} ºC", 1),
+                new Regla(FiltroCambios.CANAL_BATERIA, MENOR_IGUAL, 15).histeresis(5)
+                        .texto("Alerta de Batería", "Nivel de batería bajo: {valor}%", 0).soloNotificacion()));
+    }
+
+    /**
+     * @brief Motor compartido con las reglas por defecto.
+     * () -> predeterminado() -> MotorAlertas
+     */
+    public static MotorAlertas predeterminado() {
+        return PREDETERMINADO;
+    }
+
+    // --- Evaluación ---
+
+    /**
+     * @brief Evalúa una lectura y actualiza el estado de las reglas del sensor. No asigna memoria.
+     * (estado:Estado, lectura:LecturaBeacon, ahoraMs:long) -> evaluar() -> int
+     * @param estado Estado de las reglas del sensor (si viene de otro motor, se reinicia).
+     * @param lectura Lectura recibida.
+     * @param ahoraMs Instante de la lectura (reloj monótono).
+     * @return Máscara con un bit por regla que ha cambiado (disparada o rearmada; ver \ref Estado#activa).
+     */
+    public int evaluar(Estado estado, LecturaBeacon lectura, long ahoraMs) {
+        synchronized (estado) {
+            if (estado.motor != this) {
+                estado.motor = this;
+                estado.activas = 0;
+                Arrays.fill(estado.desde, SIN_INICIO);
+            }
+            int cambios = 0;
+            for (int i = 0; i < numReglas; i++) {
+                int e = i * PASO_ENTEROS;
+                int f = i * PASO_UMBRALES;
+                int bit = 1 << i;
+                int comparador = enteros[e + E_COMPARADOR];
+                float valor = lectura.valor(enteros[e + E_CANAL]);
+                // Un canal que la trama no trae (CO, NO2 o SO2 en la trama original) ni dispara ni rearma
+                if (Float.isNaN(valor)) continue;
+                if ((estado.activas & bit) == 0) {
+                    if (!cumple(comparador, valor, umbrales[f + F_UMBRAL])) {
+                        estado.desde[i] = SIN_INICIO;
+                        continue;
+                    }
+                    if (estado.desde[i] == SIN_INICIO) estado.desde[i] = ahoraMs;
+                    if (ahoraMs - estado.desde[i] >= enteros[e + E_DURACION_MS]) {
+                        estado.activas |= bit;
+                        cambios |= bit;
+                    }
+                } else if (!cumple(comparador, valor, umbrales[f + F_REARME])) {
+                    estado.activas &= ~bit;
+                    estado.desde[i] = SIN_INICIO;
+                    cambios |= bit;
+                }
+            }
+            return cambios;
+        }
+    }
+
+    /**
+     * @brief Indica si un valor cumple la condición de disparo de alguna regla del canal
+     * (sin tener en cuenta histéresis ni duración).
+     * (canal:int, valor:float) -> supera() -> boolean
+     */
+    public boolean supera(int canal, float valor) {
+        for (int i = 0; i < numReglas; i++) {
+            int e = i * PASO_ENTEROS;
+            if (enteros[e + E_CANAL] == canal && cumple(enteros[e + E_COMPARADOR], valor, umbrales[i * PASO_UMBRALES + F_UMBRAL])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean cumple(int comparador, float valor, float umbral) {
+        switch (comparador) {
+            case MAYOR_IGUAL: return valor >= umbral;
+            case MAYOR: return valor > umbral;
+            case MENOR_IGUAL: return valor <= umbral;
+            default: return valor < umbral;
+        }
+    }
+
+    // --- Datos de las reglas (para quien atiende una alerta) ---
+
+    /** @brief Número de reglas. */
+    public int getNumReglas() {
+        return numReglas;
+    }
+
+    /** @brief Canal (CANAL_* de \ref ProtocoloTrama) de una regla. */
+    public int canal(int regla) {
+        return enteros[regla * PASO_ENTEROS + E_CANAL];
+    }
+
+    /** @brief true si la alerta de la regla solo se notifica (no va a la lista de alertas). */
+    public boolean soloNotificacion(int regla) {
+        return enteros[regla * PASO_ENTEROS + E_SOLO_NOTIFICACION] != 0;
+    }
+
+    /** @brief true si la alerta de la regla es crítica (su correo no espera al resumen). */
+    public boolean critica(int regla) {
+        return enteros[regla * PASO_ENTEROS + E_CRITICA] != 0;
+    }
+
+    /** @brief Título de la notificación de una regla. */
+    public String titulo(int regla) {
+        return titulos[regla];
+    }
+
+    /**
+     * @brief Texto de la alerta con el valor de la lectura. Solo se llama cuando la regla salta.
+     * (regla:int, lectura:LecturaBeacon) -> mensaje() -> String
+     * @return La plantilla con "{valor}" sustituido por el valor del canal.
+     */
+    public String mensaje(int regla, LecturaBeacon lectura) {
+        int e = regla * PASO_ENTEROS;
+        float valor = lectura.valor(enteros[e + E_CANAL]);
+        int decimales = enteros[e + E_DECIMALES];
+        String texto = decimales == 0
+                ? Integer.toString(Math.round(valor))
+                : String.format(Locale.getDefault(), "%." + decimales + "f", valor);
+        return plantillas[regla].replace("{valor}", texto);
+    }
+
+    // --- Documento de configuración ---
+
+    /**
+     * @brief Compila las reglas de un documento de configuración (por ejemplo, el campo "reglas" de
+     * configuracion/alertas en Firestore): una lista de mapas con las claves
+     *
+     *     canal ("co2", "o3", "temperatura", "bateria", "co", "no2", "so2"), comparador (">=", ">", "<=", "<"), umbral,
+     *     histeresis (opcional), duracion_s (opcional), titulo, mensaje (con "{valor}"),
+     *     decimales (opcional), solo_notificacion (opcional) y critica (opcional).
+     *
+     * (reglas:Object) -> desdeDocumento() -> MotorAlertas
+     * @param reglas Valor del campo (List de Map, tal y como lo devuelve Firestore).
+     * @return El motor compilado.
+     * @throws IllegalArgumentException Si el documento no tiene el formato esperado (se indica qué regla falla).
+     */
+    public static MotorAlertas desdeDocumento(Object reglas) {
+        if (!(reglas instanceof List)) throw new IllegalArgumentException("Se esperaba una lista de reglas");
+        List<?> lista = (List<?>) reglas;
+        List<Regla> compiladas = new ArrayList<>(lista.size());
+        for (int i = 0; i < lista.size(); i++) {
+            if (!(lista.get(i) instanceof Map)) throw new IllegalArgumentException("Regla " + i + ": se esperaba un mapa");
+            try {
+                compiladas.add(regla((Map<?, ?>) lista.get(i)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Regla " + i + ": " + e.getMessage(), e);
+            }
+        }
+        return new MotorAlertas(Collections.unmodifiableList(compiladas));
+    }
+
+    private static Regla regla(Map<?, ?> mapa) {
+        Regla r = new Regla(canal(texto(mapa, "canal", null)), comparador(texto(mapa, "comparador", null)),
+                (float) numero(mapa, "umbral", Double.NaN));
+        r.histeresis((float) numero(mapa, "histeresis", 0));
+        r.duracionMs(Math.round(numero(mapa, "duracion_s", 0) * 1000));
+        r.texto(texto(mapa, "titulo", "Alerta"), texto(mapa, "mensaje", "Valor fuera de rango: {valor}"),
+                (int) numero(mapa, "decimales", 0));
+        Object solo = mapa.get("solo_notificacion");
+        if (solo != null && !(solo instanceof Boolean)) throw new IllegalArgumentException("solo_notificacion no es booleano");
+        if (Boolean.TRUE.equals(solo)) r.soloNotificacion();
+        Object critica = mapa.get("critica");
+        if (critica != null && !(critica instanceof Boolean)) throw new IllegalArgumentException("critica no es booleano");
+        if (Boolean.TRUE.equals(critica)) r.critica();
+        return r;
+    }
+
+    private static String texto(Map<?, ?> mapa, String clave, String porDefecto) {
+        Object valor = mapa.get(clave);
+        if (valor == null) {
+            if (porDefecto == null) throw new IllegalArgumentException("Falta \"" + clave + "\"");
+            return porDefecto;
+        }
+        if (!(valor instanceof String)) throw new IllegalArgumentException("\"" + clave + "\" no es un texto");
+        return (String) valor;
+    }
+
+    private static double numero(Map<?, ?> mapa, String clave, double porDefecto) {
+        Object valor = mapa.get(clave);
+        if (valor == null) {
+            if (Double.isNaN(porDefecto)) throw new IllegalArgumentException("Falta \"" + clave + "\"");
+            return porDefecto;
+        }
+        // Firestore devuelve los enteros como Long y los decimales como Double
+        if (!(valor instanceof Number)) throw new IllegalArgumentException("\"" + clave + "\" no es un número");
+        return ((Number) valor).doubleValue();
+    }
+
+    private static int canal(String nombre) {
+        switch (nombre.trim().toLowerCase(Locale.ROOT)) {
+            case "co2": return FiltroCambios.CANAL_CO2;
+            case "o3":
+            case "ozono": return FiltroCambios.CANAL_O3;
+            case "temperatura": return FiltroCambios.CANAL_TEMPERATURA;
+            case "bateria": return FiltroCambios.CANAL_BATERIA;
+            case "co": return ProtocoloTrama.CANAL_CO;
+            case "no2": return ProtocoloTrama.CANAL_NO2;
+            case "so2": return ProtocoloTrama.CANAL_SO2;
+            default: throw new IllegalArgumentException("Canal desconocido: " + nombre);
+        }
+    }
+
+    private static int comparador(String simbolo) {
+        switch (simbolo.trim()) {
+            case ">=": return MAYOR_IGUAL;
+            case ">": return MAYOR;
+            case "<=": return MENOR_IGUAL;
+            case "<": return MENOR;
+            default: throw new IllegalArgumentException("Comparador desconocido: " + simbolo);
+        }
+    }
+
+    /** @brief Resumen legible de la tabla para el log. */
+    public String resumen() {
+        StringBuilder sb = new StringBuilder("Reglas de alerta (").append(numReglas).append("):");
+        for (int i = 0; i < numReglas; i++) {
+            int e = i * PASO_ENTEROS;
+            sb.append(' ').append(titulos[i]).append(' ')
+                    .append(new String[]{">=", ">", "<=", "<"}[enteros[e + E_COMPARADOR]]).append(' ')
+                    .append(umbrales[i * PASO_UMBRALES + F_UMBRAL])
+                    .append(" (rearme ").append(umbrales[i * PASO_UMBRALES + F_REARME])
+                    .append(", ").append(enteros[e + E_DURACION_MS] / 1000).append(" s);");
+        }
+        return sb.toString();
+    }
+}
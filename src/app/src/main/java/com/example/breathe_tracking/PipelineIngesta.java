@@ -0,0 +1,288 @@
+/**
+ * @file PipelineIngesta.java
+ * @brief Hilo de procesamiento de lecturas: decodifica, evalúa y persiste los paquetes de \ref ColaIngesta.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @class PipelineIngesta
+ * @brief Saca el procesamiento de las lecturas del hilo principal.
+ *
+ * Copyrigth © 2025
+ *
+ * El callback del escaneo solo copia el anuncio en la \ref ColaIngesta (\ref ofrecer) y vuelve. Un
+ * hilo propio vacía la cola y ejecuta por cada paquete las tres etapas de \ref Etapas:
+ *
+ * 1. **decodificar:** bytes crudos -> \ref LecturaBeacon (reutilizada, sin asignaciones).
+ * 2. **evaluar:** conexión, RSSI, deduplicación, alertas y UI. Decide si hay que persistir.
+ * 3. **persistir:** subida a Firestore.
+ *
+ * Se mide la latencia de cada etapa y la profundidad de la cola. La clase no depende de Android,
+ * así que se puede probar en la JVM con una fuente de paquetes simulada (ver PipelineIngestaTest).
+ */
+public class PipelineIngesta {
+
+    /**
+     * @brief Etapas que el pipeline ejecuta sobre cada paquete, siempre desde el hilo de procesamiento.
+     */
+    public interface Etapas {
+        /**
+         * @brief Decodifica el paquete.
+         * @return false si el paquete no contiene una trama válida (no se ejecutan más etapas).
+         */
+        boolean decodificar(ColaIngesta.Ranura paquete, LecturaBeacon lectura);
+
+        /**
+         * @brief Actualiza el estado del sensor y comprueba alertas.
+         * @return true si la lectura se debe persistir.
+         */
+        boolean evaluar(ColaIngesta.Ranura paquete, LecturaBeacon lectura);
+
+        /** @brief Persiste la lectura. */
+        void persistir(ColaIngesta.Ranura paquete, LecturaBeacon lectura);
+
+        /**
+         * @brief Una etapa ha lanzado una excepción con este paquete (el pipeline sigue con el siguiente).
+         * Se llama desde el hilo de procesamiento; el servicio lo registra en el log.
+         */
+        void alFallar(ColaIngesta.Ranura paquete, RuntimeException error);
+    }
+
+    // Índices de las etapas para las métricas
+    /** @brief Etapa de decodificación. */
+    public static final int ETAPA_DECODIFICAR = 0;
+    /** @brief Etapa de evaluación (estado y alertas). */
+    public static final int ETAPA_EVALUAR = 1;
+    /** @brief Etapa de persistencia. */
+    public static final int ETAPA_PERSISTIR = 2;
+    /** @brief Nombres de las etapas para el resumen. */
+    private static final String[] NOMBRES_ETAPAS = {"decodificar", "evaluar", "persistir"};
+
+    /** @brief Espera máxima del hilo dormido por si se pierde un aviso (ns). */
+    private static final long ESPERA_MAXIMA_NS = 100_000_000L;
+
+    private final ColaIngesta cola;
+    private final Etapas etapas;
+
+    // Objetos propiedad del hilo consumidor
+    /** @brief Ranura donde se copia cada paquete extraído. */
+    private final ColaIngesta.Ranura paquete = new ColaIngesta.Ranura();
+    /** @brief Lectura reutilizable donde se decodifica cada paquete. */
+    private final LecturaBeacon lectura = new LecturaBeacon();
+
+    /** @brief Hilo de procesamiento (null si no se ha iniciado). */
+    private volatile Thread hilo;
+    /** @brief false para pedir al hilo que termine. */
+    private volatile boolean activo = false;
+    /** @brief true mientras el hilo está aparcado esperando paquetes. */
+    private volatile boolean durmiendo = false;
+
+    // Métricas (las escribe solo el hilo de procesamiento)
+    /** @brief Veces que se ha ejecutado cada etapa. */
+    private final long[] ejecuciones = new long[3];
+    /** @brief Tiempo acumulado por etapa (ns). */
+    private final long[] nanosAcumulados = new long[3];
+    /** @brief Peor latencia observada por etapa (ns). */
+    private final long[] nanosMaximos = new long[3];
+    /** @brief Paquetes extraídos de la cola. */
+    private volatile long procesados = 0;
+    /** @brief Paquetes cuya decodificación ha fallado. */
+    private volatile long invalidos = 0;
+    /** @brief Excepciones lanzadas por alguna etapa (el paquete se pierde pero el hilo sigue). */
+    private final AtomicLong errores = new AtomicLong();
+    /** @brief Última excepción capturada, para diagnóstico. */
+    private volatile RuntimeException ultimoError;
+
+    /**
+     * @brief Constructor del pipeline.
+     * (cola:ColaIngesta, etapas:Etapas) -> PipelineIngesta() -> ()
+     * @param cola Cola de la que se extraen los paquetes.
+     * @param etapas Implementación de las etapas de procesamiento.
+     */
+    public PipelineIngesta(ColaIngesta cola, Etapas etapas) {
+        this.cola = cola;
+        this.etapas = etapas;
+    }
+
+    /**
+     * @brief Arranca el hilo de procesamiento. No hace nada si ya estaba arrancado.
+     * (nombreHilo:String) -> iniciar() -> ()
+     * @param nombreHilo Nombre del hilo (para depuración).
+     */
+    public synchronized void iniciar(String nombreHilo) {
+        if (hilo != null) return;
+        activo = true;
+        Thread t = new Thread(this::bucle, nombreHilo);
+        t.setDaemon(true);
+        hilo = t;
+        t.start();
+    }
+
+    /**
+     * @brief Detiene el hilo tras procesar lo que quede en la cola y espera a que termine.
+     * (esperaMs:long) -> detener() -> ()
+     * @param esperaMs Tiempo máximo de espera en milisegundos.
+     */
+    public synchronized void detener(long esperaMs) {
+        Thread t = hilo;
+        if (t == null) return;
+        activo = false;
+        LockSupport.unpark(t);
+        try {
+            t.join(esperaMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        hilo = null;
+    }
+
+    /**
+     * @brief Encola un paquete y despierta al hilo de procesamiento si estaba dormido (solo desde el hilo productor).
+     * (clave:int, datos:byte[], rssi:int, instanteNanos:long) -> ofrecer() -> boolean
+     * @param clave Índice del sensor emisor.
+     * @param datos Bytes del anuncio (se copian).
+     * @param rssi RSSI del anuncio.
+     * @param instanteNanos Instante de recepción.
+     * @return false si el paquete se ha descartado.
+     */
+    public boolean ofrecer(int clave, byte[] datos, int rssi, long instanteNanos) {
+        boolean encolado = cola.ofrecer(clave, datos, rssi, instanteNanos);
+        // La cola se publica antes de leer "durmiendo": el consumidor o ve el paquete o recibe el aviso
+        if (durmiendo) LockSupport.unpark(hilo);
+        return encolado;
+    }
+
+    private void bucle() {
+        while (activo) {
+            if (procesarPendientes() > 0) continue;
+            durmiendo = true;
+            if (cola.profundidad() == 0 && activo) LockSupport.parkNanos(this, ESPERA_MAXIMA_NS);
+            durmiendo = false;
+        }
+        procesarPendientes(); // Vacía lo que quede antes de terminar
+    }
+
+    /**
+     * @brief Procesa todos los paquetes pendientes en el hilo que lo llama.
+     * Lo usa el hilo de procesamiento; los tests lo llaman directamente sin arrancar el hilo.
+     * () -> procesarPendientes() -> int
+     * @return Número de paquetes procesados.
+     */
+    public int procesarPendientes() {
+        int n = 0;
+        while (cola.tomar(paquete)) {
+            n++;
+            procesar();
+        }
+        return n;
+    }
+
+    private void procesar() {
+        procesados++;
+        try {
+            long t0 = System.nanoTime();
+            boolean valido = etapas.decodificar(paquete, lectura);
+            long t1 = System.nanoTime();
+            registrar(ETAPA_DECODIFICAR, t1 - t0);
+            if (!valido) {
+                invalidos++;
+                return;
+            }
+            boolean persistir = etapas.evaluar(paquete, lectura);
+            long t2 = System.nanoTime();
+            registrar(ETAPA_EVALUAR, t2 - t1);
+            if (!persistir) return;
+            etapas.persistir(paquete, lectura);
+            registrar(ETAPA_PERSISTIR, System.nanoTime() - t2);
+        } catch (RuntimeException e) {
+            errores.incrementAndGet();
+            ultimoError = e;
+            etapas.alFallar(paquete, e);
+        }
+    }
+
+    private void registrar(int etapa, long nanos) {
+        ejecuciones[etapa]++;
+        nanosAcumulados[etapa] += nanos;
+        if (nanos > nanosMaximos[etapa]) nanosMaximos[etapa] = nanos;
+    }
+
+    // --- Métricas ---
+
+    /** @brief Paquetes pendientes en la cola en este momento. */
+    public int profundidadCola() {
+        return cola.profundidad();
+    }
+
+    /** @brief Paquetes extraídos de la cola y procesados. */
+    public long getProcesados() {
+        return procesados;
+    }
+
+    /** @brief Paquetes sin trama válida. */
+    public long getInvalidos() {
+        return invalidos;
+    }
+
+    /** @brief Excepciones capturadas en las etapas. */
+    public long getErrores() {
+        return errores.get();
+    }
+
+    /** @brief Última excepción capturada en una etapa, o null. */
+    public RuntimeException getUltimoError() {
+        return ultimoError;
+    }
+
+    /**
+     * @brief Número de veces que se ha ejecutado una etapa.
+     * (etapa:int) -> getEjecuciones() -> long
+     * @param etapa ETAPA_DECODIFICAR, ETAPA_EVALUAR o ETAPA_PERSISTIR.
+     */
+    public long getEjecuciones(int etapa) {
+        return ejecuciones[etapa];
+    }
+
+    /**
+     * @brief Latencia media de una etapa en nanosegundos.
+     * (etapa:int) -> getLatenciaMediaNanos() -> long
+     * @param etapa ETAPA_DECODIFICAR, ETAPA_EVALUAR o ETAPA_PERSISTIR.
+     * @return Media en ns, o 0 si la etapa no se ha ejecutado.
+     */
+    public long getLatenciaMediaNanos(int etapa) {
+        long n = ejecuciones[etapa];
+        return n == 0 ? 0 : nanosAcumulados[etapa] / n;
+    }
+
+    /**
+     * @brief Peor latencia observada en una etapa en nanosegundos.
+     * (etapa:int) -> getLatenciaMaximaNanos() -> long
+     * @param etapa ETAPA_DECODIFICAR, ETAPA_EVALUAR o ETAPA_PERSISTIR.
+     */
+    public long getLatenciaMaximaNanos(int etapa) {
+        return nanosMaximos[etapa];
+    }
+
+    /**
+     * @brief Resumen legible de las métricas para el log.
+     * () -> resumen() -> String
+     * @return Texto con paquetes, cola y latencias por etapa.
+     */
+    public String resumen() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Ingesta: ").append(procesados).append(" paquetes (").append(invalidos).append(" inválidos, ")
+                .append(errores.get()).append(" errores). Cola ").append(cola.getPolitica())
+                .append(": profundidad ").append(cola.profundidad()).append(", máx. ").append(cola.getProfundidadMaxima())
+                .append(", descartados ").append(cola.getDescartados()).append(", fusionados ").append(cola.getFusionados()).append('.');
+        for (int i = 0; i < NOMBRES_ETAPAS.length; i++) {
+            sb.append(String.format(Locale.ROOT, " %s: %d x %.1f us (máx. %.1f us).", NOMBRES_ETAPAS[i],
+                    ejecuciones[i], getLatenciaMediaNanos(i) / 1000.0, nanosMaximos[i] / 1000.0));
+        }
+        return sb.toString();
+    }
+}
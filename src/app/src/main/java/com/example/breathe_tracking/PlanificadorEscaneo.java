@@ -0,0 +1,457 @@
+/**
+ * @file PlanificadorEscaneo.java
+ * @brief Planificador adaptativo del escaneo BLE: aprende el intervalo de anuncio de cada sensor y abre ventanas cortas.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * @class PlanificadorEscaneo
+ * @brief Decide cuándo y en qué modo escanea el servicio, en lugar de mantener SCAN_MODE_LOW_POWER encendido siempre.
+ *
+ * Copyrigth © 2025
+ *
+ * Funcionamiento:
+ * 1. **Aprendizaje:** mientras algún sensor no tenga un intervalo de anuncio fiable se escanea de
+ *    forma continua en BAJA_LATENCIA (si el sensor no aparece, en BAJO_CONSUMO).
+ * 2. **Ventanas:** con los intervalos aprendidos se predice el próximo anuncio de cada sensor y se
+ *    abre una ventana corta en BAJA_LATENCIA alrededor de él. La ventana se cierra en cuanto se ha
+ *    oído a todos los sensores.
+ * 3. **Retroceso:** si las lecturas no cambian, el periodo entre ventanas se duplica hasta
+ *    \ref PERIODO_MAXIMO_MS; un cambio lo devuelve a \ref PERIODO_MINIMO_MS.
+ * 4. Si las ventanas no compensan (anuncios lentos o sensores desfasados) se escanea en continuo en EQUILIBRADO.
+ *
+ * Android bloquea a la app si arranca más de 5 escaneos en 30 segundos, así que cada arranque se
+ * anota en un anillo de 5 instantes y no se arranca otro hasta que el más antiguo tenga 30 s.
+ *
+ * El tiempo de radio encendida se estima con el ciclo de trabajo de cada modo y se compara con el
+ * escaneo continuo en BAJO_CONSUMO (\ref getRadioReferenciaMs).
+ *
+ * No depende de Android: el reloj y la radio se inyectan, y el servicio llama a \ref planificar
+ * desde un Handler con la espera que devuelve.
+ */
+public class PlanificadorEscaneo {
+
+    /**
+     * @brief Modos de escaneo (equivalen a ScanSettings.SCAN_MODE_*), con su ciclo de trabajo aproximado.
+     */
+    public enum Modo {
+        /** @brief SCAN_MODE_LOW_POWER: 512 ms de cada 5120 ms. */
+        BAJO_CONSUMO(0.10f),
+        /** @brief SCAN_MODE_BALANCED: 1024 ms de cada 4096 ms. */
+        EQUILIBRADO(0.25f),
+        /** @brief SCAN_MODE_LOW_LATENCY: escaneo continuo. */
+        BAJA_LATENCIA(1.0f);
+
+        /** @brief Fracción del tiempo con la radio escuchando. */
+        public final float cicloTrabajo;
+
+        Modo(float cicloTrabajo) {
+            this.cicloTrabajo = cicloTrabajo;
+        }
+    }
+
+    /** @brief Control de la radio: arrancar y detener el escaneo. */
+    public interface Radio {
+        void arrancar(Modo modo);
+        void detener();
+    }
+
+    // --- Constantes ---
+    /** @brief Arranques de escaneo permitidos por Android en \ref VENTANA_ARRANQUES_MS. */
+    public static final int MAX_ARRANQUES = 5;
+    /** @brief Ventana de tiempo del límite de arranques (30 segundos). */
+    public static final long VENTANA_ARRANQUES_MS = 30_000;
+    /** @brief Periodo mínimo entre ventanas: una ventana por arranque permitido. */
+    static final long PERIODO_MINIMO_MS = VENTANA_ARRANQUES_MS / MAX_ARRANQUES;
+    /** @brief Periodo máximo entre ventanas (la mitad del watchdog del servicio). */
+    static final long PERIODO_MAXIMO_MS = 30_000;
+    /** @brief Intervalos medidos necesarios para dar por aprendido un sensor. */
+    static final int MUESTRAS_APRENDIZAJE = 3;
+    /** @brief Margen fijo a cada lado del anuncio esperado. */
+    static final long MARGEN_MS = 150;
+    /** @brief Si un sensor en aprendizaje no se oye en este tiempo se escanea en BAJO_CONSUMO. */
+    static final long AUSENCIA_MS = 20_000;
+    /** @brief Ventanas seguidas sin oír a un sensor tras las que se vuelve a aprender su intervalo. */
+    static final int FALLOS_PARA_REAPRENDER = 2;
+    /** @brief Cada cuánto se reevalúa el escaneo continuo. */
+    static final long PASO_CONTINUO_MS = 2_000;
+    /** @brief Anuncios más próximos que esto son el mismo evento (p. ej. respuesta de escaneo). */
+    private static final long INTERVALO_MINIMO_MS = 20;
+    /** @brief Factor de suavizado del intervalo aprendido. */
+    private static final float ALPHA_INTERVALO = 0.25f;
+    /** @brief Deriva admitida del reloj del sensor al extrapolar (1 %). */
+    private static final long DIVISOR_DERIVA = 100;
+    private static final long NUNCA = Long.MIN_VALUE / 2;
+
+    private final Reloj reloj;
+    private final Radio radio;
+
+    // --- Estado por sensor (por índice de registro) ---
+    private final boolean[] registrado;
+    private final long[] ultimoAnuncio;
+    private final long[] sesionUltimo;
+    private final float[] intervalo;
+    private final int[] muestras;
+    private final boolean[] oidoEnVentana;
+    private final int[] fallos;
+    private int sensores = 0;
+
+    // --- Estado de la radio ---
+    private boolean escaneando = false;
+    private Modo modoActual = null;
+    /** @brief Se incrementa en cada arranque: dos anuncios de la misma sesión son consecutivos. */
+    private long sesion = 0;
+    private boolean enVentana = false;
+    private boolean ventanaExtendida = false;
+    private long inicioVentana;
+    private long finVentana;
+    private long proximaVentana = NUNCA;
+    private long periodo = PERIODO_MINIMO_MS;
+    private boolean hayCambio = false;
+    private final long inicioMs;
+
+    // --- Límite de arranques ---
+    /** @brief Instantes de los últimos arranques; \ref posArranque apunta al más antiguo. */
+    private final long[] arranques = new long[MAX_ARRANQUES];
+    private int posArranque = 0;
+
+    // --- Métricas ---
+    private final long[] msPorModo = new long[Modo.values().length];
+    private long ultimoContable;
+    private long totalArranques = 0;
+    private long ventanasAbiertas = 0;
+
+    /**
+     * @brief Constructor del planificador.
+     * (reloj:Reloj, radio:Radio, maxSensores:int) -> PlanificadorEscaneo() -> ()
+     * @param reloj Reloj monótono.
+     * @param radio Control del escáner.
+     * @param maxSensores Número máximo de sensores (índices de \ref RegistroSensores).
+     */
+    public PlanificadorEscaneo(Reloj reloj, Radio radio, int maxSensores) {
+        this.reloj = reloj;
+        this.radio = radio;
+        registrado = new boolean[maxSensores];
+        ultimoAnuncio = new long[maxSensores];
+        sesionUltimo = new long[maxSensores];
+        intervalo = new float[maxSensores];
+        muestras = new int[maxSensores];
+        oidoEnVentana = new boolean[maxSensores];
+        fallos = new int[maxSensores];
+        Arrays.fill(ultimoAnuncio, NUNCA);
+        Arrays.fill(arranques, NUNCA);
+        inicioMs = reloj.ahoraMs();
+        ultimoContable = inicioMs;
+    }
+
+    /**
+     * @brief Añade un sensor al conjunto que hay que oír.
+     * (indice:int) -> registrarSensor() -> ()
+     * @param indice Índice de registro del sensor.
+     */
+    public synchronized void registrarSensor(int indice) {
+        if (indice < 0 || indice >= registrado.length || registrado[indice]) return;
+        registrado[indice] = true;
+        sensores++;
+    }
+
+    /**
+     * @brief Anota la recepción de un anuncio de un sensor (desde el callback del escaneo).
+     * (indice:int, instanteMs:long) -> registrarAnuncio() -> boolean
+     * @param indice Índice del sensor.
+     * @param instanteMs Instante de recepción en el reloj del planificador.
+     * @return true si hay una ventana abierta y ya se ha oído a todos los sensores (conviene llamar a \ref planificar).
+     */
+    public synchronized boolean registrarAnuncio(int indice, long instanteMs) {
+        if (indice < 0 || indice >= registrado.length || !registrado[indice]) return false;
+        long anterior = ultimoAnuncio[indice];
+        long delta = instanteMs - anterior;
+        if (anterior != NUNCA && delta >= INTERVALO_MINIMO_MS) {
+            if (muestras[indice] == 0) {
+                // Primera medida: solo vale si los dos anuncios son consecutivos en escaneo continuo
+                if (sesionUltimo[indice] == sesion && escaneando && modoActual == Modo.BAJA_LATENCIA && delta < AUSENCIA_MS) {
+                    intervalo[indice] = delta;
+                    muestras[indice] = 1;
+                }
+            } else {
+                // Entre ventanas han pasado n intervalos: se estima el intervalo como delta / n
+                float actual = intervalo[indice];
+                long n = Math.max(1, Math.round(delta / actual));
+                float medida = (float) delta / n;
+                if (Math.abs(medida - actual) < actual * 0.25f) {
+                    intervalo[indice] = ALPHA_INTERVALO * medida + (1 - ALPHA_INTERVALO) * actual;
+                    muestras[indice]++;
+                }
+            }
+        }
+        if (delta >= INTERVALO_MINIMO_MS || anterior == NUNCA) ultimoAnuncio[indice] = instanteMs;
+        sesionUltimo[indice] = sesion;
+        if (!enVentana) return false;
+        oidoEnVentana[indice] = true;
+        fallos[indice] = 0;
+        return todosOidos();
+    }
+
+    /**
+     * @brief Anota que las mediciones de un sensor han cambiado (las ventanas vuelven al periodo mínimo).
+     * (indice:int) -> registrarCambio() -> ()
+     * @param indice Índice del sensor.
+     */
+    public synchronized void registrarCambio(int indice) {
+        hayCambio = true;
+    }
+
+    /**
+     * @brief Aplica la política de escaneo en el instante actual: arranca, cambia o detiene la radio.
+     * () -> planificar() -> long
+     * @return Milisegundos hasta la siguiente llamada.
+     */
+    public synchronized long planificar() {
+        long ahora = reloj.ahoraMs();
+        contabilizar(ahora);
+
+        Modo continuo = modoContinuo(ahora);
+        if (continuo != null) {
+            enVentana = false;
+            proximaVentana = NUNCA;
+            if (!escaneando || modoActual != continuo) {
+                if (!puedeArrancar(ahora)) return esperaArranque(ahora);
+                arrancar(continuo, ahora);
+            }
+            return PASO_CONTINUO_MS;
+        }
+
+        if (escaneando && enVentana) {
+            if (todosOidos()) {
+                cerrarVentana(ahora);
+            } else if (ahora >= finVentana) {
+                if (!ventanaExtendida) {
+                    // Alguien no ha anunciado a tiempo: se alarga una vez un intervalo completo
+                    ventanaExtendida = true;
+                    finVentana = ahora + (long) intervaloMaximo() + MARGEN_MS;
+                    return finVentana - ahora;
+                }
+                cerrarVentana(ahora);
+                if (modoContinuo(ahora) != null) return 0; // Algún sensor vuelve a aprendizaje
+            } else {
+                return finVentana - ahora;
+            }
+        } else if (escaneando) {
+            // Venimos de escaneo continuo: se para la radio y se planifica la primera ventana
+            detener(ahora);
+            proximaVentana = inicioPrevisto(ahora);
+        }
+
+        if (proximaVentana == NUNCA) proximaVentana = inicioPrevisto(ahora);
+        if (ahora < proximaVentana) return proximaVentana - ahora;
+        if (!puedeArrancar(ahora)) return esperaArranque(ahora);
+        abrirVentana(ahora);
+        return finVentana - ahora;
+    }
+
+    /**
+     * @brief Detiene la radio (al parar el servicio).
+     * () -> detener() -> ()
+     */
+    public synchronized void detener() {
+        long ahora = reloj.ahoraMs();
+        contabilizar(ahora);
+        if (escaneando) detener(ahora);
+        enVentana = false;
+    }
+
+    // --- Política ---
+
+    /**
+     * @brief Modo de escaneo continuo que toca ahora, o null si se puede trabajar por ventanas.
+     */
+    private Modo modoContinuo(long ahora) {
+        if (sensores == 0) return Modo.BAJO_CONSUMO;
+        boolean aprendiendo = false;
+        boolean algunoPresente = false;
+        for (int i = 0; i < registrado.length; i++) {
+            if (!registrado[i] || muestras[i] >= MUESTRAS_APRENDIZAJE) continue;
+            aprendiendo = true;
+            if (ahora - Math.max(ultimoAnuncio[i], inicioMs) < AUSENCIA_MS) algunoPresente = true;
+        }
+        if (aprendiendo) return algunoPresente ? Modo.BAJA_LATENCIA : Modo.BAJO_CONSUMO;
+        // Si una ventana (en el peor caso, un intervalo completo) ocuparía más de la mitad del periodo no compensa
+        if ((intervaloMaximo() + 2 * MARGEN_MS) * 2 > periodo) return Modo.EQUILIBRADO;
+        return null;
+    }
+
+    /** @brief Anuncio esperado de un sensor no anterior a \p desde. */
+    private long anuncioEsperado(int i, long desde) {
+        float intervaloSensor = intervalo[i];
+        long n = (long) Math.ceil((desde - ultimoAnuncio[i]) / intervaloSensor);
+        return ultimoAnuncio[i] + (long) (Math.max(0, n) * intervaloSensor);
+    }
+
+    /** @brief Margen alrededor de un anuncio esperado (crece con la distancia extrapolada). */
+    private long margen(int i, long esperado) {
+        return MARGEN_MS + (esperado - ultimoAnuncio[i]) / DIVISOR_DERIVA;
+    }
+
+    /** @brief Inicio de la próxima ventana: primer anuncio esperado tras un periodo, menos el margen. */
+    private long inicioPrevisto(long ahora) {
+        long base = Math.max(ahora, (ventanasAbiertas == 0 ? ahora : inicioVentana + periodo));
+        long inicio = Long.MAX_VALUE;
+        for (int i = 0; i < registrado.length; i++) {
+            if (!registrado[i]) continue;
+            long esperado = anuncioEsperado(i, base);
+            inicio = Math.min(inicio, esperado - margen(i, esperado));
+        }
+        return Math.max(ahora, inicio);
+    }
+
+    /** @brief Duración de una ventana que empezase ahora y cubriese un anuncio de cada sensor. */
+    private long duracionVentana(long ahora) {
+        long fin = ahora;
+        for (int i = 0; i < registrado.length; i++) {
+            if (!registrado[i]) continue;
+            long esperado = anuncioEsperado(i, ahora);
+            fin = Math.max(fin, esperado + margen(i, esperado));
+        }
+        return fin - ahora;
+    }
+
+    private float intervaloMaximo() {
+        float maximo = 0;
+        for (int i = 0; i < registrado.length; i++) {
+            if (registrado[i]) maximo = Math.max(maximo, intervalo[i]);
+        }
+        return maximo;
+    }
+
+    private boolean todosOidos() {
+        for (int i = 0; i < registrado.length; i++) {
+            if (registrado[i] && !oidoEnVentana[i]) return false;
+        }
+        return true;
+    }
+
+    private void abrirVentana(long ahora) {
+        Arrays.fill(oidoEnVentana, false);
+        finVentana = ahora + duracionVentana(ahora);
+        inicioVentana = ahora;
+        ventanaExtendida = false;
+        enVentana = true;
+        ventanasAbiertas++;
+        arrancar(Modo.BAJA_LATENCIA, ahora);
+    }
+
+    private void cerrarVentana(long ahora) {
+        detener(ahora);
+        enVentana = false;
+        for (int i = 0; i < registrado.length; i++) {
+            if (!registrado[i] || oidoEnVentana[i]) continue;
+            if (++fallos[i] >= FALLOS_PARA_REAPRENDER) {
+                muestras[i] = 0;
+                fallos[i] = 0;
+            }
+        }
+        // Lecturas estables: se espacian las ventanas; un cambio las vuelve a acercar
+        periodo = hayCambio ? PERIODO_MINIMO_MS : Math.min(periodo * 2, PERIODO_MAXIMO_MS);
+        hayCambio = false;
+        proximaVentana = inicioPrevisto(ahora);
+    }
+
+    // --- Radio y límite de arranques ---
+
+    private boolean puedeArrancar(long ahora) {
+        return ahora - arranques[posArranque] >= VENTANA_ARRANQUES_MS;
+    }
+
+    private long esperaArranque(long ahora) {
+        return arranques[posArranque] + VENTANA_ARRANQUES_MS - ahora;
+    }
+
+    private void arrancar(Modo modo, long ahora) {
+        if (escaneando) radio.detener();
+        radio.arrancar(modo);
+        arranques[posArranque] = ahora;
+        posArranque = (posArranque + 1) % MAX_ARRANQUES;
+        totalArranques++;
+        escaneando = true;
+        modoActual = modo;
+        sesion++;
+    }
+
+    private void detener(long ahora) {
+        radio.detener();
+        escaneando = false;
+    }
+
+    private void contabilizar(long ahora) {
+        if (escaneando) msPorModo[modoActual.ordinal()] += ahora - ultimoContable;
+        ultimoContable = ahora;
+    }
+
+    // --- Métricas ---
+
+    /** @brief Tiempo estimado de radio encendida desde la creación (ms). */
+    public synchronized long getRadioEncendidaMs() {
+        contabilizar(reloj.ahoraMs());
+        double total = 0;
+        for (Modo modo : Modo.values()) total += msPorModo[modo.ordinal()] * modo.cicloTrabajo;
+        return (long) total;
+    }
+
+    /** @brief Radio encendida que habría gastado el escaneo continuo en BAJO_CONSUMO en el mismo tiempo (ms). */
+    public synchronized long getRadioReferenciaMs() {
+        return (long) ((reloj.ahoraMs() - inicioMs) * Modo.BAJO_CONSUMO.cicloTrabajo);
+    }
+
+    /** @brief Tiempo total escaneando en un modo (ms). */
+    public synchronized long getMsEnModo(Modo modo) {
+        contabilizar(reloj.ahoraMs());
+        return msPorModo[modo.ordinal()];
+    }
+
+    /** @brief Número de arranques de escaneo realizados. */
+    public synchronized long getArranques() {
+        return totalArranques;
+    }
+
+    /** @brief Número de ventanas abiertas. */
+    public synchronized long getVentanas() {
+        return ventanasAbiertas;
+    }
+
+    /** @brief Periodo actual entre ventanas (ms). */
+    public synchronized long getPeriodoMs() {
+        return periodo;
+    }
+
+    /** @brief Intervalo de anuncio aprendido de un sensor (ms), o 0 si no se ha medido. */
+    public synchronized float getIntervaloMs(int indice) {
+        return muestras[indice] == 0 ? 0 : intervalo[indice];
+    }
+
+    /** @brief true si el escáner está encendido. */
+    public synchronized boolean isEscaneando() {
+        return escaneando;
+    }
+
+    /** @brief Modo del último arranque (null si nunca se ha arrancado). */
+    public synchronized Modo getModo() {
+        return modoActual;
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     * @return Radio encendida estimada frente al escaneo continuo anterior, arranques y ventanas.
+     */
+    public String resumen() {
+        long encendida = getRadioEncendidaMs();
+        long referencia = getRadioReferenciaMs();
+        return String.format(Locale.ROOT, "Escaneo adaptativo: radio %.1f s (continuo BAJO_CONSUMO: %.1f s, %.0f%%), %d arranques, %d ventanas, periodo %d ms.",
+                encendida / 1000.0, referencia / 1000.0, referencia == 0 ? 0 : 100.0 * encendida / referencia,
+                getArranques(), getVentanas(), getPeriodoMs());
+    }
+}
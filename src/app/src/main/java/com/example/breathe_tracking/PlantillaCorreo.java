@@ -0,0 +1,198 @@
+/**
+ * @file PlantillaCorreo.java
+ * @brief Plantillas HTML de los correos, compiladas una vez en trozos fijos y huecos que se escriben sobre un StringBuilder.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @class PlantillaCorreo
+ * @brief Plantilla con huecos "{{nombre}}" precompilada: al escribirla solo se añaden los trozos fijos y
+ * los valores (escapados para HTML), sin volver a concatenar el documento entero.
+ *
+ * Copyrigth © 2025
+ *
+ * El texto se trocea al crear la plantilla: \ref escribir recorre los trozos y añade cada valor escapado en su
+ * hueco, sobre un StringBuilder que el llamante puede reutilizar. El resumen de alertas escribe
+ * \ref RESUMEN_CABECERA, una \ref RESUMEN_FILA por grupo y \ref RESUMEN_PIE en el mismo builder.
+ *
+ * Los valores siempre se escapan, así que un "<" en el texto de una incidencia no rompe el HTML.
+ * Las plantillas son inmutables y se pueden compartir entre hilos.
+ */
+public final class PlantillaCorreo {
+
+    // --- Estructura común (estilos, cabecera corporativa y pie) ---
+    private static final String INICIO =
+            "<!DOCTYPE html>" +
+            "<html>" +
+            "<head>" +
+            "<style>" +
+            "body {font-family: Arial, sans-serif; margin: 0; padding: 0; background-color: #f4f4f4;}" +
+            ".container {max-width: 600px; margin: 20px auto; background-color: #ffffff; border-radius: 8px; overflow: hidden; box-shadow: 0 2px 5px rgba(0,0,0,0.1);}" +
+            ".header {background-color: #0E344C; color: #ffffff; padding: 20px; text-align: center;}" +
+            ".header h1 {margin: 0; font-size: 24px; letter-spacing: 2px;}" +
+            ".content {padding: 30px; color: #333333; line-height: 1.6;}" +
+            ".label {font-weight: bold; color: #0E344C; display: block; margin-top: 15px;}" +
+            ".value {background-color: #f9f9f9; padding: 10px; border-left: 4px solid #0E344C; margin-top: 5px;}" +
+            ".footer {background-color: #eeeeee; text-align: center; padding: 15px; font-size: 12px; color: #777777;}" +
+            "</style>" +
+            "</head>" +
+            "<body>" +
+            "  <div class='container'>" +
+            "    <div class='header'>" +
+            "      <h1>BREATHE TRACKING</h1>" +
+            "      <p>Sistema de Gestión de Incidencias</p>" +
+            "    </div>" +
+            "    <div class='content'>" +
+            "      <p>Hola Administrador,</p>";
+
+    private static final String FIN =
+            "    </div>" +
+            "    <div class='footer'>" +
+            "      <p>Este es un mensaje automático. No responder a este correo.</p>" +
+            "      <p>&copy; 2025 Breathe Tracking System</p>" +
+            "    </div>" +
+            "  </div>" +
+            "</body>" +
+            "</html>";
+
+    private static final String SEPARADOR = "      <hr style='border: 0; border-top: 1px solid #eee; margin: 20px 0;'>";
+
+    /** @brief Correo de una incidencia (el de siempre). Valores: titulo, mensaje. */
+    public static final PlantillaCorreo INCIDENCIA = new PlantillaCorreo(
+            INICIO +
+            "      <p>Se ha recibido un nuevo reporte automático desde la aplicación móvil.</p>" +
+            SEPARADOR +
+            "      <span class='label'>TÍTULO:</span>" +
+            "      <div class='value'>{{titulo}}</div>" +
+            "      <span class='label'>DETALLE DEL MENSAJE:</span>" +
+            "      <div class='value'>{{mensaje}}</div>" +
+            "      <p style='margin-top: 30px; font-size: 0.9em;'><em>Por favor, revise el panel de control para más detalles técnicos del sensor afectado.</em></p>" +
+            FIN,
+            "titulo", "mensaje");
+
+    /** @brief Principio del resumen de alertas. Valores: alertas, sensores, desde, hasta. */
+    public static final PlantillaCorreo RESUMEN_CABECERA = new PlantillaCorreo(
+            INICIO +
+            "      <p>Resumen de <strong>{{alertas}}</strong> alertas de {{sensores}} sensores entre las {{desde}} y las {{hasta}}.</p>" +
+            SEPARADOR,
+            "alertas", "sensores", "desde", "hasta");
+
+    /** @brief Un grupo del resumen (mismo sensor y tipo). Valores: sensor, tipo, veces, desde, hasta, mensaje. */
+    public static final PlantillaCorreo RESUMEN_FILA = new PlantillaCorreo(
+            "      <span class='label'>{{sensor}} · {{tipo}} ({{veces}} veces, {{desde}} - {{hasta}})</span>" +
+            "      <div class='value'>{{mensaje}}</div>",
+            "sensor", "tipo", "veces", "desde", "hasta", "mensaje");
+
+    /** @brief Final del resumen. Valores: omitidas (texto vacío si no se ha omitido ningún grupo). */
+    public static final PlantillaCorreo RESUMEN_PIE = new PlantillaCorreo(
+            "      <p style='margin-top: 30px; font-size: 0.9em;'><em>{{omitidas}}Por favor, revise el panel de control para más detalles técnicos de los sensores afectados.</em></p>" +
+            FIN,
+            "omitidas");
+
+    /** @brief Trozos fijos: uno más que huecos (el primero va antes del primer hueco). */
+    private final String[] trozos;
+    /** @brief Índice (en \ref nombres) del valor de cada hueco. */
+    private final int[] huecos;
+    private final String[] nombres;
+    /** @brief Longitud de los trozos fijos (capacidad inicial al escribir). */
+    private final int longitudFija;
+
+    /**
+     * @brief Compila una plantilla.
+     * (texto:String, nombres:String...) -> PlantillaCorreo() -> ()
+     * @param texto HTML con huecos "{{nombre}}".
+     * @param nombres Nombres de los valores, en el orden en que se pasan a \ref escribir.
+     * @throws IllegalArgumentException Si un hueco no está cerrado o usa un nombre no declarado.
+     */
+    public PlantillaCorreo(String texto, String... nombres) {
+        this.nombres = nombres.clone();
+        List<String> listaTrozos = new ArrayList<>();
+        List<Integer> listaHuecos = new ArrayList<>();
+        int desde = 0;
+        int fija = 0;
+        while (true) {
+            int abre = texto.indexOf("{{", desde);
+            if (abre < 0) break;
+            int cierra = texto.indexOf("}}", abre + 2);
+            if (cierra < 0) throw new IllegalArgumentException("Hueco sin cerrar en la posición " + abre);
+            String nombre = texto.substring(abre + 2, cierra).trim();
+            int indice = indiceDe(nombre);
+            if (indice < 0) throw new IllegalArgumentException("Hueco desconocido: " + nombre);
+            listaTrozos.add(texto.substring(desde, abre));
+            fija += abre - desde;
+            listaHuecos.add(indice);
+            desde = cierra + 2;
+        }
+        listaTrozos.add(texto.substring(desde));
+        fija += texto.length() - desde;
+        trozos = listaTrozos.toArray(new String[0]);
+        huecos = new int[listaHuecos.size()];
+        for (int i = 0; i < huecos.length; i++) huecos[i] = listaHuecos.get(i);
+        longitudFija = fija;
+    }
+
+    private int indiceDe(String nombre) {
+        for (int i = 0; i < nombres.length; i++) if (nombres[i].equals(nombre)) return i;
+        return -1;
+    }
+
+    /**
+     * @brief Añade la plantilla a \p destino con los valores escapados en sus huecos.
+     * (destino:StringBuilder, valores:String...) -> escribir() -> StringBuilder
+     * @param destino Builder donde se escribe (se añade al final).
+     * @param valores Un valor por nombre, en el orden del constructor (null se escribe vacío).
+     * @return \p destino, para encadenar.
+     */
+    public StringBuilder escribir(StringBuilder destino, String... valores) {
+        if (valores.length != nombres.length) {
+            throw new IllegalArgumentException("Se esperaban " + nombres.length + " valores y hay " + valores.length);
+        }
+        destino.ensureCapacity(destino.length() + longitudFija);
+        destino.append(trozos[0]);
+        for (int i = 0; i < huecos.length; i++) {
+            escapar(destino, valores[huecos[i]]);
+            destino.append(trozos[i + 1]);
+        }
+        return destino;
+    }
+
+    /**
+     * @brief Escribe la plantilla en un String nuevo.
+     * (valores:String...) -> generar() -> String
+     */
+    public String generar(String... valores) {
+        return escribir(new StringBuilder(longitudFija + 256), valores).toString();
+    }
+
+    /** @brief Número de huecos de la plantilla. */
+    public int getNumHuecos() {
+        return huecos.length;
+    }
+
+    /**
+     * @brief Añade un texto con los caracteres especiales de HTML escapados (sin copiar si no tiene ninguno).
+     * (destino:StringBuilder, texto:String) -> escapar() -> ()
+     */
+    static void escapar(StringBuilder destino, String texto) {
+        if (texto == null) return;
+        int desde = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            String sustituto;
+            switch (texto.charAt(i)) {
+                case '&': sustituto = "&amp;"; break;
+                case '<': sustituto = "&lt;"; break;
+                case '>': sustituto = "&gt;"; break;
+                case '"': sustituto = "&quot;"; break;
+                case '\'': sustituto = "&#39;"; break;
+                default: continue;
+            }
+            destino.append(texto, desde, i).append(sustituto);
+            desde = i + 1;
+        }
+        destino.append(texto, desde, texto.length());
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * @file PoliticaUbicacion.java
+ * @brief Política de actualizaciones de ubicación según el movimiento: alta precisión solo mientras el usuario se desplaza.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.Locale;
+
+/**
+ * @class PoliticaUbicacion
+ * @brief Decide la prioridad y el intervalo de las peticiones de ubicación a partir del desplazamiento entre fijos.
+ *
+ * Copyrigth © 2025
+ *
+ * Los sensores pasan casi todo el día en la misma sala, así que la alta precisión solo se pide
+ * mientras el usuario se desplaza. Hay tres niveles (\ref Nivel):
+ *
+ * - **MOVIMIENTO:** alta precisión cada 10 s.
+ * - **QUIETO:** precisión equilibrada cada minuto.
+ * - **REPOSO:** pasivo (solo fijos que pidan otras apps), con una sonda en EQUILIBRADO si pasan
+ *   \ref SONDA_MS sin ningún fijo.
+ *
+ * El desplazamiento se mide desde un ancla (el último punto donde se confirmó movimiento)
+ * descontando la precisión del fijo, así que el ruido del GPS en la mesa no cuenta como movimiento
+ * y un paseo lento se acumula hasta superar el umbral. Para evitar oscilaciones la histéresis es
+ * asimétrica:
+ * - Para subir a MOVIMIENTO hacen falta \ref FIJOS_PARA_MOVIMIENTO fijos seguidos a más de
+ *   \ref UMBRAL_MOVIMIENTO_M del ancla (un salto aislado del GPS no basta).
+ * - Para bajar hay que pasar \ref QUIETO_TRAS_MS (y después \ref REPOSO_TRAS_MS) sin confirmar
+ *   movimiento, y solo se baja al llegar un fijo (sin fijos no se sabe si el usuario se mueve).
+ *
+ * No depende de Android: el servicio pasa cada fijo a \ref registrarUbicacion, llama a \ref revisar
+ * periódicamente y vuelve a pedir actualizaciones cuando cualquiera de los dos devuelve true.
+ */
+public class PoliticaUbicacion {
+
+    /**
+     * @brief Niveles de la política, con la prioridad (LocationRequest.PRIORITY_*) y los intervalos que se piden.
+     */
+    public enum Nivel {
+        /** @brief PRIORITY_HIGH_ACCURACY cada 10 s (mínimo 5 s). */
+        MOVIMIENTO(100, 10_000, 5_000),
+        /** @brief PRIORITY_BALANCED_POWER_ACCURACY cada 60 s (mínimo 30 s). */
+        QUIETO(102, 60_000, 30_000),
+        /** @brief PRIORITY_NO_POWER: fijos de otras apps, como mucho uno por minuto. */
+        REPOSO(105, 5 * 60_000, 60_000);
+
+        /** @brief Valor de LocationRequest.PRIORITY_* del nivel. */
+        public final int prioridad;
+        /** @brief Intervalo pedido (setInterval). */
+        public final long intervaloMs;
+        /** @brief Intervalo mínimo aceptado (setFastestInterval). */
+        public final long intervaloMinimoMs;
+
+        Nivel(int prioridad, long intervaloMs, long intervaloMinimoMs) {
+            this.prioridad = prioridad;
+            this.intervaloMs = intervaloMs;
+            this.intervaloMinimoMs = intervaloMinimoMs;
+        }
+    }
+
+    // --- Constantes ---
+    /** @brief Desplazamiento (descontada la precisión) a partir del cual un fijo indica movimiento. */
+    public static final float UMBRAL_MOVIMIENTO_M = 50f;
+    /** @brief Fijos seguidos con movimiento necesarios para subir a \ref Nivel#MOVIMIENTO. */
+    public static final int FIJOS_PARA_MOVIMIENTO = 2;
+    /** @brief Tiempo quieto tras el que se baja de MOVIMIENTO a QUIETO (2 minutos). */
+    public static final long QUIETO_TRAS_MS = 2 * 60_000;
+    /** @brief Tiempo quieto tras el que se baja de QUIETO a REPOSO (10 minutos). */
+    public static final long REPOSO_TRAS_MS = 10 * 60_000;
+    /** @brief En REPOSO, tiempo sin fijos tras el que se pide uno en QUIETO (15 minutos). */
+    public static final long SONDA_MS = 15 * 60_000;
+    /** @brief Fijos con peor precisión que esta no cuentan para decidir (p. ej. ubicación por antena). */
+    public static final float PRECISION_MAXIMA_M = 200f;
+    private static final double METROS_POR_GRADO = 111_320.0;
+    private static final long NUNCA = Long.MIN_VALUE / 2;
+
+    private final Reloj reloj;
+
+    // --- Estado ---
+    private Nivel nivel = Nivel.MOVIMIENTO;
+    /** @brief true mientras se espera el fijo de una sonda desde REPOSO. */
+    private boolean sondeando = false;
+    private boolean hayAncla = false;
+    private double latitudAncla;
+    private double longitudAncla;
+    /** @brief Inicio del tramo quieto actual (instante del último movimiento confirmado). */
+    private long quietoDesde;
+    private int rachaMovimiento = 0;
+    private long ultimoFijo = NUNCA;
+
+    // --- Métricas ---
+    private final long inicioMs;
+    private long inicioNivel;
+    private final long[] msPorNivel = new long[Nivel.values().length];
+    private long fijos = 0;
+    private long fijosImprecisos = 0;
+    private long cambios = 0;
+    private long sondas = 0;
+
+    /**
+     * @brief Constructor de la política. Empieza en MOVIMIENTO para obtener pronto una ubicación precisa.
+     * (reloj:Reloj) -> PoliticaUbicacion() -> ()
+     * @param reloj Reloj monótono en milisegundos (el mismo que los instantes de los fijos).
+     */
+    public PoliticaUbicacion(Reloj reloj) {
+        this.reloj = reloj;
+        inicioMs = reloj.ahoraMs();
+        inicioNivel = inicioMs;
+        quietoDesde = inicioMs;
+    }
+
+    /**
+     * @brief Procesa un fijo de ubicación.
+     * (latitud:double, longitud:double, precisionM:float, instanteMs:long) -> registrarUbicacion() -> boolean
+     * @param latitud Latitud en grados.
+     * @param longitud Longitud en grados.
+     * @param precisionM Radio de precisión del fijo en metros (0 si no se conoce).
+     * @param instanteMs Instante del fijo en el reloj de la política.
+     * @return true si el nivel ha cambiado y hay que volver a pedir las actualizaciones.
+     */
+    public synchronized boolean registrarUbicacion(double latitud, double longitud, float precisionM, long instanteMs) {
+        fijos++;
+        ultimoFijo = instanteMs;
+        if (precisionM > PRECISION_MAXIMA_M) {
+            fijosImprecisos++;
+            return false;
+        }
+        if (!hayAncla) {
+            fijarAncla(latitud, longitud, instanteMs);
+            return false;
+        }
+
+        double desplazamiento = distanciaM(latitudAncla, longitudAncla, latitud, longitud) - precisionM;
+        if (desplazamiento > UMBRAL_MOVIMIENTO_M) {
+            // Un fijo aislado lejos del ancla puede ser un salto del GPS: hasta confirmarlo no se mueve el ancla
+            if (++rachaMovimiento < FIJOS_PARA_MOVIMIENTO) return false;
+            // Movimiento confirmado: el ancla sigue al usuario y el tramo quieto vuelve a empezar
+            fijarAncla(latitud, longitud, instanteMs);
+            sondeando = false;
+            return cambiarA(Nivel.MOVIMIENTO, instanteMs);
+        }
+        rachaMovimiento = 0;
+        if (sondeando) {
+            // La sonda confirma que el usuario sigue en el mismo sitio: se vuelve a REPOSO
+            sondeando = false;
+            return cambiarA(Nivel.REPOSO, instanteMs);
+        }
+        return cambiarA(nivelQuieto(instanteMs), instanteMs);
+    }
+
+    /**
+     * @brief Revisión periódica: baja de nivel por tiempo y lanza la sonda en REPOSO.
+     * () -> revisar() -> boolean
+     * @return true si el nivel ha cambiado y hay que volver a pedir las actualizaciones.
+     */
+    public synchronized boolean revisar() {
+        long ahora = reloj.ahoraMs();
+        if (nivel == Nivel.REPOSO) {
+            if (ahora - Math.max(ultimoFijo, inicioNivel) < SONDA_MS) return false;
+            sondas++;
+            sondeando = true;
+            return cambiarA(Nivel.QUIETO, ahora);
+        }
+        // Sin fijos nuevos no se sabe si el usuario se mueve: solo se baja con fijos quietos
+        return false;
+    }
+
+    /** @brief Nivel que corresponde al tramo quieto actual. */
+    private Nivel nivelQuieto(long ahora) {
+        long quieto = ahora - quietoDesde;
+        if (quieto >= QUIETO_TRAS_MS + REPOSO_TRAS_MS) return Nivel.REPOSO;
+        if (quieto >= QUIETO_TRAS_MS) return nivel == Nivel.REPOSO ? Nivel.REPOSO : Nivel.QUIETO;
+        return nivel;
+    }
+
+    private void fijarAncla(double latitud, double longitud, long instanteMs) {
+        hayAncla = true;
+        latitudAncla = latitud;
+        longitudAncla = longitud;
+        quietoDesde = instanteMs;
+    }
+
+    private boolean cambiarA(Nivel nuevo, long ahora) {
+        if (nuevo == nivel) return false;
+        contabilizar(ahora);
+        nivel = nuevo;
+        cambios++;
+        return true;
+    }
+
+    private void contabilizar(long ahora) {
+        if (ahora > inicioNivel) {
+            msPorNivel[nivel.ordinal()] += ahora - inicioNivel;
+            inicioNivel = ahora;
+        }
+    }
+
+    /**
+     * @brief Distancia aproximada entre dos coordenadas (equirectangular, suficiente para unos cientos de metros).
+     * (lat1:double, lon1:double, lat2:double, lon2:double) -> distanciaM() -> double
+     * @return Distancia en metros.
+     */
+    static double distanciaM(double lat1, double lon1, double lat2, double lon2) {
+        double x = (lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = lat2 - lat1;
+        return Math.sqrt(x * x + y * y) * METROS_POR_GRADO;
+    }
+
+    // --- Métricas ---
+
+    /** @brief Nivel actual. */
+    public synchronized Nivel getNivel() {
+        return nivel;
+    }
+
+    /** @brief Fijos recibidos. */
+    public synchronized long getFijos() {
+        return fijos;
+    }
+
+    /** @brief Fijos ignorados por tener peor precisión que \ref PRECISION_MAXIMA_M. */
+    public synchronized long getFijosImprecisos() {
+        return fijosImprecisos;
+    }
+
+    /** @brief Cambios de nivel. */
+    public synchronized long getCambios() {
+        return cambios;
+    }
+
+    /** @brief Sondas lanzadas desde REPOSO. */
+    public synchronized long getSondas() {
+        return sondas;
+    }
+
+    /** @brief Milisegundos pasados en un nivel (incluido el tramo en curso). */
+    public synchronized long getMsEnNivel(Nivel n) {
+        long ms = msPorNivel[n.ordinal()];
+        if (n == nivel) ms += Math.max(0, reloj.ahoraMs() - inicioNivel);
+        return ms;
+    }
+
+    /**
+     * @brief Fijos pedidos por hora: tiempo en cada nivel dividido por su intervalo.
+     * () -> getSolicitadosPorHora() -> double
+     */
+    public synchronized double getSolicitadosPorHora() {
+        long total = reloj.ahoraMs() - inicioMs;
+        if (total <= 0) return 0;
+        double pedidos = 0;
+        for (Nivel n : Nivel.values()) {
+            // En REPOSO no se pide nada: los fijos llegan de otras apps
+            if (n != Nivel.REPOSO) pedidos += (double) getMsEnNivel(n) / n.intervaloMs;
+        }
+        return pedidos * 3_600_000.0 / total;
+    }
+
+    /** @brief Fijos recibidos por hora. */
+    public synchronized double getFijosPorHora() {
+        long total = reloj.ahoraMs() - inicioMs;
+        return total <= 0 ? 0 : fijos * 3_600_000.0 / total;
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     */
+    public synchronized String resumen() {
+        long total = Math.max(1, reloj.ahoraMs() - inicioMs);
+        return String.format(Locale.ROOT, "Ubicación: %.0f fijos pedidos/h (antes %d/h), %.0f recibidos/h, %d cambios de nivel, %d sondas; MOVIMIENTO %.0f%%, QUIETO %.0f%%, REPOSO %.0f%%.",
+                getSolicitadosPorHora(), 3_600_000 / Nivel.MOVIMIENTO.intervaloMs, getFijosPorHora(), cambios, sondas,
+                100.0 * getMsEnNivel(Nivel.MOVIMIENTO) / total, 100.0 * getMsEnNivel(Nivel.QUIETO) / total,
+                100.0 * getMsEnNivel(Nivel.REPOSO) / total);
+    }
+}
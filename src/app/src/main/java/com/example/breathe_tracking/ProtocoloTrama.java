@@ -0,0 +1,484 @@
+/**
+ * @file ProtocoloTrama.java
+ * @brief Protocolo versionado del payload del sensor: esquemas compactos por tipo, decodificación por tabla y reensamblado de tramas partidas.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @class ProtocoloTrama
+ * @brief Describe y decodifica los payloads de fabricante del sensor según su byte de tipo.
+ *
+ * Copyrigth © 2025
+ *
+ * El primer byte del payload es el tipo: la familia en el nibble alto (siempre 0xA, lo que filtra el escáner) y la versión en el
+ * bajo. Cada versión tiene un \ref Esquema con sus campos: canal, anchura en bytes, signo, orden de
+ * bytes y escala. Decodificar es recorrer esa tabla con \ref CodecBinario, sin crear objetos.
+ *
+ * Tipos definidos:
+ * - **0xAA (heredado):** [0xAA][O3 u16][T u16][CO2 u16][BAT u16], little endian (O3 /1000, T /10).
+ * - **0xA1:** los cinco gases en una trama: [0xA1][O3 u16 /1000][T s16 /10][CO2 u16][BAT u8]
+ *   [CO u16 /100 mg/m³][NO2 u16 /10 µg/m³][SO2 u16 /10 µg/m³] (14 bytes).
+ * - **0xA2 (varias tramas):** [0xA2][secuencia][fragmento (índice << 4 | total)][campos del
+ *   fragmento]. El fragmento 0 lleva O3, temperatura (s16 /100), CO2 y batería; el 1, CO, NO2 y SO2.
+ *   Con total = 1 la trama lleva todos los campos seguidos (así entrega el \ref Reensamblador las
+ *   lecturas completas).
+ *
+ * Los tipos de la familia que no tienen esquema se cuentan por tipo (\ref getDesconocidas) en lugar
+ * de perderse sin dejar rastro.
+ */
+public final class ProtocoloTrama {
+
+    // --- Canales (los mismos CANAL_* de FiltroCambios) ---
+    public static final int CANAL_O3 = FiltroCambios.CANAL_O3;
+    public static final int CANAL_TEMPERATURA = FiltroCambios.CANAL_TEMPERATURA;
+    public static final int CANAL_CO2 = FiltroCambios.CANAL_CO2;
+    public static final int CANAL_BATERIA = FiltroCambios.CANAL_BATERIA;
+    /** @brief Monóxido de carbono (mg/m³). */
+    public static final int CANAL_CO = FiltroCambios.CANAL_CO;
+    /** @brief Dióxido de nitrógeno (µg/m³). */
+    public static final int CANAL_NO2 = FiltroCambios.CANAL_NO2;
+    /** @brief Dióxido de azufre (µg/m³). */
+    public static final int CANAL_SO2 = FiltroCambios.CANAL_SO2;
+    public static final int NUM_CANALES = FiltroCambios.NUM_CANALES;
+
+    // --- Resultados de decodificar ---
+    /** @brief Lectura completa escrita en el destino. */
+    public static final int COMPLETA = 1;
+    /** @brief Fragmento de una lectura en varias tramas: hay que pasarlo por el \ref Reensamblador. */
+    public static final int FRAGMENTO = 0;
+    /** @brief Tipo de la familia sin esquema (versión desconocida). */
+    public static final int DESCONOCIDA = -1;
+    /** @brief Longitud o cabecera que no encajan con el esquema. */
+    public static final int INVALIDA = -2;
+
+    /** @brief Nibble alto del byte de tipo. */
+    public static final int FAMILIA = 0xA0;
+    /** @brief Máscara de la familia (la usa el filtro del escáner). */
+    public static final int MASCARA_FAMILIA = 0xF0;
+    /** @brief Tipo de la trama heredada de 9 bytes. */
+    public static final int TIPO_HEREDADO = 0xAA;
+    public static final int TIPO_CINCO_GASES = 0xA1;
+    public static final int TIPO_VARIAS_TRAMAS = 0xA2;
+    /** @brief Fragmentos como máximo por lectura (cabe en un nibble). */
+    public static final int MAX_FRAGMENTOS = 15;
+
+    // --- Codificación compacta de un campo en un int ---
+    private static final int BITS_CANAL = 0x0F;
+    private static final int DESPLAZAMIENTO_ANCHURA = 4;
+    private static final int CON_SIGNO = 1 << 8;
+    private static final int BIG_ENDIAN = 1 << 9;
+
+    /**
+     * @class Esquema
+     * @brief Campos de un tipo de trama, compilados en arrays primitivos.
+     */
+    public static final class Esquema {
+        final int tipo;
+        /** @brief Un int por campo: canal | anchura << 4 | CON_SIGNO | BIG_ENDIAN. */
+        final int[] campos;
+        final float[] escalas;
+        /** @brief Primer campo de cada fragmento; el último elemento es el número de campos. */
+        final int[] cortes;
+        /** @brief Bytes de datos de cada fragmento. */
+        final int[] bytesFragmento;
+        final int bytesTotales;
+
+        private Esquema(Constructor c) {
+            tipo = c.tipo;
+            campos = java.util.Arrays.copyOf(c.campos, c.n);
+            escalas = java.util.Arrays.copyOf(c.escalas, c.n);
+            cortes = java.util.Arrays.copyOf(c.cortes, c.fragmentos + 1);
+            cortes[c.fragmentos] = c.n;
+            bytesFragmento = new int[c.fragmentos];
+            int total = 0;
+            for (int f = 0; f < c.fragmentos; f++) {
+                for (int k = cortes[f]; k < cortes[f + 1]; k++) bytesFragmento[f] += anchura(campos[k]);
+                total += bytesFragmento[f];
+            }
+            bytesTotales = total;
+        }
+
+        /** @brief true si las lecturas van en varias tramas (cabecera con secuencia y fragmento). */
+        public boolean multitrama() {
+            return bytesFragmento.length > 1;
+        }
+
+        /** @brief Bytes de cabecera antes de los campos. */
+        int cabecera() {
+            return multitrama() ? 3 : 1;
+        }
+
+        /**
+         * @class Constructor
+         * @brief Define los campos de un esquema en orden.
+         */
+        public static final class Constructor {
+            private final int tipo;
+            private int[] campos = new int[8];
+            private float[] escalas = new float[8];
+            private final int[] cortes = new int[MAX_FRAGMENTOS + 1];
+            private int n = 0;
+            private int fragmentos = 1;
+
+            /** @brief Esquema para el byte de tipo \p tipo (de la familia 0xA_). */
+            public Constructor(int tipo) {
+                if ((tipo & MASCARA_FAMILIA) != FAMILIA) throw new IllegalArgumentException("Tipo fuera de la familia: " + tipo);
+                this.tipo = tipo;
+            }
+
+            /**
+             * @brief Añade un campo.
+             * (canal:int, bytes:int, conSigno:boolean, escala:float) -> campo() -> Constructor
+             * @param canal Canal (CANAL_*).
+             * @param bytes Anchura (1 - 8), en little endian.
+             * @param conSigno true si es complemento a 2.
+             * @param escala Factor por el que se multiplica el valor crudo.
+             */
+            public Constructor campo(int canal, int bytes, boolean conSigno, float escala) {
+                return campo(canal, bytes, conSigno, false, escala);
+            }
+
+            /** @brief Como \ref campo(int, int, boolean, float) pero eligiendo el orden de bytes. */
+            public Constructor campo(int canal, int bytes, boolean conSigno, boolean bigEndian, float escala) {
+                if (canal < 0 || canal >= NUM_CANALES) throw new IllegalArgumentException("Canal no válido: " + canal);
+                if (bytes < 1 || bytes > 8) throw new IllegalArgumentException("Anchura no válida: " + bytes);
+                if (n == campos.length) {
+                    campos = java.util.Arrays.copyOf(campos, n * 2);
+                    escalas = java.util.Arrays.copyOf(escalas, n * 2);
+                }
+                campos[n] = canal | bytes << DESPLAZAMIENTO_ANCHURA | (conSigno ? CON_SIGNO : 0) | (bigEndian ? BIG_ENDIAN : 0);
+                escalas[n++] = escala;
+                return this;
+            }
+
+            /** @brief Los campos siguientes van en la próxima trama. */
+            public Constructor fragmento() {
+                if (fragmentos == MAX_FRAGMENTOS) throw new IllegalArgumentException("Demasiados fragmentos");
+                cortes[fragmentos++] = n;
+                return this;
+            }
+
+            public Esquema crear() {
+                return new Esquema(this);
+            }
+        }
+    }
+
+    /** @brief Protocolo con los esquemas de la app (el que usan \ref DecodificadorTrama y el servicio). */
+    public static final ProtocoloTrama ESTANDAR = new ProtocoloTrama()
+            .registrar(new Esquema.Constructor(TIPO_HEREDADO)
+                    .campo(CANAL_O3, 2, false, 0.001f)
+                    .campo(CANAL_TEMPERATURA, 2, false, 0.1f)
+                    .campo(CANAL_CO2, 2, false, 1f)
+                    .campo(CANAL_BATERIA, 2, false, 1f)
+                    .crear())
+            .registrar(new Esquema.Constructor(TIPO_CINCO_GASES)
+                    .campo(CANAL_O3, 2, false, 0.001f)
+                    .campo(CANAL_TEMPERATURA, 2, true, 0.1f)
+                    .campo(CANAL_CO2, 2, false, 1f)
+                    .campo(CANAL_BATERIA, 1, false, 1f)
+                    .campo(CANAL_CO, 2, false, 0.01f)
+                    .campo(CANAL_NO2, 2, false, 0.1f)
+                    .campo(CANAL_SO2, 2, false, 0.1f)
+                    .crear())
+            .registrar(new Esquema.Constructor(TIPO_VARIAS_TRAMAS)
+                    .campo(CANAL_O3, 2, false, 0.001f)
+                    .campo(CANAL_TEMPERATURA, 2, true, 0.01f)
+                    .campo(CANAL_CO2, 2, false, 1f)
+                    .campo(CANAL_BATERIA, 1, false, 1f)
+                    .fragmento()
+                    .campo(CANAL_CO, 2, false, 0.01f)
+                    .campo(CANAL_NO2, 2, false, 0.1f)
+                    .campo(CANAL_SO2, 2, false, 0.1f)
+                    .crear());
+
+    /** @brief Esquemas por versión (nibble bajo del tipo). */
+    private final Esquema[] esquemas = new Esquema[16];
+
+    // --- Métricas (se decodifica desde el hilo principal y desde el del pipeline) ---
+    // Solo se cuentan los casos raros: las lecturas decodificadas ya las cuenta PipelineIngesta y un
+    // contador atómico más en el camino normal costaba tanto como la propia decodificación.
+    private final AtomicLongArray desconocidasPorVersion = new AtomicLongArray(16);
+    private final AtomicLong invalidas = new AtomicLong();
+    private final AtomicLong fragmentos = new AtomicLong();
+
+    /**
+     * @brief Añade (o sustituye) el esquema de un tipo.
+     * (esquema:Esquema) -> registrar() -> ProtocoloTrama
+     */
+    public ProtocoloTrama registrar(Esquema esquema) {
+        esquemas[esquema.tipo & 0x0F] = esquema;
+        return this;
+    }
+
+    /** @brief Esquema de un byte de tipo, o null si no es de la familia o no tiene esquema. */
+    public Esquema esquema(int tipo) {
+        if ((tipo & MASCARA_FAMILIA) != FAMILIA) return null;
+        return esquemas[tipo & 0x0F];
+    }
+
+    /** @brief true si el byte es de la familia de tramas del sensor (tenga o no esquema). */
+    public static boolean esDeLaFamilia(byte tipo) {
+        return (tipo & MASCARA_FAMILIA) == FAMILIA;
+    }
+
+    /**
+     * @brief Decodifica un payload completo (una trama de una pieza, o una de varias con total = 1).
+     * (datos:byte[], inicio:int, longitud:int, destino:LecturaBeacon) -> decodificar() -> int
+     * @param datos Array con el payload.
+     * @param inicio Índice del byte de tipo.
+     * @param longitud Bytes del payload (incluido el tipo).
+     * @param destino Lectura reutilizable; solo se modifica si el resultado es COMPLETA.
+     * @return COMPLETA, FRAGMENTO, DESCONOCIDA o INVALIDA.
+     */
+    public int decodificar(byte[] datos, int inicio, int longitud, LecturaBeacon destino) {
+        if (longitud < 1 || !esDeLaFamilia(datos[inicio])) {
+            invalidas.incrementAndGet();
+            return INVALIDA;
+        }
+        int version = datos[inicio] & 0x0F;
+        Esquema e = esquemas[version];
+        if (e == null) {
+            desconocidasPorVersion.incrementAndGet(version);
+            return DESCONOCIDA;
+        }
+        if (!e.multitrama()) return decodificarCampos(e, datos, inicio + 1, longitud - 1, destino);
+
+        if (longitud < 3) {
+            invalidas.incrementAndGet();
+            return INVALIDA;
+        }
+        int fragmento = datos[inicio + 2] & 0xFF;
+        if ((fragmento & 0x0F) == 1 && (fragmento >>> 4) == 0) {
+            // Todos los campos seguidos
+            return decodificarCampos(e, datos, inicio + 3, longitud - 3, destino);
+        }
+        if (validarFragmento(e, fragmento, longitud - 3) < 0) {
+            invalidas.incrementAndGet();
+            return INVALIDA;
+        }
+        fragmentos.incrementAndGet();
+        return FRAGMENTO;
+    }
+
+    /** @brief Índice del fragmento si la cabecera y la longitud encajan con el esquema; -1 si no. */
+    static int validarFragmento(Esquema e, int fragmento, int bytesDatos) {
+        int indice = fragmento >>> 4;
+        int total = fragmento & 0x0F;
+        if (total != e.bytesFragmento.length || indice >= total) return -1;
+        return bytesDatos == e.bytesFragmento[indice] ? indice : -1;
+    }
+
+    /** @brief Recorre todos los campos del esquema. La longitud debe coincidir exactamente. */
+    private int decodificarCampos(Esquema e, byte[] datos, int pos, int bytes, LecturaBeacon destino) {
+        if (bytes != e.bytesTotales) {
+            invalidas.incrementAndGet();
+            return INVALIDA;
+        }
+        destino.limpiarCanales();
+        int[] campos = e.campos;
+        for (int k = 0; k < campos.length; k++) {
+            int campo = campos[k];
+            destino.asignar(campo & BITS_CANAL, leer(campo, datos, pos) * e.escalas[k]);
+            pos += anchura(campo);
+        }
+        return COMPLETA;
+    }
+
+    /** @brief Valor crudo de un campo. Los formatos habituales (8 y 16 bits little endian) sin bucle. */
+    private static long leer(int campo, byte[] datos, int pos) {
+        switch (campo & ~BITS_CANAL) {
+            case 1 << DESPLAZAMIENTO_ANCHURA: return CodecBinario.u8(datos, pos);
+            case 1 << DESPLAZAMIENTO_ANCHURA | CON_SIGNO: return CodecBinario.s8(datos, pos);
+            case 2 << DESPLAZAMIENTO_ANCHURA: return CodecBinario.u16le(datos, pos);
+            case 2 << DESPLAZAMIENTO_ANCHURA | CON_SIGNO: return CodecBinario.s16le(datos, pos);
+            default:
+                boolean bigEndian = (campo & BIG_ENDIAN) != 0;
+                return (campo & CON_SIGNO) != 0
+                        ? CodecBinario.leerConSigno(datos, pos, anchura(campo), bigEndian)
+                        : CodecBinario.leerSinSigno(datos, pos, anchura(campo), bigEndian);
+        }
+    }
+
+    private static int anchura(int campo) {
+        return (campo >>> DESPLAZAMIENTO_ANCHURA) & 0x0F;
+    }
+
+    // --- Métricas ---
+
+    /** @brief Tramas de la familia con una versión sin esquema. */
+    public long getDesconocidas() {
+        long total = 0;
+        for (int v = 0; v < 16; v++) total += desconocidasPorVersion.get(v);
+        return total;
+    }
+
+    /** @brief Tramas de una versión sin esquema (nibble bajo del tipo). */
+    public long getDesconocidas(int version) {
+        return desconocidasPorVersion.get(version & 0x0F);
+    }
+
+    /** @brief Tramas con una longitud o una cabecera que no encajan. */
+    public long getInvalidas() {
+        return invalidas.get();
+    }
+
+    /** @brief Fragmentos válidos recibidos (se completan en el \ref Reensamblador). */
+    public long getFragmentos() {
+        return fragmentos.get();
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     */
+    public String resumen() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "Protocolo: %d fragmentos, %d tramas inválidas, %d de versión desconocida",
+                getFragmentos(), getInvalidas(), getDesconocidas()));
+        for (int v = 0; v < 16; v++) {
+            if (desconocidasPorVersion.get(v) > 0) sb.append(String.format(Locale.ROOT, " [0x%02X: %d]", FAMILIA | v, desconocidasPorVersion.get(v)));
+        }
+        return sb.append('.').toString();
+    }
+
+    /**
+     * @class Reensamblador
+     * @brief Junta los fragmentos de una lectura repartida en varias tramas, por sensor y número de secuencia.
+     *
+     * Se usa en el hilo del escaneo, antes de la cola de ingesta: con FUSIONAR_POR_SENSOR la cola
+     * guarda solo el último paquete de cada sensor y los fragmentos se pisarían. Cuando una secuencia
+     * está completa se escribe un anuncio con la lectura entera (el mismo tipo, total = 1) en un
+     * buffer reutilizado, que sigue el camino normal. Un fragmento de otra secuencia descarta la
+     * anterior si estaba a medias.
+     */
+    public static final class Reensamblador {
+        /** @brief Bytes de datos que caben por sensor. */
+        private static final int MAX_BYTES = ColaIngesta.MAX_BYTES_ANUNCIO - 8;
+        /** @brief Máscara de recibidos de una secuencia ya entregada. */
+        private static final int ENTREGADA = -1;
+
+        private final ProtocoloTrama protocolo;
+        private final int[] tipo;
+        private final int[] secuencia;
+        private final int[] recibidos;
+        private final byte[][] datos;
+        /** @brief Anuncio reensamblado: [longitud][0xFF][ID fabricante][tipo][secuencia][0x01][campos]. */
+        private final byte[] salida = new byte[ColaIngesta.MAX_BYTES_ANUNCIO];
+
+        // Métricas
+        private long completadas = 0;
+        private long incompletas = 0;
+        private long repetidos = 0;
+
+        /**
+         * @brief Constructor.
+         * (protocolo:ProtocoloTrama, maxSensores:int) -> Reensamblador() -> ()
+         * @param protocolo Esquemas con los que se validan los fragmentos.
+         * @param maxSensores Número máximo de sensores (índices de \ref RegistroSensores).
+         */
+        public Reensamblador(ProtocoloTrama protocolo, int maxSensores) {
+            this.protocolo = protocolo;
+            tipo = new int[maxSensores];
+            secuencia = new int[maxSensores];
+            recibidos = new int[maxSensores];
+            datos = new byte[maxSensores][MAX_BYTES];
+            java.util.Arrays.fill(tipo, -1);
+        }
+
+        /**
+         * @brief true si el payload es un fragmento que hay que reensamblar.
+         * (trama:byte[], inicio:int, longitud:int) -> esFragmento() -> boolean
+         */
+        public boolean esFragmento(byte[] trama, int inicio, int longitud) {
+            if (longitud < 3) return false;
+            Esquema e = protocolo.esquema(trama[inicio] & 0xFF);
+            return e != null && e.multitrama() && (trama[inicio + 2] & 0x0F) != 1;
+        }
+
+        /**
+         * @brief Añade un fragmento.
+         * (sensor:int, trama:byte[], inicio:int, longitud:int) -> agregar() -> int
+         * @param sensor Índice del sensor.
+         * @param trama Array con el payload.
+         * @param inicio Índice del byte de tipo.
+         * @param longitud Bytes del payload.
+         * @return Longitud del anuncio completo en \ref getTrama(), 0 si aún faltan fragmentos o -1 si no es válido.
+         */
+        public int agregar(int sensor, byte[] trama, int inicio, int longitud) {
+            if (sensor < 0 || sensor >= tipo.length || longitud < 3) return -1;
+            int t = trama[inicio] & 0xFF;
+            Esquema e = protocolo.esquema(t);
+            if (e == null || !e.multitrama() || e.bytesTotales > MAX_BYTES) return -1;
+            int indice = validarFragmento(e, trama[inicio + 2] & 0xFF, longitud - 3);
+            if (indice < 0) {
+                protocolo.invalidas.incrementAndGet();
+                return -1;
+            }
+            protocolo.fragmentos.incrementAndGet();
+            int seq = trama[inicio + 1] & 0xFF;
+
+            if (tipo[sensor] != t || secuencia[sensor] != seq) {
+                if (recibidos[sensor] != 0 && recibidos[sensor] != ENTREGADA) incompletas++;
+                tipo[sensor] = t;
+                secuencia[sensor] = seq;
+                recibidos[sensor] = 0;
+            }
+            int bit = 1 << indice;
+            if ((recibidos[sensor] & bit) != 0) {
+                // El sensor repite cada anuncio varias veces
+                repetidos++;
+                return 0;
+            }
+            int desplazamiento = 0;
+            for (int f = 0; f < indice; f++) desplazamiento += e.bytesFragmento[f];
+            System.arraycopy(trama, inicio + 3, datos[sensor], desplazamiento, longitud - 3);
+            recibidos[sensor] |= bit;
+            if (recibidos[sensor] != (1 << e.bytesFragmento.length) - 1) return 0;
+
+            // Completa: se marca como entregada (las repeticiones de esta secuencia no la vuelven a entregar)
+            recibidos[sensor] = ENTREGADA;
+            completadas++;
+            int payload = 3 + e.bytesTotales;
+            salida[0] = (byte) (3 + payload);
+            salida[1] = (byte) 0xFF;
+            CodecBinario.escribir(DecodificadorTrama.ID_FABRICANTE, salida, 2, 2, false);
+            salida[4] = (byte) t;
+            salida[5] = (byte) seq;
+            salida[6] = 0x01;
+            System.arraycopy(datos[sensor], 0, salida, 7, e.bytesTotales);
+            int fin = 4 + payload;
+            // Estructura de longitud 0 al final: el resto del buffer no se interpreta
+            if (fin < salida.length) salida[fin] = 0;
+            return fin;
+        }
+
+        /** @brief Buffer con el último anuncio reensamblado (válido hasta la siguiente llamada a \ref agregar). */
+        public byte[] getTrama() {
+            return salida;
+        }
+
+        /** @brief Lecturas reensambladas. */
+        public long getCompletadas() {
+            return completadas;
+        }
+
+        /** @brief Secuencias abandonadas a medias (llegó otra antes de completarse). */
+        public long getIncompletas() {
+            return incompletas;
+        }
+
+        /**
+         * @brief Resumen legible para el log.
+         * () -> resumen() -> String
+         */
+        public String resumen() {
+            return "Reensamblado: " + completadas + " lecturas completas, " + incompletas + " incompletas, "
+                    + repetidos + " fragmentos repetidos.";
+        }
+    }
+}
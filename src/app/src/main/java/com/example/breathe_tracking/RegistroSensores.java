@@ -0,0 +1,182 @@
+/**
+ * @file RegistroSensores.java
+ * @brief Registro de los sensores monitorizados por el servicio, indexado por código, nombre BLE y dirección MAC.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class RegistroSensores
+ * @brief Tabla de \ref EstadoSensor para el modo pasarela (varios sensores por teléfono).
+ *
+ * Copyrigth © 2025
+ *
+ * Los sensores se registran por código junto con su nombre BLE o su MAC. Por cada paquete el
+ * servicio busca el estado por la dirección del emisor con una sola consulta a un HashMap (O(1));
+ * la primera vez que aparece una dirección se resuelve por MAC o por nombre y se memoriza.
+ *
+ * El índice por dirección está acotado (LRU): aunque un sensor cambie de MAC o aparezcan cientos
+ * de direcciones, la memoria no crece sin límite. Expulsar una dirección solo obliga a resolverla
+ * otra vez por nombre; el estado del sensor no se pierde.
+ *
+ * Como mucho se registran \ref getMaxSensores() sensores: el índice de registro es la clave de las
+ * tablas de tamaño fijo del servicio (cola de ingesta, vigilante de conexión, agregados...).
+ *
+ * El registro y la búsqueda por dirección se hacen desde el hilo principal. El hilo de
+ * \ref PipelineIngesta solo consulta \ref porIndice(int), que lee una copia inmutable del array
+ * de sensores publicada en un campo volatile.
+ */
+public class RegistroSensores {
+
+    /** @brief Número máximo de direcciones MAC memorizadas. */
+    private static final int MAX_DIRECCIONES = 512;
+
+    private final int maxSensores;
+
+    /** @brief Sensores por código, en orden de registro. */
+    private final Map<String, EstadoSensor> porCodigo = new LinkedHashMap<>();
+    /** @brief Sensores por nombre BLE. */
+    private final Map<String, EstadoSensor> porNombre = new HashMap<>();
+    /** @brief Sensores registrados con una MAC conocida. */
+    private final Map<String, EstadoSensor> porMac = new HashMap<>();
+    /** @brief Caché LRU de direcciones ya resueltas (orden de acceso). */
+    private final Map<String, EstadoSensor> porDireccion = new LinkedHashMap<String, EstadoSensor>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, EstadoSensor> masAntigua) {
+            return size() > MAX_DIRECCIONES;
+        }
+    };
+    /** @brief Lista de sensores por índice de registro. */
+    private final List<EstadoSensor> porIndice = new ArrayList<>();
+    /** @brief Copia de \ref porIndice para lecturas desde otros hilos (se sustituye al registrar). */
+    private volatile EstadoSensor[] instantanea = new EstadoSensor[0];
+
+    /** @brief Registro sin límite de sensores. */
+    public RegistroSensores() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @brief Constructor del registro.
+     * (maxSensores:int) -> RegistroSensores() -> ()
+     * @param maxSensores Sensores que se pueden registrar (índices 0 .. maxSensores - 1).
+     */
+    public RegistroSensores(int maxSensores) {
+        this.maxSensores = maxSensores;
+    }
+
+    /**
+     * @brief Forma canónica de una dirección MAC (en mayúsculas), la que usan el registro y \ref FiltroSensores.
+     * (mac:String) -> normalizarMac() -> String
+     * @param mac Dirección "aa:bb:cc:dd:ee:ff" en cualquier combinación de mayúsculas (puede ser null).
+     * @return La dirección en mayúsculas, o null.
+     */
+    public static String normalizarMac(String mac) {
+        return mac == null ? null : mac.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * @brief Registra un sensor. Si el código ya estaba registrado, devuelve el estado existente.
+     * (codigo:String, nombre:String, mac:String) -> registrar() -> EstadoSensor
+     * @param codigo Código único del sensor.
+     * @param nombre Nombre BLE del sensor (puede ser null).
+     * @param mac Dirección MAC conocida (puede ser null).
+     * @return El estado del sensor, o null si es nuevo y ya hay \ref getMaxSensores() sensores.
+     */
+    public EstadoSensor registrar(String codigo, String nombre, String mac) {
+        EstadoSensor estado = porCodigo.get(codigo);
+        if (estado == null) {
+            if (porIndice.size() >= maxSensores) return null;
+            estado = new EstadoSensor(codigo, nombre, porIndice.size());
+            porCodigo.put(codigo, estado);
+            porIndice.add(estado);
+            instantanea = porIndice.toArray(new EstadoSensor[0]);
+        }
+        if (nombre != null) porNombre.put(nombre, estado);
+        if (mac != null) porMac.put(normalizarMac(mac), estado);
+        return estado;
+    }
+
+    /**
+     * @brief Busca el estado del sensor que ha emitido un paquete.
+     * (direccion:String, nombre:String) -> buscar() -> EstadoSensor
+     * @param direccion Dirección MAC del emisor.
+     * @param nombre Nombre BLE del emisor (solo se consulta si la dirección es nueva).
+     * @return El estado del sensor, o null si el emisor no está registrado.
+     */
+    public EstadoSensor buscar(String direccion, String nombre) {
+        if (direccion == null) return null;
+        EstadoSensor estado = porDireccion.get(direccion);
+        if (estado != null) return estado;
+
+        estado = porMac.get(normalizarMac(direccion));
+        if (estado == null && nombre != null) estado = porNombre.get(nombre);
+        if (estado != null) {
+            estado.direccion = direccion;
+            porDireccion.put(direccion, estado);
+        }
+        return estado;
+    }
+
+    /**
+     * @brief Devuelve el estado de un sensor por su código.
+     * (codigo:String) -> porCodigo() -> EstadoSensor
+     * @param codigo Código del sensor.
+     * @return El estado, o null si no está registrado.
+     */
+    public EstadoSensor porCodigo(String codigo) {
+        return porCodigo.get(codigo);
+    }
+
+    /**
+     * @brief Devuelve el estado de un sensor por su índice de registro. Se puede llamar desde cualquier hilo.
+     * (indice:int) -> porIndice() -> EstadoSensor
+     * @param indice Índice de registro (\ref EstadoSensor#indice).
+     * @return El estado, o null si el índice no corresponde a ningún sensor.
+     */
+    public EstadoSensor porIndice(int indice) {
+        EstadoSensor[] sensores = instantanea;
+        return indice >= 0 && indice < sensores.length ? sensores[indice] : null;
+    }
+
+    /**
+     * @brief Devuelve el sensor principal (el primero registrado).
+     * () -> principal() -> EstadoSensor
+     * @return El estado del sensor principal, o null si no hay ninguno.
+     */
+    public EstadoSensor principal() {
+        return porIndice.isEmpty() ? null : porIndice.get(0);
+    }
+
+    /**
+     * @brief Lista de todos los sensores registrados, por índice.
+     * () -> todos() -> List<EstadoSensor>
+     * @return Vista no modificable de los sensores.
+     */
+    public List<EstadoSensor> todos() {
+        return Collections.unmodifiableList(porIndice);
+    }
+
+    /** @brief Número máximo de sensores. */
+    public int getMaxSensores() {
+        return maxSensores;
+    }
+
+    /** @brief Número de sensores registrados. */
+    public int tamano() {
+        return porIndice.size();
+    }
+
+    /** @brief Número de direcciones MAC memorizadas actualmente. */
+    public int direccionesMemorizadas() {
+        return porDireccion.size();
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * @file Reloj.java
+ * @brief Reloj monótono en milisegundos que comparten los componentes temporizados de la app.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+/**
+ * @interface Reloj
+ * @brief Fuente de tiempo monótona (SystemClock::elapsedRealtime en la app; un reloj manual en los tests).
+ *
+ * Copyrigth © 2025
+ *
+ * Los componentes que programan esperas (planificador de escaneo, agrupadores de escrituras,
+ * notificaciones, bandejas de salida, correo...) reciben el reloj en el constructor en lugar de
+ * leer la hora del sistema, de modo que los tests avanzan el tiempo a mano.
+ */
+public interface Reloj {
+    /**
+     * @brief Instante actual.
+     * () -> ahoraMs() -> long
+     * @return Milisegundos de un reloj monótono (solo tienen sentido las diferencias).
+     */
+    long ahoraMs();
+}
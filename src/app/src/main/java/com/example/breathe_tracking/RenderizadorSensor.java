@@ -0,0 +1,391 @@
+/**
+ * @file RenderizadorSensor.java
+ * @brief Capa de pintado de SesionSensorActivity: solo toca las vistas cuando cambia lo que se ve y como mucho una vez por fotograma.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * @class RenderizadorSensor
+ * @brief Convierte las instantáneas del sensor en llamadas a la \ref Vista, evitando las que no cambian nada.
+ *
+ * Copyrigth © 2025
+ *
+ * Con sensores rápidos el RSSI cambia en cada paquete, así que solo se toca una vista cuando cambia
+ * lo que se ve en ella:
+ *
+ * - **Valor mostrado:** cada campo se compara por lo que se ve (el ozono con 3 decimales, la
+ *   temperatura con 1, los niveles de señal...). Si no cambia, no se formatea ni se toca la vista.
+ * - **Bandas:** la banda de color de cada barra se calcula aquí y la \ref Vista solo recibe los
+ *   cambios de banda (la Activity guarda un drawable por barra y banda).
+ * - **Presupuesto por fotograma:** como mucho se pinta una vez cada \ref getPresupuestoMs(). Las
+ *   instantáneas que llegan antes se fusionan (gana la última) y se pintan en \ref fotograma.
+ * - **Métricas:** actualizaciones aplicadas, omitidas y fusionadas, para la capa de depuración.
+ *
+ * No depende de Android: la Activity implementa \ref Vista y programa \ref fotograma con la espera
+ * que devuelve \ref proponer.
+ */
+public class RenderizadorSensor {
+
+    /** @brief Presupuesto por defecto entre dos pintados (100 ms, 10 por segundo como mucho). */
+    public static final long PRESUPUESTO_POR_DEFECTO_MS = 100;
+
+    // --- Barras de progreso ---
+    public static final int BARRA_OZONO = 0;
+    public static final int BARRA_TEMPERATURA = 1;
+    public static final int BARRA_CO2 = 2;
+    public static final int NUM_BARRAS = 3;
+
+    // --- Bandas de color de las barras ---
+    public static final int BANDA_VERDE = 0;
+    public static final int BANDA_NARANJA = 1;
+    public static final int BANDA_ROJA = 2;
+    public static final int BANDA_AZUL = 3;
+    public static final int NUM_BANDAS = 4;
+
+    /** @brief Niveles del icono de señal (0 = sin señal, 4 = máxima). */
+    public static final int NIVELES_SENAL = 5;
+
+    /** @brief Operaciones sobre las vistas de la Activity (todas en el hilo principal). */
+    public interface Vista {
+        /**
+         * @brief Cambia un texto.
+         * @param campo InstantaneaSensor.CAMPO_HORA, _OZONO, _TEMPERATURA, _CO2, _BATERIA o _ESTADO.
+         * @param texto Texto ya formateado.
+         */
+        void texto(int campo, String texto);
+
+        /** @brief Cambia el progreso de una barra (BARRA_*). */
+        void progreso(int barra, int valor);
+
+        /** @brief Cambia la banda de color (BANDA_*) de una barra (BARRA_*). */
+        void banda(int barra, int banda);
+
+        /** @brief Cambia el color del texto de la batería (rojo si está baja). */
+        void bateriaBaja(boolean baja);
+
+        /** @brief Cambia el icono de señal (0 - 4). */
+        void senal(int nivel);
+
+        /** @brief Cambia el color del estado y muestra u oculta la capa de desconexión. */
+        void conectado(boolean conectado);
+    }
+
+    private static final long SIN_VALOR = Long.MIN_VALUE;
+    private static final long[] POTENCIAS = {1, 10, 100, 1000};
+
+    private final Vista vista;
+    private final Reloj reloj;
+    private final char separadorDecimal;
+    private long presupuestoMs;
+
+    // --- Lo que se ve ahora mismo ---
+    private String hora;
+    private long ozonoMilesimas = SIN_VALOR;
+    private long temperaturaDecimas = SIN_VALOR;
+    private long co2 = SIN_VALOR;
+    private long bateria = SIN_VALOR;
+    private final int[] progresos = new int[NUM_BARRAS];
+    private final int[] bandas = new int[NUM_BARRAS];
+    private int bateriaBaja = -1;
+    private int senal = -1;
+    private String estado;
+    private int conectado = -1;
+
+    // --- Fotogramas ---
+    private InstantaneaSensor pendiente;
+    private long ultimoFotogramaMs = SIN_VALOR;
+
+    // --- Métricas ---
+    private long fotogramas = 0;
+    private long aplicadas = 0;
+    private long omitidas = 0;
+    private long fusionadas = 0;
+
+    /**
+     * @brief Constructor con el presupuesto por defecto y el separador decimal del idioma del dispositivo.
+     * (vista:Vista, reloj:Reloj) -> RenderizadorSensor() -> ()
+     */
+    public RenderizadorSensor(Vista vista, Reloj reloj) {
+        this(vista, reloj, PRESUPUESTO_POR_DEFECTO_MS, Locale.getDefault());
+    }
+
+    /**
+     * @brief Constructor del renderizador.
+     * (vista:Vista, reloj:Reloj, presupuestoMs:long, idioma:Locale) -> RenderizadorSensor() -> ()
+     * @param vista Vistas que se actualizan.
+     * @param reloj Reloj monótono en milisegundos (el del Handler de la Activity).
+     * @param presupuestoMs Separación mínima entre dos pintados (0 para pintar cada instantánea).
+     * @param idioma Idioma del separador decimal (el mismo que usaba String.format).
+     */
+    public RenderizadorSensor(Vista vista, Reloj reloj, long presupuestoMs, Locale idioma) {
+        this.vista = vista;
+        this.reloj = reloj;
+        this.presupuestoMs = Math.max(0, presupuestoMs);
+        this.separadorDecimal = DecimalFormatSymbols.getInstance(idioma).getDecimalSeparator();
+        for (int i = 0; i < NUM_BARRAS; i++) {
+            progresos[i] = Integer.MIN_VALUE;
+            bandas[i] = -1;
+        }
+    }
+
+    // --- Fotogramas ---
+
+    /**
+     * @brief Entrega una instantánea. Se pinta ahora si el presupuesto lo permite; si no, queda pendiente
+     * (sustituyendo a la que hubiese).
+     * (s:InstantaneaSensor) -> proponer() -> long
+     * @param s Instantánea recibida.
+     * @return Milisegundos hasta la llamada necesaria a \ref fotograma, o -1 si ya se ha pintado.
+     */
+    public long proponer(InstantaneaSensor s) {
+        if (pendiente != null) fusionadas++;
+        pendiente = s;
+        long ahora = reloj.ahoraMs();
+        long restante = restante(ahora);
+        if (restante > 0) return restante;
+        pintar(ahora);
+        return -1;
+    }
+
+    /**
+     * @brief Pinta la instantánea pendiente si ya ha pasado el presupuesto.
+     * () -> fotograma() -> long
+     * @return Milisegundos hasta la próxima llamada necesaria, o -1 si no queda nada pendiente.
+     */
+    public long fotograma() {
+        if (pendiente == null) return -1;
+        long ahora = reloj.ahoraMs();
+        long restante = restante(ahora);
+        if (restante > 0) return restante;
+        pintar(ahora);
+        return -1;
+    }
+
+    private long restante(long ahora) {
+        if (ultimoFotogramaMs == SIN_VALOR) return 0;
+        return Math.max(0, ultimoFotogramaMs + presupuestoMs - ahora);
+    }
+
+    private void pintar(long ahora) {
+        InstantaneaSensor s = pendiente;
+        pendiente = null;
+        ultimoFotogramaMs = ahora;
+        fotogramas++;
+        pintar(s);
+    }
+
+    // --- Pintado ---
+
+    /** @brief Aplica a las vistas los campos de \p s que cambian lo que se ve. */
+    private void pintar(InstantaneaSensor s) {
+        String nuevaHora = s.getHora();
+        if (nuevaHora != null) {
+            if (nuevaHora.equals(hora)) {
+                omitidas++;
+            } else {
+                hora = nuevaHora;
+                aplicar();
+                vista.texto(InstantaneaSensor.CAMPO_HORA, nuevaHora);
+            }
+        }
+
+        Integer nuevaBateria = s.getBateria();
+        if (nuevaBateria != null) {
+            if (nuevaBateria == bateria) {
+                omitidas++;
+            } else {
+                bateria = nuevaBateria;
+                aplicar();
+                vista.texto(InstantaneaSensor.CAMPO_BATERIA, fijo(nuevaBateria, 0, "%"));
+            }
+            cambiarBateriaBaja(nuevaBateria <= 15);
+        }
+
+        Float ozono = s.getOzono();
+        if (ozono != null) {
+            long milesimas = Math.round(ozono * 1000.0);
+            if (milesimas == ozonoMilesimas) {
+                omitidas++;
+            } else {
+                ozonoMilesimas = milesimas;
+                aplicar();
+                vista.texto(InstantaneaSensor.CAMPO_OZONO, fijo(milesimas, 3, " ppm"));
+            }
+            cambiarBarra(BARRA_OZONO, (int) (ozono * 1000), ozono < 0.6 ? BANDA_VERDE : ozono < 0.9 ? BANDA_NARANJA : BANDA_ROJA);
+        }
+
+        Float temperatura = s.getTemperatura();
+        if (temperatura != null) {
+            long decimas = Math.round(temperatura * 10.0);
+            if (decimas == temperaturaDecimas) {
+                omitidas++;
+            } else {
+                temperaturaDecimas = decimas;
+                aplicar();
+                vista.texto(InstantaneaSensor.CAMPO_TEMPERATURA, fijo(decimas, 1, " ºC"));
+            }
+            cambiarBarra(BARRA_TEMPERATURA, temperatura.intValue(),
+                    temperatura <= 20 ? BANDA_AZUL : temperatura <= 28 ? BANDA_NARANJA : BANDA_ROJA);
+        }
+
+        Integer nuevoCo2 = s.getCo2();
+        if (nuevoCo2 != null) {
+            if (nuevoCo2 == co2) {
+                omitidas++;
+            } else {
+                co2 = nuevoCo2;
+                aplicar();
+                vista.texto(InstantaneaSensor.CAMPO_CO2, fijo(nuevoCo2, 0, " ppm"));
+            }
+            cambiarBarra(BARRA_CO2, nuevoCo2, nuevoCo2 < 800 ? BANDA_VERDE : nuevoCo2 < 1200 ? BANDA_NARANJA : BANDA_ROJA);
+        }
+
+        String nuevoEstado = s.getEstado();
+        if (nuevoEstado != null) {
+            if (nuevoEstado.equals(estado)) {
+                omitidas++;
+            } else {
+                estado = nuevoEstado;
+                aplicar();
+                vista.texto(InstantaneaSensor.CAMPO_ESTADO, nuevoEstado);
+            }
+            int ahoraConectado = "Conectado".equals(nuevoEstado) ? 1 : 0;
+            if (ahoraConectado == conectado) {
+                omitidas++;
+            } else {
+                conectado = ahoraConectado;
+                aplicar();
+                vista.conectado(ahoraConectado == 1);
+            }
+        }
+
+        // Desconectado: el icono de señal se queda a 0 aunque llegue algún RSSI
+        Integer rssi = s.getRssi();
+        if (conectado == 0) {
+            cambiarSenal(0);
+        } else if (rssi != null) {
+            cambiarSenal(nivelSenal(rssi));
+        }
+    }
+
+    private void cambiarBarra(int barra, int progreso, int banda) {
+        // La banda va antes: al cambiar el drawable la barra vuelve a aplicar su progreso
+        if (banda == bandas[barra]) {
+            omitidas++;
+        } else {
+            bandas[barra] = banda;
+            aplicar();
+            vista.banda(barra, banda);
+        }
+        if (progreso == progresos[barra]) {
+            omitidas++;
+        } else {
+            progresos[barra] = progreso;
+            aplicar();
+            vista.progreso(barra, progreso);
+        }
+    }
+
+    private void cambiarBateriaBaja(boolean baja) {
+        int valor = baja ? 1 : 0;
+        if (valor == bateriaBaja) {
+            omitidas++;
+            return;
+        }
+        bateriaBaja = valor;
+        aplicar();
+        vista.bateriaBaja(baja);
+    }
+
+    private void cambiarSenal(int nivel) {
+        if (nivel == senal) {
+            omitidas++;
+            return;
+        }
+        senal = nivel;
+        aplicar();
+        vista.senal(nivel);
+    }
+
+    private void aplicar() {
+        aplicadas++;
+    }
+
+    /**
+     * @brief Nivel del icono de señal para un RSSI.
+     * (rssi:int) -> nivelSenal() -> int
+     * @return 4 (>= -60 dBm), 3 (>= -70), 2 (>= -80), 1 (>= -90) o 0.
+     */
+    public static int nivelSenal(int rssi) {
+        if (rssi >= -60) return 4;
+        if (rssi >= -70) return 3;
+        if (rssi >= -80) return 2;
+        if (rssi >= -90) return 1;
+        return 0;
+    }
+
+    /**
+     * @brief Formatea un valor en coma fija sin String.format.
+     * (escalado:long, decimales:int, unidad:String) -> fijo() -> String
+     * @param escalado Valor multiplicado por 10^decimales y redondeado.
+     * @param decimales Decimales (0 - 3).
+     * @param unidad Texto que se añade detrás.
+     */
+    String fijo(long escalado, int decimales, String unidad) {
+        StringBuilder sb = new StringBuilder(16);
+        if (escalado < 0) {
+            sb.append('-');
+            escalado = -escalado;
+        }
+        long divisor = POTENCIAS[decimales];
+        sb.append(escalado / divisor);
+        if (decimales > 0) {
+            sb.append(separadorDecimal);
+            long fraccion = escalado % divisor;
+            for (long p = divisor / 10; p > 1 && fraccion < p; p /= 10) sb.append('0');
+            sb.append(fraccion);
+        }
+        return sb.append(unidad).toString();
+    }
+
+    // --- Configuración y métricas ---
+
+    /** @brief Separación mínima entre dos pintados (ms). */
+    public long getPresupuestoMs() {
+        return presupuestoMs;
+    }
+
+    /** @brief Cambia la separación mínima entre dos pintados (ms). */
+    public void setPresupuestoMs(long presupuestoMs) {
+        this.presupuestoMs = Math.max(0, presupuestoMs);
+    }
+
+    /** @brief Llamadas hechas a la \ref Vista. */
+    public long getAplicadas() {
+        return aplicadas;
+    }
+
+    /** @brief Llamadas a la \ref Vista evitadas porque lo que se ve no cambiaba. */
+    public long getOmitidas() {
+        return omitidas;
+    }
+
+    /** @brief Instantáneas sustituidas por otra antes de pintarse (presupuesto por fotograma). */
+    public long getFusionadas() {
+        return fusionadas;
+    }
+
+    /**
+     * @brief Resumen para la capa de depuración.
+     * () -> resumen() -> String
+     */
+    public String resumen() {
+        long total = aplicadas + omitidas;
+        return String.format(Locale.ROOT, "Render: %d fotogramas (cada %d ms como mucho), %d instantáneas fusionadas\nVistas: %d aplicadas, %d omitidas (%.0f%%)",
+                fotogramas, presupuestoMs, fusionadas, aplicadas, omitidas, total == 0 ? 0 : 100.0 * omitidas / total);
+    }
+}
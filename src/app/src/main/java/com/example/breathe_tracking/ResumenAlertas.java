@@ -0,0 +1,279 @@
+/**
+ * @file ResumenAlertas.java
+ * @brief Acumula las alertas e incidencias en una ventana y las envía agrupadas por sensor y tipo en un solo correo.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @class ResumenAlertas
+ * @brief Resumen de alertas por correo: como mucho un correo cada \ref getVentanaMs() ms, salvo las críticas.
+ *
+ * Copyrigth © 2025
+ *
+ * Un sensor que se desconecta y vuelve una y otra vez, o una medida que oscila alrededor del umbral,
+ * generaría un correo por aviso. Aquí cada alerta se suma a su grupo (sensor + tipo): el grupo cuenta
+ * las veces, la hora de la primera y la última y el último mensaje. La primera alerta abre una
+ * ventana; al cerrarse (\ref revisar) sale un único correo con todos los grupos, escrito con
+ * \ref PlantillaCorreo sobre un StringBuilder reutilizado. Así entre dos resúmenes pasa siempre al
+ * menos una ventana.
+ *
+ * - **Críticas:** salen al momento en su propio correo. Si la misma alerta crítica (sensor + tipo)
+ *   vuelve a saltar antes de que pase una ventana, se suma al resumen como las demás.
+ * - **Límite de grupos:** a partir de \ref getMaxGrupos() grupos las alertas nuevas solo se cuentan
+ *   (el pie del correo indica cuántas se han omitido).
+ *
+ * En la app hay uno por proceso (\ref JavaMailAPI#resumen): recibe las incidencias que reporta el
+ * usuario y, si el documento de configuración lo activa, las alertas y desconexiones del servicio.
+ *
+ * Es thread-safe. El llamante programa \ref revisar con la espera que devuelven \ref agregar y \ref revisar.
+ */
+public class ResumenAlertas {
+
+    /** @brief Ventana por defecto entre dos resúmenes (10 minutos). */
+    public static final long VENTANA_POR_DEFECTO_MS = 10 * 60 * 1000;
+    /** @brief Grupos por defecto que se detallan en un resumen. */
+    public static final int MAX_GRUPOS_POR_DEFECTO = 50;
+
+    /** @brief Quien envía los correos (en la app, la \ref BandejaCorreo). */
+    public interface Envio {
+        /**
+         * @brief Envía un correo al administrador.
+         * @param asunto Asunto.
+         * @param html Cuerpo HTML.
+         */
+        void enviar(String asunto, String html);
+    }
+
+    /** @brief Alertas de un mismo sensor y tipo dentro de la ventana. */
+    private static final class Grupo {
+        final String sensor;
+        final String tipo;
+        int veces;
+        String primera;
+        String ultima;
+        String mensaje;
+
+        Grupo(String sensor, String tipo) {
+            this.sensor = sensor;
+            this.tipo = tipo;
+        }
+    }
+
+    private final Envio envio;
+    private final Reloj reloj;
+    private final long ventanaMs;
+    private final int maxGrupos;
+
+    /** @brief Grupos de la ventana abierta, ordenados por sensor y tipo. */
+    private final TreeMap<String, Grupo> grupos = new TreeMap<>();
+    /** @brief Instante en que salió el último correo crítico de cada sensor + tipo. */
+    private final Map<String, Long> criticasEnviadas = new HashMap<>();
+    /** @brief Builder de los correos (se reutiliza entre resúmenes). */
+    private final StringBuilder html = new StringBuilder(4096);
+
+    /** @brief Instante en que se cierra la ventana abierta (Long.MIN_VALUE si no hay ninguna). */
+    private long cierreMs = Long.MIN_VALUE;
+    /** @brief Alertas de la ventana (incluidas las omitidas). */
+    private int alertasVentana = 0;
+    /** @brief Alertas de la ventana que no caben en \ref maxGrupos. */
+    private int omitidasVentana = 0;
+    private String desdeVentana;
+    private String hastaVentana;
+
+    // Métricas
+    private long recibidas = 0;
+    private long resumenes = 0;
+    private long criticas = 0;
+    private long omitidas = 0;
+
+    /**
+     * @brief Constructor.
+     * (envio:Envio, reloj:Reloj, ventanaMs:long, maxGrupos:int) -> ResumenAlertas() -> ()
+     * @param envio Destino de los correos.
+     * @param reloj Reloj monótono (SystemClock::elapsedRealtime en la app).
+     * @param ventanaMs Tiempo que se acumulan las alertas antes de enviar el resumen.
+     * @param maxGrupos Grupos que se detallan en un resumen.
+     */
+    public ResumenAlertas(Envio envio, Reloj reloj, long ventanaMs, int maxGrupos) {
+        if (ventanaMs <= 0) throw new IllegalArgumentException("Ventana no válida: " + ventanaMs);
+        if (maxGrupos <= 0) throw new IllegalArgumentException("Máximo de grupos no válido: " + maxGrupos);
+        this.envio = envio;
+        this.reloj = reloj;
+        this.ventanaMs = ventanaMs;
+        this.maxGrupos = maxGrupos;
+    }
+
+    /**
+     * @brief Constructor con la ventana y el límite de grupos por defecto.
+     * (envio:Envio, reloj:Reloj) -> ResumenAlertas() -> ()
+     */
+    public ResumenAlertas(Envio envio, Reloj reloj) {
+        this(envio, reloj, VENTANA_POR_DEFECTO_MS, MAX_GRUPOS_POR_DEFECTO);
+    }
+
+    // --- Alertas ---
+
+    /**
+     * @brief Añade una alerta: las críticas se envían ya y el resto se suman al resumen.
+     * (sensor:String, tipo:String, mensaje:String, hora:String, critica:boolean) -> agregar() -> long
+     * @param sensor Código del sensor.
+     * @param tipo Tipo de alerta (su título, ej: "Alerta de CO2").
+     * @param mensaje Texto de la alerta.
+     * @param hora Hora de la alerta tal y como se muestra (ej: "14:05").
+     * @param critica true si no puede esperar al resumen.
+     * @return Milisegundos hasta el próximo \ref revisar, o -1 si no hay nada pendiente.
+     */
+    public synchronized long agregar(String sensor, String tipo, String mensaje, String hora, boolean critica) {
+        recibidas++;
+        long ahora = reloj.ahoraMs();
+        String clave = clave(sensor, tipo);
+        if (critica) {
+            Long anterior = criticasEnviadas.get(clave);
+            if (anterior == null || ahora - anterior >= ventanaMs) {
+                criticasEnviadas.put(clave, ahora);
+                criticas++;
+                html.setLength(0);
+                PlantillaCorreo.INCIDENCIA.escribir(html, tipo + " · " + sensor, hora + " - " + mensaje);
+                envio.enviar("[CRÍTICA] " + tipo + " · " + sensor, html.toString());
+                return espera(ahora);
+            }
+            // Se repite dentro de la ventana: va al resumen
+        }
+
+        if (cierreMs == Long.MIN_VALUE) {
+            cierreMs = ahora + ventanaMs;
+            desdeVentana = hora;
+        }
+        hastaVentana = hora;
+        alertasVentana++;
+        Grupo grupo = grupos.get(clave);
+        if (grupo == null) {
+            if (grupos.size() >= maxGrupos) {
+                omitidasVentana++;
+                omitidas++;
+                return espera(ahora);
+            }
+            grupo = new Grupo(sensor, tipo);
+            grupo.primera = hora;
+            grupos.put(clave, grupo);
+        }
+        grupo.veces++;
+        grupo.ultima = hora;
+        grupo.mensaje = mensaje;
+        return espera(ahora);
+    }
+
+    /**
+     * @brief Envía el resumen si la ventana se ha cerrado.
+     * () -> revisar() -> long
+     * @return Milisegundos hasta la próxima revisión, o -1 si no hay nada pendiente.
+     */
+    public synchronized long revisar() {
+        long ahora = reloj.ahoraMs();
+        if (cierreMs != Long.MIN_VALUE && ahora >= cierreMs) enviarResumen();
+        // Las críticas que ya no pueden frenar a otra se olvidan
+        Iterator<Long> it = criticasEnviadas.values().iterator();
+        while (it.hasNext()) if (ahora - it.next() >= ventanaMs) it.remove();
+        return espera(ahora);
+    }
+
+    /**
+     * @brief Envía ya el resumen de lo acumulado, sin esperar al cierre de la ventana (al parar el servicio).
+     * () -> vaciar() -> ()
+     */
+    public synchronized void vaciar() {
+        if (cierreMs != Long.MIN_VALUE) enviarResumen();
+    }
+
+    private void enviarResumen() {
+        int sensores = 0;
+        String anterior = null;
+        for (Grupo g : grupos.values()) {
+            if (!g.sensor.equals(anterior)) sensores++;
+            anterior = g.sensor;
+        }
+        html.setLength(0);
+        PlantillaCorreo.RESUMEN_CABECERA.escribir(html, Integer.toString(alertasVentana), Integer.toString(sensores),
+                desdeVentana, hastaVentana);
+        for (Grupo g : grupos.values()) {
+            PlantillaCorreo.RESUMEN_FILA.escribir(html, g.sensor, g.tipo, Integer.toString(g.veces), g.primera, g.ultima, g.mensaje);
+        }
+        PlantillaCorreo.RESUMEN_PIE.escribir(html, omitidasVentana == 0 ? ""
+                : omitidasVentana + " alertas más de otros sensores o tipos no se detallan. ");
+        String asunto = grupos.size() == 1 && omitidasVentana == 0
+                ? grupos.firstEntry().getValue().tipo + " · " + grupos.firstEntry().getValue().sensor + " (" + alertasVentana + ")"
+                : "Resumen de alertas (" + alertasVentana + ")";
+        resumenes++;
+        grupos.clear();
+        cierreMs = Long.MIN_VALUE;
+        alertasVentana = 0;
+        omitidasVentana = 0;
+        envio.enviar(asunto, html.toString());
+    }
+
+    private long espera(long ahora) {
+        if (cierreMs != Long.MIN_VALUE) return Math.max(0, cierreMs - ahora);
+        // Sin resumen pendiente solo queda olvidar las críticas enviadas
+        long espera = -1;
+        for (long enviada : criticasEnviadas.values()) {
+            long e = Math.max(0, enviada + ventanaMs - ahora);
+            if (espera < 0 || e < espera) espera = e;
+        }
+        return espera;
+    }
+
+    private static String clave(String sensor, String tipo) {
+        return sensor + '\u0000' + tipo;
+    }
+
+    // --- Métricas ---
+
+    /** @brief Ventana entre resúmenes. */
+    public long getVentanaMs() {
+        return ventanaMs;
+    }
+
+    /** @brief Grupos que se detallan en un resumen. */
+    public int getMaxGrupos() {
+        return maxGrupos;
+    }
+
+    /** @brief Alertas recibidas. */
+    public synchronized long getRecibidas() {
+        return recibidas;
+    }
+
+    /** @brief Correos de resumen enviados. */
+    public synchronized long getResumenes() {
+        return resumenes;
+    }
+
+    /** @brief Correos críticos enviados al momento. */
+    public synchronized long getCriticas() {
+        return criticas;
+    }
+
+    /** @brief Alertas contadas pero no detalladas por el límite de grupos. */
+    public synchronized long getOmitidas() {
+        return omitidas;
+    }
+
+    /** @brief Alertas de la ventana abierta. */
+    public synchronized int getPendientes() {
+        return alertasVentana;
+    }
+
+    /** @brief Resumen legible para el log. */
+    public synchronized String resumen() {
+        long correos = resumenes + criticas;
+        return String.format(Locale.ROOT, "Resumen de alertas: %d alertas en %d correos (%d resúmenes, %d críticas), %d omitidas, %d pendientes",
+                recibidas, correos, resumenes, criticas, omitidas, alertasVentana);
+    }
+}
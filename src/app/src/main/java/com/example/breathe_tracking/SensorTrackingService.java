@@ -15,9 +15,13 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.location.Address;
 import android.location.Geocoder;
+import android.net.ConnectivityManager;
+import android.net.Network;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 // Imports de Bluetooth
@@ -39,13 +43,20 @@ import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 
 // Imports de Utilidades
+import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 // Imports de Firebase
 import com.google.firebase.firestore.FirebaseFirestore;
@@ -70,6 +81,12 @@ import java.util.Map;
  * 6.  **Vigilante de Conexión (Watchdog):** Mecanismo de temporizador para detectar la pérdida de conexión con el sensor.(06/11-Sandra)
  * 7.  **Subida de datos:** Sincronización de mediciones e historial con **Firebase Firestore**.(17/11-Sandra)
  *
+ * El callback del escaneo solo filtra y encola los anuncios; la decodificación, las alertas y la subida
+ * se ejecutan en el hilo de \ref PipelineIngesta. La ubicación usa su propio hilo y el Geocoder otro
+ * (a través de \ref GeocodificadorInverso, que evita consultas si no se cambia de celda, y con
+ * \ref IndiceCallejero como respaldo sin red). La prioridad y el
+ * intervalo de la ubicación los decide \ref PoliticaUbicacion según el desplazamiento entre fijos.
+ *
  * @extends Service
  */
 
@@ -96,6 +113,12 @@ public class SensorTrackingService extends Service {
     private static final int BATTERY_ALERT_ID = 104;
     /** @brief ID para la notificación de alerta de Conexión perdida. */
     private static final int CONNECTION_ALERT_ID = 105;
+    /** @brief ID para la notificación de alerta de CO (tramas con los cinco gases). */
+    private static final int CO_ALERT_ID = 106;
+    /** @brief ID para la notificación de alerta de NO2. */
+    private static final int NO2_ALERT_ID = 107;
+    /** @brief ID para la notificación de alerta de SO2. */
+    private static final int SO2_ALERT_ID = 108;
 
     // --- Módulos Principales ---
     /** @brief Cliente para obtener actualizaciones de ubicación. */
@@ -106,46 +129,205 @@ public class SensorTrackingService extends Service {
     private BluetoothLeScanner elEscanner;
     /** @brief Callback que se activa al recibir un resultado de escaneo (un beacon). */
     private ScanCallback callbackDelEscaneo;
+    /** @brief Filtro de anuncios: genera los ScanFilter y descarta en software lo que el chipset deje pasar. */
+    private FiltroSensores filtroSensores;
+    /** @brief Nombre BLE del sensor principal (el vinculado en la sesión). */
+    private static final String NOMBRE_SENSOR = "rocio";
+    /** @brief Extra del Intent con los sensores adicionales del modo pasarela ("nombreBLE=codigo" o "MAC=codigo"). */
+    public static final String EXTRA_SENSORES_GATEWAY = "SENSORES_GATEWAY";
+    /** @brief Estado por sensor (suavizado, deduplicación y documento de Firestore). */
+    private final RegistroSensores registroSensores = new RegistroSensores(MAX_SENSORES_COLA);
+
+    // Modo de entrega del escaneo: tiempo real (un callback por anuncio) o por lotes
+    /** @brief Extra del Intent que activa el modo por lotes. */
+    public static final String EXTRA_MODO_LOTES = "MODO_LOTES";
+    /** @brief Extra del Intent con el retardo de entrega de lotes en milisegundos. */
+    public static final String EXTRA_RETARDO_LOTE_MS = "RETARDO_LOTE_MS";
+    /** @brief Retardo de entrega de lotes por defecto (10 segundos). */
+    private static final long RETARDO_LOTE_POR_DEFECTO_MS = 10 * 1000;
+    /** @brief true si el escaneo entrega los resultados agrupados en lotes (onBatchScanResults). */
+    private boolean modoLotes = false;
+    /** @brief Retardo de entrega de lotes configurado (ScanSettings.setReportDelay). */
+    private long retardoLoteMs = RETARDO_LOTE_POR_DEFECTO_MS;
+    /** @brief Agrupa cada lote en una lectura por sensor. */
+    private final AgrupadorLotes agrupadorLotes = new AgrupadorLotes();
+    /** @brief Decide qué lecturas se suben y se muestran (bandas muertas por canal, umbrales de alerta y latido). */
+    private final FiltroCambios filtroCambios = FiltroCambios.porDefecto();
+    /** @brief Documento de Firestore con las reglas de alerta (campo "reglas"; ver \ref MotorAlertas#desdeDocumento). */
+    private static final String DOCUMENTO_REGLAS_ALERTA = "configuracion/alertas";
+    /** @brief Reglas de alerta vigentes (las por defecto hasta que se lee el documento de configuración). */
+    private volatile MotorAlertas motorAlertas = MotorAlertas.predeterminado();
+
+    // Pipeline de ingesta: el escaneo encola y un hilo propio procesa
+    /** @brief Extra del Intent con la política de desbordamiento de la cola (nombre de ColaIngesta.PoliticaDesbordamiento). */
+    public static final String EXTRA_POLITICA_COLA = "POLITICA_COLA";
+    /** @brief Capacidad de la cola en modo DESCARTAR_ANTIGUO (paquetes). */
+    private static final int CAPACIDAD_COLA = 256;
+    /** @brief Número máximo de sensores distintos en modo FUSIONAR_POR_SENSOR. */
+    private static final int MAX_SENSORES_COLA = 32;
+    /** @brief Junta las lecturas que el sensor reparte en varios anuncios (tipo 0xA2). Solo en el hilo principal. */
+    private final ProtocoloTrama.Reensamblador reensamblador = new ProtocoloTrama.Reensamblador(ProtocoloTrama.ESTANDAR, MAX_SENSORES_COLA);
+    /** @brief Pipeline que decodifica, evalúa y sube las lecturas fuera del hilo principal. */
+    private PipelineIngesta pipelineIngesta;
+    /** @brief Hilo con Looper para las actualizaciones de ubicación. */
+    private HandlerThread hiloUbicacion;
+    /** @brief Hilo de las consultas bloqueantes al Geocoder. */
+    private ExecutorService ejecutorGeocoder;
+    /** @brief Geocodificación inversa con caché por celda geohash (no consulta si no se cambia de celda). */
+    private GeocodificadorInverso geocodificador;
+    /** @brief Callejero local (files/callejero.idx) para resolver direcciones sin red; null si no está instalado. */
+    private IndiceCallejero indiceCallejero;
+    /** @brief Prioridad e intervalo de la ubicación según el movimiento (alta precisión solo al desplazarse). */
+    private PoliticaUbicacion politicaUbicacion;
+    /** @brief Handler del hilo de ubicación: revisa la política en el mismo hilo que recibe los fijos. */
+    private Handler manejadorUbicacion;
+    /** @brief Periodo de revisión de la política de ubicación (1 minuto). */
+    private static final long REVISAR_UBICACION_MS = 60 * 1000;
+    /** @brief Tarea periódica que revisa la política (sonda desde REPOSO) y vuelve a pedir ubicación si cambia el nivel. */
+    private final Runnable tareaUbicacion = new Runnable() {
+        @Override
+        public void run() {
+            if (politicaUbicacion.revisar()) startLocationUpdates();
+            manejadorUbicacion.postDelayed(this, REVISAR_UBICACION_MS);
+        }
+    };
+
+    // Escaneo adaptativo (ventanas cortas alrededor de los anuncios esperados)
+    /** @brief Extra del Intent para desactivar el escaneo adaptativo (por defecto activo salvo en modo por lotes). */
+    public static final String EXTRA_ESCANEO_ADAPTATIVO = "ESCANEO_ADAPTATIVO";
+    /** @brief Planificador del escaneo; null si se escanea en continuo (BAJO_CONSUMO o por lotes). */
+    private volatile PlanificadorEscaneo planificadorEscaneo;
+    /** @brief true si el servicio debe usar \ref planificadorEscaneo. */
+    private boolean escaneoAdaptativo = true;
+    /** @brief Tarea que aplica el planificador y se reprograma con la espera que devuelve. */
+    private final Runnable tareaPlanificador = new Runnable() {
+        @Override
+        public void run() {
+            PlanificadorEscaneo planificador = planificadorEscaneo;
+            if (planificador == null) return;
+            watchdogHandler.removeCallbacks(this);
+            watchdogHandler.postDelayed(this, Math.max(0, planificador.planificar()));
+            // Entre ventanas la radio no escucha: el vigilante debe tolerar al menos dos periodos sin anuncios
+            detectorConexion.setLimiteMinimoMs(Math.max(DetectorConexion.LIMITE_MINIMO_POR_DEFECTO_MS, 2 * planificador.getPeriodoMs()));
+        }
+    };
     /** @brief Singleton que contiene el estado de los datos (LiveData) para la comunicación con la UI. */
     private TrackingDataHolder dataHolder;
 
+    // Notificaciones de alerta: solo se llama al NotificationManager cuando algo cambia
+    /** @brief Separación mínima entre dos publicaciones de una misma alerta (30 segundos). */
+    private static final long INTERVALO_REAVISO_MS = 30 * 1000;
+    /** @brief Sabe qué alertas están visibles y filtra los notify/cancel redundantes. */
+    private ControladorNotificaciones controladorNotificaciones;
+    /** @brief Builder (con su PendingIntent) de cada notificación de alerta, por ID; se crean una vez. */
+    private final Map<Integer, NotificationCompat.Builder> constructoresAlerta = new ConcurrentHashMap<>();
+    /** @brief Tarea que publica las alertas aplazadas por el intervalo mínimo. */
+    private final Runnable tareaNotificaciones = new Runnable() {
+        @Override
+        public void run() {
+            programarNotificaciones(controladorNotificaciones.revisar());
+        }
+    };
+
+    // Correo de alertas: desactivado salvo que el documento de configuración lo pida
+    /**
+     * @brief true si las alertas y desconexiones se envían también por correo al administrador (campo
+     * booleano "correo" de \ref DOCUMENTO_REGLAS_ALERTA). Van al resumen de \ref JavaMailAPI#resumen, no un
+     * correo por aviso. Por defecto solo se envían por correo las incidencias que reporta el usuario.
+     */
+    private volatile boolean correoAlertas = false;
+
     // Vigilante de Conexión
-    /** @brief Handler para programar la tarea del watchdog. */
+    /** @brief Handler para programar las tareas del servicio (vigilante de conexión, lotes, notificaciones...). */
     private Handler watchdogHandler = new Handler(Looper.getMainLooper());
-    /** @brief Runnable que se ejecuta si no se reciben datos del sensor en el tiempo de espera. */
-    private Runnable watchdogRunnable;
-    /** @brief Retraso en milisegundos para el watchdog (3 minutos). */
+    /** @brief Silencio máximo antes de dar un sensor por desconectado (1 minuto); con el intervalo aprendido se detecta antes. */
     private static final long WATCHDOG_DELAY_MS = 1 * 60 * 1000; // 1 minuto
+    /** @brief Detecta las desconexiones con el instante del último anuncio de cada sensor (sin tareas por paquete). */
+    private DetectorConexion detectorConexion;
+    /** @brief Única tarea del vigilante: revisa los plazos de todos los sensores y se reprograma con el siguiente. */
+    private final Runnable tareaConexion = new Runnable() {
+        @Override
+        public void run() {
+            programarConexion(detectorConexion.revisar());
+        }
+    };
 
-    // Memoria para los últimos valores que hemos recibido para evitar actualizaciones innecesarias si no ha cambiado el valor
-    /** @brief Almacena la última temperatura recibida. */
-    private float lastUpdatedTemp = -999.0f;
-    /** @brief Almacena el último valor de ozono recibido. */
-    private float lastUpdatedOzono = -999.0f;
-    /** @brief Almacena el último valor de CO2 recibido. */
-    private int lastUpdatedCo2 = -999;
-    /** @brief Flag para controlar el envío único de la notificación de batería baja. */
-    private boolean batteryAlertSent = false;
-    
     // --- NUEVO: Memoria para RSSI (Media Ponderada) ---
-    /** @brief Almacena el RSSI suavizado para evitar fluctuaciones bruscas. Inicialmente -999 (sin señal). */
-    private float smoothedRssi = -999.0f;
+    // El RSSI suavizado y los últimos valores recibidos se guardan por sensor en EstadoSensor.
     /** @brief Factor de suavizado para el filtro (0.0 - 1.0). Un valor bajo (ej: 0.1) hace que la barra se mueva lentamente. */
     private static final float ALPHA_RSSI = 0.2f;
 
     // Conexión y referncias de firebase
     /** @brief Instancia principal de Firebase Firestore. */
     private FirebaseFirestore db;
-    /** @brief Código único del sensor que se está rastreando. */
+    /** @brief Código único del sensor principal que se está rastreando. */
     private String sensorCode;
-    /** @brief Referencia al documento del sensor en Firestore. */
-    private DocumentReference sensorDocRef;
+    /** @brief Agrupa las lecturas y las sube en lotes (WriteBatch) cada 50 lecturas o 30 segundos. */
+    private AgrupadorEscrituras agrupadorEscrituras;
+    /** @brief Tarea que confirma el lote en curso cuando agota su espera máxima. */
+    private final Runnable tareaEscrituras = new Runnable() {
+        @Override
+        public void run() {
+            long espera = agrupadorEscrituras.revisar();
+            if (espera > 0) watchdogHandler.postDelayed(this, espera);
+        }
+    };
+
+    // Documento de último valor de cada sensor (sensores/{codigo}): escrituras fusionadas
+    /** @brief Fusiona los set con merge del documento de cada sensor (máximo uno por segundo, los cambios de estado al momento). */
+    private CoalescedorEscrituras coalescedorEscrituras;
+    /** @brief Tarea que escribe los documentos cuyo intervalo mínimo ha pasado. */
+    private final Runnable tareaCoalescedor = new Runnable() {
+        @Override
+        public void run() {
+            programarCoalescedor(coalescedorEscrituras.revisar());
+        }
+    };
+
+    // Agregados horarios por sensor (sensores/{codigo}/rollups/{yyyyMMdd}) para la gráfica
+    /** @brief Periodo de publicación de los agregados horarios (5 minutos). */
+    private static final long PUBLICAR_AGREGADOS_MS = 5 * 60 * 1000;
+    /** @brief Agrega todas las muestras decodificadas por hora, canal y sensor. */
+    private AgregadorHorario agregadorHorario;
+    /** @brief Tarea periódica (en \ref ejecutorSubidas) que publica las horas modificadas de los agregados. */
+    private final Runnable tareaAgregados = () -> agregadorHorario.publicar();
+    /** @brief Ejecución periódica de \ref tareaAgregados. */
+    private ScheduledFuture<?> publicacionAgregados;
+
+    // Bandeja de salida: sin red las lecturas se guardan en disco y se suben en orden al volver
+    /** @brief Reintento de subida de la bandeja mientras queden lecturas (30 segundos). */
+    private static final long REINTENTO_BANDEJA_MS = 30 * 1000;
+    /** @brief Cola en disco de las lecturas sin subir; null si no se pudo abrir (se usa solo el agrupador). */
+    private BandejaSalidaLocal bandejaSalida;
+    /** @brief Sube la bandeja por lotes y decide qué lecturas van a ella. */
+    private SubidorBandeja subidorBandeja;
+    /** @brief Servicio de conectividad para saber cuándo hay red. */
+    private ConnectivityManager conectividad;
+    /** @brief Callback de la red por defecto (se ejecuta en un hilo del sistema). */
+    private ConnectivityManager.NetworkCallback callbackRed;
+    /** @brief Hilo de las subidas en segundo plano: la bandeja (lee del disco) y los agregados horarios. */
+    private ScheduledExecutorService ejecutorSubidas;
+    /** @brief Próxima ejecución de \ref tareaBandeja (null si no hay). */
+    private ScheduledFuture<?> revisionBandeja;
+    /** @brief Tarea que vacía la bandeja y se reprograma mientras queden lecturas (reintento tras un fallo). */
+    private final Runnable tareaBandeja = new Runnable() {
+        @Override
+        public void run() {
+            subidorBandeja.drenar();
+            if (subidorBandeja.isHayRed() && bandejaSalida.getPendientes() > 0) {
+                programarBandeja(REINTENTO_BANDEJA_MS);
+            }
+        }
+    };
+
+    /** @brief Historial de alertas de mediciones (compartido con IncidenciasActivity y guardado en disco). */
+    private HistorialAlertas historialAlertas;
 
-    // Lista para gestionar las alertas
-    /** @brief Lista que almacena las últimas 4 alertas. */
-    private final List<String> alertList = new ArrayList<>();
-    /** @brief Número máximo de alertas que se almacenarán. */
-    private static final int MAX_ALERTS = 4;
+    // Objetos reutilizables (evitan asignaciones por cada lectura)
+    /** @brief Formateador de hora reutilizable (protegido por \ref horaActual, que es synchronized). */
+    private final SimpleDateFormat formatoHora = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    /** @brief Fecha reutilizable para formatear la hora actual sin crear un Date nuevo. */
+    private final Date fechaActual = new Date();
 
 
     // --- onCreate --------------------------------------------------------------------------------------
@@ -158,11 +340,65 @@ public class SensorTrackingService extends Service {
         // Configuración de los servicios de ubicación
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
         dataHolder = TrackingDataHolder.getInstance();
+        historialAlertas = dataHolder.getHistorialAlertas(getFilesDir());
+        // La bandeja de correo reanuda el envío de lo que quedó pendiente en la sesión anterior
+        JavaMailAPI.bandeja(this);
         // Configuración de los canales de notificaciones
         createNotificationChannels();
+        final NotificationManager gestorNotificaciones = getSystemService(NotificationManager.class);
+        controladorNotificaciones = new ControladorNotificaciones(new ControladorNotificaciones.Notificador() {
+            @Override
+            public void notificar(int id, String canal, String titulo, String mensaje) {
+                NotificationCompat.Builder constructor = constructoresAlerta.get(id);
+                constructor.setContentTitle(titulo).setContentText(mensaje).setWhen(System.currentTimeMillis());
+                gestorNotificaciones.notify(id, constructor.build());
+            }
+
+            @Override
+            public void cancelar(int id) {
+                gestorNotificaciones.cancel(id);
+            }
+        }, SystemClock::elapsedRealtime).canal(ALERT_CHANNEL_ID, INTERVALO_REAVISO_MS);
 
         // Incializamos la base de datos de firebase
         db = FirebaseFirestore.getInstance();
+        coalescedorEscrituras = new CoalescedorEscrituras((codigo, campos) ->
+                db.collection("sensores").document(codigo).set(campos, SetOptions.merge())
+                        .addOnSuccessListener(aVoid -> Log.d(ETIQUETA_LOG, "Documento del sensor " + codigo + " actualizado."))
+                        .addOnFailureListener(e -> Log.e(ETIQUETA_LOG, "Fallo al actualizar el documento del sensor: " + e.getMessage())),
+                SystemClock::elapsedRealtime);
+        SumideroFirestore sumidero = new SumideroFirestore(db, (codigo, campos) ->
+                programarCoalescedor(coalescedorEscrituras.escribir(codigo, campos)));
+        agrupadorEscrituras = new AgrupadorEscrituras(sumidero, SystemClock::elapsedRealtime);
+        ejecutorSubidas = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "subidas");
+            t.setDaemon(true);
+            return t;
+        });
+        iniciarBandejaSalida(sumidero);
+        agregadorHorario = new AgregadorHorario((codigo, dia, campos) ->
+                db.collection("sensores").document(codigo).collection("rollups").document(dia)
+                        .set(campos, SetOptions.merge())
+                        .addOnFailureListener(e -> Log.e(ETIQUETA_LOG, "Fallo al subir los agregados horarios: " + e.getMessage())),
+                TimeZone.getDefault(), MAX_SENSORES_COLA);
+        publicacionAgregados = ejecutorSubidas.scheduleWithFixedDelay(tareaAgregados,
+                PUBLICAR_AGREGADOS_MS, PUBLICAR_AGREGADOS_MS, TimeUnit.MILLISECONDS);
+        cargarReglasAlertas();
+
+        // Filtro de anuncios BLE (los sensores se registran en onStartCommand)
+        filtroSensores = new FiltroSensores();
+        detectorConexion = new DetectorConexion(SystemClock::elapsedRealtime,
+                (indice, silencioMs) -> alPerderConexion(registroSensores.porIndice(indice), silencioMs),
+                MAX_SENSORES_COLA, WATCHDOG_DELAY_MS);
+
+        // Las actualizaciones de ubicación y el Geocoder no deben bloquear el hilo principal
+        hiloUbicacion = new HandlerThread("ubicacion");
+        hiloUbicacion.start();
+        manejadorUbicacion = new Handler(hiloUbicacion.getLooper());
+        politicaUbicacion = new PoliticaUbicacion(SystemClock::elapsedRealtime);
+        indiceCallejero = abrirIndiceCallejero();
+        ejecutorGeocoder = Executors.newSingleThreadExecutor();
+        geocodificador = new GeocodificadorInverso(crearFuenteGeocodificacion(), ejecutorGeocoder, SystemClock::elapsedRealtime);
 
         /**
          * @brief Callback que maneja los resultados de las actualizaciones de ubicación.
@@ -174,46 +410,17 @@ public class SensorTrackingService extends Service {
             public void onLocationResult(LocationResult locationResult) {
                 if (locationResult == null) return;
                 for (android.location.Location location : locationResult.getLocations()) {
+                    if (location == null) continue;
+                    // El desplazamiento decide la prioridad de las siguientes peticiones
+                    if (politicaUbicacion.registrarUbicacion(location.getLatitude(), location.getLongitude(),
+                            location.hasAccuracy() ? location.getAccuracy() : 0, location.getElapsedRealtimeNanos() / 1_000_000)) {
+                        startLocationUpdates();
+                    }
                     // Convierte las coordenadas (Lat/Lon) en una dirección (Calle, Ciudad)
-                    if (location != null) getAddressFromLocation(location);
+                    getAddressFromLocation(location);
                 }
             }
         };
-
-        //Tareas que ejecuta el observador cuando se desactiva o se pierde la conexión
-        /**
-         * @brief Runnable que se ejecuta cuando el watchdog expira (pérdida de conexión).
-         * Actualiza el estado a "Desconectado" y notifica la incidencia a Firebase y al usuario.
-         */
-        watchdogRunnable = () -> {
-            Log.e(ETIQUETA_LOG, "¡No se han recibido datos del sensor en 3 minutos!");
-            // Mostrar que el sensor se ha desconectado
-            dataHolder.estadoData.postValue("Desconectado");
-            // Reseteamos RSSI a muy bajo para indicar desconexión visualmente
-            dataHolder.rssiData.postValue(-999);
-            smoothedRssi = -999.0f; // Resetear el filtro también
-            
-            //Guardamos la hora de desconexion para mostrar la alerta
-            String currentTime = new SimpleDateFormat("HH:mm", Locale.getDefault()).format(new Date());
-            String message = currentTime + " - El sensor no está funcionando correctamente";
-            //Muestra la alerta en el tablón de incidencias (hora y mensaje)
-            dataHolder.incidenciaData.postValue(message);
-            //Envia notificacion sobre la alerta
-            sendAlertNotification("Alerta de Conexión", "El sensor no está funcionando correctamente", CONNECTION_ALERT_ID);
-
-            // Logica de firestor para actualizacion del estado del sensor
-            // Creamos un Mapa con solo los campos que queremos modificar: estado y timestamp.
-            Map<String, Object> desconexionData = new HashMap<>();
-            desconexionData.put("estado", "Desconectado");
-            desconexionData.put("ultima_conexion", FieldValue.serverTimestamp());
-
-            // Usamos SET con MERGE: Esto garantiza que los campos de medición no se borren
-            sensorDocRef.set(desconexionData, SetOptions.merge())
-                    .addOnSuccessListener(aVoid -> Log.d(ETIQUETA_LOG, "Estado de Desconexión subido a Firestore."))
-                    .addOnFailureListener(e -> Log.e(ETIQUETA_LOG, "Fallo al subir estado de desconexión: " + e.getMessage()));
-
-
-        };
     }
     // --- Fin onCreate ----------------------------------------------------------------------------------
 
@@ -237,10 +444,36 @@ public class SensorTrackingService extends Service {
             // Obtiene el ID que fue enviado desde SesionSensorActivity
             sensorCode = intent.getStringExtra("SENSOR_ID_KEY");
 
-            // Inicializa la referencia de Firestore usando el ID DINÁMICO
-            sensorDocRef = db.collection("sensores").document(sensorCode);
+            // El sensor principal siempre es el primero del registro (índice 0)
+            registrarSensor(sensorCode, NOMBRE_SENSOR);
+            // Sensores adicionales en modo pasarela
+            String[] sensoresGateway = intent.getStringArrayExtra(EXTRA_SENSORES_GATEWAY);
+            if (sensoresGateway != null) {
+                for (String entrada : sensoresGateway) {
+                    int separador = entrada.lastIndexOf('=');
+                    if (separador > 0 && separador < entrada.length() - 1) {
+                        registrarSensor(entrada.substring(separador + 1), entrada.substring(0, separador));
+                    }
+                }
+            }
 
-            Log.d(ETIQUETA_LOG, "Servicio iniciado para sensor: " + sensorCode);
+            Log.d(ETIQUETA_LOG, "Servicio iniciado para sensor: " + sensorCode + " (" + registroSensores.tamano() + " sensores registrados)");
+
+            // Modo de entrega del escaneo (por defecto, tiempo real)
+            modoLotes = intent.getBooleanExtra(EXTRA_MODO_LOTES, false);
+            // El retardo del lote debe ser bastante menor que el watchdog para no provocar falsas desconexiones
+            retardoLoteMs = Math.min(intent.getLongExtra(EXTRA_RETARDO_LOTE_MS, RETARDO_LOTE_POR_DEFECTO_MS), WATCHDOG_DELAY_MS / 2);
+            // Las ventanas del planificador no son compatibles con la entrega por lotes
+            escaneoAdaptativo = !modoLotes && intent.getBooleanExtra(EXTRA_ESCANEO_ADAPTATIVO, true);
+            // Con lotes los anuncios llegan de golpe cada retardoLoteMs (el planificador ajusta el de las ventanas)
+            detectorConexion.setLimiteMinimoMs(modoLotes
+                    ? Math.max(DetectorConexion.LIMITE_MINIMO_POR_DEFECTO_MS, 2 * retardoLoteMs)
+                    : DetectorConexion.LIMITE_MINIMO_POR_DEFECTO_MS);
+
+            if (pipelineIngesta == null) {
+                pipelineIngesta = new PipelineIngesta(new ColaIngesta(CAPACIDAD_COLA, MAX_SENSORES_COLA, leerPoliticaCola(intent)), etapasIngesta);
+                pipelineIngesta.iniciar("ingesta-sensores");
+            }
         } else {
             // Si no recibimos un ID, no podemos rastrear correctamente.
             Log.e(ETIQUETA_LOG, "ERROR: Servicio iniciado sin SENSOR_ID_KEY.");
@@ -269,8 +502,8 @@ public class SensorTrackingService extends Service {
         startForeground(NOTIFICATION_ID, notification);
         startLocationUpdates();
         inicializarYComenzarEscaneoBeacon();
-        // Inicializamos el temporizador del vigilante de conexión, pero no forzamos el estado a "Conectado".
-        resetWatchdogTimer();
+        // Inicializamos el vigilante de conexión, pero no forzamos el estado a "Conectado".
+        programarConexion(detectorConexion.getEsperaMs());
 
         // Asignar el código de sensor fijo
         //sensorCode = SENSOR_DOCUMENT_ID;
@@ -281,23 +514,220 @@ public class SensorTrackingService extends Service {
     }
     // --- Fin onStarCommand -----------------------------------------------------------------------------
 
+    /**
+     * @brief Registra un sensor en el registro, en el filtro de escaneo y en el vigilante de conexión, y prepara su documento.
+     * (codigo:String, clave:String) -> registrarSensor() -> ()
+     * @param codigo Código único del sensor (ID del documento en "sensores").
+     * @param clave Nombre BLE del sensor, o su dirección MAC ("AA:BB:CC:DD:EE:FF"). Una MAC mal formada se descarta,
+     *              igual que los sensores que no caben en \ref MAX_SENSORES_COLA.
+     */
+    private void registrarSensor(String codigo, String clave) {
+        boolean esMac = clave.length() == 17 && clave.charAt(2) == ':';
+        if (esMac && !BluetoothAdapter.checkBluetoothAddress(RegistroSensores.normalizarMac(clave))) {
+            // ScanFilter.Builder.setDeviceAddress lanzaría IllegalArgumentException en cada arranque del escaneo
+            Log.e(ETIQUETA_LOG, "Dirección MAC no válida para el sensor " + codigo + ": " + clave + " (se ignora)");
+            return;
+        }
+        EstadoSensor estado = registroSensores.registrar(codigo, esMac ? null : clave, esMac ? clave : null);
+        if (estado == null) {
+            // Las tablas por sensor (cola, vigilante, agregados, reensamblador) no tienen sitio para más índices
+            Log.e(ETIQUETA_LOG, "No se puede registrar el sensor " + codigo + ": ya hay " + registroSensores.getMaxSensores()
+                    + " sensores (se ignora)");
+            return;
+        }
+        if (esMac) {
+            filtroSensores.registrarDireccion(clave);
+        } else {
+            filtroSensores.registrarNombre(clave);
+        }
+        if (planificadorEscaneo != null) planificadorEscaneo.registrarSensor(estado.indice);
+        detectorConexion.registrarSensor(estado.indice);
+        if (estado.docRef == null) {
+            // Inicializa la referencia de Firestore usando el ID DINÁMICO
+            estado.docRef = db.collection("sensores").document(codigo);
+        }
+    }
+
+
+    /**
+     * @brief Lee la política de desbordamiento de la cola del Intent.
+     * (intent:Intent) -> leerPoliticaCola() -> ColaIngesta.PoliticaDesbordamiento
+     * @param intent Intent de arranque del servicio.
+     * @return La política indicada, o FUSIONAR_POR_SENSOR si no hay o no es válida.
+     */
+    private static ColaIngesta.PoliticaDesbordamiento leerPoliticaCola(Intent intent) {
+        String politica = intent.getStringExtra(EXTRA_POLITICA_COLA);
+        if (politica != null) {
+            try {
+                return ColaIngesta.PoliticaDesbordamiento.valueOf(politica);
+            } catch (IllegalArgumentException e) {
+                Log.w(ETIQUETA_LOG, "Política de cola desconocida: " + politica);
+            }
+        }
+        return ColaIngesta.PoliticaDesbordamiento.FUSIONAR_POR_SENSOR;
+    }
+
 
     //--- onDestory ------------------------------------------------------------------------------------
     // Se llama cuando la Activity (SesionSensorActivity) se destruye
     /**
      * @brief Se llama al destruir el servicio.
-     * Libera recursos: detiene las actualizaciones de ubicación, el escaneo BLE y el watchdog.
+     * Libera recursos: detiene las actualizaciones de ubicación, el escaneo BLE y el vigilante de conexión.
      * () -> onDestroy() -> ()
      */
     @Override
     public void onDestroy() {
         super.onDestroy();
         if (fusedLocationClient != null) fusedLocationClient.removeLocationUpdates(locationCallback);
+        watchdogHandler.removeCallbacks(tareaPlanificador);
         detenerEscaneoBeacon();
-        watchdogHandler.removeCallbacks(watchdogRunnable);
+        if (pipelineIngesta != null) {
+            // Procesa lo que quede en la cola antes de cancelar las tareas que el pipeline reprograma
+            pipelineIngesta.detener(1000);
+            Log.i(ETIQUETA_LOG, pipelineIngesta.resumen());
+        }
+        Log.i(ETIQUETA_LOG, ProtocoloTrama.ESTANDAR.resumen());
+        Log.i(ETIQUETA_LOG, reensamblador.resumen());
+        Log.i(ETIQUETA_LOG, filtroCambios.resumen());
+        Log.i(ETIQUETA_LOG, dataHolder.resumen());
+        Log.i(ETIQUETA_LOG, historialAlertas.resumen());
+        watchdogHandler.removeCallbacks(tareaNotificaciones);
+        Log.i(ETIQUETA_LOG, controladorNotificaciones.resumen());
+        Log.i(ETIQUETA_LOG, detectorConexion.resumen());
+        // Lo acumulado en la ventana sale ya (la bandeja lo guarda en disco si no hay red)
+        ResumenAlertas resumenAlertas = JavaMailAPI.resumen(this);
+        resumenAlertas.vaciar();
+        Log.i(ETIQUETA_LOG, resumenAlertas.resumen());
+        Log.i(ETIQUETA_LOG, JavaMailAPI.bandeja(this).resumen());
+        // Lo que quede pendiente se sube ya (Firestore lo conserva en local si no hay red)
+        agrupadorEscrituras.vaciar();
+        Log.i(ETIQUETA_LOG, agrupadorEscrituras.resumen());
+        coalescedorEscrituras.vaciar();
+        Log.i(ETIQUETA_LOG, coalescedorEscrituras.resumen());
+        if (callbackRed != null) conectividad.unregisterNetworkCallback(callbackRed);
+        // La última publicación de los agregados sale en el mismo hilo, antes de pararlo
+        detenerSubidas();
+        Log.i(ETIQUETA_LOG, agregadorHorario.resumen());
+        if (bandejaSalida != null) {
+            // Lo no subido queda en disco para la próxima sesión
+            bandejaSalida.cerrar();
+            Log.i(ETIQUETA_LOG, bandejaSalida.resumen());
+            Log.i(ETIQUETA_LOG, subidorBandeja.resumen());
+        }
+        watchdogHandler.removeCallbacksAndMessages(null);
+        if (hiloUbicacion != null) {
+            manejadorUbicacion.removeCallbacks(tareaUbicacion);
+            hiloUbicacion.quitSafely();
+            Log.i(ETIQUETA_LOG, politicaUbicacion.resumen());
+        }
+        if (ejecutorGeocoder != null) {
+            ejecutorGeocoder.shutdownNow();
+            Log.i(ETIQUETA_LOG, geocodificador.resumen());
+        }
     }
     // --- Fin onDestroy -------------------------------------------------------------------------------
 
+    /**
+     * @brief Programa la próxima revisión del coalescedor (sustituye a la anterior: la espera es la mínima de todos los documentos).
+     * (espera:long) -> programarCoalescedor() -> ()
+     * @param espera Valor devuelto por CoalescedorEscrituras.escribir/revisar (-1 si no hay nada pendiente).
+     */
+    private void programarCoalescedor(long espera) {
+        watchdogHandler.removeCallbacks(tareaCoalescedor);
+        if (espera >= 0) watchdogHandler.postDelayed(tareaCoalescedor, espera);
+    }
+
+    // --- Bandeja de salida ---------------------------------------------------------------------------
+    /**
+     * @brief Abre la bandeja de salida (recupera lo que quedó de la sesión anterior) y escucha la red.
+     * (sumidero:SumideroFirestore) -> iniciarBandejaSalida() -> ()
+     * @param sumidero Sumidero compartido con \ref agrupadorEscrituras.
+     */
+    private void iniciarBandejaSalida(SumideroFirestore sumidero) {
+        try {
+            bandejaSalida = new BandejaSalidaLocal(new File(getFilesDir(), "bandeja"), SystemClock::elapsedRealtime);
+        } catch (IOException e) {
+            Log.e(ETIQUETA_LOG, "No se pudo abrir la bandeja de salida; las lecturas sin red quedan en Firestore", e);
+            return;
+        }
+        subidorBandeja = new SubidorBandeja(bandejaSalida, sumidero);
+        Log.i(ETIQUETA_LOG, "Bandeja de salida abierta con " + bandejaSalida.getPendientes() + " lecturas pendientes.");
+
+        conectividad = getSystemService(ConnectivityManager.class);
+        if (conectividad == null) {
+            // Sin información de red se intenta subir siempre
+            subidorBandeja.setHayRed(true);
+            return;
+        }
+        callbackRed = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network red) {
+                subidorBandeja.setHayRed(true);
+                programarBandeja(0);
+            }
+
+            @Override
+            public void onLost(Network red) {
+                subidorBandeja.setHayRed(false);
+            }
+        };
+        conectividad.registerDefaultNetworkCallback(callbackRed);
+    }
+
+    /**
+     * @brief Programa la próxima subida de la bandeja en \ref ejecutorSubidas (sustituye a la anterior).
+     * (espera:long) -> programarBandeja() -> ()
+     * @param espera Milisegundos hasta la subida.
+     */
+    private synchronized void programarBandeja(long espera) {
+        if (ejecutorSubidas.isShutdown()) return;
+        if (revisionBandeja != null) revisionBandeja.cancel(false);
+        revisionBandeja = ejecutorSubidas.schedule(tareaBandeja, espera, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @brief Cancela las subidas programadas, publica por última vez los agregados y espera (como mucho
+     * un segundo) a que termine, para no cerrar la bandeja mientras se lee.
+     * () -> detenerSubidas() -> ()
+     */
+    private void detenerSubidas() {
+        synchronized (this) {
+            if (revisionBandeja != null) revisionBandeja.cancel(false);
+            publicacionAgregados.cancel(false);
+            ejecutorSubidas.execute(tareaAgregados);
+            ejecutorSubidas.shutdown();
+        }
+        try {
+            if (!ejecutorSubidas.awaitTermination(1, TimeUnit.SECONDS)) {
+                Log.w(ETIQUETA_LOG, "La subida en curso no ha terminado al cerrar el servicio");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @brief Guarda la lectura en la bandeja de salida si no hay red o si aún hay lecturas anteriores sin subir.
+     * (codigo:String, lectura:LecturaSensor) -> guardarEnBandeja() -> boolean
+     * @param codigo Código del sensor.
+     * @param lectura Lectura a guardar (con sus gases opcionales).
+     * @return true si se ha guardado; false si debe ir al agrupador.
+     */
+    private boolean guardarEnBandeja(String codigo, LecturaSensor lectura) {
+        if (subidorBandeja == null || !subidorBandeja.debeEncolar()) return false;
+        try {
+            bandejaSalida.agregar(new BandejaSalidaLocal.Registro(codigo, lectura.fecha.getTime(), lectura.O3, lectura.temperatura,
+                    lectura.co2, lectura.bateria, lectura.ubicacion, "Conectado".equals(lectura.estado),
+                    lectura.co != null ? lectura.co : Float.NaN, lectura.no2 != null ? lectura.no2 : Float.NaN,
+                    lectura.so2 != null ? lectura.so2 : Float.NaN));
+            return true;
+        } catch (IOException e) {
+            Log.e(ETIQUETA_LOG, "Error al guardar en la bandeja de salida", e);
+            return false;
+        }
+    }
+    // --- Fin bandeja de salida -----------------------------------------------------------------------
+
     /**
      * Metodos para recibir, filtrar y decodificar el  Beacon
      */
@@ -308,6 +738,7 @@ public class SensorTrackingService extends Service {
      * () -> inicializarYComenzarEscaneoBeacon() -> ()
      */
     private void inicializarYComenzarEscaneoBeacon() {
+        if (callbackDelEscaneo != null) return; // El escaneo ya está en marcha (onStartCommand repetido)
         BluetoothAdapter bta = BluetoothAdapter.getDefaultAdapter();
         if (bta == null || !bta.isEnabled()) {
             stopSelf();
@@ -321,13 +752,77 @@ public class SensorTrackingService extends Service {
                 if (resultado != null) mostrarInformacionDispositivoBTLE(resultado);
             }
             @Override
+            public void onBatchScanResults(List<ScanResult> resultados) {
+                super.onBatchScanResults(resultados);
+                if (resultados != null) procesarLoteBTLE(resultados);
+            }
+            @Override
             public void onScanFailed(int errorCode) {
                 super.onScanFailed(errorCode);
             }
         };
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_SCAN) == PackageManager.PERMISSION_GRANTED) {
-            ScanSettings settings = new ScanSettings.Builder().setScanMode(ScanSettings.SCAN_MODE_LOW_POWER).build();
-            this.elEscanner.startScan(null, settings, this.callbackDelEscaneo);
+            if (!bta.isOffloadedFilteringSupported()) {
+                Log.w(ETIQUETA_LOG, "El chipset no soporta filtrado por hardware, se filtrará en software.");
+            }
+            if (escaneoAdaptativo) {
+                // El planificador decide cuándo y en qué modo escanear
+                iniciarPlanificadorEscaneo();
+                return;
+            }
+            ScanSettings.Builder constructorAjustes = new ScanSettings.Builder().setScanMode(ScanSettings.SCAN_MODE_LOW_POWER);
+            if (modoLotes && bta.isOffloadedScanBatchingSupported()) {
+                // El controlador acumula los anuncios y despierta a la app una vez por lote
+                constructorAjustes.setReportDelay(retardoLoteMs);
+                Log.i(ETIQUETA_LOG, "Escaneo por lotes cada " + retardoLoteMs + " ms.");
+            } else if (modoLotes) {
+                Log.w(ETIQUETA_LOG, "El chipset no soporta lotes, se usa el escaneo en tiempo real.");
+            }
+            ScanSettings settings = constructorAjustes.build();
+            // Los filtros se delegan al controlador; si el chipset no los soporta, filtroSensores los aplica en software
+            this.elEscanner.startScan(filtroSensores.construirFiltros(), settings, this.callbackDelEscaneo);
+        }
+    }
+
+    /**
+     * @brief Crea el planificador de escaneo adaptativo y lo arranca. La radio se controla desde el hilo principal.
+     * () -> iniciarPlanificadorEscaneo() -> ()
+     */
+    private void iniciarPlanificadorEscaneo() {
+        PlanificadorEscaneo.Radio radio = new PlanificadorEscaneo.Radio() {
+            @Override
+            public void arrancar(PlanificadorEscaneo.Modo modo) {
+                if (ActivityCompat.checkSelfPermission(SensorTrackingService.this, Manifest.permission.BLUETOOTH_SCAN) != PackageManager.PERMISSION_GRANTED) return;
+                ScanSettings settings = new ScanSettings.Builder().setScanMode(modoEscaneo(modo)).build();
+                elEscanner.startScan(filtroSensores.construirFiltros(), settings, callbackDelEscaneo);
+            }
+
+            @Override
+            public void detener() {
+                if (ActivityCompat.checkSelfPermission(SensorTrackingService.this, Manifest.permission.BLUETOOTH_SCAN) != PackageManager.PERMISSION_GRANTED) return;
+                elEscanner.stopScan(callbackDelEscaneo);
+            }
+        };
+        PlanificadorEscaneo planificador = new PlanificadorEscaneo(SystemClock::elapsedRealtime, radio, MAX_SENSORES_COLA);
+        for (EstadoSensor estado : registroSensores.todos()) {
+            planificador.registrarSensor(estado.indice);
+        }
+        planificadorEscaneo = planificador;
+        watchdogHandler.post(tareaPlanificador);
+        Log.i(ETIQUETA_LOG, "Escaneo adaptativo activado.");
+    }
+
+    /**
+     * @brief Traduce un modo del planificador a la constante de ScanSettings.
+     * (modo:PlanificadorEscaneo.Modo) -> modoEscaneo() -> int
+     * @param modo Modo del planificador.
+     * @return SCAN_MODE_LOW_POWER, SCAN_MODE_BALANCED o SCAN_MODE_LOW_LATENCY.
+     */
+    private static int modoEscaneo(PlanificadorEscaneo.Modo modo) {
+        switch (modo) {
+            case BAJA_LATENCIA: return ScanSettings.SCAN_MODE_LOW_LATENCY;
+            case EQUILIBRADO: return ScanSettings.SCAN_MODE_BALANCED;
+            default: return ScanSettings.SCAN_MODE_LOW_POWER;
         }
     }
 
@@ -342,6 +837,14 @@ public class SensorTrackingService extends Service {
         if (elEscanner != null && callbackDelEscaneo != null && ActivityCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_SCAN) == PackageManager.PERMISSION_GRANTED) {
             this.elEscanner.stopScan(this.callbackDelEscaneo);
         }
+        if (filtroSensores != null) Log.i(ETIQUETA_LOG, filtroSensores.resumen());
+        if (planificadorEscaneo != null) {
+            Log.i(ETIQUETA_LOG, planificadorEscaneo.resumen());
+            planificadorEscaneo = null;
+        }
+        if (modoLotes) {
+            Log.i(ETIQUETA_LOG, "Lotes: " + agrupadorLotes.getTramasRecibidas() + " tramas -> " + agrupadorLotes.getLecturasEntregadas() + " lecturas procesadas.");
+        }
     }
 
     // --- fin detener escaner de beacon --------------------------------------------------------------
@@ -349,171 +852,325 @@ public class SensorTrackingService extends Service {
 
     // --- mostrar la informacion del beacon -----------------------------------------------------------
     /**
-     * @brief Procesa el resultado del escaneo BLE, filtra el dispositivo "rocio" y decodifica el payload.
-     * Actualiza el estado del DataHolder, verifica alertas y sube los datos a Firebase.
+     * @brief Filtra el resultado del escaneo BLE y encola el anuncio del sensor en el pipeline de ingesta.
+     * La decodificación, las alertas y la subida a Firebase se hacen en el hilo del pipeline.
      * (resultado:ScanResult) -> mostrarInformacionDispositivoBTLE() -> ()
      * @param resultado El objeto ScanResult devuelto por el escáner BLE.
      */
     private void mostrarInformacionDispositivoBTLE(ScanResult resultado) {
-        // Comprobamos que el dispositivo es el correcto
+        // Comprobamos que el dispositivo es el correcto (mismas reglas que los ScanFilter)
         BluetoothDevice device = resultado.getDevice();
-        if (device == null || device.getName() == null || !device.getName().equals("rocio")) return;
-
-        // Se ha recibido un paquete del sensor.
-        // 1. Marcar el estado como "Conectado" (si no lo estaba ya) y limpiar la alerta de desconexión.
-        handleSensorReconnected();
-        // 2. Reiniciar el temporizador que detecta la próxima desconexión.
-        resetWatchdogTimer();
-        
-        // --- NUEVO: Actualizamos RSSI (Media Ponderada) ---
-        int rawRssi = resultado.getRssi();
-        
-        if (smoothedRssi == -999.0f) {
-            smoothedRssi = rawRssi; // Primer valor, inicializamos
-        } else {
-            // Fórmula: NuevoPromedio = (alpha * NuevoValor) + ((1 - alpha) * PromedioAnterior)
-            smoothedRssi = (ALPHA_RSSI * rawRssi) + ((1.0f - ALPHA_RSSI) * smoothedRssi);
+        ScanRecord scanRecord = resultado.getScanRecord();
+        if (device == null || scanRecord == null) return;
+        byte[] bytesAnuncio = scanRecord.getBytes();
+        if (!filtroSensores.acepta(device.getName(), device.getAddress(), bytesAnuncio)) return;
+
+        // Estado del sensor emisor: una consulta O(1) por dirección
+        EstadoSensor estado = registroSensores.buscar(device.getAddress(), device.getName());
+        if (estado == null || pipelineIngesta == null) return;
+
+        // El planificador aprende el intervalo de anuncio; si la ventana ya ha oído a todos, se cierra antes
+        PlanificadorEscaneo planificador = planificadorEscaneo;
+        if (planificador != null && planificador.registrarAnuncio(estado.indice, resultado.getTimestampNanos() / 1_000_000)) {
+            watchdogHandler.post(tareaPlanificador);
         }
-        
-        dataHolder.rssiData.postValue((int) smoothedRssi);
-        // ----------------------------------------
 
-        // Parseamos la trama
-        ScanRecord scanRecord = resultado.getScanRecord();
-        if (scanRecord == null) return;
+        // Los fragmentos no entran en la cola hasta tener la lectura completa
+        byte[] trama = reensamblar(estado.indice, bytesAnuncio);
+        if (trama == null) return;
 
-        // Extraemos los datos del beacon
-        byte[] payload = scanRecord.getManufacturerSpecificData(0x004C);
-        if (payload == null || payload.length != 9 || payload[0] != (byte) 0xAA) return;
+        // Se copian los bytes crudos a la cola; el hilo del pipeline los decodifica
+        pipelineIngesta.ofrecer(estado.indice, trama, resultado.getRssi(), resultado.getTimestampNanos());
+    }
 
-        // Parseamos los datos del beacon
-        float o3_ppm = ((payload[2] & 0xFF) << 8 | (payload[1] & 0xFF)) / 1000.0f;
-        float temperatura_c = ((payload[4] & 0xFF) << 8 | (payload[3] & 0xFF)) / 10.0f;
-        int co2_ppm = (payload[6] & 0xFF) << 8 | (payload[5] & 0xFF);
-        int bat_porc = (payload[8] & 0xFF) << 8 | (payload[7] & 0xFF);
+    /**
+     * @brief Pasa los fragmentos de una lectura en varios anuncios por el \ref ProtocoloTrama.Reensamblador.
+     * Se hace antes de la cola de ingesta porque esta se queda solo con el último paquete de cada sensor.
+     * (indice:int, bytesAnuncio:byte[]) -> reensamblar() -> byte[]
+     * @param indice Índice del sensor emisor.
+     * @param bytesAnuncio Bytes crudos del anuncio (ya aceptado por \ref FiltroSensores).
+     * @return El propio anuncio si no es un fragmento, el buffer del reensamblador con la lectura completa
+     * (válido hasta el siguiente fragmento) o null si aún faltan fragmentos.
+     */
+    private byte[] reensamblar(int indice, byte[] bytesAnuncio) {
+        int inicio = DecodificadorTrama.buscarPayload(bytesAnuncio);
+        if (inicio < 0) return bytesAnuncio;
+        int longitud = DecodificadorTrama.longitudPayload(bytesAnuncio, inicio);
+        if (!reensamblador.esFragmento(bytesAnuncio, inicio, longitud)) return bytesAnuncio;
+        return reensamblador.agregar(indice, bytesAnuncio, inicio, longitud) > 0 ? reensamblador.getTrama() : null;
+    }
 
-        // Comprobar si los valores de medición han cambiado.
-        if (temperatura_c == lastUpdatedTemp && o3_ppm == lastUpdatedOzono && co2_ppm == lastUpdatedCo2) {
-            dataHolder.bateriaData.postValue(bat_porc); // Actualizamos la batería siempre
-            return; // Si los datos principales no cambian, salimos.
+    /**
+     * @brief Procesa un lote de resultados (modo por lotes): agrupa los anuncios por sensor y encola
+     * una única lectura por sensor, con la trama más reciente y el RSSI medio del lote.
+     * (resultados:List<ScanResult>) -> procesarLoteBTLE() -> ()
+     * @param resultados Resultados entregados por onBatchScanResults.
+     */
+    private void procesarLoteBTLE(List<ScanResult> resultados) {
+        agrupadorLotes.iniciarLote();
+        for (int i = 0; i < resultados.size(); i++) {
+            ScanResult resultado = resultados.get(i);
+            BluetoothDevice device = resultado.getDevice();
+            ScanRecord scanRecord = resultado.getScanRecord();
+            if (device == null || scanRecord == null) continue;
+            byte[] bytesAnuncio = scanRecord.getBytes();
+            if (!filtroSensores.acepta(device.getName(), device.getAddress(), bytesAnuncio)) continue;
+            EstadoSensor estado = registroSensores.buscar(device.getAddress(), device.getName());
+            if (estado != null) {
+                bytesAnuncio = reensamblar(estado.indice, bytesAnuncio);
+                if (bytesAnuncio == null) continue;
+                // El agrupador guarda la trama hasta el final del lote: el buffer del reensamblador se reutiliza
+                if (bytesAnuncio == reensamblador.getTrama()) bytesAnuncio = bytesAnuncio.clone();
+            }
+            agrupadorLotes.agregar(device.getAddress(), device.getName(), bytesAnuncio, resultado.getRssi(), resultado.getTimestampNanos());
         }
 
-        // Si los datos SÍ han cambiado, actualizamos la memoria y procedemos.
-        Log.i(ETIQUETA_LOG, "¡Nuevos datos de sensor detectados! Actualizando UI y hora.");
-        lastUpdatedTemp = temperatura_c;
-        lastUpdatedOzono = o3_ppm;
-        lastUpdatedCo2 = co2_ppm;
+        if (pipelineIngesta == null) return;
+        List<AgrupadorLotes.Entrada> lecturas = agrupadorLotes.lecturasDelLote();
+        for (int i = 0; i < lecturas.size(); i++) {
+            AgrupadorLotes.Entrada entrada = lecturas.get(i);
+            EstadoSensor estado = registroSensores.buscar(entrada.direccion, entrada.nombre);
+            if (estado != null) pipelineIngesta.ofrecer(estado.indice, entrada.tramaCruda, entrada.rssiMedio(), entrada.instanteNanos);
+        }
+    }
 
-        // Comprobamos las alertas
-        checkAlerts(co2_ppm, o3_ppm, temperatura_c, bat_porc);
+    /**
+     * @brief Etapas del pipeline de ingesta. Se ejecutan en el hilo del pipeline, nunca en el principal.
+     */
+    private final PipelineIngesta.Etapas etapasIngesta = new PipelineIngesta.Etapas() {
+        @Override
+        public boolean decodificar(ColaIngesta.Ranura paquete, LecturaBeacon lectura) {
+            // Parseamos la trama directamente sobre la copia del anuncio (sin más copias)
+            return registroSensores.porIndice(paquete.clave) != null
+                    && DecodificadorTrama.decodificar(paquete.datos, paquete.longitud, lectura);
+        }
 
-        // Actualizamos la UI con los nuevos datos
-        // Obtenemos la hora actual para saber la ultima actualizacion de datos
-        String receptionTime = new SimpleDateFormat("HH:mm", Locale.getDefault()).format(new Date());
-        dataHolder.timeData.postValue("Última conex. " + receptionTime);
-        dataHolder.ozonoData.postValue(o3_ppm);
-        dataHolder.temperaturaData.postValue(temperatura_c);
-        dataHolder.co2Data.postValue(co2_ppm);
-        dataHolder.bateriaData.postValue(bat_porc);
+        @Override
+        public boolean evaluar(ColaIngesta.Ranura paquete, LecturaBeacon lectura) {
+            EstadoSensor estado = registroSensores.porIndice(paquete.clave);
+            // Los agregados horarios cuentan todas las muestras, también las que el filtro no sube
+            agregadorHorario.agregar(estado, lectura, System.currentTimeMillis());
+            int motivos = procesarLectura(estado, lectura, paquete.rssi, paquete.instanteNanos / 1_000_000);
+            // Mediciones que cambian (no el latido): el planificador vuelve a acercar las ventanas de escaneo
+            PlanificadorEscaneo planificador = planificadorEscaneo;
+            if ((motivos & ~FiltroCambios.MOTIVO_LATIDO) != 0 && planificador != null) planificador.registrarCambio(paquete.clave);
+            return motivos != 0;
+        }
 
-        // Lógica de subida a firestore
-        // Obtenemos los valores de contexto (que se actualizaron en los otros hilos/callbacks)
-        String ubicacion = dataHolder.locationData.getValue();
-        String estado = dataHolder.estadoData.getValue();
+        @Override
+        public void persistir(ColaIngesta.Ranura paquete, LecturaBeacon lectura) {
+            // La ubicación es la del teléfono (compartida por todos los sensores de la pasarela)
+            String ubicacion = dataHolder.locationData.getValue();
+            if (ubicacion == null) return;
+            EstadoSensor estado = registroSensores.porIndice(paquete.clave);
+            subirDatosAFirebase(estado.docRef, lectura.o3, lectura.temperatura, lectura.co2, lectura.bateria, ubicacion, textoEstado(estado),
+                    gas(lectura, ProtocoloTrama.CANAL_CO), gas(lectura, ProtocoloTrama.CANAL_NO2), gas(lectura, ProtocoloTrama.CANAL_SO2));
+        }
 
-        // Llamamos a la función de subida. Pasamos los 6 argumentos.
-        if (ubicacion != null && estado != null) {
-            subirDatosAFirebase(o3_ppm, temperatura_c, co2_ppm, bat_porc, ubicacion, estado);
+        @Override
+        public void alFallar(ColaIngesta.Ranura paquete, RuntimeException error) {
+            EstadoSensor estado = registroSensores.porIndice(paquete.clave);
+            Log.e(ETIQUETA_LOG, "Error procesando un paquete del sensor " + (estado != null ? estado.codigo : paquete.clave), error);
         }
-        // Fin lógica
+    };
 
+    /**
+     * @brief Valor de un canal opcional de la lectura, o null si la trama no lo traía.
+     * (lectura:LecturaBeacon, canal:int) -> gas() -> Float
+     */
+    private static Float gas(LecturaBeacon lectura, int canal) {
+        return lectura.tiene(canal) ? lectura.valor(canal) : null;
     }
-    //--- fin mostrar la informacion del beacon -------------------------------------------------------
-
 
-    //--- Alertas sobre medidas -----------------------------------------------------------------------
     /**
-     * @brief Compara las mediciones recibidas con umbrales predefinidos y genera alertas (notificaciones y LiveData).
-     * (co2:int, ozono:float, temperatura:float, bateria:int) -> checkAlerts() -> ()
-     * @param co2 Concentración de CO2 en ppm.
-     * @param ozono Concentración de Ozono en ppm.
-     * @param temperatura Temperatura en grados Celsius.
-     * @param bateria Porcentaje de batería.
-     */
-    private void checkAlerts(int co2, float ozono, float temperatura, int bateria) {
-        String currentTime = new SimpleDateFormat("HH:mm", Locale.getDefault()).format(new Date());
-        boolean newAlert = false;
-
-        // Generar mensajes de alerta basados en umbrales
-        if (co2 >= 1200) {
-            String message = currentTime + " - Nivel de CO2 elevado: " + co2 + " ppm";
-            if (addAlert(message)) {
-                sendAlertNotification("Alerta de CO2", "Nivel de CO2 elevado: " + co2 + " ppm", CO2_ALERT_ID);
-                newAlert = true;
-            }
-        } else {
-            cancelAlertNotification(CO2_ALERT_ID);
-        }
+     * @brief Procesa una lectura decodificada del sensor: estado de conexión, RSSI, alertas y UI.
+     * Solo el sensor principal publica sus valores en la UI; el resto (modo pasarela) solo se sube a Firebase.
+     * (estado:EstadoSensor, lectura:LecturaBeacon, rawRssi:int, instanteMs:long) -> procesarLectura() -> int
+     * @param estado Estado del sensor emisor.
+     * @param lectura Valores decodificados de la trama.
+     * @param rawRssi RSSI del anuncio (o media del lote) en dBm.
+     * @param instanteMs Instante de recepción del anuncio (para el latido de \ref FiltroCambios).
+     * @return Motivos de publicación de \ref FiltroCambios (MOTIVO_*); 0 si no hay que subir nada a Firebase.
+     */
+    private int procesarLectura(EstadoSensor estado, LecturaBeacon lectura, int rawRssi, long instanteMs) {
+        boolean principal = estado.esPrincipal();
+        // Se ha recibido un paquete del sensor.
+        // 1. Anotar el instante en el vigilante (lo único que se hace por paquete para detectar desconexiones).
+        // 2. Si el vigilante lo da por conectado (primer anuncio o reconexión confirmada), marcar el estado
+        //    como "Conectado" y limpiar la alerta de desconexión.
+        final boolean reconectado = detectorConexion.registrarAnuncio(estado.indice, instanteMs) == DetectorConexion.CONECTADO
+                && handleSensorReconnected(estado);
+        // Si todos estaban desconectados no hay revisión programada
+        if (reconectado) programarConexion(detectorConexion.getEsperaMs());
 
-        if (ozono >= 0.9) {
-            String message = currentTime + " - Nivel de O3 elevado: " + String.format(Locale.getDefault(), "%.3f ppm", ozono);
-            if (addAlert(message)) {
-                sendAlertNotification("Alerta de O3", "Nivel de O3 elevado: " + String.format(Locale.getDefault(), "%.3f ppm", ozono), OZONE_ALERT_ID);
-                newAlert = true;
+        // --- NUEVO: Actualizamos RSSI (Media Ponderada) ---
+        final int rssi = estado.suavizarRssi(rawRssi, ALPHA_RSSI);
+        // ----------------------------------------
+
+        final float o3_ppm = lectura.o3;
+        final float temperatura_c = lectura.temperatura;
+        final int co2_ppm = lectura.co2;
+        final int bat_porc = lectura.bateria;
+
+        // Las alertas se evalúan con todas las lecturas (la duración mínima de una regla no depende del filtro)
+        checkAlerts(estado, lectura, instanteMs);
+
+        // Comprobar si los valores de medición han cambiado de forma significativa (bandas muertas, umbrales y latido).
+        int motivos = filtroCambios.evaluar(estado, lectura, instanteMs);
+        if (motivos == 0) {
+            estado.bateriaMostrada = bat_porc;
+            // Una sola instantánea con el RSSI, la batería y la reconexión (si nada cambia no se despacha)
+            if (principal) {
+                dataHolder.actualizar(e -> {
+                    e.rssi(rssi).bateria(bat_porc);
+                    if (reconectado) e.estado("Conectado").incidencia("Sin incidencias");
+                });
             }
-        } else {
-            cancelAlertNotification(OZONE_ALERT_ID);
+            return 0; // Si los datos no cambian lo suficiente, salimos.
         }
 
-        if (temperatura > 35) {
-            String message = currentTime + " - Temperatura elevada: " + String.format(Locale.getDefault(), "%.1f ºC", temperatura);
-            if (addAlert(message)) {
-                sendAlertNotification("Alerta de Temperatura", "Temperatura elevada: " + String.format(Locale.getDefault(), "%.1f ºC", temperatura), TEMP_ALERT_ID);
-                newAlert = true;
-            }
-        } else {
-            cancelAlertNotification(TEMP_ALERT_ID);
+        // Si los datos SÍ han cambiado, actualizamos la memoria y procedemos.
+        Log.i(ETIQUETA_LOG, "¡Nuevos datos del sensor " + estado.codigo + " detectados!");
+        filtroCambios.publicar(estado, lectura, instanteMs);
+        estado.bateriaMostrada = bat_porc;
+
+        // Actualizamos la UI con los nuevos datos: todos los campos en una sola instantánea
+        if (principal) {
+            // Obtenemos la hora actual para saber la ultima actualizacion de datos
+            final String hora = "Última conex. " + horaActual();
+            dataHolder.actualizar(e -> {
+                e.codigo(estado.codigo).hora(hora).ozono(o3_ppm).temperatura(temperatura_c).co2(co2_ppm).bateria(bat_porc).rssi(rssi);
+                if (reconectado) e.estado("Conectado").incidencia("Sin incidencias");
+            });
         }
 
-        // Si la bateria es baja solo se muestra la notificacion, no se añade a la lista de alertas.
-        if (bateria <= 15) {
-            // Solo enviar la notificación una vez
-            if (!batteryAlertSent) {
-                sendAlertNotification("Alerta de Batería", "Nivel de batería bajo: " + bateria + "%", BATTERY_ALERT_ID);
-                batteryAlertSent = true;
+        // La subida a firestore la hace la etapa "persistir" del pipeline
+        return motivos;
+    }
+    //--- fin mostrar la informacion del beacon -------------------------------------------------------
+
+
+    //--- Alertas sobre medidas -----------------------------------------------------------------------
+    /**
+     * @brief Evalúa la lectura con las reglas de \ref MotorAlertas y atiende las que cambian:
+     * las que saltan se notifican (y se añaden al historial de alertas y al resumen de correo salvo las de "solo notificación")
+     * y las que se rearman cancelan su notificación. Si ninguna regla cambia no se crea ningún objeto.
+     * (estado:EstadoSensor, lectura:LecturaBeacon, instanteMs:long) -> checkAlerts() -> ()
+     * @param estado Estado del sensor que ha enviado las mediciones.
+     * @param lectura Mediciones decodificadas.
+     * @param instanteMs Instante de la lectura (para la duración mínima de las reglas).
+     */
+    private void checkAlerts(EstadoSensor estado, LecturaBeacon lectura, long instanteMs) {
+        MotorAlertas motor = motorAlertas;
+        int cambios = motor.evaluar(estado.alertas, lectura, instanteMs);
+        if (cambios == 0) return;
+
+        for (int regla = 0; regla < motor.getNumReglas(); regla++) {
+            if ((cambios & (1 << regla)) == 0) continue;
+            int tipoAlerta = idTipoAlerta(motor.canal(regla));
+            if (!estado.alertas.activa(regla)) {
+                // Se ha rearmado: el valor ha vuelto a la normalidad
+                cancelAlertNotification(idAlerta(estado, tipoAlerta));
+                continue;
             }
-        } else {
-            // Si la batería se recupera, se cancela la notificación y se resetea el flag
-            cancelAlertNotification(BATTERY_ALERT_ID);
-            batteryAlertSent = false;
+            // Los textos solo se construyen al saltar
+            String mensaje = motor.mensaje(regla, lectura);
+            if (!motor.soloNotificacion(regla)) {
+                String hora = horaActual();
+                // El historial publica su instantánea en alertData si la alerta es nueva
+                historialAlertas.agregar(hora + etiquetaSensor(estado) + " - " + mensaje);
+                if (correoAlertas) {
+                    JavaMailAPI.agregarAlResumen(this, estado.codigo, motor.titulo(regla), mensaje, hora, motor.critica(regla));
+                }
+            }
+            sendAlertNotification(estado, motor.titulo(regla), mensaje, tipoAlerta);
         }
+    }
 
-        // Actualizar LiveData solo si hay una nueva alerta
-        if (newAlert) {
-            dataHolder.alertData.postValue(new ArrayList<>(alertList));
+    /**
+     * @brief ID base de la notificación de las alertas de un canal.
+     * (canal:int) -> idTipoAlerta() -> int
+     * @param canal Canal de \ref ProtocoloTrama.
+     * @return CO2_ALERT_ID, OZONE_ALERT_ID, TEMP_ALERT_ID, CO_ALERT_ID, NO2_ALERT_ID, SO2_ALERT_ID o BATTERY_ALERT_ID.
+     */
+    private static int idTipoAlerta(int canal) {
+        switch (canal) {
+            case FiltroCambios.CANAL_CO2: return CO2_ALERT_ID;
+            case FiltroCambios.CANAL_O3: return OZONE_ALERT_ID;
+            case FiltroCambios.CANAL_TEMPERATURA: return TEMP_ALERT_ID;
+            case ProtocoloTrama.CANAL_CO: return CO_ALERT_ID;
+            case ProtocoloTrama.CANAL_NO2: return NO2_ALERT_ID;
+            case ProtocoloTrama.CANAL_SO2: return SO2_ALERT_ID;
+            default: return BATTERY_ALERT_ID;
         }
     }
 
     /**
-     * @brief Añade una nueva alerta a la lista, gestionando el tamaño máximo.
-     * @param alertMessage Mensaje de la alerta.
-     * @return true si la alerta es nueva y se ha añadido; false en caso contrario.
+     * @brief Lee las reglas de alerta del documento de configuración. Si no existe o no es válido se
+     * mantienen las reglas por defecto.
+     * () -> cargarReglasAlertas() -> ()
      */
-    private boolean addAlert(String alertMessage) {
-        // Evitar duplicados
-        if (alertList.contains(alertMessage)) {
-            return false;
-        }
+    private void cargarReglasAlertas() {
+        db.document(DOCUMENTO_REGLAS_ALERTA).get()
+                .addOnSuccessListener(documento -> {
+                    correoAlertas = documento != null && Boolean.TRUE.equals(documento.getBoolean("correo"));
+                    Log.i(ETIQUETA_LOG, "Correo de alertas " + (correoAlertas ? "activado" : "desactivado") + ".");
+                    if (documento == null || !documento.exists() || documento.get("reglas") == null) {
+                        Log.i(ETIQUETA_LOG, "Sin reglas de alerta configuradas; se usan las de por defecto.");
+                        return;
+                    }
+                    try {
+                        MotorAlertas motor = MotorAlertas.desdeDocumento(documento.get("reglas"));
+                        motorAlertas = motor;
+                        filtroCambios.alertas(motor);
+                        Log.i(ETIQUETA_LOG, motor.resumen());
+                    } catch (IllegalArgumentException e) {
+                        Log.e(ETIQUETA_LOG, "Reglas de alerta no válidas, se mantienen las actuales: " + e.getMessage());
+                    }
+                })
+                .addOnFailureListener(e -> Log.e(ETIQUETA_LOG, "No se han podido leer las reglas de alerta: " + e.getMessage()));
+    }
 
-        // Añadir la nueva alerta al principio de la lista
-        alertList.add(0, alertMessage);
+    /**
+     * @brief Devuelve la hora actual en formato "HH:mm" reutilizando el formateador y la fecha del servicio.
+     * Es synchronized porque se llama desde el hilo del pipeline y desde el vigilante de conexión (hilo principal).
+     * () -> horaActual() -> String
+     * @return La hora actual formateada.
+     */
+    private synchronized String horaActual() {
+        fechaActual.setTime(System.currentTimeMillis());
+        return formatoHora.format(fechaActual);
+    }
 
-        // Si la lista supera el tamaño máximo, eliminar la más antigua
-        if (alertList.size() > MAX_ALERTS) {
-            alertList.remove(alertList.size() - 1);
-        }
+    /**
+     * @brief Prefijo que identifica al sensor en los mensajes cuando la pasarela monitoriza varios.
+     * (estado:EstadoSensor) -> etiquetaSensor() -> String
+     * @param estado Estado del sensor.
+     * @return " [codigo]" en modo pasarela, o cadena vacía con un único sensor.
+     */
+    private String etiquetaSensor(EstadoSensor estado) {
+        return registroSensores.tamano() > 1 ? " [" + estado.codigo + "]" : "";
+    }
 
-        return true;
+    /**
+     * @brief Calcula el ID de notificación de una alerta para un sensor concreto.
+     * (estado:EstadoSensor, tipoAlerta:int) -> idAlerta() -> int
+     * @param estado Estado del sensor.
+     * @param tipoAlerta ID base del tipo de alerta (CO2_ALERT_ID, ...).
+     * @return ID único por sensor y tipo (el sensor principal conserva los IDs base).
+     */
+    private static int idAlerta(EstadoSensor estado, int tipoAlerta) {
+        return tipoAlerta + 10 * estado.indice;
+    }
+
+    /**
+     * @brief Texto del estado de conexión de un sensor tal y como se guarda en Firestore.
+     * (estado:EstadoSensor) -> textoEstado() -> String
+     * @param estado Estado del sensor.
+     * @return "Conectado" o "Desconectado".
+     */
+    private static String textoEstado(EstadoSensor estado) {
+        return estado.isConectado() ? "Conectado" : "Desconectado";
     }
 
     // --- fin alertas sobre medidas ---------------------------------------------------------------------------------
@@ -522,52 +1179,69 @@ public class SensorTrackingService extends Service {
     // --- Notificaciones -------------------------------------------------------------------------------
     // Crea una notificacion de alerta
     /**
-     * @brief Muestra una notificación de alerta de alta prioridad.
-     * (title:String, message:String, notificationId:int) -> sendAlertNotification() -> ()
+     * @brief Muestra una notificación de alerta de alta prioridad. \ref controladorNotificaciones decide
+     * si hace falta llamar al sistema (no se repite una alerta visible con el mismo texto).
+     * (estado:EstadoSensor, title:String, message:String, tipoAlerta:int) -> sendAlertNotification() -> ()
+     * @param estado Sensor al que se refiere la alerta.
      * @param title Título de la notificación.
      * @param message Cuerpo del mensaje de la notificación.
-     * @param notificationId ID único para esta alerta, permite cancelarla posteriormente.
+     * @param tipoAlerta ID base del tipo de alerta; el ID final depende del sensor (ver \ref idAlerta).
      */
-    private void sendAlertNotification(String title, String message, int notificationId) {
-        Intent notificationIntent;
+    private void sendAlertNotification(EstadoSensor estado, String title, String message, int tipoAlerta) {
+        int notificationId = idAlerta(estado, tipoAlerta);
+        if (!constructoresAlerta.containsKey(notificationId)) {
+            constructoresAlerta.put(notificationId, crearConstructorAlerta(estado, tipoAlerta, notificationId));
+        }
+        programarNotificaciones(controladorNotificaciones.mostrar(notificationId, ALERT_CHANNEL_ID, title + etiquetaSensor(estado), message));
+    }
 
+    /**
+     * @brief Crea el builder de una notificación de alerta con su PendingIntent. Se hace una vez por ID;
+     * en cada aviso solo cambian el título, el texto y la hora.
+     * (estado:EstadoSensor, tipoAlerta:int, notificationId:int) -> crearConstructorAlerta() -> NotificationCompat.Builder
+     */
+    private NotificationCompat.Builder crearConstructorAlerta(EstadoSensor estado, int tipoAlerta, int notificationId) {
+        Intent notificationIntent;
         // Si es la alerta de conexión, redirige a la pantalla principal del sensor.
-        if (notificationId == CONNECTION_ALERT_ID) {
+        if (tipoAlerta == CONNECTION_ALERT_ID) {
             notificationIntent = new Intent(this, SesionSensorActivity.class);
             // Es crucial pasar el ID del sensor para que la actividad sepa qué mostrar.
-            if (sensorCode != null) {
-                notificationIntent.putExtra("SENSOR_CODE", sensorCode);
-            }
+            notificationIntent.putExtra("SENSOR_CODE", estado.codigo);
         } else {
             // Para el resto de las alertas (mediciones), redirige a la pantalla de incidencias.
             notificationIntent = new Intent(this, IncidenciasActivity.class);
         }
 
-        // Usamos FLAG_UPDATE_CURRENT para asegurar que el Intent se actualiza correctamente,
-        // especialmente si la actividad destino o sus extras cambian. El requestCode puede ser
-        // el ID de la notificación para asegurar que cada una tenga un PendingIntent único.
+        // El requestCode es el ID de la notificación para que cada una tenga un PendingIntent único.
         PendingIntent pendingIntent = PendingIntent.getActivity(this, notificationId, notificationIntent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
 
-        Notification n = new NotificationCompat.Builder(this, ALERT_CHANNEL_ID)
-                .setContentTitle(title)
-                .setContentText(message)
+        return new NotificationCompat.Builder(this, ALERT_CHANNEL_ID)
                 .setSmallIcon(R.drawable.logo_app)
                 .setPriority(NotificationCompat.PRIORITY_HIGH)
                 .setContentIntent(pendingIntent)
-                .setAutoCancel(true) // La notificación se cierra al pulsarla
-                .build();
-        getSystemService(NotificationManager.class).notify(notificationId, n);
+                .setOnlyAlertOnce(true) // Si se actualiza el texto de una alerta visible, no vuelve a sonar
+                .setAutoCancel(true); // La notificación se cierra al pulsarla
     }
 
 
     // Elimina una notificacion si ya no existe
     /**
-     * @brief Cancela una notificación de alerta específica.
+     * @brief Cancela una notificación de alerta específica (solo llama al sistema si está visible).
      * (notificationId:int) -> cancelAlertNotification() -> ()
      * @param notificationId ID de la notificación a cancelar.
      */
     private void cancelAlertNotification(int notificationId) {
-        getSystemService(NotificationManager.class).cancel(notificationId);
+        programarNotificaciones(controladorNotificaciones.cancelar(notificationId));
+    }
+
+    /**
+     * @brief Programa la publicación de las alertas aplazadas (sustituye a la anterior).
+     * (espera:long) -> programarNotificaciones() -> ()
+     * @param espera Valor devuelto por ControladorNotificaciones.mostrar/cancelar/revisar (-1 si no hay nada pendiente).
+     */
+    private void programarNotificaciones(long espera) {
+        watchdogHandler.removeCallbacks(tareaNotificaciones);
+        if (espera >= 0) watchdogHandler.postDelayed(tareaNotificaciones, espera);
     }
 
     // Crea los canales de notificaciones
@@ -587,36 +1261,78 @@ public class SensorTrackingService extends Service {
     //--- metodos localizacion --------------------------------------------------------------------------
     // Obtiene la ubicación actual del teléfono
     /**
-     * @brief Solicita actualizaciones periódicas de ubicación GPS al sistema.
+     * @brief Solicita actualizaciones periódicas de ubicación con la prioridad e intervalo del nivel actual de \ref politicaUbicacion.
+     * Se vuelve a llamar al cambiar de nivel: la nueva petición sustituye a la anterior del mismo callback.
      * () -> startLocationUpdates() -> ()
      */
     private void startLocationUpdates() {
+        PoliticaUbicacion.Nivel nivel = politicaUbicacion.getNivel();
         LocationRequest locationRequest = LocationRequest.create();
-        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
-        locationRequest.setInterval(10000);
-        locationRequest.setFastestInterval(5000);
+        locationRequest.setPriority(nivel.prioridad);
+        locationRequest.setInterval(nivel.intervaloMs);
+        locationRequest.setFastestInterval(nivel.intervaloMinimoMs);
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+            // El callback se entrega en el hilo de ubicación: el Geocoder puede bloquear sin afectar a la UI
+            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, hiloUbicacion.getLooper());
+            Log.d(ETIQUETA_LOG, "Ubicación en nivel " + nivel + " cada " + nivel.intervaloMs + " ms");
+            manejadorUbicacion.removeCallbacks(tareaUbicacion);
+            manejadorUbicacion.postDelayed(tareaUbicacion, REVISAR_UBICACION_MS);
         }
     }
 
     // Convierte las coordenadas (Lat/Lon) en una dirección (Calle, Ciudad)
     /**
-     * @brief Convierte una coordenada Location (Latitud/Longitud) a una dirección legible (Calle, Ciudad) usando Geocoder.
+     * @brief Convierte una coordenada Location (Latitud/Longitud) a una dirección legible (Calle, Ciudad).
+     * Si la ubicación sigue en la misma celda o la celda está en caché no se consulta el Geocoder;
+     * si hay que consultarlo, se hace en \ref ejecutorGeocoder.
      * (location:android.location.Location) -> getAddressFromLocation() -> ()
      * @param location Objeto Location con las coordenadas GPS.
      */
     private void getAddressFromLocation(android.location.Location location) {
-        try {
-            Geocoder geocoder = new Geocoder(this, Locale.getDefault());
-            List<Address> addresses = geocoder.getFromLocation(location.getLatitude(), location.getLongitude(), 1);
-            if (addresses != null && !addresses.isEmpty()) {
+        geocodificador.resolver(location.getLatitude(), location.getLongitude(), direccion -> dataHolder.locationData.postValue(direccion));
+    }
+
+    /**
+     * @brief Fuente de geocodificación basada en el Geocoder de Android (un único Geocoder, usado solo desde \ref ejecutorGeocoder).
+     * () -> crearFuenteGeocodificacion() -> GeocodificadorInverso.FuenteGeocodificacion
+     */
+    private GeocodificadorInverso.FuenteGeocodificacion crearFuenteGeocodificacion() {
+        final Geocoder geocoder = new Geocoder(this, Locale.getDefault());
+        return (latitud, longitud) -> {
+            // Sin red el Geocoder solo tardaría en fallar: se usa directamente el callejero local
+            boolean sinRed = subidorBandeja != null && !subidorBandeja.isHayRed();
+            if (sinRed && indiceCallejero != null) return indiceCallejero.direccion(latitud, longitud);
+            try {
+                List<Address> addresses = geocoder.getFromLocation(latitud, longitud, 1);
+                if (addresses == null || addresses.isEmpty()) {
+                    return indiceCallejero != null ? indiceCallejero.direccion(latitud, longitud) : null;
+                }
                 String street = addresses.get(0).getThoroughfare();
                 String city = addresses.get(0).getLocality();
-                dataHolder.locationData.postValue((street != null ? street : "") + ", " + (city != null ? city : ""));
+                return (street != null ? street : "") + ", " + (city != null ? city : "");
+            } catch (IOException e) {
+                Log.e(ETIQUETA_LOG, "Error Geocoder", e);
+                if (indiceCallejero != null) return indiceCallejero.direccion(latitud, longitud);
+                throw e;
             }
+        };
+    }
+
+    /**
+     * @brief Abre el callejero local si se ha instalado (files/callejero.idx, generado con \ref ConstructorIndiceCallejero).
+     * () -> abrirIndiceCallejero() -> IndiceCallejero
+     * @return El índice, o null si no existe o no se puede leer.
+     */
+    private IndiceCallejero abrirIndiceCallejero() {
+        File fichero = new File(getFilesDir(), "callejero.idx");
+        if (!fichero.exists()) return null;
+        try {
+            IndiceCallejero indice = new IndiceCallejero(fichero);
+            Log.i(ETIQUETA_LOG, indice.resumen());
+            return indice;
         } catch (IOException e) {
-            Log.e(ETIQUETA_LOG, "Error Geocoder", e);
+            Log.e(ETIQUETA_LOG, "No se pudo abrir el callejero local", e);
+            return null;
         }
     }
     // --- fin localizacion ----------------------------------------------------------------------------
@@ -624,25 +1340,78 @@ public class SensorTrackingService extends Service {
 
     // --- Vigilante de Conexión -----------------------------------------------------------------------
     /**
-     * @brief Reinicia el temporizador del watchdog. Se llama al iniciar el servicio y al recibir datos.
+     * @brief Programa la próxima revisión del vigilante de conexión (sustituye a la anterior).
+     * (espera:long) -> programarConexion() -> ()
+     * @param espera Valor devuelto por DetectorConexion.revisar/getEsperaMs (-1 si no hay sensores que vigilar).
      */
-    private void resetWatchdogTimer() {
-        watchdogHandler.removeCallbacks(watchdogRunnable);
-        watchdogHandler.postDelayed(watchdogRunnable, WATCHDOG_DELAY_MS);
+    private void programarConexion(long espera) {
+        watchdogHandler.removeCallbacks(tareaConexion);
+        if (espera >= 0) watchdogHandler.postDelayed(tareaConexion, espera);
     }
 
     /**
      * @brief Gestiona el estado de reconexión. Si el sensor estaba desconectado, lo marca como
      * "Conectado" y limpia las alertas visuales correspondientes.
+     * (estado:EstadoSensor) -> handleSensorReconnected() -> boolean
+     * @param estado Estado del sensor.
+     * @return true si el sensor estaba desconectado (la UI se actualiza en la instantánea de la lectura).
      */
-    private void handleSensorReconnected() {
-        // Solo actuar si el estado anterior NO era "Conectado"
-        if (!"Conectado".equals(dataHolder.estadoData.getValue())) {
-            Log.i(ETIQUETA_LOG, "¡Reconexión con el sensor detectada!");
-            cancelAlertNotification(CONNECTION_ALERT_ID);
-            dataHolder.incidenciaData.postValue("Sin incidencias");
-            dataHolder.estadoData.postValue("Conectado");
+    private boolean handleSensorReconnected(EstadoSensor estado) {
+        // Solo actuar si el estado anterior NO era "Conectado" (transición atómica)
+        if (estado.marcarConectado()) {
+            // La primera lectura tras la reconexión se publica siempre (el documento sigue "Desconectado")
+            estado.olvidarPublicacion();
+            Log.i(ETIQUETA_LOG, "¡Reconexión con el sensor " + estado.codigo + " detectada!");
+            cancelAlertNotification(idAlerta(estado, CONNECTION_ALERT_ID));
+            // El cambio de estado se escribe al momento (las mediciones llegan con el lote)
+            Map<String, Object> reconexion = new HashMap<>();
+            reconexion.put("estado", "Conectado");
+            reconexion.put("ultima_conexion", FieldValue.serverTimestamp());
+            programarCoalescedor(coalescedorEscrituras.escribir(estado.codigo, reconexion, true));
+            return true;
         }
+        return false;
+    }
+
+    //Tareas que ejecuta el observador cuando se desactiva o se pierde la conexión
+    /**
+     * @brief Se ejecuta cuando el vigilante da un sensor por desconectado (demasiados intervalos sin oírlo).
+     * Actualiza el estado a "Desconectado" y notifica la incidencia a Firebase y al usuario.
+     * (estado:EstadoSensor, silencioMs:long) -> alPerderConexion() -> ()
+     * @param estado Estado del sensor que ha dejado de recibirse.
+     * @param silencioMs Tiempo desde su último anuncio.
+     */
+    private void alPerderConexion(EstadoSensor estado, long silencioMs) {
+        // Transición atómica (también la primera vez de un sensor que no se ha oído nunca); el pipeline
+        // reinicia el filtro de RSSI al ver la época nueva
+        if (!estado.marcarDesconectado()) return;
+        Log.e(ETIQUETA_LOG, "¡No se han recibido datos del sensor " + estado.codigo + " en " + silencioMs / 1000 + " s!");
+
+        if (estado.esPrincipal()) {
+            //Guardamos la hora de desconexion para mostrar la alerta
+            final String message = horaActual() + " - El sensor no está funcionando correctamente";
+            // En una sola instantánea: estado "Desconectado", RSSI muy bajo (desconexión visual) y la alerta
+            // en el tablón de incidencias (hora y mensaje)
+            dataHolder.actualizar(e -> e.estado("Desconectado").rssi(-999).incidencia(message));
+        }
+        //Envia notificacion sobre la alerta
+        sendAlertNotification(estado, "Alerta de Conexión", "El sensor no está funcionando correctamente", CONNECTION_ALERT_ID);
+        // Y, si está activado, al resumen de correo (un sensor que se desconecta una y otra vez da un solo correo)
+        if (correoAlertas) {
+            JavaMailAPI.agregarAlResumen(this, estado.codigo, "Alerta de Conexión",
+                    "El sensor no está funcionando correctamente", horaActual(), false);
+        }
+
+        // Logica de firestor para actualizacion del estado del sensor
+        // Creamos un Mapa con solo los campos que queremos modificar: estado y timestamp.
+        Map<String, Object> desconexionData = new HashMap<>();
+        desconexionData.put("estado", "Desconectado");
+        desconexionData.put("ultima_conexion", FieldValue.serverTimestamp());
+
+        // Las lecturas pendientes del lote van antes que el cambio de estado
+        agrupadorEscrituras.vaciar();
+        // SET con MERGE a través del coalescedor: se escribe ya, junto con los campos que tuviese pendientes
+        programarCoalescedor(coalescedorEscrituras.escribir(estado.codigo, desconexionData, true));
     }
     // --- fin vigilante de conexión -------------------------------------------------------------------
     /**
@@ -658,8 +1427,10 @@ public class SensorTrackingService extends Service {
     // --- Inicio subirDatosFirebase --------------------------------------------------------------------------------------------------
     /**
      * @brief Sube las mediciones y el estado de contexto (ubicación, conexión) a Firebase Firestore.
-     * Realiza dos operaciones: guardar un registro en la colección 'mediciones' (historial) y actualizar los campos directos del documento del sensor (última lectura).
-     * (o3_ppm:Float, temp_c:Float, co2_ppm:Integer, bat_porc:Integer, ubicacion:String, estado:String) -> subirDatosAFirebase() -> ()
+     * Sin red la lectura se guarda en \ref BandejaSalidaLocal; con red se añade al lote en curso de \ref AgrupadorEscrituras: un registro en la colección 'mediciones' (historial)
+     * y los campos directos del documento del sensor (última lectura), que se envían una vez por lote.
+     * (sensorDocRef:DocumentReference, o3_ppm:Float, temp_c:Float, co2_ppm:Integer, bat_porc:Integer, ubicacion:String, estado:String) -> subirDatosAFirebase() -> ()
+     * @param sensorDocRef Documento del sensor en Firestore.
      * @param o3_ppm Concentración de Ozono.
      * @param temp_c Temperatura.
      * @param co2_ppm Concentración de CO2.
@@ -667,7 +1438,20 @@ public class SensorTrackingService extends Service {
      * @param ubicacion Dirección legible de la ubicación.
      * @param estado Estado de conexión del sensor.
      */
-    public void subirDatosAFirebase(Float o3_ppm, Float temp_c, Integer co2_ppm, Integer bat_porc, String ubicacion, String estado) {
+    public void subirDatosAFirebase(DocumentReference sensorDocRef, Float o3_ppm, Float temp_c, Integer co2_ppm, Integer bat_porc, String ubicacion, String estado) {
+        subirDatosAFirebase(sensorDocRef, o3_ppm, temp_c, co2_ppm, bat_porc, ubicacion, estado, null, null, null);
+    }
+
+    /**
+     * @brief Como \ref subirDatosAFirebase, con los gases que solo traen las tramas nuevas (null si no vienen).
+     * Estos se escriben en los campos directos del documento del sensor ("co", "no2", "so2") y en el registro de "mediciones".
+     * (sensorDocRef:DocumentReference, o3_ppm:Float, temp_c:Float, co2_ppm:Integer, bat_porc:Integer, ubicacion:String, estado:String, co_mg:Float, no2_ug:Float, so2_ug:Float) -> subirDatosAFirebase() -> ()
+     * @param co_mg Monóxido de carbono (mg/m³).
+     * @param no2_ug Dióxido de nitrógeno (µg/m³).
+     * @param so2_ug Dióxido de azufre (µg/m³).
+     */
+    public void subirDatosAFirebase(DocumentReference sensorDocRef, Float o3_ppm, Float temp_c, Integer co2_ppm, Integer bat_porc, String ubicacion, String estado,
+                                    Float co_mg, Float no2_ug, Float so2_ug) {
 
         // Verficar que esten todos los datos necesarios para subir a la bbdd
         if (o3_ppm == null || temp_c == null || co2_ppm == null || bat_porc == null || ubicacion == null || estado == null) {
@@ -675,16 +1459,13 @@ public class SensorTrackingService extends Service {
             return;
         }
 
-        LecturaSensor nuevaLectura = new LecturaSensor(o3_ppm, temp_c, co2_ppm, bat_porc, ubicacion, estado);
-
-        sensorDocRef.collection("mediciones").add(nuevaLectura) // Se sube el objeto completo
-                .addOnSuccessListener(documentReference -> {
-                    Log.d("Firestore", "Historial guardado.");
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("Firestore", "Error al escribir en el historial", e);
-                });
+        LecturaSensor nuevaLectura = new LecturaSensor(o3_ppm, temp_c, co2_ppm, bat_porc, ubicacion, estado)
+                .gases(co_mg, no2_ug, so2_ug);
+        // La lectura puede esperar hasta 30 s en el lote: se fecha en el momento de la medición
+        nuevaLectura.fecha = new Date();
 
+        // Sin red (o con lecturas anteriores aún en disco) la lectura espera en la bandeja de salida
+        if (guardarEnBandeja(sensorDocRef.getId(), nuevaLectura)) return;
 
         // Subida a Campos Directos (Última Lectura)
 
@@ -695,39 +1476,40 @@ public class SensorTrackingService extends Service {
         camposDirectos.put("temperatura", temp_c);
         camposDirectos.put("co2", co2_ppm);
         camposDirectos.put("bateria", bat_porc);
+        if (co_mg != null) camposDirectos.put("co", co_mg);
+        if (no2_ug != null) camposDirectos.put("no2", no2_ug);
+        if (so2_ug != null) camposDirectos.put("so2", so2_ug);
 
         // Metadatos (Campos añadidos)
         camposDirectos.put("ubicacion", ubicacion);
         camposDirectos.put("estado", estado);
         camposDirectos.put("ultima_conexion", FieldValue.serverTimestamp());
 
-        // Usamos SET con MERGE
-        sensorDocRef.set(camposDirectos, SetOptions.merge())
-                .addOnSuccessListener(aVoid -> Log.d("Firestore", "Campos directos del sensor actualizados."))
-                .addOnFailureListener(e -> {
-                    Log.e("Firestore", "Error al actualizar campos directos: " + e.getMessage());
-                });
+        // Se acumula en el lote (el merge de los campos directos se hace una vez por lote con el último estado)
+        if (agrupadorEscrituras.agregar(sensorDocRef.getId(), nuevaLectura, camposDirectos)) {
+            watchdogHandler.postDelayed(tareaEscrituras, agrupadorEscrituras.getMaxEsperaMs());
+        }
     }
 
     // --- Fin subirDatosFirebase --------------------------------------------------------------------------------------------------
 
 
-    //Métodos para test.
+    //Métodos para test (usan las reglas por defecto de MotorAlertas).
 
     public static boolean esCo2Peligroso(int co2) {
-        return co2 >= 1200;
+        return MotorAlertas.predeterminado().supera(FiltroCambios.CANAL_CO2, co2);
     }
 
     public static boolean esOzonoPeligroso(float ozono) {
-        return ozono >= 0.9f;
+        return MotorAlertas.predeterminado().supera(FiltroCambios.CANAL_O3, ozono);
     }
 
     public static boolean esTemperaturaPeligrosa(float temperatura) {
-        return temperatura > 35.0f;
+        return MotorAlertas.predeterminado().supera(FiltroCambios.CANAL_TEMPERATURA, temperatura);
     }
 
     public static boolean esBateriaCritica(int bateria) {
-        return bateria <= 15;
+        return MotorAlertas.predeterminado().supera(FiltroCambios.CANAL_BATERIA, bateria);
     }
 
 }
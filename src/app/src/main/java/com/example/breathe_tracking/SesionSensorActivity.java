@@ -8,12 +8,16 @@ package com.example.breathe_tracking;
 import android.Manifest;
 import android.app.Activity;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
@@ -50,7 +54,18 @@ import java.util.Locale;
  *
  * @extends AppCompatActivity
  */
-public class SesionSensorActivity extends AppCompatActivity {
+public class SesionSensorActivity extends AppCompatActivity implements RenderizadorSensor.Vista {
+
+    /** @brief Extra del Intent con la separación mínima entre dos pintados (ms); por defecto \ref RenderizadorSensor#PRESUPUESTO_POR_DEFECTO_MS. */
+    public static final String EXTRA_PRESUPUESTO_FOTOGRAMA_MS = "PRESUPUESTO_FOTOGRAMA_MS";
+
+    /** @brief Drawables de las bandas (índices RenderizadorSensor.BANDA_*). */
+    private static final int[] DRAWABLES_BANDA = {
+            R.drawable.progress_bar_green, R.drawable.progress_bar_orange, R.drawable.progress_bar_red, R.drawable.progress_bar_blue};
+    /** @brief Iconos de señal por nivel (0 - 4). */
+    private static final int[] DRAWABLES_SENAL = {
+            R.drawable.ic_signal_bars_0, R.drawable.ic_signal_bars_1, R.drawable.ic_signal_bars_2,
+            R.drawable.ic_signal_bars_3, R.drawable.ic_signal_bars_4};
 
     // --- Vistas de la UI ---
     private TextView ubicacionTextView;
@@ -70,6 +85,20 @@ public class SesionSensorActivity extends AppCompatActivity {
     private ProgressBar temperaturaProgressBar;
     private ConstraintLayout layoutOverlayDesconexion;
     private Button btnReportarOverlay;
+    /** @brief Capa de depuración del pintado (solo en compilaciones depurables, pulsación larga en el nombre). */
+    private TextView depuracionTextView;
+    private ProgressBar[] barras;
+
+    // --- Pintado ---
+    /** @brief Decide qué vistas tocar y cuándo (ver \ref RenderizadorSensor). */
+    private RenderizadorSensor renderizador;
+    private final Handler handlerPintado = new Handler(Looper.getMainLooper());
+    private final Runnable tareaFotograma = () -> programarFotograma(renderizador.fotograma());
+    /** @brief Drawables de progreso ya inflados, por barra y banda (cada barra necesita los suyos). */
+    private final Drawable[][] cacheBandas = new Drawable[RenderizadorSensor.NUM_BARRAS][RenderizadorSensor.NUM_BANDAS];
+    private final Drawable[] cacheSenal = new Drawable[RenderizadorSensor.NIVELES_SENAL];
+    private int colorRojo;
+    private int colorVerde;
 
     // --- Lógica de Datos y Backend ---
     private TrackingDataHolder dataHolder;
@@ -116,6 +145,11 @@ public class SesionSensorActivity extends AppCompatActivity {
         setContentView(R.layout.sesion_sensor);
 
         initializeViews();
+        long presupuesto = getIntent() != null
+                ? getIntent().getLongExtra(EXTRA_PRESUPUESTO_FOTOGRAMA_MS, RenderizadorSensor.PRESUPUESTO_POR_DEFECTO_MS)
+                : RenderizadorSensor.PRESUPUESTO_POR_DEFECTO_MS;
+        // El reloj del Handler (uptimeMillis), para que la espera devuelta encaje con postDelayed
+        renderizador = new RenderizadorSensor(this, SystemClock::uptimeMillis, presupuesto, Locale.getDefault());
         setupListeners();
 
         dataHolder = TrackingDataHolder.getInstance();
@@ -153,6 +187,12 @@ public class SesionSensorActivity extends AppCompatActivity {
         layoutOverlayDesconexion = findViewById(R.id.layout_overlay_desconexion);
         btnReportarOverlay = findViewById(R.id.btn_reportar_overlay);
         manualUsuarioTextView = findViewById(R.id.textView_manualUsuario);
+        depuracionTextView = findViewById(R.id.textView_depuracionRender);
+
+        // En el orden de RenderizadorSensor.BARRA_*
+        barras = new ProgressBar[]{ozonoProgressBar, temperaturaProgressBar, co2ProgressBar};
+        colorRojo = ContextCompat.getColor(this, R.color.progress_red);
+        colorVerde = ContextCompat.getColor(this, R.color.progress_green);
 
         // Añadir subrayado a los textos
         verGraficasTextView.setPaintFlags(verGraficasTextView.getPaintFlags() | Paint.UNDERLINE_TEXT_FLAG);
@@ -188,6 +228,8 @@ public class SesionSensorActivity extends AppCompatActivity {
 
         verGraficasTextView.setOnClickListener(v -> {
             Intent intent = new Intent(SesionSensorActivity.this, InformacionActivity.class);
+            // La gráfica lee los agregados horarios de este sensor
+            intent.putExtra("SENSOR_CODE", sensorId);
             startActivity(intent);
         });
 
@@ -195,77 +237,103 @@ public class SesionSensorActivity extends AppCompatActivity {
             Intent intent = new Intent(SesionSensorActivity.this, ManualUsuarioActivity.class);
             startActivity(intent);
         });
+
+        // Capa de depuración del pintado: solo en compilaciones depurables
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            nombreSensorTextView.setOnLongClickListener(v -> {
+                boolean mostrar = depuracionTextView.getVisibility() != View.VISIBLE;
+                depuracionTextView.setVisibility(mostrar ? View.VISIBLE : View.GONE);
+                if (mostrar) depuracionTextView.setText(renderizador.resumen());
+                return true;
+            });
+        }
     }
 
     /**
      * @brief Inicializa los observadores de LiveData para actualizar la UI en tiempo real.
+     * Los datos del sensor llegan en una sola instantánea por lectura (\ref InstantaneaSensor) y los
+     * pinta \ref RenderizadorSensor: solo lo que cambia y como mucho una vez por fotograma.
      */
     private void setupObservers() {
         dataHolder.locationData.observe(this, address -> {
-            if (address != null) ubicacionTextView.setText(address);
+            if (address != null && !address.contentEquals(ubicacionTextView.getText())) ubicacionTextView.setText(address);
         });
 
-        dataHolder.timeData.observe(this, time -> {
-            if (time != null) ultimaConexionTextView.setText(time);
+        dataHolder.instantaneaData.observe(this, instantanea -> {
+            if (instantanea == null) return;
+            programarFotograma(renderizador.proponer(instantanea));
         });
+    }
 
-        dataHolder.bateriaData.observe(this, bateria -> {
-            if (bateria != null) {
-                bateriaTextView.setText(String.format(Locale.getDefault(), "%d%%", bateria));
-                bateriaTextView.setTextColor(bateria <= 15 ? ContextCompat.getColor(this, R.color.progress_red) : Color.BLACK);
-            }
-        });
+    /**
+     * @brief Programa el pintado de la instantánea pendiente.
+     * (espera:long) -> programarFotograma() -> ()
+     * @param espera Valor devuelto por RenderizadorSensor.proponer/fotograma (-1 si no queda nada pendiente).
+     */
+    private void programarFotograma(long espera) {
+        handlerPintado.removeCallbacks(tareaFotograma);
+        if (espera >= 0) {
+            handlerPintado.postDelayed(tareaFotograma, espera);
+        } else {
+            actualizarDepuracion();
+        }
+    }
 
-        dataHolder.ozonoData.observe(this, ozono -> {
-            if (ozono != null) {
-                ozonoTextView.setText(String.format(Locale.getDefault(), "%.3f ppm", ozono));
-                ozonoProgressBar.setProgress((int) (ozono * 1000));
-                Drawable d = (ozono < 0.6) ? ContextCompat.getDrawable(this, R.drawable.progress_bar_green) : (ozono < 0.9) ? ContextCompat.getDrawable(this, R.drawable.progress_bar_orange) : ContextCompat.getDrawable(this, R.drawable.progress_bar_red);
-                ozonoProgressBar.setProgressDrawable(d);
-            }
-        });
+    /** @brief Refresca la capa de depuración si está visible. */
+    private void actualizarDepuracion() {
+        if (depuracionTextView.getVisibility() == View.VISIBLE) depuracionTextView.setText(renderizador.resumen());
+    }
 
-        dataHolder.temperaturaData.observe(this, temperatura -> {
-            if (temperatura != null) {
-                temperaturaTextView.setText(String.format(Locale.getDefault(), "%.1f ºC", temperatura));
-                temperaturaProgressBar.setProgress(temperatura.intValue());
-                Drawable d = (temperatura <= 20) ? ContextCompat.getDrawable(this, R.drawable.progress_bar_blue) : (temperatura <= 28) ? ContextCompat.getDrawable(this, R.drawable.progress_bar_orange) : ContextCompat.getDrawable(this, R.drawable.progress_bar_red);
-                temperaturaProgressBar.setProgressDrawable(d);
-            }
-        });
+    // --- RenderizadorSensor.Vista: solo recibe lo que ha cambiado ---
 
-        dataHolder.co2Data.observe(this, co2 -> {
-            if (co2 != null) {
-                co2TextView.setText(String.format(Locale.getDefault(), "%d ppm", co2));
-                co2ProgressBar.setProgress(co2);
-                Drawable d = (co2 < 800) ? ContextCompat.getDrawable(this, R.drawable.progress_bar_green) : (co2 < 1200) ? ContextCompat.getDrawable(this, R.drawable.progress_bar_orange) : ContextCompat.getDrawable(this, R.drawable.progress_bar_red);
-                co2ProgressBar.setProgressDrawable(d);
-            }
-        });
+    @Override
+    public void texto(int campo, String texto) {
+        switch (campo) {
+            case InstantaneaSensor.CAMPO_HORA: ultimaConexionTextView.setText(texto); break;
+            case InstantaneaSensor.CAMPO_BATERIA: bateriaTextView.setText(texto); break;
+            case InstantaneaSensor.CAMPO_OZONO: ozonoTextView.setText(texto); break;
+            case InstantaneaSensor.CAMPO_TEMPERATURA: temperaturaTextView.setText(texto); break;
+            case InstantaneaSensor.CAMPO_CO2: co2TextView.setText(texto); break;
+            case InstantaneaSensor.CAMPO_ESTADO: estadoTextView.setText(texto); break;
+            default: break;
+        }
+    }
 
-        dataHolder.rssiData.observe(this, rssi -> {
-            if (rssi != null) {
-                if (rssi >= -60) imgSignal.setImageResource(R.drawable.ic_signal_bars_4);
-                else if (rssi >= -70) imgSignal.setImageResource(R.drawable.ic_signal_bars_3);
-                else if (rssi >= -80) imgSignal.setImageResource(R.drawable.ic_signal_bars_2);
-                else if (rssi >= -90) imgSignal.setImageResource(R.drawable.ic_signal_bars_1);
-                else imgSignal.setImageResource(R.drawable.ic_signal_bars_0);
-            }
-        });
+    @Override
+    public void progreso(int barra, int valor) {
+        barras[barra].setProgress(valor);
+    }
 
-        dataHolder.estadoData.observe(this, estado -> {
-            if (estado != null) {
-                estadoTextView.setText(estado);
-                if ("Conectado".equals(estado)) {
-                    estadoTextView.setTextColor(ContextCompat.getColor(this, R.color.progress_green));
-                    layoutOverlayDesconexion.setVisibility(View.GONE);
-                } else {
-                    estadoTextView.setTextColor(ContextCompat.getColor(this, R.color.progress_red));
-                    layoutOverlayDesconexion.setVisibility(View.VISIBLE);
-                    imgSignal.setImageResource(R.drawable.ic_signal_bars_0);
-                }
-            }
-        });
+    @Override
+    public void banda(int barra, int banda) {
+        Drawable d = cacheBandas[barra][banda];
+        if (d == null) {
+            // mutate(): cada barra tiene su propio estado (nivel y límites) aunque compartan recurso
+            d = ContextCompat.getDrawable(this, DRAWABLES_BANDA[banda]).mutate();
+            cacheBandas[barra][banda] = d;
+        }
+        barras[barra].setProgressDrawable(d);
+    }
+
+    @Override
+    public void bateriaBaja(boolean baja) {
+        bateriaTextView.setTextColor(baja ? colorRojo : Color.BLACK);
+    }
+
+    @Override
+    public void senal(int nivel) {
+        Drawable d = cacheSenal[nivel];
+        if (d == null) {
+            d = ContextCompat.getDrawable(this, DRAWABLES_SENAL[nivel]);
+            cacheSenal[nivel] = d;
+        }
+        imgSignal.setImageDrawable(d);
+    }
+
+    @Override
+    public void conectado(boolean conectado) {
+        estadoTextView.setTextColor(conectado ? colorVerde : colorRojo);
+        layoutOverlayDesconexion.setVisibility(conectado ? View.GONE : View.VISIBLE);
     }
 
     /**
@@ -342,6 +410,7 @@ public class SesionSensorActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        handlerPintado.removeCallbacks(tareaFotograma);
         if (incidenciaListener != null) {
             incidenciaListener.remove();
         }
@@ -0,0 +1,203 @@
+/**
+ * @file SubidorBandeja.java
+ * @brief Sube en orden, por lotes, las lecturas guardadas en la \ref BandejaSalidaLocal cuando hay red.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class SubidorBandeja
+ * @brief Decide si una lectura va a la bandeja de salida y vacía la bandeja cuando vuelve la red.
+ *
+ * Copyrigth © 2025
+ *
+ * Mientras no hay red, o la bandeja todavía tiene lecturas, las lecturas nuevas se guardan en la
+ * bandeja para respetar el orden (\ref debeEncolar). Con red, \ref drenar sube lotes de como mucho
+ * \ref getTamanoLote() lecturas a través del mismo \ref AgrupadorEscrituras.Sumidero que el agrupador,
+ * con un solo lote en vuelo, y avanza el cursor de la bandeja solo cuando el lote se ha confirmado
+ * (entrega al menos una vez). En memoria solo está el lote en vuelo.
+ */
+public class SubidorBandeja {
+
+    /** @brief Lecturas por lote por defecto (igual que \ref AgrupadorEscrituras). */
+    public static final int TAMANO_LOTE_POR_DEFECTO = AgrupadorEscrituras.MAX_LECTURAS_POR_DEFECTO;
+
+    private final BandejaSalidaLocal bandeja;
+    private final AgrupadorEscrituras.Sumidero sumidero;
+    private final int tamanoLote;
+
+    /** @brief Último estado de red conocido (NetworkCallback). */
+    private boolean hayRed = false;
+    /** @brief true mientras un lote espera confirmación. */
+    private boolean enVuelo = false;
+    /** @brief true dentro del bucle de \ref drenar (una confirmación síncrona no vuelve a entrar). */
+    private boolean drenando = false;
+
+    // Métricas
+    private long lotesSubidos = 0;
+    private long lotesFallidos = 0;
+    private long lecturasSubidas = 0;
+
+    /**
+     * @brief Constructor con lotes de 50 lecturas.
+     * (bandeja:BandejaSalidaLocal, sumidero:AgrupadorEscrituras.Sumidero) -> SubidorBandeja() -> ()
+     */
+    public SubidorBandeja(BandejaSalidaLocal bandeja, AgrupadorEscrituras.Sumidero sumidero) {
+        this(bandeja, sumidero, TAMANO_LOTE_POR_DEFECTO);
+    }
+
+    /**
+     * @brief Constructor del subidor.
+     * (bandeja:BandejaSalidaLocal, sumidero:AgrupadorEscrituras.Sumidero, tamanoLote:int) -> SubidorBandeja() -> ()
+     * @param bandeja Bandeja de salida.
+     * @param sumidero Destino de los lotes.
+     * @param tamanoLote Lecturas máximas por lote.
+     */
+    public SubidorBandeja(BandejaSalidaLocal bandeja, AgrupadorEscrituras.Sumidero sumidero, int tamanoLote) {
+        this.bandeja = bandeja;
+        this.sumidero = sumidero;
+        this.tamanoLote = tamanoLote;
+    }
+
+    /**
+     * @brief Actualiza el estado de la red. Al recuperarla hay que llamar a \ref drenar.
+     * (hayRed:boolean) -> setHayRed() -> ()
+     */
+    public synchronized void setHayRed(boolean hayRed) {
+        this.hayRed = hayRed;
+    }
+
+    /** @brief Último estado de red conocido. */
+    public synchronized boolean isHayRed() {
+        return hayRed;
+    }
+
+    /**
+     * @brief Indica si una lectura nueva debe ir a la bandeja en lugar de al agrupador.
+     * () -> debeEncolar() -> boolean
+     * @return true sin red o si aún quedan lecturas anteriores por subir.
+     */
+    public synchronized boolean debeEncolar() {
+        return !hayRed || bandeja.getPendientes() > 0;
+    }
+
+    /**
+     * @brief Sube lotes mientras haya red, lecturas pendientes y ningún lote en vuelo.
+     * () -> drenar() -> ()
+     */
+    public synchronized void drenar() {
+        if (drenando) return;
+        drenando = true;
+        try {
+            while (hayRed && !enVuelo && bandeja.getPendientes() > 0) {
+                enviarLote();
+            }
+        } finally {
+            drenando = false;
+        }
+    }
+
+    private void enviarLote() {
+        List<BandejaSalidaLocal.Registro> registros = new ArrayList<>(tamanoLote);
+        final int posiciones = bandeja.leer(registros, tamanoLote);
+        if (registros.isEmpty()) {
+            // Solo había registros corruptos: se saltan
+            bandeja.confirmar(posiciones);
+            return;
+        }
+        List<AgrupadorEscrituras.Escritura> lote = new ArrayList<>(registros.size());
+        Map<String, Map<String, Object>> campos = new LinkedHashMap<>();
+        for (int i = 0; i < registros.size(); i++) {
+            BandejaSalidaLocal.Registro r = registros.get(i);
+            String estado = r.conectado ? "Conectado" : "Desconectado";
+            LecturaSensor lectura = new LecturaSensor(r.o3, r.temperatura, r.co2, r.bateria, r.ubicacion, estado)
+                    .gases(gas(r.co), gas(r.no2), gas(r.so2));
+            lectura.fecha = new Date(r.fechaMs);
+            lote.add(new AgrupadorEscrituras.Escritura(r.codigo, lectura));
+            campos.put(r.codigo, camposDirectos(r, estado));
+        }
+        final int lecturas = lote.size();
+        enVuelo = true;
+        sumidero.confirmar(lote, campos, (exito, error) -> alConfirmar(posiciones, lecturas, exito));
+    }
+
+    /** @brief Gas opcional del registro como en \ref LecturaSensor (null si no venía). */
+    private static Float gas(float valor) {
+        return Float.isNaN(valor) ? null : valor;
+    }
+
+    /** @brief Campos directos del documento del sensor; la última conexión es la hora de la lectura, no la de subida. */
+    private static Map<String, Object> camposDirectos(BandejaSalidaLocal.Registro r, String estado) {
+        Map<String, Object> campos = new HashMap<>();
+        campos.put("ozono", r.o3);
+        campos.put("temperatura", r.temperatura);
+        campos.put("co2", r.co2);
+        campos.put("bateria", r.bateria);
+        if (!Float.isNaN(r.co)) campos.put("co", r.co);
+        if (!Float.isNaN(r.no2)) campos.put("no2", r.no2);
+        if (!Float.isNaN(r.so2)) campos.put("so2", r.so2);
+        campos.put("ubicacion", r.ubicacion);
+        campos.put("estado", estado);
+        campos.put("ultima_conexion", new Date(r.fechaMs));
+        return campos;
+    }
+
+    private synchronized void alConfirmar(int posiciones, int lecturas, boolean exito) {
+        enVuelo = false;
+        if (exito) {
+            bandeja.confirmar(posiciones);
+            lotesSubidos++;
+            lecturasSubidas += lecturas;
+            // Confirmación asíncrona: se sigue con el siguiente lote (si es síncrona ya sigue el bucle de drenar)
+            drenar();
+        } else {
+            // El lote se repite en el próximo drenar (reintento o vuelta de la red)
+            lotesFallidos++;
+        }
+    }
+
+    // --- Métricas ---
+
+    /** @brief Lecturas máximas por lote. */
+    public int getTamanoLote() {
+        return tamanoLote;
+    }
+
+    /** @brief true si hay un lote esperando confirmación. */
+    public synchronized boolean isEnVuelo() {
+        return enVuelo;
+    }
+
+    /** @brief Lotes subidos con éxito. */
+    public synchronized long getLotesSubidos() {
+        return lotesSubidos;
+    }
+
+    /** @brief Lotes que han fallado (se reintentan). */
+    public synchronized long getLotesFallidos() {
+        return lotesFallidos;
+    }
+
+    /** @brief Lecturas subidas desde la bandeja. */
+    public synchronized long getLecturasSubidas() {
+        return lecturasSubidas;
+    }
+
+    /**
+     * @brief Resumen legible para el log.
+     * () -> resumen() -> String
+     * @return Lotes y lecturas subidas desde la bandeja.
+     */
+    public synchronized String resumen() {
+        return String.format(Locale.ROOT, "Subida de la bandeja: %d lecturas en %d lotes, %d lotes fallidos.",
+                lecturasSubidas, lotesSubidos, lotesFallidos);
+    }
+}
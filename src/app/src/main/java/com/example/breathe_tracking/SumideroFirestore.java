@@ -0,0 +1,70 @@
+/**
+ * @file SumideroFirestore.java
+ * @brief Sumidero de \ref AgrupadorEscrituras que confirma cada lote con un WriteBatch de Firestore.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @class SumideroFirestore
+ * @brief Escribe un lote completo en una sola operación atómica.
+ *
+ * Copyrigth © 2025
+ *
+ * Por cada lectura se crea un documento nuevo en sensores/{codigo}/mediciones, con el ID generado en
+ * el cliente. Todo va en un WriteBatch con un solo listener de finalización.
+ *
+ * Los campos directos de cada sensor no van en el lote: se entregan a \ref CoalescedorEscrituras
+ * (a través de \p camposSensor), que limita las escrituras del documento del sensor.
+ */
+public class SumideroFirestore implements AgrupadorEscrituras.Sumidero {
+
+    /** @brief Etiqueta utilizada para los logs de Android. */
+    private static final String ETIQUETA_LOG = "Firestore";
+
+    private final FirebaseFirestore db;
+    private final CoalescedorEscrituras.Destino camposSensor;
+
+    /**
+     * @brief Constructor del sumidero.
+     * (db:FirebaseFirestore, camposSensor:CoalescedorEscrituras.Destino) -> SumideroFirestore() -> ()
+     * @param db Instancia de Firestore.
+     * @param camposSensor Recibe el último estado de los campos directos de cada sensor del lote.
+     */
+    public SumideroFirestore(FirebaseFirestore db, CoalescedorEscrituras.Destino camposSensor) {
+        this.db = db;
+        this.camposSensor = camposSensor;
+    }
+
+    @Override
+    public void confirmar(List<AgrupadorEscrituras.Escritura> lecturas, Map<String, Map<String, Object>> camposPorSensor,
+                          AgrupadorEscrituras.Confirmacion confirmacion) {
+        WriteBatch lote = db.batch();
+        for (int i = 0; i < lecturas.size(); i++) {
+            AgrupadorEscrituras.Escritura escritura = lecturas.get(i);
+            DocumentReference nueva = db.collection("sensores").document(escritura.codigoSensor).collection("mediciones").document();
+            lote.set(nueva, escritura.lectura);
+        }
+        for (Map.Entry<String, Map<String, Object>> campos : camposPorSensor.entrySet()) {
+            camposSensor.escribir(campos.getKey(), campos.getValue());
+        }
+        lote.commit().addOnCompleteListener(tarea -> {
+            if (tarea.isSuccessful()) {
+                Log.d(ETIQUETA_LOG, "Lote de " + lecturas.size() + " lecturas guardado.");
+                confirmacion.alTerminar(true, null);
+            } else {
+                Log.e(ETIQUETA_LOG, "Error al guardar el lote de lecturas", tarea.getException());
+                confirmacion.alTerminar(false, tarea.getException());
+            }
+        });
+    }
+}
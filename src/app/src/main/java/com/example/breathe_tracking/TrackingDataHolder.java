@@ -5,10 +5,15 @@
  */
 package com.example.breathe_tracking;
 
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * @class TrackingDataHolder
@@ -21,37 +26,72 @@ import java.util.List;
  *
  * Utiliza \ref MutableLiveData para que la Activity pueda observar automáticamente los cambios
  * en los datos del sensor y actualizar la UI de manera eficiente y segura (thread-safe).
+ *
+ * Los datos del sensor se publican de una vez en \ref instantaneaData (\ref InstantaneaSensor) con
+ * \ref actualizar: un único postValue por lectura y sin estados a medias. Los LiveData de cada
+ * campo (ozonoData, co2Data...) se derivan de ella y solo emiten cuando su valor cambia.
  */
 public class TrackingDataHolder {
     /** @brief Instancia única y estática de la clase (Singleton). */
     private static final TrackingDataHolder instance = new TrackingDataHolder();
 
+    /** @brief Cambios que se aplican a la instantánea en curso (los ejecuta \ref actualizar con el cerrojo tomado). */
+    public interface Cambios {
+        void aplicar(InstantaneaSensor.Edicion edicion);
+    }
+
+    // Instantánea del sensor principal (el que muestra la sesión)
+    /** @brief Última instantánea publicada (base de la siguiente edición). */
+    private InstantaneaSensor ultimaPublicada = InstantaneaSensor.VACIA;
+    /** @brief Última instantánea entregada a los observadores (base de la máscara de cambios). */
+    private InstantaneaSensor ultimaEntregada = InstantaneaSensor.VACIA;
+    /** @brief Publicaciones hechas y evitadas por no cambiar nada (métricas). */
+    private long publicadas = 0;
+    private long sinCambios = 0;
+
+    /**
+     * @brief Instantánea completa del sensor principal. Se publica una vez por lectura.
+     * Al entregarse (en el hilo principal) pasa a ser la base de la máscara de cambios de la siguiente:
+     * si postValue fusiona dos publicaciones, la que llega lleva los cambios de las dos.
+     */
+    public final MutableLiveData<InstantaneaSensor> instantaneaData = new MutableLiveData<InstantaneaSensor>() {
+        @Override
+        public void setValue(InstantaneaSensor valor) {
+            synchronized (TrackingDataHolder.this) {
+                ultimaEntregada = valor;
+            }
+            super.setValue(valor);
+        }
+    };
+
     // LiveData para datos principales
     /** @brief Contiene la ubicación actual del dispositivo (ej: "Calle Falsa 123, Ciudad"). */
     public final MutableLiveData<String> locationData = new MutableLiveData<>();
-    /** @brief Contiene la hora de la última recepción de datos del sensor (ej: "Última conex. 14:30"). */
-    public final MutableLiveData<String> timeData = new MutableLiveData<>();
-    /** @brief Contiene la lectura de la temperatura en grados Celsius. */
-    public final MutableLiveData<Float> temperaturaData = new MutableLiveData<>();
-    /** @brief Contiene la lectura del nivel de Ozono (O3) en ppm. */
-    public final MutableLiveData<Float> ozonoData = new MutableLiveData<>();
-    /** @brief Contiene la lectura de la concentración de Dióxido de Carbono (CO2) en ppm. */
-    public final MutableLiveData<Integer> co2Data = new MutableLiveData<>();
-    /** @brief Contiene el porcentaje de batería del sensor. */
-    public final MutableLiveData<Integer> bateriaData = new MutableLiveData<>();
-    /** @brief Contiene la intensidad de la señal recibida (RSSI) en dBm. */
-    public final MutableLiveData<Integer> rssiData = new MutableLiveData<>();
+    /** @brief Contiene la hora de la última recepción de datos del sensor (ej: "Última conex. 14:30"). Derivado de \ref instantaneaData. */
+    public final LiveData<String> timeData = vista(InstantaneaSensor::getHora);
+    /** @brief Contiene la lectura de la temperatura en grados Celsius. Derivado de \ref instantaneaData. */
+    public final LiveData<Float> temperaturaData = vista(InstantaneaSensor::getTemperatura);
+    /** @brief Contiene la lectura del nivel de Ozono (O3) en ppm. Derivado de \ref instantaneaData. */
+    public final LiveData<Float> ozonoData = vista(InstantaneaSensor::getOzono);
+    /** @brief Contiene la lectura de la concentración de Dióxido de Carbono (CO2) en ppm. Derivado de \ref instantaneaData. */
+    public final LiveData<Integer> co2Data = vista(InstantaneaSensor::getCo2);
+    /** @brief Contiene el porcentaje de batería del sensor. Derivado de \ref instantaneaData. */
+    public final LiveData<Integer> bateriaData = vista(InstantaneaSensor::getBateria);
+    /** @brief Contiene la intensidad de la señal recibida (RSSI) en dBm. Derivado de \ref instantaneaData. */
+    public final LiveData<Integer> rssiData = vista(InstantaneaSensor::getRssi);
 
     // LiveData para el estado de conexión
-    /** @brief Contiene el estado de conexión del sensor ("Conectado" o "Desconectado"). */
-    public final MutableLiveData<String> estadoData = new MutableLiveData<>();
+    /** @brief Contiene el estado de conexión del sensor ("Conectado" o "Desconectado"). Derivado de \ref instantaneaData. */
+    public final LiveData<String> estadoData = vista(InstantaneaSensor::getEstado);
 
     // LiveData para Alertas e Incidencias
-    /** @brief Contiene una lista con un máximo de 5 mensajes de alerta. */
+    /** @brief Últimas alertas de mediciones (instantánea inmutable de \ref HistorialAlertas, la más reciente primero). */
     public final MutableLiveData<List<String>> alertData = new MutableLiveData<>(new ArrayList<>());
+    /** @brief Historial de alertas compartido por el servicio y las Activities (se crea al pedirlo por primera vez). */
+    private HistorialAlertas historialAlertas;
 
-    /** @brief Contiene un mensaje sobre incidencias (principalmente la pérdida de conexión del sensor). */
-    public final MutableLiveData<String> incidenciaData = new MutableLiveData<>();
+    /** @brief Contiene un mensaje sobre incidencias (principalmente la pérdida de conexión del sensor). Derivado de \ref instantaneaData. */
+    public final LiveData<String> incidenciaData = vista(InstantaneaSensor::getIncidencia);
 
     /** @brief Nuevo: Contiene el historial de las últimas 4 incidencias enviadas. */
     public final MutableLiveData<List<String>> incidenciasEnviadasData = new MutableLiveData<>(new ArrayList<>());
@@ -68,4 +108,79 @@ public class TrackingDataHolder {
     public static TrackingDataHolder getInstance() {
         return instance;
     }
-}
\ No newline at end of file
+
+    /**
+     * @brief Devuelve el historial de alertas compartido; la primera vez encarga su carga de disco a
+     * un hilo aparte. Cada instantánea del historial (también la cargada) se publica en \ref alertData.
+     * (directorio:File) -> getHistorialAlertas() -> HistorialAlertas
+     * @param directorio Directorio de ficheros de la app (Context.getFilesDir()).
+     */
+    public synchronized HistorialAlertas getHistorialAlertas(File directorio) {
+        if (historialAlertas == null) {
+            // Un hilo propio para el disco (carga y escrituras): las alertas se añaden desde el pipeline
+            // y el hilo principal, y IncidenciasActivity lo pide en onCreate
+            Executor ejecutorDisco = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "historial-alertas");
+                t.setDaemon(true);
+                return t;
+            });
+            historialAlertas = new HistorialAlertas(HistorialAlertas.RETENCION_POR_DEFECTO,
+                    new File(directorio, "historial_alertas.bin"), ejecutorDisco, alertData::postValue);
+        }
+        return historialAlertas;
+    }
+
+    /**
+     * @brief Aplica unos cambios a la instantánea del sensor y la publica con un único postValue.
+     * Se puede llamar desde cualquier hilo; si nada cambia no se publica.
+     * (cambios:Cambios) -> actualizar() -> ()
+     * @param cambios Campos que se modifican (el resto conserva su valor).
+     */
+    public void actualizar(Cambios cambios) {
+        InstantaneaSensor nueva;
+        synchronized (this) {
+            InstantaneaSensor.Edicion edicion = ultimaPublicada.editar();
+            cambios.aplicar(edicion);
+            if (edicion.diferencias(ultimaPublicada) == 0) {
+                sinCambios++;
+                return;
+            }
+            nueva = edicion.crear(ultimaEntregada);
+            ultimaPublicada = nueva;
+            publicadas++;
+        }
+        instantaneaData.postValue(nueva);
+    }
+
+    /**
+     * @brief Última instantánea publicada (puede no haber llegado aún a los observadores).
+     * () -> getInstantanea() -> InstantaneaSensor
+     */
+    public synchronized InstantaneaSensor getInstantanea() {
+        return ultimaPublicada;
+    }
+
+    /** @brief Instantáneas publicadas y actualizaciones descartadas por no cambiar nada. */
+    public synchronized String resumen() {
+        return "Instantáneas: " + publicadas + " publicadas, " + sinCambios + " sin cambios.";
+    }
+
+    /** @brief Lee un campo de la instantánea. */
+    private interface Campo<T> {
+        T de(InstantaneaSensor instantanea);
+    }
+
+    /**
+     * @brief LiveData de un campo, derivado de \ref instantaneaData. Solo emite si el valor cambia.
+     * Compara valores y no la máscara porque mientras no tiene observadores activos no recibe las
+     * instantáneas intermedias.
+     */
+    private <T> LiveData<T> vista(final Campo<T> campo) {
+        final MediatorLiveData<T> vista = new MediatorLiveData<>();
+        vista.addSource(instantaneaData, instantanea -> {
+            T valor = campo.de(instantanea);
+            if (valor != null && !valor.equals(vista.getValue())) vista.setValue(valor);
+        });
+        return vista;
+    }
+}
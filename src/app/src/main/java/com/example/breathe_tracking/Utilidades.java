@@ -6,8 +6,7 @@
  */
 package com.example.breathe_tracking;
 
-import java.math.BigInteger;
-import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 // -----------------------------------------------------------------------------------
@@ -16,6 +15,8 @@ import java.util.UUID;
  * @class Utilidades
  * @brief Colección de métodos utilitarios estáticos para conversiones de tipos de bajo nivel.
  * Copyrigth © 2025
+ *
+ * Las conversiones binarias las hace \ref CodecBinario; estos métodos son la fachada que usa el resto de la app.
  */
 public class Utilidades {
 
@@ -25,11 +26,10 @@ public class Utilidades {
      * @brief Convierte una cadena de texto en un array de bytes.
      * (text:String) -> stringToBytes() -> bytes[]
      * @param texto La cadena de entrada.
-     * @return El array de bytes que representa la cadena, usando la codificación por defecto del sistema.
+     * @return El array de bytes que representa la cadena en UTF-8 (la codificación por defecto en Android).
      */
     public static byte[] stringToBytes ( String texto ) {
-        return texto.getBytes();
-        // byte[] b = string.getBytes(StandardCharsets.UTF_8); // Ja
+        return texto.getBytes(StandardCharsets.UTF_8);
     } // ()
 
     // -------------------------------------------------------------------------------
@@ -38,6 +38,7 @@ public class Utilidades {
      * @brief Convierte una cadena de 16 caracteres en un objeto UUID.
      * (uuid:String) -> stringToUUID() -> UUID
      * @note La cadena se divide en dos partes de 8 caracteres (Más Significativo y Menos Significativo).
+     * Cada carácter es un byte (la inversa de \ref uuidToString), sin depender del juego de caracteres.
      * @param uuid La cadena de 16 caracteres a convertir.
      * @return El objeto UUID resultante.
      * @throws Error Si la cadena no tiene exactamente 16 caracteres.
@@ -46,13 +47,7 @@ public class Utilidades {
         if ( uuid.length() != 16 ) {
             throw new Error( "stringUUID: string no tiene 16 caracteres ");
         }
-        byte[] comoBytes = uuid.getBytes();
-
-        String masSignificativo = uuid.substring(0, 8);
-        String menosSignificativo = uuid.substring(8, 16);
-        UUID res = new UUID( Utilidades.bytesToLong( masSignificativo.getBytes() ), Utilidades.bytesToLong( menosSignificativo.getBytes() ) );
-
-        return res;
+        return CodecBinario.uuidDeTexto( uuid );
     } // ()
 
     // -------------------------------------------------------------------------------
@@ -109,72 +104,63 @@ public class Utilidades {
      * @return Un array de bytes de 16 posiciones.
      */
     public static byte[] dosLongToBytes( long masSignificativos, long menosSignificativos ) {
-        ByteBuffer buffer = ByteBuffer.allocate( 2 * Long.BYTES );
-        buffer.putLong( masSignificativos );
-        buffer.putLong( menosSignificativos );
-        return buffer.array();
+        byte[] bytes = new byte[ 2 * Long.BYTES ];
+        CodecBinario.escribir( masSignificativos, bytes, 0, Long.BYTES, true );
+        CodecBinario.escribir( menosSignificativos, bytes, Long.BYTES, Long.BYTES, true );
+        return bytes;
     }
 
     // -------------------------------------------------------------------------------
     // -------------------------------------------------------------------------------
     /**
-     * @brief Convierte un array de bytes en un valor entero (int) usando BigInteger.
+     * @brief Convierte un array de bytes en un valor entero (int), big endian con signo.
      * (bytes:byte[]) -> bytesToInt() -> int
-     * @note Este método utiliza BigInteger para manejar la conversión, lo cual no es ideal para
-     * lecturas de bajo nivel byte a byte o manejo de endianness específico.
+     * @note Da lo mismo que new BigInteger(bytes).intValue(): con más de 4 bytes se queda con los 4 últimos.
      * @param bytes El array de bytes de entrada (máximo 4 bytes).
      * @return El valor int resultante.
+     * @throws NumberFormatException Si el array está vacío (como BigInteger).
      */
     public static int bytesToInt( byte[] bytes ) {
-        return new BigInteger(bytes).intValue();
+        if ( bytes.length == 0 ) throw new NumberFormatException( "Zero length BigInteger" );
+        int n = Math.min( bytes.length, Integer.BYTES );
+        return (int) CodecBinario.leerConSigno( bytes, bytes.length - n, n, true );
     }
 
     // -------------------------------------------------------------------------------
     // -------------------------------------------------------------------------------
     /**
-     * @brief Convierte un array de bytes en un valor long usando BigInteger.
+     * @brief Convierte un array de bytes en un valor long, big endian con signo.
      * (bytes:byte[]) -> bytesToLong() -> long
-     * @note Similar a \ref bytesToInt, utiliza BigInteger para la conversión.
+     * @note Como \ref bytesToInt: con más de 8 bytes se queda con los 8 últimos.
      * @param bytes El array de bytes de entrada (máximo 8 bytes).
      * @return El valor long resultante.
+     * @throws NumberFormatException Si el array está vacío (como BigInteger).
      */
     public static long bytesToLong( byte[] bytes ) {
-        return new BigInteger(bytes).longValue();
+        if ( bytes.length == 0 ) throw new NumberFormatException( "Zero length BigInteger" );
+        int n = Math.min( bytes.length, Long.BYTES );
+        return CodecBinario.leerConSigno( bytes, bytes.length - n, n, true );
     }
 
     // -------------------------------------------------------------------------------
     // -------------------------------------------------------------------------------
     /**
-     * @brief Convierte un array de bytes en un valor entero (int) con lógica de desplazamiento de bits y manejo de signo (complemento a 2).
+     * @brief Convierte un array de bytes en un valor entero (int) big endian con signo (complemento a 2).
      * (bytes:byte[]) -> bytesToIntOK() -> int
-     * @note Este método implementa una conversión byte a byte con desplazamiento (Big Endian)
-     * y una lógica de manejo de signo que parece ser una adaptación manual para enteros con signo.
+     * @note El signo es el bit más significativo del primer byte: {0x80, 0x00} da -32768 y {0x08, 0x01} da 2049.
      * @param bytes El array de bytes de entrada (máximo 4 bytes).
-     * @return El valor int resultante.
+     * @return El valor int resultante (0 si es null o está vacío).
      * @throws Error Si el array de bytes supera los 4 bytes.
      */
     public static int bytesToIntOK( byte[] bytes ) {
-        if (bytes == null ) {
+        if (bytes == null || bytes.length == 0 ) {
             return 0;
         }
 
         if ( bytes.length > 4 ) {
             throw new Error( "demasiados bytes para pasar a int ");
         }
-        int res = 0;
-
-
-
-        for( byte b : bytes ) {
-            res =  (res << 8) // * 16
-                    + (b & 0xFF); // para quedarse con 1 byte (2 cuartetos) de lo que haya en b
-        } // for
-
-        if ( (bytes[ 0 ] & 0x8) != 0 ) {
-            // si tiene signo negativo (un 1 a la izquierda del primer byte
-            res = -(~(byte)res)-1; // complemento a 2 (~) de res pero como byte, -1
-        }
-        return res;
+        return (int) CodecBinario.leerConSigno( bytes, 0, bytes.length, true );
     } // ()
 
     // -------------------------------------------------------------------------------
@@ -191,12 +177,7 @@ public class Utilidades {
             return "";
         }
 
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
-            sb.append(':');
-        }
-        return sb.toString();
+        return CodecBinario.hex( bytes, ':' );
     } // ()
 
 }
\ No newline at end of file
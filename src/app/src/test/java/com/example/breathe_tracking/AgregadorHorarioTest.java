@@ -0,0 +1,185 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class AgregadorHorarioTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone MADRID = TimeZone.getTimeZone("Europe/Madrid");
+
+    /** Destino en memoria: guarda cada publicación. */
+    private static class DestinoEnMemoria implements AgregadorHorario.Destino {
+        final List<String> sensores = new ArrayList<>();
+        final List<String> dias = new ArrayList<>();
+        final List<Map<String, Object>> campos = new ArrayList<>();
+
+        @Override
+        public void publicar(String codigoSensor, String dia, Map<String, Object> campos) {
+            sensores.add(codigoSensor);
+            dias.add(dia);
+            this.campos.add(campos);
+        }
+    }
+
+    private static long instante(TimeZone zona, int anio, int mes, int dia, int hora, int minuto) {
+        Calendar c = Calendar.getInstance(zona);
+        c.clear();
+        c.set(anio, mes - 1, dia, hora, minuto);
+        return c.getTimeInMillis();
+    }
+
+    private static LecturaBeacon lectura(float o3, float temp, int co2, int bat) {
+        LecturaBeacon l = new LecturaBeacon();
+        l.o3 = o3;
+        l.temperatura = temp;
+        l.co2 = co2;
+        l.bateria = bat;
+        return l;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> hora(Map<String, Object> campos, String canal, int hora) {
+        return (Map<String, Object>) ((Map<String, Object>) campos.get(canal)).get(AgregadorHorario.claveHora(hora));
+    }
+
+    @Test
+    public void agregaPorHoraSinGuardarMuestras() {
+        AgregadorHorario agregador = new AgregadorHorario(new DestinoEnMemoria(), UTC, 4);
+        EstadoSensor sensor = new EstadoSensor("S1", "rocio", 0);
+
+        agregador.agregar(sensor, lectura(0.10f, 20f, 600, 90), instante(UTC, 2025, 10, 17, 10, 0));
+        agregador.agregar(sensor, lectura(0.30f, 22f, 800, 89), instante(UTC, 2025, 10, 17, 10, 30));
+        agregador.agregar(sensor, lectura(0.20f, 21f, 700, 89), instante(UTC, 2025, 10, 17, 10, 59));
+        agregador.agregar(sensor, lectura(0.05f, 19f, 500, 88), instante(UTC, 2025, 10, 17, 11, 0));
+
+        assertEquals("20251017", agregador.getDia());
+        assertEquals(3, agregador.getMuestras(0, 10));
+        assertEquals(1, agregador.getMuestras(0, 11));
+        assertEquals(0, agregador.getMuestras(0, 9));
+        assertEquals(700f, agregador.getMedia(0, 10, FiltroCambios.CANAL_CO2), 1e-3f);
+        assertEquals(600f, agregador.getMinimo(0, 10, FiltroCambios.CANAL_CO2), 0f);
+        assertEquals(800f, agregador.getMaximo(0, 10, FiltroCambios.CANAL_CO2), 0f);
+        assertEquals(700f, agregador.getUltimo(0, 10, FiltroCambios.CANAL_CO2), 0f);
+        assertEquals(0.2f, agregador.getMedia(0, 10, FiltroCambios.CANAL_O3), 1e-6f);
+        assertTrue(Float.isNaN(agregador.getMedia(0, 9, FiltroCambios.CANAL_CO2)));
+    }
+
+    @Test
+    public void publicaSoloLasHorasModificadas() {
+        DestinoEnMemoria destino = new DestinoEnMemoria();
+        AgregadorHorario agregador = new AgregadorHorario(destino, UTC, 4);
+        EstadoSensor a = new EstadoSensor("A", "rocio", 0);
+        EstadoSensor b = new EstadoSensor("B", "otro", 1);
+
+        agregador.agregar(a, lectura(0.1f, 20f, 600, 90), instante(UTC, 2025, 10, 17, 9, 10));
+        agregador.agregar(a, lectura(0.1f, 20f, 610, 90), instante(UTC, 2025, 10, 17, 10, 10));
+        agregador.agregar(b, lectura(0.1f, 20f, 900, 90), instante(UTC, 2025, 10, 17, 10, 20));
+        assertEquals(2, agregador.publicar());
+        assertEquals("A", destino.sensores.get(0));
+        assertEquals("20251017", destino.dias.get(0));
+        assertEquals(2, ((Map<?, ?>) destino.campos.get(0).get("co2")).size());
+        assertEquals(600f, hora(destino.campos.get(0), "co2", 9).get("media"));
+
+        assertEquals("Sin muestras nuevas no se publica nada", 0, agregador.publicar());
+
+        agregador.agregar(a, lectura(0.1f, 20f, 630, 90), instante(UTC, 2025, 10, 17, 10, 40));
+        assertEquals(1, agregador.publicar());
+        Map<String, Object> incremental = destino.campos.get(2);
+        assertEquals(1, ((Map<?, ?>) incremental.get("co2")).size());
+        Map<String, Object> h10 = hora(incremental, "co2", 10);
+        assertEquals(2, h10.get("n"));
+        assertEquals(620f, h10.get("media"));
+        assertEquals(610f, h10.get("min"));
+        assertEquals(630f, h10.get("max"));
+        assertEquals(630f, h10.get("ultimo"));
+    }
+
+    @Test
+    public void elCambioDeDiaPublicaYEmpiezaDeCero() {
+        DestinoEnMemoria destino = new DestinoEnMemoria();
+        AgregadorHorario agregador = new AgregadorHorario(destino, UTC, 2);
+        EstadoSensor a = new EstadoSensor("A", "rocio", 0);
+
+        agregador.agregar(a, lectura(0.1f, 20f, 600, 90), instante(UTC, 2025, 10, 17, 23, 59));
+        agregador.agregar(a, lectura(0.1f, 20f, 700, 90), instante(UTC, 2025, 10, 18, 0, 1));
+
+        assertEquals("El día anterior se publica al cambiar", 1, destino.campos.size());
+        assertEquals("20251017", destino.dias.get(0));
+        assertEquals("20251018", agregador.getDia());
+        assertEquals(0, agregador.getMuestras(0, 23));
+        assertEquals(1, agregador.getMuestras(0, 0));
+        assertEquals(700f, agregador.getMedia(0, 0, FiltroCambios.CANAL_CO2), 0f);
+    }
+
+    @Test
+    public void losDiasDeCambioDeHoraUsanLaHoraLocal() {
+        AgregadorHorario agregador = new AgregadorHorario(new DestinoEnMemoria(), MADRID, 1);
+        EstadoSensor a = new EstadoSensor("A", "rocio", 0);
+
+        // 30/03/2025: a las 02:00 pasan a ser las 03:00 (el día tiene 23 horas)
+        long inicio = instante(MADRID, 2025, 3, 30, 0, 0);
+        for (long t = inicio; t < inicio + 23 * 3_600_000L; t += 60_000) {
+            agregador.agregar(a, lectura(0f, 0f, 400, 50), t);
+        }
+        assertEquals("20250330", agregador.getDia());
+        assertEquals(60, agregador.getMuestras(0, 1));
+        assertEquals("La hora 2 no existe ese día", 0, agregador.getMuestras(0, 2));
+        assertEquals(60, agregador.getMuestras(0, 3));
+        assertEquals(60, agregador.getMuestras(0, 23));
+
+        // 26/10/2025: a las 03:00 vuelven a ser las 02:00 (la hora 2 dura dos horas reales)
+        inicio = instante(MADRID, 2025, 10, 26, 0, 0);
+        for (long t = inicio; t < inicio + 25 * 3_600_000L; t += 60_000) {
+            agregador.agregar(a, lectura(0f, 0f, 400, 50), t);
+        }
+        assertEquals("20251026", agregador.getDia());
+        assertEquals(120, agregador.getMuestras(0, 2));
+        assertEquals(60, agregador.getMuestras(0, 3));
+        assertEquals(60, agregador.getMuestras(0, 23));
+    }
+
+    @Test
+    public void losSensoresFueraDeRangoSeIgnoran() {
+        AgregadorHorario agregador = new AgregadorHorario(new DestinoEnMemoria(), UTC, 2);
+        assertFalse(agregador.agregar(new EstadoSensor("Z", "z", 5), lectura(0f, 0f, 1, 1), 0));
+        assertTrue(agregador.agregar(new EstadoSensor("A", "a", 1), lectura(0f, 0f, 1, 1), 0));
+    }
+
+    @Test
+    public void losGasesOpcionalesCuentanSoloLasTramasQueLosTraen() {
+        DestinoEnMemoria destino = new DestinoEnMemoria();
+        AgregadorHorario agregador = new AgregadorHorario(destino, UTC, 2);
+        EstadoSensor a = new EstadoSensor("A", "rocio", 0);
+
+        LecturaBeacon conGases = lectura(0.1f, 20f, 600, 90);
+        conGases.co = 2f;
+        conGases.no2 = 40f;
+        agregador.agregar(a, conGases, instante(UTC, 2025, 10, 17, 10, 0));
+        agregador.agregar(a, lectura(0.1f, 20f, 700, 90), instante(UTC, 2025, 10, 17, 10, 10));
+        conGases.co = 4f;
+        agregador.agregar(a, conGases, instante(UTC, 2025, 10, 17, 10, 20));
+        agregador.agregar(a, lectura(0.1f, 20f, 800, 90), instante(UTC, 2025, 10, 17, 11, 0));
+
+        assertEquals(3, agregador.getMuestras(0, 10));
+        assertEquals(2, agregador.getMuestras(0, 10, AgregadorHorario.CANAL_CO));
+        assertEquals("El NaN no baja la media", 3f, agregador.getMedia(0, 10, AgregadorHorario.CANAL_CO), 0f);
+        assertEquals(2f, agregador.getMinimo(0, 10, AgregadorHorario.CANAL_CO), 0f);
+        assertTrue(Float.isNaN(agregador.getMedia(0, 10, AgregadorHorario.CANAL_SO2)));
+
+        agregador.publicar();
+        Map<String, Object> campos = destino.campos.get(0);
+        assertEquals(2, hora(campos, "co", 10).get("n"));
+        assertEquals(40f, hora(campos, "no2", 10).get("media"));
+        assertNull("Sin muestras de CO en esa hora no se publica", ((Map<?, ?>) campos.get("co")).get(AgregadorHorario.claveHora(11)));
+        assertFalse("Un canal sin muestras no aparece en el documento", campos.containsKey("so2"));
+        assertEquals(3, hora(campos, "co2", 10).get("n"));
+    }
+}
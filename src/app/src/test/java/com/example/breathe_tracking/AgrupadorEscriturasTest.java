@@ -0,0 +1,137 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AgrupadorEscriturasTest {
+
+    /** Sumidero en memoria: guarda los lotes y confirma cuando se le pide (simula la latencia de red). */
+    private static class SumideroEnMemoria implements AgrupadorEscrituras.Sumidero {
+        final List<List<AgrupadorEscrituras.Escritura>> lotes = new ArrayList<>();
+        final List<Map<String, Map<String, Object>>> merges = new ArrayList<>();
+        final List<AgrupadorEscrituras.Confirmacion> sinConfirmar = new ArrayList<>();
+        boolean confirmarAlMomento = true;
+
+        @Override
+        public void confirmar(List<AgrupadorEscrituras.Escritura> lecturas, Map<String, Map<String, Object>> camposPorSensor,
+                              AgrupadorEscrituras.Confirmacion confirmacion) {
+            lotes.add(lecturas);
+            merges.add(camposPorSensor);
+            if (confirmarAlMomento) confirmacion.alTerminar(true, null);
+            else sinConfirmar.add(confirmacion);
+        }
+    }
+
+    private static class RelojManual implements Reloj {
+        long ahora = 0;
+
+        @Override
+        public long ahoraMs() {
+            return ahora;
+        }
+    }
+
+    private static Map<String, Object> campos(int co2) {
+        Map<String, Object> campos = new HashMap<>();
+        campos.put("co2", co2);
+        return campos;
+    }
+
+    @Test
+    public void confirmaAlLlenarElLote() {
+        SumideroEnMemoria sumidero = new SumideroEnMemoria();
+        AgrupadorEscrituras agrupador = new AgrupadorEscrituras(sumidero, new RelojManual(), 50, 30_000);
+
+        assertTrue("La primera lectura abre el lote", agrupador.agregar("A", new LecturaSensor(), campos(0)));
+        for (int i = 1; i < 120; i++) {
+            boolean abreLote = agrupador.agregar("A", new LecturaSensor(0, 0, i, 0, "", "Conectado"), campos(i));
+            assertEquals(i % 50 == 0, abreLote);
+        }
+        assertEquals(2, sumidero.lotes.size());
+        assertEquals(50, sumidero.lotes.get(0).size());
+        assertEquals(20, agrupador.getPendientes());
+        assertEquals(49, sumidero.merges.get(0).get("A").get("co2"));
+        assertEquals(100, agrupador.getLecturasConfirmadas());
+    }
+
+    @Test
+    public void confirmaPorTiempoConUnMergePorSensor() {
+        SumideroEnMemoria sumidero = new SumideroEnMemoria();
+        RelojManual reloj = new RelojManual();
+        AgrupadorEscrituras agrupador = new AgrupadorEscrituras(sumidero, reloj, 50, 30_000);
+
+        assertEquals(-1, agrupador.revisar());
+        agrupador.agregar("A", new LecturaSensor(), campos(500));
+        reloj.ahora = 10_000;
+        agrupador.agregar("B", new LecturaSensor(), campos(700));
+        agrupador.agregar("A", new LecturaSensor(), campos(510));
+
+        assertEquals(20_000, agrupador.revisar());
+        reloj.ahora = 30_000;
+        assertEquals(-1, agrupador.revisar());
+
+        assertEquals(1, sumidero.lotes.size());
+        assertEquals(3, sumidero.lotes.get(0).size());
+        Map<String, Map<String, Object>> merge = sumidero.merges.get(0);
+        assertEquals(2, merge.size());
+        assertEquals("Solo se envía el último estado de cada sensor", 510, merge.get("A").get("co2"));
+        assertEquals(700, merge.get("B").get("co2"));
+    }
+
+    @Test
+    public void mideLatenciaYLotesEnVuelo() {
+        SumideroEnMemoria sumidero = new SumideroEnMemoria();
+        sumidero.confirmarAlMomento = false;
+        RelojManual reloj = new RelojManual();
+        AgrupadorEscrituras agrupador = new AgrupadorEscrituras(sumidero, reloj, 10, 30_000);
+
+        for (int i = 0; i < 10; i++) agrupador.agregar("A", new LecturaSensor(), campos(i));
+        agrupador.agregar("A", new LecturaSensor(), campos(99));
+        agrupador.vaciar();
+        assertEquals(2, agrupador.getLotesEnVuelo());
+
+        reloj.ahora = 350;
+        sumidero.sinConfirmar.get(0).alTerminar(true, null);
+        reloj.ahora = 1_000;
+        sumidero.sinConfirmar.get(1).alTerminar(false, new Exception("sin permisos"));
+
+        assertEquals(0, agrupador.getLotesEnVuelo());
+        assertEquals(1, agrupador.getLotesConfirmados());
+        assertEquals(1, agrupador.getLotesFallidos());
+        assertEquals(10, agrupador.getMaxTamanoLote());
+        assertEquals(10.0, agrupador.getTamanoMedioLote(), 0.0);
+        assertEquals(1_000, agrupador.getLatenciaMaximaMs());
+        assertEquals(675, agrupador.getLatenciaMediaMs());
+        System.out.println("[TEST] " + agrupador.resumen());
+    }
+
+    @Test
+    public void reduccionDeEscriturasDeRed() {
+        SumideroEnMemoria sumidero = new SumideroEnMemoria();
+        RelojManual reloj = new RelojManual();
+        AgrupadorEscrituras agrupador = new AgrupadorEscrituras(sumidero, reloj);
+
+        // Una hora con una lectura publicada cada 2 s de dos sensores
+        int lecturas = 0;
+        for (reloj.ahora = 0; reloj.ahora < 3_600_000; reloj.ahora += 1000) {
+            agrupador.revisar();
+            if (reloj.ahora % 2000 == 0) {
+                agrupador.agregar("A", new LecturaSensor(), campos(1));
+                agrupador.agregar("B", new LecturaSensor(), campos(2));
+                lecturas += 2;
+            }
+        }
+        agrupador.vaciar();
+        int commits = sumidero.lotes.size();
+        // Antes: dos escrituras de red (add + merge) por lectura
+        System.out.println("[TEST] " + (2 * lecturas) + " escrituras individuales -> " + commits + " commits de lote");
+        assertEquals(lecturas, agrupador.getLecturasConfirmadas());
+        assertTrue(commits * 40 < 2 * lecturas);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AgrupadorLotesTest {
+
+    @Test
+    public void unaLecturaPorSensorConLaTramaMasReciente() {
+        AgrupadorLotes agrupador = new AgrupadorLotes();
+        agrupador.iniciarLote();
+
+        // Lote sintético: 10 s a 5 anuncios/s de dos sensores, más ruido de otro fabricante
+        for (int i = 0; i < 50; i++) {
+            long t = i * 200_000_000L;
+            assertTrue(agrupador.agregar("AA:00:00:00:00:01", "rocio", DecodificadorTramaTest.anuncio(400 + i, 200 + i, 700 + i, 90), -60 - (i % 5), t));
+            assertTrue(agrupador.agregar("AA:00:00:00:00:02", "rocio2", DecodificadorTramaTest.anuncio(100, 180, 500, 40), -80, t));
+        }
+        assertFalse(agrupador.agregar("AA:00:00:00:00:03", "tv", new byte[]{0x02, 0x01, 0x06}, -50, 0));
+
+        List<AgrupadorLotes.Entrada> lecturas = agrupador.lecturasDelLote();
+        assertEquals(2, lecturas.size());
+
+        AgrupadorLotes.Entrada primera = lecturas.get(0);
+        assertEquals("AA:00:00:00:00:01", primera.direccion);
+        assertEquals(50, primera.muestras);
+        assertEquals(749, primera.lectura.co2); // la última trama del lote
+        assertEquals(24.9f, primera.lectura.temperatura, 0.001f);
+        assertEquals(-62, primera.rssiMedio());
+
+        assertEquals(100, agrupador.getTramasRecibidas());
+        assertEquals(2, agrupador.getLecturasEntregadas());
+    }
+
+    @Test
+    public void tramasDesordenadasConservanLaMasReciente() {
+        AgrupadorLotes agrupador = new AgrupadorLotes();
+        agrupador.iniciarLote();
+        agrupador.agregar("AA", "rocio", DecodificadorTramaTest.anuncio(1, 1, 900, 1), -70, 3_000L);
+        agrupador.agregar("AA", "rocio", DecodificadorTramaTest.anuncio(1, 1, 100, 1), -70, 1_000L);
+        assertEquals(900, agrupador.lecturasDelLote().get(0).lectura.co2);
+    }
+
+    @Test
+    public void cadaLoteEmpiezaDeCero() {
+        AgrupadorLotes agrupador = new AgrupadorLotes();
+        agrupador.iniciarLote();
+        agrupador.agregar("AA", "rocio", DecodificadorTramaTest.anuncio(1, 1, 600, 1), -50, 1L);
+        agrupador.agregar("BB", "rocio2", DecodificadorTramaTest.anuncio(1, 1, 600, 1), -50, 1L);
+        AgrupadorLotes.Entrada entradaAnterior = agrupador.lecturasDelLote().get(0);
+
+        agrupador.iniciarLote();
+        agrupador.agregar("AA", "rocio", DecodificadorTramaTest.anuncio(1, 1, 650, 1), -90, 2L);
+        List<AgrupadorLotes.Entrada> lecturas = agrupador.lecturasDelLote();
+
+        assertEquals(1, lecturas.size());
+        assertSame("Las entradas se reutilizan entre lotes", entradaAnterior, lecturas.get(0));
+        assertEquals(1, lecturas.get(0).muestras);
+        assertEquals(-90, lecturas.get(0).rssiMedio());
+        assertEquals(650, lecturas.get(0).lectura.co2);
+    }
+}
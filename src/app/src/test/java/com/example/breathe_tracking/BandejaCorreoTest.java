@@ -0,0 +1,206 @@
+package com.example.breathe_tracking;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BandejaCorreoTest {
+
+    private File directorio;
+    private final Reloj reloj = () -> System.nanoTime() / 1_000_000;
+
+    /**
+     * @brief Servidor SMTP en memoria: cuenta conexiones (con autenticación) y mensajes aceptados, y
+     * puede estar caído, cortar la conexión en medio de un envío o rechazar destinatarios.
+     */
+    static class ServidorFalso implements BandejaCorreo.Transporte {
+        final List<String> recibidos = Collections.synchronizedList(new ArrayList<>());
+        final Set<String> rechazados = new HashSet<>();
+        volatile boolean caido = false;
+        volatile boolean credencialesMalas = false;
+        volatile int cortes = 0;
+        volatile int conexiones = 0;
+        volatile int cierres = 0;
+        private boolean abierta = false;
+
+        @Override
+        public void conectar() throws BandejaCorreo.ErrorEnvio {
+            if (caido) throw new BandejaCorreo.ErrorEnvio("Connection refused", false, null);
+            if (credencialesMalas) throw new BandejaCorreo.ErrorEnvio("535 Authentication failed", true, null);
+            abierta = true;
+            conexiones++;
+        }
+
+        @Override
+        public boolean isConectado() {
+            return abierta;
+        }
+
+        @Override
+        public void enviar(BandejaCorreo.Correo correo) throws BandejaCorreo.ErrorEnvio {
+            if (!abierta) throw new BandejaCorreo.ErrorEnvio("Sin conexión", false, null);
+            if (cortes > 0) {
+                cortes--;
+                abierta = false;
+                throw new BandejaCorreo.ErrorEnvio("421 Timeout", false, null);
+            }
+            if (rechazados.contains(correo.para)) throw new BandejaCorreo.ErrorEnvio("550 No such user", true, null);
+            recibidos.add(correo.asunto);
+        }
+
+        @Override
+        public void cerrar() {
+            if (abierta) cierres++;
+            abierta = false;
+        }
+    }
+
+    /** @brief Escucha que anota los resultados y deja esperar a que lleguen \p n. */
+    static class Resultados implements BandejaCorreo.Escucha {
+        final List<String> lista = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch pendientes;
+
+        Resultados(int n) {
+            pendientes = new CountDownLatch(n);
+        }
+
+        @Override
+        public void alTerminar(BandejaCorreo.Correo correo, boolean enviado, String error) {
+            lista.add(correo.asunto + (enviado ? " enviado" : " fallido: " + error));
+            pendientes.countDown();
+        }
+
+        void esperar() throws InterruptedException {
+            assertTrue("Faltan resultados: " + lista, pendientes.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Before
+    public void crearDirectorio() throws IOException {
+        directorio = Files.createTempDirectory("correo").toFile();
+    }
+
+    @After
+    public void borrarDirectorio() {
+        File[] ficheros = directorio.listFiles();
+        if (ficheros != null) for (File f : ficheros) f.delete();
+        directorio.delete();
+    }
+
+    private BandejaCorreo nueva(ServidorFalso servidor) {
+        return new BandejaCorreo(directorio, servidor, reloj).configurar(10, 200, 20, 80, 3);
+    }
+
+    @Test
+    public void enviaPorLotesConUnaSolaConexionYLaCierraSinUso() throws InterruptedException {
+        ServidorFalso servidor = new ServidorFalso();
+        BandejaCorreo bandeja = nueva(servidor);
+        Resultados resultados = new Resultados(25);
+        for (int i = 0; i < 25; i++) bandeja.encolar("admin@example.com", "incidencia " + i, "<p>" + i + "</p>", resultados);
+        resultados.esperar();
+
+        assertEquals(25, servidor.recibidos.size());
+        for (int i = 0; i < 25; i++) assertEquals("En orden", "incidencia " + i, servidor.recibidos.get(i));
+        assertEquals("Una conexión (y una autenticación) para los 25", 1, servidor.conexiones);
+        assertTrue("La ráfaga sale en lotes: " + bandeja.resumen(), bandeja.getLotes() <= 5);
+        assertEquals(25, bandeja.getEnviados());
+        assertEquals(0, bandeja.getPendientes());
+        File[] restos = directorio.listFiles();
+        assertEquals("Los enviados se borran del disco", 0, restos == null ? 0 : restos.length);
+
+        Thread.sleep(600);
+        assertEquals("La conexión se cierra tras la inactividad", 1, servidor.cierres);
+        assertEquals(1, bandeja.getCierresPorInactividad());
+        System.out.println("[TEST] " + bandeja.resumen());
+        bandeja.cerrar(1000);
+    }
+
+    @Test
+    public void reintentaLosFallosTransitoriosYNoLosPermanentes() throws InterruptedException {
+        ServidorFalso servidor = new ServidorFalso();
+        servidor.cortes = 2;
+        servidor.rechazados.add("nadie@example.com");
+        BandejaCorreo bandeja = nueva(servidor);
+        Resultados resultados = new Resultados(3);
+        bandeja.encolar("admin@example.com", "a", "<p>a</p>", resultados);
+        bandeja.encolar("nadie@example.com", "b", "<p>b</p>", resultados);
+        bandeja.encolar("admin@example.com", "c", "<p>c</p>", resultados);
+        resultados.esperar();
+
+        assertEquals("[a enviado, b fallido: 550 No such user, c enviado]", resultados.lista.toString());
+        assertEquals("[a, c]", servidor.recibidos.toString());
+        assertEquals(2, bandeja.getReintentos());
+        assertEquals("Tras cada corte se vuelve a conectar", 3, servidor.conexiones);
+        assertEquals(1, bandeja.getFallidos());
+        bandeja.cerrar(1000);
+    }
+
+    @Test
+    public void alAgotarLosIntentosSeInformaDelFallo() throws InterruptedException {
+        ServidorFalso servidor = new ServidorFalso();
+        servidor.cortes = 100;
+        BandejaCorreo bandeja = nueva(servidor);
+        Resultados resultados = new Resultados(1);
+        bandeja.encolar("admin@example.com", "a", "<p>a</p>", resultados);
+        resultados.esperar();
+        assertEquals("[a fallido: 421 Timeout]", resultados.lista.toString());
+        assertEquals(3 - 1, bandeja.getReintentos());
+        bandeja.cerrar(1000);
+    }
+
+    @Test
+    public void lasCredencialesRechazadasGastanIntentos() throws InterruptedException {
+        ServidorFalso servidor = new ServidorFalso();
+        servidor.credencialesMalas = true;
+        BandejaCorreo bandeja = nueva(servidor);
+        Resultados resultados = new Resultados(2);
+        bandeja.encolar("admin@example.com", "a", "<p>a</p>", resultados);
+        bandeja.encolar("admin@example.com", "b", "<p>b</p>", resultados);
+        resultados.esperar();
+        assertEquals("No se reintenta sin fin", "[a fallido: 535 Authentication failed, b fallido: 535 Authentication failed]",
+                resultados.lista.toString());
+        assertEquals(0, servidor.conexiones);
+        assertEquals(2, bandeja.getFallidos());
+        bandeja.cerrar(1000);
+    }
+
+    @Test
+    public void sinServidorLosMensajesEsperanYSobrevivenAlReinicio() throws InterruptedException {
+        ServidorFalso caido = new ServidorFalso();
+        caido.caido = true;
+        BandejaCorreo primera = nueva(caido);
+        for (int i = 0; i < 3; i++) primera.encolar("admin@example.com", "pendiente " + i, "<p>ñandú " + i + "</p>", null);
+        Thread.sleep(300);
+        assertEquals("Sin conexión no se gastan intentos: siguen en cola", 3, primera.getPendientes());
+        assertEquals(0, primera.getFallidos());
+        primera.cerrar(1000);
+        File[] ficheros = directorio.listFiles();
+        assertEquals(3, ficheros == null ? 0 : ficheros.length);
+
+        // Reinicio de la app con red
+        ServidorFalso servidor = new ServidorFalso();
+        Resultados resultados = new Resultados(4);
+        BandejaCorreo segunda = nueva(servidor);
+        segunda.setEscuchaPorDefecto(resultados);
+        segunda.encolar("admin@example.com", "nueva", "<p>nueva</p>", null);
+        resultados.esperar();
+        assertEquals("Los recuperados van primero", "[pendiente 0, pendiente 1, pendiente 2, nueva]", servidor.recibidos.toString());
+        assertEquals(3, segunda.getRecuperados());
+        assertEquals(1, servidor.conexiones);
+        System.out.println("[TEST] " + segunda.resumen());
+        segunda.cerrar(1000);
+    }
+}
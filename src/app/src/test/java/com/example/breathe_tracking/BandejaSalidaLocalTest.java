@@ -0,0 +1,245 @@
+package com.example.breathe_tracking;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class BandejaSalidaLocalTest {
+
+    private File directorio;
+    private final Reloj reloj = () -> 0;
+
+    @Before
+    public void crearDirectorio() throws IOException {
+        directorio = Files.createTempDirectory("bandeja").toFile();
+    }
+
+    @After
+    public void borrarDirectorio() {
+        File[] ficheros = directorio.listFiles();
+        if (ficheros != null) for (File f : ficheros) f.delete();
+        directorio.delete();
+    }
+
+    private static BandejaSalidaLocal.Registro registro(int n) {
+        return new BandejaSalidaLocal.Registro("sensor-" + (n % 3), 1_700_000_000_000L + n, n / 1000f, 20 + n / 10f,
+                400 + n, 90, "Calle Paranimf 1, Gandia", n % 2 == 0);
+    }
+
+    private static File segmento(File directorio, long numero) {
+        return new File(directorio, String.format(Locale.ROOT, "segmento-%010d.bin", numero));
+    }
+
+    private static List<BandejaSalidaLocal.Registro> leerTodo(BandejaSalidaLocal bandeja) {
+        List<BandejaSalidaLocal.Registro> leidos = new ArrayList<>();
+        bandeja.leer(leidos, Integer.MAX_VALUE);
+        return leidos;
+    }
+
+    @Test
+    public void escribeYLeeEnOrdenEntreSegmentos() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, reloj, 8, 16);
+        for (int i = 0; i < 20; i++) bandeja.agregar(registro(i));
+
+        assertEquals(20, bandeja.getPendientes());
+        assertEquals(3, bandeja.getSegmentos());
+        List<BandejaSalidaLocal.Registro> leidos = leerTodo(bandeja);
+        assertEquals(20, leidos.size());
+        for (int i = 0; i < 20; i++) {
+            BandejaSalidaLocal.Registro r = leidos.get(i);
+            assertEquals(1_700_000_000_000L + i, r.fechaMs);
+            assertEquals("sensor-" + (i % 3), r.codigo);
+            assertEquals(400 + i, r.co2);
+            assertEquals(20 + i / 10f, r.temperatura, 0f);
+            assertEquals("Calle Paranimf 1, Gandia", r.ubicacion);
+            assertEquals(i % 2 == 0, r.conectado);
+        }
+
+        // Leer no avanza el cursor; confirmar sí, y borra los segmentos consumidos
+        assertEquals(20, bandeja.getPendientes());
+        List<BandejaSalidaLocal.Registro> lote = new ArrayList<>();
+        int posiciones = bandeja.leer(lote, 17);
+        assertEquals(17, posiciones);
+        bandeja.confirmar(posiciones);
+        assertEquals(3, bandeja.getPendientes());
+        assertEquals(1, bandeja.getSegmentos());
+        assertFalse(segmento(directorio, 0).exists());
+        assertFalse(segmento(directorio, 1).exists());
+        assertEquals(17, leerTodo(bandeja).get(0).co2 - 400);
+        bandeja.cerrar();
+    }
+
+    @Test
+    public void recuperaTrasTruncarUnSegmentoAMitadDeRegistro() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, reloj, 16, 8);
+        for (int i = 0; i < 10; i++) bandeja.agregar(registro(i));
+        // Caída sin cerrar: el último registro se quedó a medias
+        try (RandomAccessFile raf = new RandomAccessFile(segmento(directorio, 0), "rw")) {
+            raf.setLength(4 * BandejaSalidaLocal.TAM_REGISTRO + 50);
+        }
+
+        BandejaSalidaLocal recuperada = new BandejaSalidaLocal(directorio, reloj, 16, 8);
+        assertEquals(4, recuperada.getPendientes());
+        assertEquals("El registro roto se detecta por el CRC", 1, recuperada.getCorruptos());
+
+        // La escritura continúa donde estaba el registro roto
+        recuperada.agregar(registro(99));
+        List<BandejaSalidaLocal.Registro> leidos = leerTodo(recuperada);
+        assertEquals(5, leidos.size());
+        for (int i = 0; i < 4; i++) assertEquals(400 + i, leidos.get(i).co2);
+        assertEquals(499, leidos.get(4).co2);
+        recuperada.cerrar();
+
+        // Tras un cierre limpio se recupera todo tal cual
+        BandejaSalidaLocal reabierta = new BandejaSalidaLocal(directorio, reloj, 16, 8);
+        assertEquals(5, reabierta.getPendientes());
+        assertEquals(0, reabierta.getCorruptos());
+    }
+
+    @Test
+    public void recuperaUnSegmentoTruncadoEnLaFronteraDeRotacion() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, reloj, 8, 8);
+        for (int i = 0; i < 8; i++) bandeja.agregar(registro(i));
+        // Se cayó justo al rotar: el segmento siguiente no llegó a crearse y el último registro está a medias
+        segmento(directorio, 1).delete();
+        try (RandomAccessFile raf = new RandomAccessFile(segmento(directorio, 0), "rw")) {
+            raf.setLength(8 * BandejaSalidaLocal.TAM_REGISTRO - 1);
+        }
+
+        BandejaSalidaLocal recuperada = new BandejaSalidaLocal(directorio, reloj, 8, 8);
+        assertEquals(7, recuperada.getPendientes());
+        recuperada.agregar(registro(50));
+        recuperada.agregar(registro(51));
+        List<BandejaSalidaLocal.Registro> leidos = leerTodo(recuperada);
+        assertEquals(9, leidos.size());
+        assertEquals(451, leidos.get(8).co2);
+        assertEquals(2, recuperada.getSegmentos());
+    }
+
+    @Test
+    public void unRegistroCorruptoEnUnSegmentoAntiguoSeSalta() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, reloj, 8, 8);
+        for (int i = 0; i < 12; i++) bandeja.agregar(registro(i));
+        bandeja.cerrar();
+        try (RandomAccessFile raf = new RandomAccessFile(segmento(directorio, 0), "rw")) {
+            raf.seek(3 * BandejaSalidaLocal.TAM_REGISTRO + 20);
+            raf.write(0x5A);
+        }
+
+        BandejaSalidaLocal reabierta = new BandejaSalidaLocal(directorio, reloj, 8, 8);
+        List<BandejaSalidaLocal.Registro> leidos = new ArrayList<>();
+        int posiciones = reabierta.leer(leidos, 100);
+        assertEquals(12, posiciones);
+        assertEquals(11, leidos.size());
+        assertEquals(404, leidos.get(3).co2);
+        assertEquals(1, reabierta.getCorruptos());
+        reabierta.leer(new ArrayList<>(), 100);
+        assertEquals("Un mismo registro roto se cuenta una vez", 1, reabierta.getCorruptos());
+        reabierta.confirmar(posiciones);
+        assertEquals(0, reabierta.getPendientes());
+    }
+
+    @Test
+    public void elCursorSobreviveAlReinicioYUnaRanuraRotaRepiteElLote() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, reloj, 8, 8);
+        for (int i = 0; i < 10; i++) bandeja.agregar(registro(i));
+        bandeja.confirmar(bandeja.leer(new ArrayList<>(), 6));
+        bandeja.cerrar();
+
+        BandejaSalidaLocal reabierta = new BandejaSalidaLocal(directorio, reloj, 8, 8);
+        assertEquals(4, reabierta.getPendientes());
+        assertEquals(406, leerTodo(reabierta).get(0).co2);
+        reabierta.cerrar();
+
+        // Se rompe la ranura más reciente del cursor: se usa la anterior (como mucho se repite un lote)
+        File cursor = new File(directorio, "cursor.bin");
+        try (RandomAccessFile raf = new RandomAccessFile(cursor, "rw")) {
+            raf.seek(0);
+            long secuencia0 = raf.readLong();
+            raf.seek(32);
+            long secuencia1 = raf.readLong();
+            raf.seek((secuencia0 > secuencia1 ? 0 : 32) + 12);
+            raf.write(0xFF);
+        }
+        BandejaSalidaLocal conRanuraRota = new BandejaSalidaLocal(directorio, reloj, 8, 8);
+        long pendientes = conRanuraRota.getPendientes();
+        assertTrue("Nunca se pierden lecturas: " + pendientes, pendientes >= 4);
+        assertEquals(400 + 10 - pendientes, leerTodo(conRanuraRota).get(0).co2);
+    }
+
+    @Test
+    public void elDiscoYLaMemoriaEstanAcotadosDureLoQueDureElCorte() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, reloj, 32, 4);
+        int total = 10_000;
+        for (int i = 0; i < total; i++) bandeja.agregar(registro(i));
+
+        File[] ficheros = directorio.listFiles();
+        assertNotNull(ficheros);
+        assertEquals("4 segmentos y el cursor", 5, ficheros.length);
+        long bytes = 0;
+        for (File f : ficheros) bytes += f.length();
+        assertTrue(bytes <= 4 * 32 * BandejaSalidaLocal.TAM_REGISTRO + 64);
+
+        // Se conservan las más recientes, en orden
+        long pendientes = bandeja.getPendientes();
+        assertEquals(total, pendientes + bandeja.getDescartados());
+        List<BandejaSalidaLocal.Registro> leidos = leerTodo(bandeja);
+        assertEquals(pendientes, leidos.size());
+        assertEquals(400 + total - 1, leidos.get(leidos.size() - 1).co2);
+        for (int i = 1; i < leidos.size(); i++) assertEquals(leidos.get(i - 1).co2 + 1, leidos.get(i).co2);
+        System.out.println("[TEST] " + bandeja.resumen());
+    }
+
+    @Test
+    public void sincronizaPorLotes() throws IOException {
+        long[] ahora = {0};
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, () -> ahora[0], 512, 4).sincronizarCada(32, 5_000);
+        for (int i = 0; i < 100; i++) bandeja.agregar(registro(i));
+        assertEquals(3, bandeja.getSincronizaciones());
+
+        ahora[0] = 5_000;
+        bandeja.agregar(registro(100));
+        assertEquals("Por tiempo aunque no se llegue al lote", 4, bandeja.getSincronizaciones());
+    }
+
+    @Test
+    public void lasUbicacionesLargasSeTruncanSinRomperCaracteres() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, reloj, 8, 4);
+        StringBuilder larga = new StringBuilder();
+        for (int i = 0; i < 40; i++) larga.append('ñ');
+        BandejaSalidaLocal.Registro r = registro(0);
+        r.ubicacion = larga.toString();
+        bandeja.agregar(r);
+
+        String leida = leerTodo(bandeja).get(0).ubicacion;
+        assertEquals(BandejaSalidaLocal.MAX_BYTES_UBICACION / 2, leida.length());
+        assertTrue(larga.toString().startsWith(leida));
+    }
+
+    @Test
+    public void guardaLosGasesOpcionalesSoloSiLaLecturaLosTrae() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, reloj, 8, 4);
+        BandejaSalidaLocal.Registro completo = new BandejaSalidaLocal.Registro("GTI-3A-1", 1_700_000_000_000L, 0.1f, 21f, 500, 80,
+                "Calle Paranimf 1, Gandia", true, 1.5f, 40f, Float.NaN);
+        bandeja.agregar(completo);
+        bandeja.agregar(registro(1));
+
+        List<BandejaSalidaLocal.Registro> leidos = leerTodo(bandeja);
+        assertEquals(1.5f, leidos.get(0).co, 0f);
+        assertEquals(40f, leidos.get(0).no2, 0f);
+        assertTrue(Float.isNaN(leidos.get(0).so2));
+        assertEquals("Calle Paranimf 1, Gandia", leidos.get(0).ubicacion);
+        assertTrue(Float.isNaN(leidos.get(1).co));
+        assertTrue(Float.isNaN(leidos.get(1).no2));
+    }
+}
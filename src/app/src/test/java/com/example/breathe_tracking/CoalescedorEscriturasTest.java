@@ -0,0 +1,153 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CoalescedorEscriturasTest {
+
+    /** Destino en memoria: guarda cada escritura con su instante. */
+    private static class DestinoEnMemoria implements CoalescedorEscrituras.Destino {
+        final List<String> documentos = new ArrayList<>();
+        final List<Map<String, Object>> campos = new ArrayList<>();
+        final List<Long> instantes = new ArrayList<>();
+        final RelojManual reloj;
+
+        DestinoEnMemoria(RelojManual reloj) {
+            this.reloj = reloj;
+        }
+
+        @Override
+        public void escribir(String codigoSensor, Map<String, Object> campos) {
+            documentos.add(codigoSensor);
+            this.campos.add(campos);
+            instantes.add(reloj.ahora);
+        }
+    }
+
+    private static class RelojManual implements Reloj {
+        long ahora = 0;
+
+        @Override
+        public long ahoraMs() {
+            return ahora;
+        }
+    }
+
+    private static Map<String, Object> campos(Object... pares) {
+        Map<String, Object> m = new HashMap<>();
+        for (int i = 0; i < pares.length; i += 2) m.put((String) pares[i], pares[i + 1]);
+        return m;
+    }
+
+    @Test
+    public void laPrimeraEscrituraVaAlMomentoYLasSiguientesSeFusionan() {
+        RelojManual reloj = new RelojManual();
+        DestinoEnMemoria destino = new DestinoEnMemoria(reloj);
+        CoalescedorEscrituras coalescedor = new CoalescedorEscrituras(destino, reloj, 1000);
+
+        assertEquals(-1, coalescedor.escribir("A", campos("estado", "Conectado", "co2", 500)));
+        assertEquals(1, destino.campos.size());
+
+        reloj.ahora = 200;
+        assertEquals(800, coalescedor.escribir("A", campos("estado", "Conectado", "co2", 510, "ozono", 0.1f)));
+        reloj.ahora = 400;
+        assertEquals(600, coalescedor.escribir("A", campos("estado", "Conectado", "co2", 520)));
+        assertEquals(1, destino.campos.size());
+
+        reloj.ahora = 999;
+        assertEquals(1, coalescedor.revisar());
+        reloj.ahora = 1000;
+        assertEquals(-1, coalescedor.revisar());
+        assertEquals(2, destino.campos.size());
+        Map<String, Object> fusion = destino.campos.get(1);
+        assertEquals("Gana la última escritura", 520, fusion.get("co2"));
+        assertEquals("Se conservan los campos de escrituras anteriores", 0.1f, fusion.get("ozono"));
+        assertEquals(1, coalescedor.getFusionadas());
+    }
+
+    @Test
+    public void losCambiosDeEstadoSeEscribenAlMomento() {
+        RelojManual reloj = new RelojManual();
+        DestinoEnMemoria destino = new DestinoEnMemoria(reloj);
+        CoalescedorEscrituras coalescedor = new CoalescedorEscrituras(destino, reloj, 1000);
+
+        coalescedor.escribir("A", campos("estado", "Conectado", "co2", 500));
+        reloj.ahora = 100;
+        coalescedor.escribir("A", campos("estado", "Conectado", "co2", 900));
+        reloj.ahora = 150;
+        assertEquals(-1, coalescedor.escribir("A", campos("estado", "Desconectado")));
+
+        assertEquals(2, destino.campos.size());
+        Map<String, Object> desconexion = destino.campos.get(1);
+        assertEquals("Desconectado", desconexion.get("estado"));
+        assertEquals("Lo pendiente sale con el cambio de estado", 900, desconexion.get("co2"));
+        assertEquals(1, coalescedor.getInmediatas());
+
+        // La reconexión con el flag inmediato también
+        reloj.ahora = 300;
+        coalescedor.escribir("A", campos("estado", "Conectado"), true);
+        assertEquals(3, destino.campos.size());
+    }
+
+    @Test
+    public void cadaDocumentoTieneSuIntervalo() {
+        RelojManual reloj = new RelojManual();
+        DestinoEnMemoria destino = new DestinoEnMemoria(reloj);
+        CoalescedorEscrituras coalescedor = new CoalescedorEscrituras(destino, reloj, 1000);
+
+        coalescedor.escribir("A", campos("co2", 1));
+        reloj.ahora = 600;
+        coalescedor.escribir("B", campos("co2", 2));
+        coalescedor.escribir("A", campos("co2", 3));
+        assertEquals(400, coalescedor.escribir("B", campos("co2", 4)));
+
+        reloj.ahora = 1000;
+        assertEquals(600, coalescedor.revisar());
+        assertEquals("A", destino.documentos.get(2));
+        reloj.ahora = 1600;
+        assertEquals(-1, coalescedor.revisar());
+        assertEquals(4, destino.documentos.size());
+        assertEquals(0, coalescedor.getPendientes());
+    }
+
+    @Test
+    public void unaRafagaRespetaElLimitePorDocumento() {
+        RelojManual reloj = new RelojManual();
+        DestinoEnMemoria destino = new DestinoEnMemoria(reloj);
+        CoalescedorEscrituras coalescedor = new CoalescedorEscrituras(destino, reloj);
+
+        // Un minuto con 10 escrituras por segundo en dos documentos, revisando cuando lo pide el coalescedor
+        long revision = -1;
+        for (reloj.ahora = 0; reloj.ahora < 60_000; reloj.ahora += 10) {
+            if (revision >= 0 && reloj.ahora >= revision) {
+                long espera = coalescedor.revisar();
+                revision = espera < 0 ? -1 : reloj.ahora + espera;
+            }
+            if (reloj.ahora % 100 == 0) {
+                for (String doc : new String[]{"A", "B"}) {
+                    long espera = coalescedor.escribir(doc, campos("estado", "Conectado", "co2", (int) reloj.ahora));
+                    revision = espera < 0 ? -1 : reloj.ahora + espera;
+                }
+            }
+        }
+        coalescedor.vaciar();
+
+        Map<String, Long> anterior = new HashMap<>();
+        for (int i = 0; i < destino.documentos.size(); i++) {
+            Long previo = anterior.put(destino.documentos.get(i), destino.instantes.get(i));
+            if (previo != null && i < destino.documentos.size() - 2) {
+                assertTrue("Dos escrituras del mismo documento en menos de 1 s", destino.instantes.get(i) - previo >= 1000);
+            }
+        }
+        System.out.println("[TEST] " + coalescedor.resumen());
+        assertEquals(1200, coalescedor.getSolicitudes());
+        assertTrue(coalescedor.getEscrituras() <= 2 * 61 + 2);
+        assertEquals(coalescedor.getSolicitudes(), coalescedor.getEscrituras() + coalescedor.getFusionadas());
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class CodecBinarioTest {
+
+    /** @brief Valores frontera y aleatorios para las anchuras de 24 a 64 bits. */
+    private static long[] valores() {
+        Random azar = new Random(42);
+        long[] v = new long[4096];
+        long[] fronteras = {0, 1, -1, 0x7F, 0x80, 0xFF, 0x7FFF, 0x8000, 0xFFFF, 0x7FFFFF, 0x800000, 0xFFFFFF,
+                Integer.MAX_VALUE, Integer.MIN_VALUE, 0xFFFFFFFFL, Long.MAX_VALUE, Long.MIN_VALUE};
+        System.arraycopy(fronteras, 0, v, 0, fronteras.length);
+        for (int i = fronteras.length; i < v.length; i++) v[i] = azar.nextLong();
+        return v;
+    }
+
+    @Test
+    public void ochoYDieciseisBitsExhaustivo() {
+        byte[] b = new byte[3];
+        for (int x = 0; x < 0x10000; x++) {
+            CodecBinario.escribir(x, b, 1, 2, false);
+            assertEquals(x, CodecBinario.u16le(b, 1));
+            assertEquals((short) x, CodecBinario.s16le(b, 1));
+            assertEquals(x, CodecBinario.leerSinSigno(b, 1, 2, false));
+            assertEquals((short) x, CodecBinario.leerConSigno(b, 1, 2, false));
+            CodecBinario.escribir(x, b, 1, 2, true);
+            assertEquals(x, CodecBinario.u16be(b, 1));
+            assertEquals((short) x, CodecBinario.s16be(b, 1));
+            assertEquals((short) x, ByteBuffer.wrap(b, 1, 2).order(ByteOrder.BIG_ENDIAN).getShort());
+            if (x < 0x100) {
+                CodecBinario.escribir(x, b, 0, 1, true);
+                assertEquals(x, CodecBinario.u8(b, 0));
+                assertEquals((byte) x, CodecBinario.s8(b, 0));
+                assertEquals((byte) x, CodecBinario.leerConSigno(b, 0, 1, true));
+            }
+        }
+    }
+
+    @Test
+    public void todasLasAnchurasYOrdenesIdaYVuelta() {
+        byte[] b = new byte[11];
+        for (long valor : valores()) {
+            for (int bytes = 1; bytes <= 8; bytes++) {
+                int bits = 8 * bytes;
+                long sinSigno = bits == 64 ? valor : valor & ((1L << bits) - 1);
+                long conSigno = (valor << (64 - bits)) >> (64 - bits);
+                for (boolean bigEndian : new boolean[]{true, false}) {
+                    CodecBinario.escribir(valor, b, 3, bytes, bigEndian);
+                    assertEquals(sinSigno, CodecBinario.leerSinSigno(b, 3, bytes, bigEndian));
+                    assertEquals(conSigno, CodecBinario.leerConSigno(b, 3, bytes, bigEndian));
+                }
+            }
+            // Métodos de anchura fija contra ByteBuffer y contra el genérico
+            CodecBinario.escribir(valor, b, 2, 8, false);
+            ByteBuffer le = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(le.getLong(2), CodecBinario.s64le(b, 2));
+            assertEquals(le.getInt(2), CodecBinario.s32le(b, 2));
+            assertEquals(le.getInt(2) & 0xFFFFFFFFL, CodecBinario.u32le(b, 2));
+            assertEquals(CodecBinario.leerSinSigno(b, 2, 3, false), CodecBinario.u24le(b, 2));
+            assertEquals(CodecBinario.leerConSigno(b, 2, 3, false), CodecBinario.s24le(b, 2));
+            CodecBinario.escribir(valor, b, 2, 8, true);
+            ByteBuffer be = ByteBuffer.wrap(b);
+            assertEquals(be.getLong(2), CodecBinario.s64be(b, 2));
+            assertEquals(be.getInt(2), CodecBinario.s32be(b, 2));
+            assertEquals(be.getInt(2) & 0xFFFFFFFFL, CodecBinario.u32be(b, 2));
+            assertEquals(CodecBinario.leerSinSigno(b, 2, 3, true), CodecBinario.u24be(b, 2));
+            assertEquals(CodecBinario.leerConSigno(b, 2, 3, true), CodecBinario.s24be(b, 2));
+        }
+    }
+
+    @Test
+    public void hexadecimalDeTodosLosBytes() {
+        byte[] todos = new byte[256];
+        StringBuilder esperado = new StringBuilder();
+        for (int i = 0; i < 256; i++) {
+            todos[i] = (byte) i;
+            esperado.append(String.format("%02x", (byte) i)).append(':');
+        }
+        assertEquals(esperado.toString(), CodecBinario.hex(todos, ':'));
+        assertEquals(esperado.toString(), Utilidades.bytesToHexString(todos));
+        assertEquals(esperado.toString().replace(":", ""), CodecBinario.hex(todos, CodecBinario.SIN_SEPARADOR));
+
+        char[] buffer = new char[8];
+        assertEquals(4, CodecBinario.hex(todos, 0xAB, 2, CodecBinario.SIN_SEPARADOR, buffer, 2));
+        assertEquals("abac", new String(buffer, 2, 4));
+    }
+
+    @Test
+    public void uuidIdaYVuelta() {
+        Random azar = new Random(7);
+        byte[] b = new byte[18];
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = new UUID(azar.nextLong(), azar.nextLong());
+            CodecBinario.escribirUuid(uuid, b, 1);
+            assertEquals(uuid, CodecBinario.uuid(b, 1));
+            // Texto de 16 caracteres de 8 bits (incluidos los >= 0x80)
+            assertEquals(uuid, Utilidades.stringToUUID(Utilidades.uuidToString(uuid)));
+        }
+        assertEquals(new UUID(0x4550494745504947L, 0x5331303031323334L), Utilidades.stringToUUID("EPIGEPIGS1001234"));
+    }
+
+    @Test
+    public void utilidadesConservaElResultadoDeBigInteger() {
+        Random azar = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            byte[] bytes = new byte[1 + azar.nextInt(12)];
+            azar.nextBytes(bytes);
+            assertEquals(new BigInteger(bytes).intValue(), Utilidades.bytesToInt(bytes));
+            assertEquals(new BigInteger(bytes).longValue(), Utilidades.bytesToLong(bytes));
+            if (bytes.length <= 4) assertEquals(new BigInteger(bytes).intValue(), Utilidades.bytesToIntOK(bytes));
+        }
+        ByteBuffer esperado = ByteBuffer.allocate(16).putLong(123456789L).putLong(-5L);
+        assertArrayEquals(esperado.array(), Utilidades.dosLongToBytes(123456789L, -5L));
+    }
+
+    @Test
+    public void bytesToIntOKRespetaElSigno() {
+        assertEquals("Antes daba 1", 0x0801, Utilidades.bytesToIntOK(new byte[]{0x08, 0x01}));
+        assertEquals("Antes daba 32768", -32768, Utilidades.bytesToIntOK(new byte[]{(byte) 0x80, 0x00}));
+        assertEquals(-1, Utilidades.bytesToIntOK(new byte[]{(byte) 0xFF}));
+        assertEquals(-2, Utilidades.bytesToIntOK(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFE}));
+        assertEquals(0, Utilidades.bytesToIntOK(new byte[0]));
+    }
+
+    @Test
+    public void comparativaConBigIntegerYStringFormat() {
+        Random azar = new Random(1);
+        byte[][] muestras = new byte[1024][];
+        for (int i = 0; i < muestras.length; i++) {
+            muestras[i] = new byte[8];
+            azar.nextBytes(muestras[i]);
+        }
+        int iteraciones = 1_000_000;
+        long sumidero = 0;
+        for (int ronda = 0; ronda < 2; ronda++) { // la primera ronda es de calentamiento
+            long t0 = System.nanoTime();
+            for (int i = 0; i < iteraciones; i++) sumidero += new BigInteger(muestras[i & 1023]).longValue();
+            long t1 = System.nanoTime();
+            for (int i = 0; i < iteraciones; i++) sumidero += Utilidades.bytesToLong(muestras[i & 1023]);
+            long t2 = System.nanoTime();
+            for (int i = 0; i < iteraciones / 10; i++) {
+                StringBuilder sb = new StringBuilder();
+                for (byte b : muestras[i & 1023]) sb.append(String.format("%02x", b)).append(':');
+                sumidero += sb.length();
+            }
+            long t3 = System.nanoTime();
+            for (int i = 0; i < iteraciones / 10; i++) sumidero += Utilidades.bytesToHexString(muestras[i & 1023]).length();
+            long t4 = System.nanoTime();
+            if (ronda == 1) {
+                System.out.println(String.format(Locale.ROOT, "[BENCH] bytesToLong: BigInteger %.1f ns, CodecBinario %.1f ns",
+                        (t1 - t0) / (double) iteraciones, (t2 - t1) / (double) iteraciones));
+                System.out.println(String.format(Locale.ROOT, "[BENCH] bytesToHexString (8 bytes): String.format %.1f ns, tabla %.1f ns",
+                        (t3 - t2) / (iteraciones / 10.0), (t4 - t3) / (iteraciones / 10.0)));
+            }
+        }
+        assertTrue(sumidero != 0);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ColaIngestaTest {
+
+    private static byte[] paquete(int marca) {
+        return DecodificadorTramaTest.anuncio(1, 1, marca, 1);
+    }
+
+    private static int co2(ColaIngesta.Ranura ranura) {
+        LecturaBeacon lectura = new LecturaBeacon();
+        assertTrue(DecodificadorTrama.decodificar(ranura.datos, ranura.longitud, lectura));
+        return lectura.co2;
+    }
+
+    @Test
+    public void descartarAntiguoConservaLosMasRecientesEnOrden() {
+        ColaIngesta cola = new ColaIngesta(4, 0, ColaIngesta.PoliticaDesbordamiento.DESCARTAR_ANTIGUO);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cola.ofrecer(0, paquete(i), -60, i));
+        }
+        assertEquals(4, cola.profundidad());
+        assertEquals(6, cola.getDescartados());
+
+        ColaIngesta.Ranura destino = new ColaIngesta.Ranura();
+        for (int esperado = 6; esperado < 10; esperado++) {
+            assertTrue(cola.tomar(destino));
+            assertEquals(esperado, co2(destino));
+            assertEquals(esperado, destino.instanteNanos);
+        }
+        assertFalse(cola.tomar(destino));
+        assertEquals(4, cola.getProfundidadMaxima());
+    }
+
+    @Test
+    public void fusionarGuardaElUltimoPaquetePorSensor() {
+        ColaIngesta cola = new ColaIngesta(0, 3, ColaIngesta.PoliticaDesbordamiento.FUSIONAR_POR_SENSOR);
+        // El sensor 0 anuncia mucho más rápido que los otros dos
+        for (int i = 0; i < 100; i++) cola.ofrecer(0, paquete(i), -50, i);
+        cola.ofrecer(1, paquete(500), -70, 100);
+        cola.ofrecer(2, paquete(600), -80, 101);
+        assertFalse("Clave fuera de rango", cola.ofrecer(7, paquete(1), -80, 102));
+
+        assertEquals(3, cola.profundidad());
+        assertEquals(99, cola.getFusionados());
+        assertEquals(1, cola.getDescartados());
+
+        ColaIngesta.Ranura destino = new ColaIngesta.Ranura();
+        assertTrue(cola.tomar(destino));
+        assertEquals(0, destino.clave);
+        assertEquals(99, co2(destino));
+        assertTrue(cola.tomar(destino));
+        assertEquals(500, co2(destino));
+        assertTrue(cola.tomar(destino));
+        assertEquals(600, co2(destino));
+        assertFalse(cola.tomar(destino));
+
+        // Tras extraerlo, el sensor puede volver a encolarse
+        cola.ofrecer(0, paquete(1000), -50, 200);
+        assertTrue(cola.tomar(destino));
+        assertEquals(1000, co2(destino));
+    }
+
+    @Test
+    public void losAnunciosLargosSeTruncanSinRomperElDecodificador() {
+        ColaIngesta cola = new ColaIngesta(2, 0, ColaIngesta.PoliticaDesbordamiento.DESCARTAR_ANTIGUO);
+        byte[] largo = new byte[200];
+        byte[] anuncio = paquete(777);
+        System.arraycopy(anuncio, 0, largo, 0, anuncio.length);
+        cola.ofrecer(0, largo, -60, 0);
+
+        ColaIngesta.Ranura destino = new ColaIngesta.Ranura();
+        assertTrue(cola.tomar(destino));
+        assertEquals(ColaIngesta.MAX_BYTES_ANUNCIO, destino.longitud);
+        assertEquals(777, co2(destino));
+    }
+}
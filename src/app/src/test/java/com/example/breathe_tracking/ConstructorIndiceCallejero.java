@@ -0,0 +1,293 @@
+/**
+ * @file ConstructorIndiceCallejero.java
+ * @brief Herramienta de escritorio que convierte un extracto CSV del callejero en el fichero de \ref IndiceCallejero.
+ * @package com.example.breathe_tracking
+ */
+package com.example.breathe_tracking;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class ConstructorIndiceCallejero
+ * @brief Lee tramos de calle y localidades en CSV y escribe el k-d tree implícito que mapea \ref IndiceCallejero.
+ *
+ * Copyrigth © 2025
+ *
+ * Formato del CSV (UTF-8, separado por comas, campos entre comillas dobles si llevan comas):
+ *
+ *     calle,localidad,lat1,lon1[,lat2,lon2,...]
+ *
+ * - Una fila con calle y dos o más vértices es un tramo (polilínea): se añade un punto cada
+ *   \ref PASO_M metros a lo largo de cada segmento.
+ * - Una fila sin calle y con un solo vértice es el centro de una localidad.
+ * - Se ignoran las líneas vacías, las que empiezan por '#' y una primera línea de cabecera ("calle,...").
+ *
+ * Vive en el código de test y no en el de la app: no se empaqueta en el APK. Los tests de
+ * \ref IndiceCallejero construyen sus índices con ella. Uso (desde el ordenador, tras
+ * ./gradlew :app:compileDebugUnitTestJavaWithJavac, con las clases de la app y las de test en el classpath):
+ *
+ *     java com.example.breathe_tracking.ConstructorIndiceCallejero callejero.csv callejero.idx
+ *
+ * El fichero resultante se copia a files/callejero.idx de la app.
+ */
+public class ConstructorIndiceCallejero {
+
+    /** @brief Separación máxima entre puntos consecutivos de un tramo (metros). */
+    public static final double PASO_M = 20;
+    private static final double METROS_POR_GRADO = 111_320.0;
+
+    // --- Puntos (arrays paralelos que crecen) ---
+    private int[] latitudes = new int[1024];
+    private int[] longitudes = new int[1024];
+    private int[] calles = new int[1024];
+    private int[] localidades = new int[1024];
+    private int puntos = 0;
+
+    // --- Cadenas sin repetir ---
+    private final Map<String, Integer> indiceCadenas = new HashMap<>();
+    private final List<byte[]> cadenas = new ArrayList<>();
+
+    private int filas = 0;
+    private int filasIgnoradas = 0;
+
+    /**
+     * @brief Lee un CSV y añade sus tramos y localidades.
+     * (csv:Reader) -> leer() -> ()
+     * @param csv Contenido del CSV.
+     * @throws IOException Si falla la lectura.
+     */
+    public void leer(Reader csv) throws IOException {
+        BufferedReader lector = new BufferedReader(csv);
+        String linea;
+        boolean primera = true;
+        while ((linea = lector.readLine()) != null) {
+            String recortada = linea.trim();
+            if (recortada.isEmpty() || recortada.startsWith("#")) continue;
+            List<String> campos = separar(linea);
+            if (primera && campos.get(0).trim().equalsIgnoreCase("calle")) {
+                primera = false;
+                continue;
+            }
+            primera = false;
+            if (!anadirFila(campos)) filasIgnoradas++;
+        }
+    }
+
+    /** @brief Añade una fila ya separada en campos; false si no es válida. */
+    private boolean anadirFila(List<String> campos) {
+        if (campos.size() < 4 || campos.size() % 2 != 0) return false;
+        double[] vertices = new double[campos.size() - 2];
+        try {
+            for (int i = 0; i < vertices.length; i++) vertices[i] = Double.parseDouble(campos.get(i + 2).trim());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        for (int i = 0; i < vertices.length; i += 2) {
+            if (Math.abs(vertices[i]) > 90 || Math.abs(vertices[i + 1]) > 180) return false;
+        }
+        String calle = campos.get(0).trim();
+        int idCalle = calle.isEmpty() ? -1 : cadena(calle);
+        int idLocalidad = campos.get(1).trim().isEmpty() ? -1 : cadena(campos.get(1).trim());
+        filas++;
+
+        if (vertices.length == 2) {
+            anadirPunto(vertices[0], vertices[1], idCalle, idLocalidad);
+            return true;
+        }
+        for (int i = 0; i + 3 < vertices.length; i += 2) {
+            double lat1 = vertices[i], lon1 = vertices[i + 1], lat2 = vertices[i + 2], lon2 = vertices[i + 3];
+            double dy = (lat2 - lat1) * METROS_POR_GRADO;
+            double dx = (lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2)) * METROS_POR_GRADO;
+            int pasos = Math.max(1, (int) Math.ceil(Math.sqrt(dx * dx + dy * dy) / PASO_M));
+            // El último vértice de un segmento es el primero del siguiente: solo se añade al final
+            for (int p = 0; p < pasos; p++) {
+                double t = (double) p / pasos;
+                anadirPunto(lat1 + t * (lat2 - lat1), lon1 + t * (lon2 - lon1), idCalle, idLocalidad);
+            }
+        }
+        anadirPunto(vertices[vertices.length - 2], vertices[vertices.length - 1], idCalle, idLocalidad);
+        return true;
+    }
+
+    private void anadirPunto(double latitud, double longitud, int calle, int localidad) {
+        if (puntos == latitudes.length) {
+            int capacidad = puntos * 2;
+            latitudes = Arrays.copyOf(latitudes, capacidad);
+            longitudes = Arrays.copyOf(longitudes, capacidad);
+            calles = Arrays.copyOf(calles, capacidad);
+            localidades = Arrays.copyOf(localidades, capacidad);
+        }
+        latitudes[puntos] = (int) Math.round(latitud * IndiceCallejero.ESCALA);
+        longitudes[puntos] = (int) Math.round(longitud * IndiceCallejero.ESCALA);
+        calles[puntos] = calle;
+        localidades[puntos] = localidad;
+        puntos++;
+    }
+
+    private int cadena(String texto) {
+        Integer id = indiceCadenas.get(texto);
+        if (id == null) {
+            id = cadenas.size();
+            indiceCadenas.put(texto, id);
+            cadenas.add(texto.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    /**
+     * @brief Separa una línea CSV en campos (admite comillas dobles y "" dentro de ellas).
+     * (linea:String) -> separar() -> List<String>
+     */
+    static List<String> separar(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    // --- Construcción del k-d tree ---
+
+    /**
+     * @brief Ordena los puntos en k-d tree implícito y escribe el índice.
+     * (destino:File) -> escribir() -> ()
+     * @param destino Fichero del índice (se sobrescribe).
+     * @throws IOException Si falla la escritura.
+     */
+    public void escribir(File destino) throws IOException {
+        int[] orden = new int[puntos];
+        for (int i = 0; i < puntos; i++) orden[i] = i;
+        ordenar(orden, 0, puntos, 0);
+
+        int posTablaCadenas = IndiceCallejero.TAM_CABECERA + puntos * IndiceCallejero.TAM_PUNTO;
+        int posDatosCadenas = posTablaCadenas + 4 * (cadenas.size() + 1);
+        try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(destino)))) {
+            salida.writeInt(IndiceCallejero.MARCA);
+            salida.writeInt(IndiceCallejero.VERSION);
+            salida.writeInt(puntos);
+            salida.writeInt(cadenas.size());
+            salida.writeInt(posTablaCadenas);
+            salida.writeInt(posDatosCadenas);
+            salida.write(new byte[IndiceCallejero.TAM_CABECERA - 24]);
+            for (int i : orden) {
+                salida.writeInt(latitudes[i]);
+                salida.writeInt(longitudes[i]);
+                salida.writeInt(calles[i]);
+                salida.writeInt(localidades[i]);
+            }
+            int posicion = 0;
+            for (byte[] c : cadenas) {
+                salida.writeInt(posicion);
+                posicion += c.length;
+            }
+            salida.writeInt(posicion);
+            for (byte[] c : cadenas) salida.write(c);
+        }
+    }
+
+    /** @brief Coloca la mediana del eje en el medio de [desde, hasta) y repite en cada mitad con el otro eje. */
+    private void ordenar(int[] orden, int desde, int hasta, int profundidad) {
+        if (hasta - desde <= 1) return;
+        int medio = (desde + hasta) >>> 1;
+        int[] clave = (profundidad & 1) == 0 ? latitudes : longitudes;
+        seleccionar(orden, clave, desde, hasta - 1, medio);
+        ordenar(orden, desde, medio, profundidad + 1);
+        ordenar(orden, medio + 1, hasta, profundidad + 1);
+    }
+
+    /** @brief Quickselect: deja en orden[k] el elemento k-ésimo por \p clave, menores antes y mayores después. */
+    private static void seleccionar(int[] orden, int[] clave, int izquierda, int derecha, int k) {
+        while (izquierda < derecha) {
+            int pivote = clave[orden[(izquierda + derecha) >>> 1]];
+            int i = izquierda, j = derecha;
+            while (i <= j) {
+                while (clave[orden[i]] < pivote) i++;
+                while (clave[orden[j]] > pivote) j--;
+                if (i <= j) {
+                    int t = orden[i];
+                    orden[i] = orden[j];
+                    orden[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) derecha = j;
+            else if (k >= i) izquierda = i;
+            else return;
+        }
+    }
+
+    // --- Métricas ---
+
+    /** @brief Puntos generados. */
+    public int getPuntos() {
+        return puntos;
+    }
+
+    /** @brief Filas válidas leídas. */
+    public int getFilas() {
+        return filas;
+    }
+
+    /** @brief Filas ignoradas por formato no válido. */
+    public int getFilasIgnoradas() {
+        return filasIgnoradas;
+    }
+
+    /**
+     * @brief Convierte un CSV en un índice.
+     * (args:String[]) -> main() -> ()
+     * @param args Fichero CSV de entrada y fichero del índice de salida.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Uso: ConstructorIndiceCallejero <callejero.csv> <callejero.idx>");
+            System.exit(2);
+        }
+        long inicio = System.nanoTime();
+        ConstructorIndiceCallejero constructor = new ConstructorIndiceCallejero();
+        try (Reader csv = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8)) {
+            constructor.leer(csv);
+        }
+        File destino = new File(args[1]);
+        constructor.escribir(destino);
+        System.out.println(String.format(Locale.ROOT, "%d filas (%d ignoradas) -> %d puntos, %d nombres, %.1f KiB en %d ms.",
+                constructor.getFilas(), constructor.getFilasIgnoradas(), constructor.getPuntos(), constructor.cadenas.size(),
+                destino.length() / 1024.0, (System.nanoTime() - inicio) / 1_000_000));
+    }
+}
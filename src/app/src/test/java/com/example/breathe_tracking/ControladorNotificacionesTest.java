@@ -0,0 +1,98 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ControladorNotificacionesTest {
+
+    private static final String CANAL = "AlertChannel";
+
+    /** @brief Registra las llamadas que llegarían al NotificationManager. */
+    private static class SistemaFalso implements ControladorNotificaciones.Notificador {
+        final List<String> llamadas = new ArrayList<>();
+
+        @Override
+        public void notificar(int id, String canal, String titulo, String mensaje) {
+            llamadas.add("notify " + id + " " + mensaje);
+        }
+
+        @Override
+        public void cancelar(int id) {
+            llamadas.add("cancel " + id);
+        }
+    }
+
+    private long ahora = 0;
+    private final SistemaFalso sistema = new SistemaFalso();
+    private final ControladorNotificaciones controlador =
+            new ControladorNotificaciones(sistema, () -> ahora).canal(CANAL, 30_000);
+
+    @Test
+    public void soloCancelaLoQueEstaVisible() {
+        // Lo que hacía checkAlerts con cada lectura normal: cancelar las cuatro alertas
+        for (int lectura = 0; lectura < 100; lectura++) {
+            for (int id = 101; id <= 104; id++) controlador.cancelar(id);
+        }
+        assertTrue(sistema.llamadas.isEmpty());
+        assertEquals(400, controlador.getLlamadasEvitadas());
+
+        controlador.mostrar(101, CANAL, "Alerta de CO2", "1300 ppm");
+        controlador.cancelar(101);
+        controlador.cancelar(101);
+        assertEquals("[notify 101 1300 ppm, cancel 101]", sistema.llamadas.toString());
+        assertFalse(controlador.visible(101));
+    }
+
+    @Test
+    public void noRepiteUnaAlertaVisibleConElMismoTexto() {
+        assertEquals(-1, controlador.mostrar(105, CANAL, "Alerta de Conexión", "Sin datos"));
+        ahora = 60_000;
+        controlador.mostrar(105, CANAL, "Alerta de Conexión", "Sin datos");
+        assertEquals(1, sistema.llamadas.size());
+        assertTrue(controlador.visible(105));
+    }
+
+    @Test
+    public void limitaLasRepeticionesYPublicaElUltimoTexto() {
+        controlador.mostrar(101, CANAL, "Alerta de CO2", "1300 ppm");
+        ahora = 5_000;
+        assertEquals(25_000, controlador.mostrar(101, CANAL, "Alerta de CO2", "1400 ppm"));
+        ahora = 10_000;
+        assertEquals(20_000, controlador.mostrar(101, CANAL, "Alerta de CO2", "1500 ppm"));
+        assertEquals("Aún no toca", 20_000, controlador.revisar());
+        assertEquals(1, sistema.llamadas.size());
+
+        ahora = 30_000;
+        assertEquals(-1, controlador.revisar());
+        assertEquals("[notify 101 1300 ppm, notify 101 1500 ppm]", sistema.llamadas.toString());
+        System.out.println("[TEST] " + controlador.resumen());
+    }
+
+    @Test
+    public void unaAlertaQueParpadeaNoLlegaAlSistema() {
+        controlador.mostrar(105, CANAL, "Alerta de Conexión", "Sin datos");
+        ahora = 1_000;
+        controlador.cancelar(105);
+        ahora = 2_000;
+        assertTrue("Dentro del intervalo se aplaza", controlador.mostrar(105, CANAL, "Alerta de Conexión", "Sin datos") > 0);
+        ahora = 3_000;
+        assertEquals("Cancelada antes de publicarse", -1, controlador.cancelar(105));
+        ahora = 60_000;
+        controlador.revisar();
+        assertEquals("[notify 105 Sin datos, cancel 105]", sistema.llamadas.toString());
+    }
+
+    @Test
+    public void losCanalesSinConfigurarUsanElIntervaloPorDefecto() {
+        ControladorNotificaciones otro = new ControladorNotificaciones(sistema, () -> ahora, 0);
+        otro.mostrar(1, "otro", "T", "a");
+        otro.mostrar(1, "otro", "T", "b");
+        assertEquals(2, sistema.llamadas.size());
+        assertEquals(ControladorNotificaciones.INTERVALO_MINIMO_POR_DEFECTO_MS,
+                new ControladorNotificaciones(sistema, () -> ahora).intervaloMinimoMs("otro"));
+    }
+}
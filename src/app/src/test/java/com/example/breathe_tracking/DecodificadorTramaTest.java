@@ -0,0 +1,136 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DecodificadorTramaTest {
+
+    /**
+     * Anuncio típico del sensor: flags + nombre "rocio" + datos de fabricante 0x004C.
+     * O3 = 0x0384 (0.900 ppm), T = 0x00FA (25.0 ºC), CO2 = 0x04B0 (1200 ppm), BAT = 0x0050 (80 %).
+     */
+    static byte[] anuncio(int o3Milis, int tempDecimas, int co2, int bateria) {
+        return new byte[]{
+                0x02, 0x01, 0x06,
+                0x06, 0x09, 'r', 'o', 'c', 'i', 'o',
+                0x0C, (byte) 0xFF, 0x4C, 0x00, (byte) 0xAA,
+                (byte) o3Milis, (byte) (o3Milis >> 8),
+                (byte) tempDecimas, (byte) (tempDecimas >> 8),
+                (byte) co2, (byte) (co2 >> 8),
+                (byte) bateria, (byte) (bateria >> 8),
+                0x00, 0x00, 0x00
+        };
+    }
+
+    @Test
+    public void decodificaTramaValida() {
+        LecturaBeacon lectura = new LecturaBeacon();
+        assertTrue(DecodificadorTrama.decodificar(anuncio(900, 250, 1200, 80), lectura));
+        assertEquals(0.9f, lectura.o3, 0.0001f);
+        assertEquals(25.0f, lectura.temperatura, 0.0001f);
+        assertEquals(1200, lectura.co2);
+        assertEquals(80, lectura.bateria);
+    }
+
+    @Test
+    public void rechazaTramasAjenasOTruncadas() {
+        LecturaBeacon lectura = new LecturaBeacon();
+        lectura.co2 = -1;
+
+        byte[] otroFabricante = anuncio(900, 250, 1200, 80);
+        otroFabricante[12] = 0x06; // ID 0x0006 (Microsoft)
+        assertFalse(DecodificadorTrama.decodificar(otroFabricante, lectura));
+
+        byte[] sinPrefijo = anuncio(900, 250, 1200, 80);
+        sinPrefijo[14] = 0x02;
+        assertFalse(DecodificadorTrama.decodificar(sinPrefijo, lectura));
+
+        byte[] truncado = Arrays.copyOf(anuncio(900, 250, 1200, 80), 18);
+        assertFalse(DecodificadorTrama.decodificar(truncado, lectura));
+
+        assertFalse(DecodificadorTrama.decodificar(null, lectura));
+        assertFalse(DecodificadorTrama.decodificar(new byte[0], lectura));
+        assertEquals("Una trama inválida no debe modificar la lectura", -1, lectura.co2);
+    }
+
+    @Test
+    public void noAsignaMemoriaEnElCaminoCaliente() {
+        com.sun.management.ThreadMXBean mx = beanDeAsignaciones();
+        if (mx == null) {
+            System.out.println("[TEST] JVM sin contador de asignaciones por hilo: se omite la comprobación.");
+            return;
+        }
+        byte[] trama = anuncio(900, 250, 1200, 80);
+        LecturaBeacon lectura = new LecturaBeacon();
+        // Calentamiento para que el JIT compile el método
+        for (int i = 0; i < 200_000; i++) DecodificadorTrama.decodificar(trama, lectura);
+
+        long hilo = Thread.currentThread().getId();
+        long antes = mx.getThreadAllocatedBytes(hilo);
+        for (int i = 0; i < 100_000; i++) DecodificadorTrama.decodificar(trama, lectura);
+        long asignados = mx.getThreadAllocatedBytes(hilo) - antes;
+
+        System.out.println("[TEST] Bytes asignados en 100000 decodificaciones: " + asignados);
+        // Margen mínimo por la propia medición; cualquier objeto por anuncio superaría 1 MB
+        assertTrue("El decodificador no debe asignar memoria por anuncio", asignados < 1024);
+    }
+
+    @Test
+    public void microbenchmarkFrenteARutaAnterior() {
+        byte[] trama = anuncio(900, 250, 1200, 80);
+        LecturaBeacon lectura = new LecturaBeacon();
+        int iteraciones = 200_000;
+
+        long sumidero = 0;
+        for (int i = 0; i < iteraciones; i++) sumidero += rutaAnterior(trama).size();
+        for (int i = 0; i < iteraciones; i++) if (DecodificadorTrama.decodificar(trama, lectura)) sumidero += lectura.co2;
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iteraciones; i++) sumidero += rutaAnterior(trama).size();
+        long t1 = System.nanoTime();
+        for (int i = 0; i < iteraciones; i++) if (DecodificadorTrama.decodificar(trama, lectura)) sumidero += lectura.co2;
+        long t2 = System.nanoTime();
+
+        System.out.println("[BENCH] Ruta anterior: " + (t1 - t0) / iteraciones + " ns/anuncio");
+        System.out.println("[BENCH] DecodificadorTrama: " + (t2 - t1) / iteraciones + " ns/anuncio");
+        assertTrue(sumidero != 0);
+    }
+
+    /**
+     * Reproduce las asignaciones de la ruta anterior de mostrarInformacionDispositivoBTLE:
+     * copia del payload de fabricante, SimpleDateFormat + Date, concatenación y mapa con valores en caja.
+     */
+    private static Map<String, Object> rutaAnterior(byte[] trama) {
+        byte[] payload = Arrays.copyOfRange(trama, 14, 23);
+        float o3 = ((payload[2] & 0xFF) << 8 | (payload[1] & 0xFF)) / 1000.0f;
+        float temp = ((payload[4] & 0xFF) << 8 | (payload[3] & 0xFF)) / 10.0f;
+        int co2 = (payload[6] & 0xFF) << 8 | (payload[5] & 0xFF);
+        int bat = (payload[8] & 0xFF) << 8 | (payload[7] & 0xFF);
+        String hora = "Última conex. " + new SimpleDateFormat("HH:mm", Locale.getDefault()).format(new Date());
+        Map<String, Object> campos = new HashMap<>();
+        campos.put("ozono", o3);
+        campos.put("temperatura", temp);
+        campos.put("co2", co2);
+        campos.put("bateria", bat);
+        campos.put("hora", hora);
+        return campos;
+    }
+
+    private static com.sun.management.ThreadMXBean beanDeAsignaciones() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (!(mx instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) mx;
+        if (!sun.isThreadAllocatedMemorySupported()) return null;
+        sun.setThreadAllocatedMemoryEnabled(true);
+        return sun;
+    }
+}
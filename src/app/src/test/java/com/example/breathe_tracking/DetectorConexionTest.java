@@ -0,0 +1,151 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DetectorConexionTest {
+
+    private static final long MINUTO = 60_000;
+
+    private long ahora = 0;
+    private final List<Integer> caidos = new ArrayList<>();
+
+    private DetectorConexion nuevo() {
+        return new DetectorConexion(() -> ahora, (indice, silencioMs) -> caidos.add(indice), 4, MINUTO);
+    }
+
+    /** @brief Anuncios del sensor 0 cada \p intervalo ms durante \p n anuncios, revisando como haría el servicio. */
+    private void anunciar(DetectorConexion detector, int n, long intervalo) {
+        for (int i = 0; i < n; i++) {
+            ahora += intervalo;
+            detector.registrarAnuncio(0, ahora);
+            detector.revisar();
+        }
+    }
+
+    @Test
+    public void elPrimerAnuncioConectaYAprendeElIntervalo() {
+        DetectorConexion detector = nuevo();
+        detector.registrarSensor(0);
+        assertEquals(MINUTO + 1, detector.getEsperaMs());
+        ahora = 500;
+        assertEquals(DetectorConexion.CONECTADO, detector.registrarAnuncio(0, ahora));
+        assertEquals(DetectorConexion.SIN_CAMBIO, detector.registrarAnuncio(0, ahora + 5));
+        anunciar(detector, 20, 1000);
+        assertTrue(detector.conectado(0));
+        assertEquals(1000, detector.getIntervaloMs(0), 1);
+        assertEquals("Un sensor rápido usa el límite mínimo", DetectorConexion.LIMITE_MINIMO_POR_DEFECTO_MS, detector.getLimiteMs(0));
+        System.out.println("[TEST] " + detector.resumen());
+    }
+
+    @Test
+    public void unSensorRegistradoQueNoEmiteSeDaPorDesconectado() {
+        // Como el servicio: el oyente hace la transición del EstadoSensor y solo entonces avisa
+        EstadoSensor sensor = new EstadoSensor("GTI-3A-1", "rocio", 0);
+        List<Integer> desconexiones = new ArrayList<>();
+        DetectorConexion detector = new DetectorConexion(() -> ahora, (indice, silencioMs) -> {
+            if (sensor.marcarDesconectado()) desconexiones.add(indice);
+        }, 4, MINUTO);
+        detector.registrarSensor(sensor.indice);
+
+        ahora += detector.getEsperaMs();
+        detector.revisar();
+        assertEquals("Sin ningún anuncio también hay desconexión", 1, desconexiones.size());
+        assertFalse(sensor.isConectado());
+        assertFalse(detector.conectado(0));
+    }
+
+    @Test
+    public void detectaElSilencioAntesDelMinuto() {
+        DetectorConexion detector = nuevo();
+        detector.registrarSensor(0);
+        ahora = 0;
+        detector.registrarAnuncio(0, ahora);
+        anunciar(detector, 20, 5000);
+        long limite = detector.getLimiteMs(0);
+        assertTrue("Límite " + limite, limite >= 15_000 && limite < MINUTO);
+
+        long ultimo = ahora;
+        ahora += detector.getEsperaMs();
+        detector.revisar();
+        assertEquals(1, caidos.size());
+        assertFalse(detector.conectado(0));
+        System.out.println("[TEST] Desconexión detectada tras " + (ahora - ultimo) + " ms (antes 60000 ms)");
+        assertEquals("Sin sensores vigilados no hay revisión", -1, detector.getEsperaMs());
+    }
+
+    @Test
+    public void unSensorLentoNoSeDaPorDesconectadoEntreAnuncios() {
+        DetectorConexion detector = nuevo();
+        detector.registrarSensor(0);
+        detector.registrarAnuncio(0, ahora);
+        anunciar(detector, 10, 25_000);
+        assertTrue(caidos.isEmpty());
+        assertEquals("Acotado al máximo", MINUTO, detector.getLimiteMs(0));
+    }
+
+    @Test
+    public void unSensorQueNuncaSeOyeCaeAlMinuto() {
+        DetectorConexion detector = nuevo();
+        detector.registrarSensor(2);
+        ahora = MINUTO;
+        detector.revisar();
+        assertTrue(caidos.isEmpty());
+        ahora = MINUTO + 1;
+        detector.revisar();
+        assertEquals(1, caidos.size());
+        assertEquals(2, (int) caidos.get(0));
+    }
+
+    @Test
+    public void laReconexionExigeAnunciosSeguidos() {
+        DetectorConexion detector = nuevo();
+        detector.registrarSensor(0);
+        detector.registrarAnuncio(0, ahora);
+        anunciar(detector, 10, 1000);
+        ahora += 20_000;
+        detector.revisar();
+        assertFalse(detector.conectado(0));
+
+        ahora += 30_000;
+        assertEquals("Un anuncio suelto no reconecta", DetectorConexion.SIN_CAMBIO, detector.registrarAnuncio(0, ahora));
+        ahora += 30_000;
+        assertEquals("Demasiado separado del anterior", DetectorConexion.SIN_CAMBIO, detector.registrarAnuncio(0, ahora));
+        ahora += 1000;
+        assertEquals(DetectorConexion.CONECTADO, detector.registrarAnuncio(0, ahora));
+        assertTrue(detector.conectado(0));
+        assertEquals("El hueco no cuenta como intervalo", 1000, detector.getIntervaloMs(0), 50);
+    }
+
+    @Test
+    public void elLimiteMinimoCubreLosHuecosDelEscaneo() {
+        DetectorConexion detector = nuevo();
+        detector.registrarSensor(0);
+        detector.registrarAnuncio(0, ahora);
+        anunciar(detector, 20, 1000);
+        // El escaneo pasa a lotes de 20 s: los anuncios llegan de golpe
+        detector.setLimiteMinimoMs(40_000);
+        ahora += 25_000;
+        detector.revisar();
+        assertTrue(caidos.isEmpty());
+        detector.setLimiteMinimoMs(10 * MINUTO);
+        assertEquals("Nunca por encima del máximo", MINUTO, detector.getLimiteMinimoMs());
+    }
+
+    @Test
+    public void registrarAnuncioEsBarato() {
+        DetectorConexion detector = new DetectorConexion(() -> ahora, (indice, silencioMs) -> { }, 4, MINUTO);
+        for (int s = 0; s < 4; s++) detector.registrarSensor(s);
+        int iteraciones = 4_000_000;
+        for (int i = 0; i < iteraciones; i++) detector.registrarAnuncio(i & 3, 1000L * i);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iteraciones; i++) detector.registrarAnuncio(i & 3, 1000L * (iteraciones + i));
+        long t1 = System.nanoTime();
+        System.out.println("[BENCH] DetectorConexion.registrarAnuncio: " + (t1 - t0) / (double) iteraciones + " ns/anuncio");
+        assertTrue(detector.conectado(0));
+    }
+}
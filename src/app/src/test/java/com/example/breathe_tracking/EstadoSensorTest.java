@@ -0,0 +1,114 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class EstadoSensorTest {
+
+    @Test
+    public void lasTransicionesSoloOcurrenUnaVez() {
+        EstadoSensor estado = new EstadoSensor("1", "rocio", 0);
+        assertFalse(estado.isConectado());
+        assertTrue(estado.marcarConectado());
+        assertFalse("Ya estaba conectado", estado.marcarConectado());
+        assertTrue(estado.isConectado());
+        assertEquals(0, estado.getEpoca());
+        assertTrue(estado.marcarDesconectado());
+        assertFalse("Ya estaba desconectado", estado.marcarDesconectado());
+        assertFalse(estado.isConectado());
+        assertEquals(1, estado.getEpoca());
+    }
+
+    @Test
+    public void unSensorQueNuncaSeHaOidoSeDesconectaUnaVez() {
+        EstadoSensor estado = new EstadoSensor("1", "rocio", 0);
+        assertFalse(estado.isConectado());
+        assertTrue("El primer plazo vencido es una desconexión", estado.marcarDesconectado());
+        assertFalse("Solo la primera", estado.marcarDesconectado());
+        assertEquals(1, estado.getEpoca());
+        assertTrue(estado.marcarConectado());
+        assertTrue(estado.marcarDesconectado());
+        assertEquals(2, estado.getEpoca());
+    }
+
+    @Test
+    public void laDesconexionReiniciaElSuavizadoEnLaSiguienteLectura() {
+        EstadoSensor estado = new EstadoSensor("1", "rocio", 0);
+        estado.marcarConectado();
+        assertEquals(-60, estado.suavizarRssi(-60, 0.2f));
+        assertEquals(-66, estado.suavizarRssi(-90, 0.2f));
+        estado.marcarDesconectado();
+        estado.marcarConectado();
+        assertEquals(-90, estado.suavizarRssi(-90, 0.2f));
+    }
+
+    /**
+     * Un hilo hace de pipeline (reconecta y suaviza) y otros de vigilante (desconectan). Se comprueba
+     * que cada transición la hace un solo hilo, que la época cuenta las desconexiones y que el RSSI
+     * suavizado nunca sale del rango de los valores recibidos.
+     */
+    @Test
+    public void estresConVariosHilos() throws Exception {
+        final EstadoSensor estado = new EstadoSensor("1", "rocio", 0);
+        final int vigilantes = 3;
+        final long duracionNs = 300_000_000L;
+        final AtomicLong conexiones = new AtomicLong();
+        final AtomicLong desconexiones = new AtomicLong();
+        final AtomicBoolean fallo = new AtomicBoolean(false);
+        final CountDownLatch salida = new CountDownLatch(1);
+        final AtomicBoolean parar = new AtomicBoolean(false);
+        // Se parte de un sensor ya oído: la desconexión inicial sin oírlo tiene su propio test
+        assertTrue(estado.marcarConectado());
+        conexiones.incrementAndGet();
+
+        Thread pipeline = new Thread(() -> {
+            try {
+                salida.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            int i = 0;
+            while (!parar.get()) {
+                if (estado.marcarConectado()) conexiones.incrementAndGet();
+                int rssi = -40 - (i++ % 60);
+                int suavizado = estado.suavizarRssi(rssi, 0.2f);
+                if (suavizado > -40 || suavizado < -100) fallo.set(true);
+            }
+        });
+        Thread[] hilos = new Thread[vigilantes];
+        for (int h = 0; h < vigilantes; h++) {
+            hilos[h] = new Thread(() -> {
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!parar.get()) {
+                    if (estado.marcarDesconectado()) desconexiones.incrementAndGet();
+                    Thread.yield();
+                }
+            });
+            hilos[h].start();
+        }
+        pipeline.start();
+
+        salida.countDown();
+        Thread.sleep(duracionNs / 1_000_000);
+        parar.set(true);
+        pipeline.join();
+        for (Thread hilo : hilos) hilo.join();
+
+        System.out.println("[TEST] " + conexiones.get() + " conexiones y " + desconexiones.get() + " desconexiones con "
+                + (vigilantes + 1) + " hilos");
+        assertFalse("RSSI suavizado fuera de rango", fallo.get());
+        assertTrue(desconexiones.get() > 0);
+        assertEquals("La época cuenta cada desconexión una vez", desconexiones.get(), estado.getEpoca());
+        // Las transiciones se alternan: conexiones - desconexiones es 1 si está conectado y 0 si no
+        assertEquals(estado.isConectado() ? 1 : 0, conexiones.get() - desconexiones.get());
+    }
+}
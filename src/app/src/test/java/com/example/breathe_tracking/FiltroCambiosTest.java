@@ -0,0 +1,152 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FiltroCambiosTest {
+
+    private static LecturaBeacon lectura(float o3, float temp, int co2, int bat) {
+        LecturaBeacon l = new LecturaBeacon();
+        l.o3 = o3;
+        l.temperatura = temp;
+        l.co2 = co2;
+        l.bateria = bat;
+        return l;
+    }
+
+    @Test
+    public void laPrimeraLecturaSiemprePasa() {
+        FiltroCambios filtro = FiltroCambios.porDefecto();
+        EstadoSensor estado = new EstadoSensor("1", "rocio", 0);
+        assertEquals(FiltroCambios.MOTIVO_PRIMERA, filtro.evaluar(estado, lectura(0.1f, 20f, 500, 90), 0));
+    }
+
+    @Test
+    public void elRuidoDentroDeLaBandaSeDescarta() {
+        FiltroCambios filtro = FiltroCambios.porDefecto();
+        EstadoSensor estado = new EstadoSensor("1", "rocio", 0);
+        filtro.publicar(estado, lectura(0.100f, 20.0f, 500, 90), 0);
+
+        assertEquals(0, filtro.evaluar(estado, lectura(0.101f, 20.1f, 505, 89), 1000));
+        assertEquals(FiltroCambios.MOTIVO_BANDA, filtro.evaluar(estado, lectura(0.100f, 20.5f, 500, 90), 2000));
+        assertEquals(FiltroCambios.MOTIVO_BANDA, filtro.evaluar(estado, lectura(0.100f, 20.0f, 515, 90), 3000));
+    }
+
+    @Test
+    public void bandaRelativa() {
+        FiltroCambios filtro = new FiltroCambios().banda(FiltroCambios.CANAL_CO2, 0f, 0.05f).latido(0);
+        EstadoSensor estado = new EstadoSensor("1", "rocio", 0);
+        filtro.publicar(estado, lectura(0f, 0f, 1000, 50), 0);
+        assertEquals(0, filtro.evaluar(estado, lectura(0f, 0f, 1049, 50), 1));
+        assertNotEquals(0, filtro.evaluar(estado, lectura(0f, 0f, 1051, 50), 2));
+    }
+
+    @Test
+    public void losCrucesDeUmbralPasanAunqueElCambioSeaPequeno() {
+        FiltroCambios filtro = new FiltroCambios().banda(FiltroCambios.CANAL_CO2, 500f, 0f).latido(0);
+        EstadoSensor estado = new EstadoSensor("1", "rocio", 0);
+        filtro.publicar(estado, lectura(0f, 20f, 1199, 50), 0);
+
+        assertEquals(FiltroCambios.MOTIVO_UMBRAL, filtro.evaluar(estado, lectura(0f, 20f, 1200, 50), 1));
+        filtro.publicar(estado, lectura(0f, 20f, 1200, 50), 1);
+        assertEquals(FiltroCambios.MOTIVO_UMBRAL, filtro.evaluar(estado, lectura(0f, 20f, 1199, 50), 2));
+    }
+
+    @Test
+    public void losGasesOpcionalesTienenBandaYUmbral() {
+        FiltroCambios filtro = FiltroCambios.porDefecto().latido(0).alertas(new MotorAlertas(java.util.Collections.singletonList(
+                new MotorAlertas.Regla(FiltroCambios.CANAL_CO, MotorAlertas.MAYOR_IGUAL, 10f))));
+        EstadoSensor estado = new EstadoSensor("1", "rocio", 0);
+        filtro.publicar(estado, lectura(0.1f, 20f, 500, 90), 0);
+
+        LecturaBeacon conCo = lectura(0.1f, 20f, 500, 90);
+        conCo.co = 2f;
+        assertEquals("El primer valor del gas es un cambio", FiltroCambios.MOTIVO_BANDA, filtro.evaluar(estado, conCo, 1));
+        filtro.publicar(estado, conCo, 1);
+        assertEquals("Una trama sin el gas no es un cambio", 0, filtro.evaluar(estado, lectura(0.1f, 20f, 500, 90), 2));
+        filtro.publicar(estado, lectura(0.1f, 20f, 500, 90), 2);
+        assertEquals("Ni borra la referencia", 2f, estado.lastUpdatedCo, 0f);
+
+        conCo.co = 2.05f;
+        assertEquals("Ruido dentro de la banda", 0, filtro.evaluar(estado, conCo, 3));
+        conCo.co = 9.9f;
+        filtro.publicar(estado, conCo, 4);
+        conCo.co = 10f;
+        assertEquals("Cruzar el umbral de CO pasa aunque el cambio sea pequeño",
+                FiltroCambios.MOTIVO_UMBRAL, filtro.evaluar(estado, conCo, 5));
+    }
+
+    @Test
+    public void elLatidoPublicaTrasElSilencioMaximo() {
+        FiltroCambios filtro = FiltroCambios.porDefecto().latido(60_000);
+        EstadoSensor estado = new EstadoSensor("1", "rocio", 0);
+        filtro.publicar(estado, lectura(0.1f, 20f, 500, 90), 1_000);
+        assertEquals(0, filtro.evaluar(estado, lectura(0.1f, 20f, 500, 90), 60_999));
+        assertEquals(FiltroCambios.MOTIVO_LATIDO, filtro.evaluar(estado, lectura(0.1f, 20f, 500, 90), 61_000));
+    }
+
+    /**
+     * Traza de 2 horas a 1 anuncio/s: temperatura y CO2 con deriva lenta, ruido de ±1-2 unidades de la trama
+     * y un episodio de CO2 alto. Se compara con la regla anterior (subir si algún valor no es idéntico).
+     */
+    @Test
+    public void trazaRuidosaReduceEscriturasSinPerderCambios() {
+        FiltroCambios filtro = FiltroCambios.porDefecto();
+        EstadoSensor estado = new EstadoSensor("1", "rocio", 0);
+        EstadoSensor anterior = new EstadoSensor("1", "rocio", 0);
+        Random ruido = new Random(42);
+        LecturaBeacon l = new LecturaBeacon();
+
+        int escriturasAntes = 0;
+        int escriturasAhora = 0;
+        int crucesUmbral = 0;
+        int crucesPublicados = 0;
+        float maxErrorTemp = 0;
+        boolean peligrosoAnterior = false;
+
+        int segundos = 2 * 60 * 60;
+        for (int t = 0; t < segundos; t++) {
+            double horas = t / 3600.0;
+            // Valores con la resolución de la trama (O3 en milésimas, temperatura en décimas)
+            l.o3 = Math.round((80 + 20 * Math.sin(horas * 3) + ruido.nextInt(3) - 1)) / 1000f;
+            l.temperatura = Math.round(10 * (21 + 1.5 * Math.sin(horas * 2)) + ruido.nextInt(3) - 1) / 10f;
+            int baseCo2 = t > 3000 && t < 3600 ? 1250 : 600 + (int) (200 * horas);
+            l.co2 = baseCo2 + ruido.nextInt(9) - 4;
+            l.bateria = 90 - t / 1000;
+
+            // Regla anterior: igualdad exacta de los floats
+            if (l.temperatura != anterior.lastUpdatedTemp || l.o3 != anterior.lastUpdatedOzono || l.co2 != anterior.lastUpdatedCo2) {
+                escriturasAntes++;
+                anterior.lastUpdatedTemp = l.temperatura;
+                anterior.lastUpdatedOzono = l.o3;
+                anterior.lastUpdatedCo2 = l.co2;
+            }
+
+            boolean peligroso = SensorTrackingService.esCo2Peligroso(l.co2);
+            boolean cruce = t > 0 && peligroso != peligrosoAnterior;
+            peligrosoAnterior = peligroso;
+            if (cruce) crucesUmbral++;
+
+            long ahora = t * 1000L;
+            if (filtro.evaluar(estado, l, ahora) != 0) {
+                filtro.publicar(estado, l, ahora);
+                escriturasAhora++;
+                if (cruce) crucesPublicados++;
+            }
+            maxErrorTemp = Math.max(maxErrorTemp, Math.abs(l.temperatura - estado.lastUpdatedTemp));
+        }
+
+        double reduccion = 1.0 - (double) escriturasAhora / escriturasAntes;
+        System.out.println("[TEST] Escrituras con igualdad exacta: " + escriturasAntes + ", con filtro: " + escriturasAhora
+                + String.format(java.util.Locale.ROOT, " (reducción %.1f%%)", reduccion * 100));
+        System.out.println("[TEST] " + filtro.resumen());
+
+        assertTrue(crucesUmbral >= 2);
+        assertEquals("Todos los cruces de umbral deben publicarse al momento", crucesUmbral, crucesPublicados);
+        assertTrue("El valor publicado nunca se aleja más que la banda", maxErrorTemp <= 0.2f + 1e-4f);
+        assertTrue("Reducción insuficiente: " + reduccion, reduccion > 0.8);
+    }
+}
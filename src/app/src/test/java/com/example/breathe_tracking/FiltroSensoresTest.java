@@ -0,0 +1,46 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FiltroSensoresTest {
+
+    private final byte[] tramaValida = DecodificadorTramaTest.anuncio(500, 220, 600, 90);
+
+    @Test
+    public void aceptaSoloSensoresRegistradosConTramaValida() {
+        FiltroSensores filtro = new FiltroSensores();
+        filtro.registrarNombre("rocio");
+        filtro.registrarDireccion("aa:bb:cc:dd:ee:ff");
+
+        assertTrue(filtro.acepta("rocio", "11:22:33:44:55:66", tramaValida));
+        assertTrue("La MAC registrada debe aceptarse aunque no tenga nombre",
+                filtro.acepta(null, "AA:BB:CC:DD:EE:FF", tramaValida));
+        assertTrue("La dirección se compara normalizada", filtro.acepta(null, "aa:bb:cc:dd:ee:ff", tramaValida));
+        assertFalse(filtro.acepta("auriculares", "11:22:33:44:55:66", tramaValida));
+
+        byte[] sinPrefijo = tramaValida.clone();
+        sinPrefijo[14] = 0x01;
+        assertFalse("El prefijo 0xAA es obligatorio, igual que en el ScanFilter", filtro.acepta("rocio", null, sinPrefijo));
+    }
+
+    @Test
+    public void sinSensoresRegistradosFiltraSoloPorFabricante() {
+        FiltroSensores filtro = new FiltroSensores();
+        assertTrue(filtro.acepta("cualquiera", null, tramaValida));
+        assertFalse(filtro.acepta("cualquiera", null, new byte[]{0x02, 0x01, 0x06}));
+    }
+
+    @Test
+    public void cuentaRecibidosYRechazados() {
+        FiltroSensores filtro = new FiltroSensores();
+        filtro.registrarNombre("rocio");
+        for (int i = 0; i < 90; i++) filtro.acepta("vecino-" + (i % 7), null, tramaValida);
+        for (int i = 0; i < 10; i++) filtro.acepta("rocio", null, tramaValida);
+
+        assertEquals(100, filtro.getRecibidos());
+        assertEquals(90, filtro.getRechazados());
+        assertEquals("Callbacks recibidos: 100, rechazados: 90 (90%)", filtro.resumen());
+    }
+}
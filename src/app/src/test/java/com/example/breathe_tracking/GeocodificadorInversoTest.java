@@ -0,0 +1,175 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class GeocodificadorInversoTest {
+
+    /** Geocoder falso: cuenta las consultas y devuelve una dirección por coordenadas redondeadas. */
+    private static class FuenteFalsa implements GeocodificadorInverso.FuenteGeocodificacion {
+        int consultas = 0;
+        boolean fallar = false;
+        boolean romper = false;
+
+        @Override
+        public String direccion(double latitud, double longitud) throws IOException {
+            consultas++;
+            if (fallar) throw new IOException("sin servicio");
+            if (romper) throw new IllegalArgumentException("coordenadas no válidas");
+            return String.format(Locale.ROOT, "Calle %.3f, Gandia", latitud);
+        }
+    }
+
+    /** Ejecutor que guarda las tareas para lanzarlas cuando quiera el test. */
+    private static class EjecutorDiferido implements Executor {
+        final List<Runnable> tareas = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable tarea) {
+            tareas.add(tarea);
+        }
+
+        void ejecutarTodo() {
+            while (!tareas.isEmpty()) tareas.remove(0).run();
+        }
+    }
+
+    private static class RelojManual implements Reloj {
+        long ahora = 0;
+
+        @Override
+        public long ahoraMs() {
+            return ahora;
+        }
+    }
+
+    @Test
+    public void geohashConocido() {
+        assertEquals("u4pruydqqvj", GeocodificadorInverso.geohash(57.64911, 10.40744, 11));
+        assertEquals("ezs42", GeocodificadorInverso.geohash(42.6, -5.6, 5));
+        // Una celda más precisa queda dentro de la menos precisa
+        assertTrue(GeocodificadorInverso.geohash(38.99570, -0.16610, 11).startsWith(GeocodificadorInverso.geohash(38.99570, -0.16610, 7)));
+    }
+
+    @Test
+    public void enLaMesaNoSeConsultaElGeocoder() {
+        FuenteFalsa fuente = new FuenteFalsa();
+        List<String> publicadas = new ArrayList<>();
+        GeocodificadorInverso geo = new GeocodificadorInverso(fuente, Runnable::run, new RelojManual());
+
+        // Una hora de ubicaciones cada 5 s con ±10 m de ruido GPS alrededor de un punto fijo
+        Random ruido = new Random(7);
+        for (int i = 0; i < 720; i++) {
+            double lat = 38.995747 + (ruido.nextDouble() - 0.5) * 0.0002;
+            double lon = -0.166140 + (ruido.nextDouble() - 0.5) * 0.0002;
+            geo.resolver(lat, lon, publicadas::add);
+        }
+        System.out.println("[TEST] " + geo.resumen());
+        assertTrue("Consultas al Geocoder: " + fuente.consultas, fuente.consultas <= 4);
+        assertEquals(fuente.consultas, geo.getFallos());
+        assertTrue(geo.getTasaAciertos() > 0.99);
+        assertEquals("Solo se publica al cambiar de celda", geo.getFallos() + geo.getAciertos(), publicadas.size());
+    }
+
+    @Test
+    public void laConsultaSeHaceEnElEjecutorYUnaVezPorCelda() {
+        FuenteFalsa fuente = new FuenteFalsa();
+        EjecutorDiferido ejecutor = new EjecutorDiferido();
+        List<String> publicadas = new ArrayList<>();
+        GeocodificadorInverso geo = new GeocodificadorInverso(fuente, ejecutor, new RelojManual());
+
+        geo.resolver(38.9957, -0.1661, publicadas::add);
+        geo.resolver(38.99571, -0.16611, publicadas::add);
+        assertEquals("Nada se bloquea en quien llama", 0, fuente.consultas);
+        assertEquals(1, ejecutor.tareas.size());
+
+        ejecutor.ejecutarTodo();
+        assertEquals(1, fuente.consultas);
+        assertEquals(1, publicadas.size());
+    }
+
+    @Test
+    public void laCacheLruEntregaAlMomentoYCaduca() {
+        FuenteFalsa fuente = new FuenteFalsa();
+        RelojManual reloj = new RelojManual();
+        List<String> publicadas = new ArrayList<>();
+        GeocodificadorInverso geo = new GeocodificadorInverso(fuente, Runnable::run, reloj, 7, 2, 10_000);
+
+        geo.resolver(38.9957, -0.1661, publicadas::add);   // A
+        geo.resolver(39.4699, -0.3763, publicadas::add);   // B (Valencia)
+        geo.resolver(38.9957, -0.1661, publicadas::add);   // A desde la caché
+        assertEquals(2, fuente.consultas);
+        assertEquals(1, geo.getAciertos());
+        assertEquals(3, publicadas.size());
+
+        geo.resolver(40.4168, -3.7038, publicadas::add);   // C (Madrid): expulsa a B, la menos usada
+        geo.resolver(39.4699, -0.3763, publicadas::add);   // B otra vez: consulta
+        assertEquals(4, fuente.consultas);
+        assertEquals(2, geo.getTamanoCache());
+
+        reloj.ahora = 10_000;
+        geo.resolver(40.4168, -3.7038, publicadas::add);   // C caducada
+        assertEquals(5, fuente.consultas);
+        assertEquals(1, geo.getCaducadas());
+    }
+
+    @Test
+    public void unErrorNoSeGuardaYSeReintenta() {
+        FuenteFalsa fuente = new FuenteFalsa();
+        fuente.fallar = true;
+        List<String> publicadas = new ArrayList<>();
+        GeocodificadorInverso geo = new GeocodificadorInverso(fuente, Runnable::run, new RelojManual());
+
+        geo.resolver(38.9957, -0.1661, publicadas::add);
+        assertEquals(1, geo.getErrores());
+        fuente.fallar = false;
+        geo.resolver(38.9957, -0.1661, publicadas::add);
+        assertEquals(2, fuente.consultas);
+        assertEquals(1, publicadas.size());
+    }
+
+    @Test
+    public void unaExcepcionInesperadaNoDejaLaCeldaEnCurso() {
+        FuenteFalsa fuente = new FuenteFalsa();
+        fuente.romper = true;
+        List<String> publicadas = new ArrayList<>();
+        EjecutorDiferido ejecutor = new EjecutorDiferido();
+        GeocodificadorInverso geo = new GeocodificadorInverso(fuente, ejecutor, new RelojManual());
+
+        geo.resolver(38.9957, -0.1661, publicadas::add);
+        try {
+            ejecutor.ejecutarTodo();
+            fail("La excepción de la fuente llega al ejecutor");
+        } catch (IllegalArgumentException e) {
+            // El ejecutor real la registra y sigue
+        }
+        fuente.romper = false;
+        geo.resolver(38.9957, -0.1661, publicadas::add);
+        ejecutor.ejecutarTodo();
+        assertEquals("Se vuelve a consultar la misma celda", 2, fuente.consultas);
+        assertEquals(1, publicadas.size());
+    }
+
+    @Test
+    public void unaRespuestaQueLlegaTardeNoSePublica() {
+        FuenteFalsa fuente = new FuenteFalsa();
+        EjecutorDiferido ejecutor = new EjecutorDiferido();
+        List<String> publicadas = new ArrayList<>();
+        GeocodificadorInverso geo = new GeocodificadorInverso(fuente, ejecutor, new RelojManual());
+
+        geo.resolver(38.9957, -0.1661, publicadas::add);
+        geo.resolver(39.4699, -0.3763, publicadas::add);
+        ejecutor.ejecutarTodo();
+        assertEquals(1, publicadas.size());
+        assertTrue(publicadas.get(0).startsWith("Calle 39.470"));
+        assertEquals("Aun así queda en caché", 2, geo.getTamanoCache());
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HistorialAlertasTest {
+
+    private static File ficheroTemporal() throws IOException {
+        return new File(Files.createTempDirectory("historial").toFile(), "historial_alertas.bin");
+    }
+
+    @Test
+    public void descartaRepetidasYConservaLasMasRecientes() {
+        List<List<String>> entregadas = new ArrayList<>();
+        HistorialAlertas historial = new HistorialAlertas(3, null, Runnable::run, entregadas::add);
+        assertEquals("Al crearse entrega la instantánea inicial", Collections.emptyList(), entregadas.get(0));
+
+        assertTrue(historial.agregar("10:00 - A"));
+        assertTrue(historial.agregar("10:01 - B"));
+        assertFalse(historial.agregar("10:00 - A"));
+        assertTrue(historial.agregar("10:02 - C"));
+        assertTrue(historial.agregar("10:03 - D"));
+        assertEquals(Arrays.asList("10:03 - D", "10:02 - C", "10:01 - B"), historial.getInstantanea());
+        assertEquals("Las repetidas no generan instantánea", 5, entregadas.size());
+
+        assertTrue("La que salió del anillo puede volver", historial.agregar("10:00 - A"));
+        assertEquals(Arrays.asList("10:00 - A", "10:03 - D", "10:02 - C"), historial.getInstantanea());
+        System.out.println("[TEST] " + historial.resumen());
+    }
+
+    @Test
+    public void laInstantaneaEsInmutableYNoSeCopiaAlLeer() {
+        HistorialAlertas historial = new HistorialAlertas(3, null, Runnable::run, l -> { });
+        historial.agregar("A");
+        List<String> instantanea = historial.getInstantanea();
+        assertSame(instantanea, historial.getInstantanea());
+        try {
+            instantanea.add("B");
+            fail("La instantánea no debería poder modificarse");
+        } catch (UnsupportedOperationException esperada) {
+            // correcto
+        }
+        historial.agregar("B");
+        assertEquals("La instantánea anterior no cambia", Collections.singletonList("A"), instantanea);
+    }
+
+    @Test
+    public void sobreviveAUnReinicioDelProceso() throws IOException {
+        File fichero = ficheroTemporal();
+        HistorialAlertas antes = new HistorialAlertas(6, fichero, Runnable::run, l -> { });
+        for (int i = 0; i < 8; i++) antes.agregar("10:0" + i + " - Alerta " + i);
+
+        HistorialAlertas despues = new HistorialAlertas(6, fichero, Runnable::run, l -> { });
+        assertEquals(antes.getInstantanea(), despues.getInstantanea());
+        assertFalse("El índice de repetidas también se recupera", despues.agregar("10:07 - Alerta 7"));
+
+        HistorialAlertas menor = new HistorialAlertas(2, fichero, Runnable::run, l -> { });
+        assertEquals(Arrays.asList("10:07 - Alerta 7", "10:06 - Alerta 6"), menor.getInstantanea());
+    }
+
+    @Test
+    public void variasAlertasSeguidasSeEscribenUnaVez() throws IOException {
+        File fichero = ficheroTemporal();
+        List<Runnable> encargadas = new ArrayList<>();
+        HistorialAlertas historial = new HistorialAlertas(6, fichero, encargadas::add, l -> { });
+        historial.agregar("A");
+        historial.agregar("B");
+        historial.agregar("C");
+        assertEquals("La carga y una sola escritura", 2, encargadas.size());
+        for (Runnable r : encargadas) r.run();
+
+        HistorialAlertas recargado = new HistorialAlertas(6, fichero, Runnable::run, l -> { });
+        assertEquals("Se escribe la última instantánea", Arrays.asList("C", "B", "A"), recargado.getInstantanea());
+    }
+
+    @Test
+    public void laCargaNoBloqueaElConstructor() throws IOException {
+        File fichero = ficheroTemporal();
+        HistorialAlertas antes = new HistorialAlertas(6, fichero, Runnable::run, l -> { });
+        antes.agregar("A");
+        antes.agregar("B");
+
+        List<Runnable> encargadas = new ArrayList<>();
+        List<List<String>> entregadas = new ArrayList<>();
+        HistorialAlertas historial = new HistorialAlertas(6, fichero, encargadas::add, entregadas::add);
+        assertEquals("La carga se encarga al ejecutor", 1, encargadas.size());
+        assertTrue("Nada publicado hasta cargar", entregadas.isEmpty());
+
+        // Alertas que llegan antes de que termine la carga
+        historial.agregar("C");
+        historial.agregar("A");
+        encargadas.get(0).run();
+        assertEquals("Las cargadas van detrás de las nuevas, sin repetidas", Arrays.asList("C", "B", "A"), historial.getInstantanea());
+        assertEquals(historial.getInstantanea(), entregadas.get(entregadas.size() - 1));
+        assertFalse(historial.agregar("B"));
+    }
+
+    @Test
+    public void unFicheroRotoEmpiezaVacio() throws IOException {
+        File fichero = ficheroTemporal();
+        try (FileOutputStream salida = new FileOutputStream(fichero)) {
+            salida.write(new byte[]{1, 2, 3});
+        }
+        HistorialAlertas historial = new HistorialAlertas(6, fichero, Runnable::run, l -> { });
+        assertTrue(historial.getInstantanea().isEmpty());
+        assertTrue(historial.agregar("A"));
+    }
+}
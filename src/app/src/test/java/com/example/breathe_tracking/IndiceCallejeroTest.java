@@ -0,0 +1,141 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndiceCallejeroTest {
+
+    private static final String CSV_GANDIA = "calle,localidad,lat1,lon1,lat2,lon2\n"
+            + "# Campus de Gandia y alrededores\n"
+            + "Carrer Paranimf,Gandia,38.99530,-0.16650,38.99620,-0.16580\n"
+            + "\"Avinguda de la Mar, tramo 1\",Grau de Gandia,38.99700,-0.15800,38.99900,-0.15000,39.00050,-0.14500\n"
+            + "\"Carrer \"\"Major\"\"\",Gandia,38.96780,-0.18180,38.96700,-0.18050\n"
+            + ",Gandia,38.96800,-0.18100\n"
+            + ",Oliva,38.91900,-0.12000\n"
+            + "fila rota,Gandia,no,es,un,numero\n";
+
+    private static IndiceCallejero construir(String csv) throws IOException {
+        ConstructorIndiceCallejero constructor = new ConstructorIndiceCallejero();
+        constructor.leer(new StringReader(csv));
+        File fichero = new File(Files.createTempDirectory("callejero").toFile(), "callejero.idx");
+        constructor.escribir(fichero);
+        return new IndiceCallejero(fichero);
+    }
+
+    @Test
+    public void separaCamposConComillas() {
+        List<String> campos = ConstructorIndiceCallejero.separar("\"Av. de la Mar, 3\",\"Grau \"\"Vell\"\"\",1.5,2");
+        assertEquals(4, campos.size());
+        assertEquals("Av. de la Mar, 3", campos.get(0));
+        assertEquals("Grau \"Vell\"", campos.get(1));
+    }
+
+    @Test
+    public void devuelveLaCalleMasCercanaConElFormatoDelServicio() throws IOException {
+        IndiceCallejero indice = construir(CSV_GANDIA);
+        System.out.println("[TEST] " + indice.resumen());
+
+        assertEquals("Carrer Paranimf, Gandia", indice.direccion(38.99575, -0.16610));
+        assertEquals("Avinguda de la Mar, tramo 1, Grau de Gandia", indice.direccion(38.99810, -0.15360));
+        assertEquals("Carrer \"Major\", Gandia", indice.direccion(38.96745, -0.18120));
+    }
+
+    @Test
+    public void lejosDeLasCallesSoloDaLaLocalidadYFueraDelExtractoNada() throws IOException {
+        IndiceCallejero indice = construir(CSV_GANDIA);
+        // En el campo, a unos 4 km de Oliva y lejos de cualquier calle del extracto
+        assertEquals(", Oliva", indice.direccion(38.93000, -0.10000));
+        // Madrid
+        assertNull(indice.direccion(40.4168, -3.7038));
+    }
+
+    @Test
+    public void rechazaFicherosQueNoSonIndices() throws IOException {
+        File fichero = new File(Files.createTempDirectory("callejero").toFile(), "callejero.idx");
+        try (FileOutputStream salida = new FileOutputStream(fichero)) {
+            salida.write(new byte[64]);
+        }
+        try {
+            new IndiceCallejero(fichero);
+            fail("Debería rechazar el fichero");
+        } catch (IOException esperada) {
+            assertTrue(esperada.getMessage().contains("No es un índice"));
+        }
+    }
+
+    @Test
+    public void coincideConLaBusquedaExhaustivaYMideLaLatencia() throws IOException {
+        // 600 calles de 10 tramos alrededor de Valencia (más de 30.000 puntos)
+        Random azar = new Random(11);
+        StringBuilder csv = new StringBuilder();
+        for (int c = 0; c < 600; c++) {
+            double lat = 39.40 + azar.nextDouble() * 0.15;
+            double lon = -0.45 + azar.nextDouble() * 0.15;
+            for (int t = 0; t < 10; t++) {
+                double lat2 = lat + (azar.nextDouble() - 0.5) * 0.002;
+                double lon2 = lon + (azar.nextDouble() - 0.5) * 0.002;
+                csv.append("Calle ").append(c).append(",Valencia,").append(lat).append(',').append(lon)
+                        .append(',').append(lat2).append(',').append(lon2).append('\n');
+                lat = lat2;
+                lon = lon2;
+            }
+        }
+        IndiceCallejero indice = construir(csv.toString());
+        assertTrue(indice.getPuntos() > 30_000);
+
+        double[][] consultas = new double[2000][];
+        for (int i = 0; i < consultas.length; i++) {
+            consultas[i] = new double[]{39.40 + azar.nextDouble() * 0.15, -0.45 + azar.nextDouble() * 0.15};
+        }
+        for (int i = 0; i < 200; i++) {
+            int rapido = indice.masCercano(consultas[i][0], consultas[i][1]);
+            int exhaustivo = exhaustivo(indice, consultas[i][0], consultas[i][1]);
+            assertEquals("Distinta distancia en la consulta " + i,
+                    distancia2(indice, exhaustivo, consultas[i]), distancia2(indice, rapido, consultas[i]), 1e-9);
+        }
+
+        long sumidero = 0;
+        for (int r = 0; r < 5; r++) {
+            for (double[] q : consultas) sumidero += indice.masCercano(q[0], q[1]) + indice.direccion(q[0], q[1]).length();
+        }
+        long t0 = System.nanoTime();
+        for (int r = 0; r < 10; r++) for (double[] q : consultas) sumidero += indice.masCercano(q[0], q[1]);
+        long t1 = System.nanoTime();
+        for (double[] q : consultas) sumidero += indice.direccion(q[0], q[1]).length();
+        long t2 = System.nanoTime();
+
+        System.out.println("[BENCH] IndiceCallejero (" + indice.getPuntos() + " puntos): vecino más cercano "
+                + (t1 - t0) / (10 * consultas.length) + " ns/consulta, dirección completa " + (t2 - t1) / consultas.length + " ns/consulta");
+        assertTrue(sumidero != 0);
+    }
+
+    private static int exhaustivo(IndiceCallejero indice, double lat, double lon) {
+        int mejor = -1;
+        double mejorD2 = Double.MAX_VALUE;
+        double[] q = {lat, lon};
+        for (int i = 0; i < indice.getPuntos(); i++) {
+            if (indice.calle(i) < 0) continue;
+            double d2 = distancia2(indice, i, q);
+            if (d2 < mejorD2) {
+                mejorD2 = d2;
+                mejor = i;
+            }
+        }
+        return mejor;
+    }
+
+    private static double distancia2(IndiceCallejero indice, int punto, double[] q) {
+        double dy = indice.latitud(punto) - q[0];
+        double dx = (indice.longitud(punto) - q[1]) * Math.cos(Math.toRadians(q[0]));
+        return dx * dx + dy * dy;
+    }
+}
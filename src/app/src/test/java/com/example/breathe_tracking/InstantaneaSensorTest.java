@@ -0,0 +1,63 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InstantaneaSensorTest {
+
+    private static InstantaneaSensor lectura(InstantaneaSensor anterior, InstantaneaSensor entregada, int co2, int rssi) {
+        return anterior.editar().codigo("S1").hora("Última conex. 10:00").ozono(0.1f).temperatura(21.5f).co2(co2).bateria(80).rssi(rssi)
+                .crear(entregada);
+    }
+
+    @Test
+    public void laPrimeraInstantaneaMarcaTodosLosCamposConValor() {
+        InstantaneaSensor s = lectura(InstantaneaSensor.VACIA, InstantaneaSensor.VACIA, 600, -70);
+        assertEquals(1, s.getSecuencia());
+        assertTrue(s.cambiado(InstantaneaSensor.CAMPO_CO2 | InstantaneaSensor.CAMPO_HORA | InstantaneaSensor.CAMPO_RSSI));
+        assertFalse("El estado sigue sin valor", s.cambiado(InstantaneaSensor.CAMPO_ESTADO));
+        assertEquals(Integer.valueOf(600), s.getCo2());
+        assertNull(s.getEstado());
+    }
+
+    @Test
+    public void soloSeMarcanLosCamposQueCambian() {
+        InstantaneaSensor a = lectura(InstantaneaSensor.VACIA, InstantaneaSensor.VACIA, 600, -70);
+        InstantaneaSensor b = lectura(a, a, 650, -70);
+        assertEquals(InstantaneaSensor.CAMPO_CO2, b.getCambios());
+        assertEquals("Los campos no editados se conservan", Float.valueOf(21.5f), b.getTemperatura());
+
+        InstantaneaSensor c = b.editar().estado("Desconectado").rssi(-999).crear(b);
+        assertEquals(InstantaneaSensor.CAMPO_ESTADO | InstantaneaSensor.CAMPO_RSSI, c.getCambios());
+        assertEquals(Integer.valueOf(650), c.getCo2());
+        assertEquals(3, c.getSecuencia());
+    }
+
+    @Test
+    public void laMascaraAcumulaLoNoEntregado() {
+        // postValue fusiona b y c: c se calcula contra la última entregada (a) y lleva los cambios de las dos
+        InstantaneaSensor a = lectura(InstantaneaSensor.VACIA, InstantaneaSensor.VACIA, 600, -70);
+        InstantaneaSensor b = lectura(a, a, 650, -70);
+        InstantaneaSensor c = lectura(b, a, 650, -75);
+        assertEquals(InstantaneaSensor.CAMPO_CO2 | InstantaneaSensor.CAMPO_RSSI, c.getCambios());
+    }
+
+    @Test
+    public void unObservadorQueSePerdioInstantaneasCompara() {
+        InstantaneaSensor a = lectura(InstantaneaSensor.VACIA, InstantaneaSensor.VACIA, 600, -70);
+        InstantaneaSensor b = lectura(a, a, 650, -70);
+        InstantaneaSensor c = b.editar().estado("Conectado").crear(b);
+
+        assertEquals("Sin nada pintado se pinta todo", InstantaneaSensor.TODOS, c.cambiosDesde(null));
+        assertEquals("Si pintó la base, vale la máscara", InstantaneaSensor.CAMPO_ESTADO, c.cambiosDesde(b));
+        assertEquals("Si se saltó b, también cambia el CO2",
+                InstantaneaSensor.CAMPO_ESTADO | InstantaneaSensor.CAMPO_CO2, c.cambiosDesde(a));
+    }
+
+    @Test
+    public void unaEdicionSinCambiosNoDifiere() {
+        InstantaneaSensor a = lectura(InstantaneaSensor.VACIA, InstantaneaSensor.VACIA, 600, -70);
+        assertEquals(0, a.editar().co2(600).rssi(-70).diferencias(a));
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.breathe_tracking;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JavaMailAPITest {
+
+    private static final String USUARIO = "robot@example.com";
+    private static final String PASSWORD = "secreto";
+
+    /**
+     * @brief Servidor SMTP mínimo en un ServerSocket local: anuncia AUTH PLAIN, comprueba las
+     * credenciales, rechaza los destinatarios "nadie@..." y guarda los mensajes aceptados.
+     */
+    static class ServidorSmtp implements Runnable {
+        final ServerSocket socket;
+        final List<String> comandos = Collections.synchronizedList(new ArrayList<>());
+        final List<String> mensajes = Collections.synchronizedList(new ArrayList<>());
+        volatile int conexiones = 0;
+        private final Thread hilo;
+
+        ServidorSmtp() throws IOException {
+            socket = new ServerSocket(0, 5, InetAddress.getLoopbackAddress());
+            hilo = new Thread(this, "smtp-falso");
+            hilo.setDaemon(true);
+            hilo.start();
+        }
+
+        int getPuerto() {
+            return socket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            while (!socket.isClosed()) {
+                try (Socket cliente = socket.accept()) {
+                    conexiones++;
+                    atender(cliente);
+                } catch (IOException e) {
+                    // Servidor cerrado o cliente desconectado
+                }
+            }
+        }
+
+        private void atender(Socket cliente) throws IOException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(cliente.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = cliente.getOutputStream();
+            responder(out, "220 localhost ESMTP");
+            String linea;
+            while ((linea = in.readLine()) != null) {
+                comandos.add(linea);
+                String comando = linea.toUpperCase();
+                if (comando.startsWith("EHLO")) {
+                    responder(out, "250-localhost\r\n250 AUTH PLAIN");
+                } else if (comando.startsWith("AUTH PLAIN")) {
+                    String[] partes = new String(Base64.getDecoder().decode(linea.substring(11).trim()), StandardCharsets.UTF_8).split("\0");
+                    boolean valida = partes.length == 3 && USUARIO.equals(partes[1]) && PASSWORD.equals(partes[2]);
+                    responder(out, valida ? "235 2.7.0 Accepted" : "535 5.7.8 Authentication failed");
+                } else if (comando.startsWith("RCPT TO:<NADIE@")) {
+                    responder(out, "550 5.1.1 No such user");
+                } else if (comando.equals("DATA")) {
+                    responder(out, "354 End data with <CR><LF>.<CR><LF>");
+                    StringBuilder mensaje = new StringBuilder();
+                    while ((linea = in.readLine()) != null && !linea.equals(".")) mensaje.append(linea).append('\n');
+                    mensajes.add(mensaje.toString());
+                    responder(out, "250 2.0.0 Ok");
+                } else if (comando.equals("QUIT")) {
+                    responder(out, "221 2.0.0 Bye");
+                    return;
+                } else {
+                    // MAIL, RCPT, RSET, NOOP
+                    responder(out, "250 2.0.0 Ok");
+                }
+            }
+        }
+
+        private static void responder(OutputStream out, String respuesta) throws IOException {
+            out.write((respuesta + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        void cerrar() throws IOException, InterruptedException {
+            socket.close();
+            hilo.join(2000);
+        }
+    }
+
+    private ServidorSmtp servidor;
+
+    @Before
+    public void arrancar() throws IOException {
+        servidor = new ServidorSmtp();
+    }
+
+    @After
+    public void parar() throws IOException, InterruptedException {
+        servidor.cerrar();
+    }
+
+    private JavaMailAPI cliente(String password) {
+        return new JavaMailAPI("127.0.0.1", servidor.getPuerto(), false, USUARIO, password);
+    }
+
+    @Test
+    public void enviaVariosMensajesPorUnaSolaConexionAutenticada() throws Exception {
+        JavaMailAPI api = cliente(PASSWORD);
+        api.conectar();
+        assertTrue(api.isConectado());
+        api.enviar(new BandejaCorreo.Correo(1, "admin@example.com", "Incidencia 1", JavaMailAPI.construirHTML("Uno", "ñandú")));
+        api.enviar(new BandejaCorreo.Correo(2, "admin@example.com", "Incidencia 2", JavaMailAPI.construirHTML("Dos", "texto")));
+        api.cerrar();
+        assertFalse(api.isConectado());
+
+        assertEquals("Una conexión para los dos mensajes", 1, servidor.conexiones);
+        assertEquals(2, servidor.mensajes.size());
+        assertTrue(servidor.mensajes.get(0).contains("Subject: Incidencia 1"));
+        assertTrue(servidor.mensajes.get(0).contains("text/html; charset=utf-8"));
+        int autenticaciones = 0;
+        for (String c : servidor.comandos) if (c.startsWith("AUTH")) autenticaciones++;
+        assertEquals(1, autenticaciones);
+        assertTrue(servidor.comandos.contains("RCPT TO:<admin@example.com>"));
+    }
+
+    @Test
+    public void lasCredencialesRechazadasSonUnErrorPermanente() {
+        JavaMailAPI api = cliente("otra");
+        try {
+            api.conectar();
+            fail("El servidor ha rechazado la autenticación");
+        } catch (BandejaCorreo.ErrorEnvio e) {
+            assertTrue(e.isPermanente());
+        }
+        assertFalse(api.isConectado());
+    }
+
+    @Test
+    public void unDestinatarioRechazadoEsPermanenteYLaConexionSigueUtil() throws Exception {
+        JavaMailAPI api = cliente(PASSWORD);
+        api.conectar();
+        try {
+            api.enviar(new BandejaCorreo.Correo(1, "nadie@example.com", "Perdido", "<p>x</p>"));
+            fail("El servidor ha rechazado al destinatario");
+        } catch (BandejaCorreo.ErrorEnvio e) {
+            assertTrue(e.isPermanente());
+        }
+        api.enviar(new BandejaCorreo.Correo(2, "admin@example.com", "Bueno", "<p>y</p>"));
+        api.cerrar();
+        assertEquals(1, servidor.mensajes.size());
+        assertEquals(1, servidor.conexiones);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MotorAlertasTest {
+
+    private static LecturaBeacon lectura(int co2, float o3, float temperatura, int bateria) {
+        LecturaBeacon l = new LecturaBeacon();
+        l.co2 = co2;
+        l.o3 = o3;
+        l.temperatura = temperatura;
+        l.bateria = bateria;
+        return l;
+    }
+
+    @Test
+    public void lasReglasPorDefectoRespetanLosUmbralesDeSiempre() {
+        MotorAlertas motor = MotorAlertas.predeterminado();
+        assertTrue(motor.supera(FiltroCambios.CANAL_CO2, 1200));
+        assertFalse(motor.supera(FiltroCambios.CANAL_CO2, 1199));
+        assertTrue(motor.supera(FiltroCambios.CANAL_O3, 0.9f));
+        assertFalse("La temperatura exige superar 35", motor.supera(FiltroCambios.CANAL_TEMPERATURA, 35f));
+        assertTrue(motor.supera(FiltroCambios.CANAL_TEMPERATURA, 35.1f));
+        assertTrue(motor.supera(FiltroCambios.CANAL_BATERIA, 15));
+        assertFalse(motor.supera(FiltroCambios.CANAL_BATERIA, 16));
+    }
+
+    @Test
+    public void disparaUnaVezYSeRearmaAlSalirDeLaHisteresis() {
+        MotorAlertas motor = MotorAlertas.predeterminado();
+        MotorAlertas.Estado estado = new MotorAlertas.Estado();
+        int co2 = 1 << 0;
+
+        assertEquals(0, motor.evaluar(estado, lectura(800, 0.1f, 21, 80), 0));
+        assertEquals("Salta al llegar a 1200", co2, motor.evaluar(estado, lectura(1250, 0.1f, 21, 80), 1000));
+        assertTrue(estado.activa(0));
+        assertEquals("Activa: no vuelve a saltar", 0, motor.evaluar(estado, lectura(1300, 0.1f, 21, 80), 2000));
+        assertEquals("Dentro de la histéresis sigue activa", 0, motor.evaluar(estado, lectura(1170, 0.1f, 21, 80), 3000));
+        assertEquals("Por debajo de 1150 se rearma", co2, motor.evaluar(estado, lectura(1140, 0.1f, 21, 80), 4000));
+        assertFalse(estado.activa(0));
+        assertEquals(co2, motor.evaluar(estado, lectura(1200, 0.1f, 21, 80), 5000));
+    }
+
+    @Test
+    public void laDuracionMinimaExigeQueLaCondicionSeMantenga() {
+        MotorAlertas motor = new MotorAlertas(Arrays.asList(
+                new MotorAlertas.Regla(FiltroCambios.CANAL_TEMPERATURA, MotorAlertas.MAYOR, 30).duracionMs(60_000)));
+        MotorAlertas.Estado estado = new MotorAlertas.Estado();
+
+        assertEquals(0, motor.evaluar(estado, lectura(0, 0, 31, 0), 0));
+        assertEquals(0, motor.evaluar(estado, lectura(0, 0, 31, 0), 30_000));
+        assertEquals("Una lectura normal reinicia la cuenta", 0, motor.evaluar(estado, lectura(0, 0, 29, 0), 40_000));
+        assertEquals(0, motor.evaluar(estado, lectura(0, 0, 31, 0), 50_000));
+        assertEquals(0, motor.evaluar(estado, lectura(0, 0, 31, 0), 100_000));
+        assertEquals(1, motor.evaluar(estado, lectura(0, 0, 31, 0), 110_000));
+    }
+
+    @Test
+    public void unEstadoDeOtroMotorSeReinicia() {
+        MotorAlertas.Estado estado = new MotorAlertas.Estado();
+        MotorAlertas.predeterminado().evaluar(estado, lectura(1300, 0.1f, 21, 80), 0);
+        assertTrue(estado.activa(0));
+        MotorAlertas otro = MotorAlertas.porDefecto();
+        assertEquals("Con el motor nuevo la alerta vuelve a saltar", 1, otro.evaluar(estado, lectura(1300, 0.1f, 21, 80), 1000));
+    }
+
+    @Test
+    public void elMensajeSoloSeConstruyeConElValorDeLaRegla() {
+        MotorAlertas motor = MotorAlertas.predeterminado();
+        LecturaBeacon l = lectura(1300, 0.9f, 36.25f, 12);
+        assertEquals("Nivel de CO2 elevado: 1300 ppm", motor.mensaje(0, l));
+        assertEquals("Alerta de Batería", motor.titulo(3));
+        assertEquals("Nivel de batería bajo: 12%", motor.mensaje(3, l));
+        assertTrue(motor.soloNotificacion(3));
+        assertFalse(motor.soloNotificacion(0));
+    }
+
+    @Test
+    public void cargaLasReglasDeUnDocumento() {
+        Map<String, Object> regla = new HashMap<>();
+        regla.put("canal", "co2");
+        regla.put("comparador", ">=");
+        regla.put("umbral", 1000L);
+        regla.put("histeresis", 100L);
+        regla.put("duracion_s", 0.5);
+        regla.put("titulo", "Ventilar");
+        regla.put("mensaje", "CO2 alto ({valor} ppm)");
+        regla.put("critica", true);
+        List<Object> reglas = new ArrayList<>();
+        reglas.add(regla);
+
+        MotorAlertas motor = MotorAlertas.desdeDocumento(reglas);
+        System.out.println("[TEST] " + motor.resumen());
+        MotorAlertas.Estado estado = new MotorAlertas.Estado();
+        assertEquals(0, motor.evaluar(estado, lectura(1050, 0, 0, 0), 0));
+        assertEquals(1, motor.evaluar(estado, lectura(1050, 0, 0, 0), 500));
+        assertEquals("CO2 alto (1050 ppm)", motor.mensaje(0, lectura(1050, 0, 0, 0)));
+        assertTrue(motor.critica(0));
+        assertFalse(MotorAlertas.predeterminado().critica(0));
+        assertEquals(0, motor.evaluar(estado, lectura(950, 0, 0, 0), 1000));
+        assertEquals(1, motor.evaluar(estado, lectura(899, 0, 0, 0), 1500));
+    }
+
+    @Test
+    public void rechazaDocumentosMalFormados() {
+        Map<String, Object> regla = new HashMap<>();
+        regla.put("canal", "co2");
+        regla.put("comparador", "=>");
+        regla.put("umbral", 1000L);
+        try {
+            MotorAlertas.desdeDocumento(Arrays.asList(new HashMap<String, Object>(), regla));
+            fail("Debería rechazar el documento");
+        } catch (IllegalArgumentException esperada) {
+            assertTrue(esperada.getMessage(), esperada.getMessage().startsWith("Regla 0: Falta \"canal\""));
+        }
+        try {
+            MotorAlertas.desdeDocumento(Arrays.asList(regla));
+            fail("Debería rechazar el comparador");
+        } catch (IllegalArgumentException esperada) {
+            assertTrue(esperada.getMessage(), esperada.getMessage().contains("Comparador desconocido"));
+        }
+    }
+
+    @Test
+    public void evaluarNoAsignaMemoriaYMideLaLatencia() {
+        MotorAlertas motor = MotorAlertas.predeterminado();
+        MotorAlertas.Estado estado = new MotorAlertas.Estado();
+        LecturaBeacon[] lecturas = new LecturaBeacon[1024];
+        for (int i = 0; i < lecturas.length; i++) {
+            // Valores que cruzan todos los umbrales de vez en cuando
+            lecturas[i] = lectura(900 + (i * 37) % 500, 0.5f + (i % 9) * 0.06f, 30 + (i % 11), 5 + (i * 7) % 30);
+        }
+        int iteraciones = 2_000_000;
+        long sumidero = 0;
+        for (int i = 0; i < iteraciones; i++) sumidero += motor.evaluar(estado, lecturas[i & 1023], i);
+
+        java.lang.management.ThreadMXBean hilos = ManagementFactory.getThreadMXBean();
+        long antes = bytesAsignados(hilos);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iteraciones; i++) sumidero += motor.evaluar(estado, lecturas[i & 1023], i);
+        long t1 = System.nanoTime();
+        long despues = bytesAsignados(hilos);
+
+        System.out.println("[BENCH] MotorAlertas.evaluar (" + motor.getNumReglas() + " reglas): "
+                + (t1 - t0) / (double) iteraciones + " ns/lectura");
+        assertTrue(sumidero != 0);
+        if (antes >= 0) {
+            System.out.println("[BENCH] Memoria asignada en " + iteraciones + " evaluaciones: " + (despues - antes) + " bytes");
+            // Margen para las asignaciones propias de la medición
+            assertTrue("evaluar no debería asignar memoria", despues - antes < 64 * 1024);
+        }
+    }
+
+    private static long bytesAsignados(java.lang.management.ThreadMXBean hilos) {
+        if (!(hilos instanceof com.sun.management.ThreadMXBean)) return -1;
+        return ((com.sun.management.ThreadMXBean) hilos).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
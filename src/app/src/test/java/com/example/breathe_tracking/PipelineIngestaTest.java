@@ -0,0 +1,130 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PipelineIngestaTest {
+
+    private static final int SENSORES = 3;
+
+    /**
+     * Etapas simuladas: decodifican de verdad, comprueban que cada sensor llega en orden
+     * y "persisten" solo cuando cambia el CO2 (como la deduplicación del servicio).
+     */
+    private static class EtapasSimuladas implements PipelineIngesta.Etapas {
+        final int[] ultimoCo2 = new int[SENSORES];
+        final int[] lecturas = new int[SENSORES];
+        int persistidas = 0;
+        boolean desordenado = false;
+        int lanzarEnCo2 = -1;
+        final java.util.List<RuntimeException> fallos = new java.util.ArrayList<>();
+
+        EtapasSimuladas() {
+            java.util.Arrays.fill(ultimoCo2, -1);
+        }
+
+        @Override
+        public boolean decodificar(ColaIngesta.Ranura paquete, LecturaBeacon lectura) {
+            return DecodificadorTrama.decodificar(paquete.datos, paquete.longitud, lectura);
+        }
+
+        @Override
+        public boolean evaluar(ColaIngesta.Ranura paquete, LecturaBeacon lectura) {
+            if (lectura.co2 == lanzarEnCo2) throw new IllegalStateException("fallo simulado");
+            int clave = paquete.clave;
+            lecturas[clave]++;
+            if (lectura.co2 < ultimoCo2[clave]) desordenado = true;
+            boolean cambia = lectura.co2 != ultimoCo2[clave];
+            ultimoCo2[clave] = lectura.co2;
+            return cambia;
+        }
+
+        @Override
+        public void persistir(ColaIngesta.Ranura paquete, LecturaBeacon lectura) {
+            persistidas++;
+        }
+
+        @Override
+        public void alFallar(ColaIngesta.Ranura paquete, RuntimeException error) {
+            fallos.add(error);
+        }
+    }
+
+    /** Fuente de paquetes simulada: cada sensor anuncia un CO2 creciente, con ráfagas repetidas. */
+    private static void emitir(PipelineIngesta pipeline, int porSensor) {
+        for (int i = 0; i < porSensor; i++) {
+            for (int s = 0; s < SENSORES; s++) {
+                int co2 = 400 + i / 4; // Cada valor se repite en 4 anuncios
+                pipeline.ofrecer(s, DecodificadorTramaTest.anuncio(100, 200, co2, 90), -60 - s, i);
+            }
+        }
+    }
+
+    private static void ejecutar(ColaIngesta.PoliticaDesbordamiento politica, int capacidad) {
+        EtapasSimuladas etapas = new EtapasSimuladas();
+        PipelineIngesta pipeline = new PipelineIngesta(new ColaIngesta(capacidad, SENSORES, politica), etapas);
+        pipeline.iniciar("ingesta-test");
+
+        int porSensor = 20_000;
+        emitir(pipeline, porSensor);
+        pipeline.detener(5000);
+
+        System.out.println(pipeline.resumen());
+        assertFalse("Las lecturas de un sensor deben llegar en orden", etapas.desordenado);
+        int ultimo = 400 + (porSensor - 1) / 4;
+        for (int s = 0; s < SENSORES; s++) {
+            assertEquals("El último valor de cada sensor nunca se pierde", ultimo, etapas.ultimoCo2[s]);
+        }
+        assertEquals(0, pipeline.profundidadCola());
+        assertEquals(0, pipeline.getErrores());
+        assertEquals(pipeline.getProcesados(), pipeline.getEjecuciones(PipelineIngesta.ETAPA_DECODIFICAR));
+        assertEquals(etapas.persistidas, pipeline.getEjecuciones(PipelineIngesta.ETAPA_PERSISTIR));
+        assertTrue(pipeline.getLatenciaMaximaNanos(PipelineIngesta.ETAPA_EVALUAR) >= pipeline.getLatenciaMediaNanos(PipelineIngesta.ETAPA_EVALUAR));
+    }
+
+    @Test
+    public void descartarAntiguoConHiloReal() {
+        ejecutar(ColaIngesta.PoliticaDesbordamiento.DESCARTAR_ANTIGUO, 256);
+    }
+
+    @Test
+    public void fusionarPorSensorConHiloReal() {
+        ejecutar(ColaIngesta.PoliticaDesbordamiento.FUSIONAR_POR_SENSOR, 0);
+    }
+
+    @Test
+    public void sinHiloProcesaDeFormaDeterminista() {
+        EtapasSimuladas etapas = new EtapasSimuladas();
+        PipelineIngesta pipeline = new PipelineIngesta(new ColaIngesta(16, SENSORES, ColaIngesta.PoliticaDesbordamiento.DESCARTAR_ANTIGUO), etapas);
+
+        pipeline.ofrecer(0, DecodificadorTramaTest.anuncio(1, 1, 800, 1), -60, 0);
+        pipeline.ofrecer(0, DecodificadorTramaTest.anuncio(1, 1, 800, 1), -60, 1);
+        // Anuncio más corto que el anterior en la misma ranura: los bytes viejos no deben decodificarse
+        pipeline.ofrecer(0, new byte[]{0x02, 0x01, 0x06}, -60, 2);
+        pipeline.ofrecer(1, DecodificadorTramaTest.anuncio(1, 1, 900, 1), -60, 3);
+        assertEquals(4, pipeline.profundidadCola());
+
+        assertEquals(4, pipeline.procesarPendientes());
+        assertEquals(1, pipeline.getInvalidos());
+        assertEquals(2, etapas.persistidas);
+        assertEquals(3, pipeline.getEjecuciones(PipelineIngesta.ETAPA_EVALUAR));
+        assertEquals(0, pipeline.profundidadCola());
+    }
+
+    @Test
+    public void unaEtapaQueFallaNoDetieneElPipeline() {
+        EtapasSimuladas etapas = new EtapasSimuladas();
+        etapas.lanzarEnCo2 = 666;
+        PipelineIngesta pipeline = new PipelineIngesta(new ColaIngesta(16, SENSORES, ColaIngesta.PoliticaDesbordamiento.DESCARTAR_ANTIGUO), etapas);
+
+        pipeline.ofrecer(0, DecodificadorTramaTest.anuncio(1, 1, 666, 1), -60, 0);
+        pipeline.ofrecer(0, DecodificadorTramaTest.anuncio(1, 1, 700, 1), -60, 1);
+        pipeline.procesarPendientes();
+
+        assertEquals(1, pipeline.getErrores());
+        assertTrue(pipeline.getUltimoError() instanceof IllegalStateException);
+        assertEquals("El fallo se avisa a las etapas (el servicio lo registra)", 1, etapas.fallos.size());
+        assertEquals(700, etapas.ultimoCo2[0]);
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PlanificadorEscaneoTest {
+
+    /** Reloj y radio simulados: la radio solo "oye" un anuncio si el modo activo estaba escuchando en ese milisegundo. */
+    private static class Simulador implements Reloj, PlanificadorEscaneo.Radio {
+        long ahora = 0;
+        boolean encendida = false;
+        PlanificadorEscaneo.Modo modo;
+        long inicioEscaneo;
+        final List<Long> arranques = new ArrayList<>();
+
+        @Override
+        public long ahoraMs() {
+            return ahora;
+        }
+
+        @Override
+        public void arrancar(PlanificadorEscaneo.Modo modo) {
+            this.modo = modo;
+            encendida = true;
+            inicioEscaneo = ahora;
+            arranques.add(ahora);
+        }
+
+        @Override
+        public void detener() {
+            encendida = false;
+        }
+
+        boolean escucha() {
+            if (!encendida) return false;
+            long t = ahora - inicioEscaneo;
+            switch (modo) {
+                case BAJO_CONSUMO: return t % 5120 < 512;
+                case EQUILIBRADO: return t % 4096 < 1024;
+                default: return true;
+            }
+        }
+    }
+
+    /** Sensor simulado: anuncia cada intervalo (con un retardo aleatorio de 0-10 ms, como BLE) y cambia de valor de vez en cuando. */
+    private static class SensorSimulado {
+        final int indice;
+        final long intervalo;
+        long proximo;
+        final Random aleatorio;
+
+        SensorSimulado(int indice, long intervalo, long fase, long semilla) {
+            this.indice = indice;
+            this.intervalo = intervalo;
+            this.proximo = fase;
+            this.aleatorio = new Random(semilla);
+        }
+    }
+
+    private static class Resultado {
+        long maxHuecoMs = 0;
+        int oidos = 0;
+    }
+
+    private static Resultado simular(Simulador sim, PlanificadorEscaneo planificador, SensorSimulado[] sensores,
+                                     long duracionMs, long[] instantesCambio) {
+        Resultado resultado = new Resultado();
+        long[] ultimoOido = new long[sensores.length];
+        long proximaPlanificacion = 0;
+        int cambio = 0;
+        for (sim.ahora = 0; sim.ahora < duracionMs; sim.ahora++) {
+            boolean replanificar = sim.ahora >= proximaPlanificacion;
+            for (SensorSimulado s : sensores) {
+                if (sim.ahora < s.proximo) continue;
+                s.proximo += s.intervalo + s.aleatorio.nextInt(11);
+                if (!sim.escucha()) continue;
+                resultado.oidos++;
+                resultado.maxHuecoMs = Math.max(resultado.maxHuecoMs, sim.ahora - ultimoOido[s.indice]);
+                ultimoOido[s.indice] = sim.ahora;
+                if (cambio < instantesCambio.length && sim.ahora >= instantesCambio[cambio]) {
+                    planificador.registrarCambio(s.indice);
+                    cambio++;
+                }
+                if (planificador.registrarAnuncio(s.indice, sim.ahora)) replanificar = true;
+            }
+            if (replanificar) proximaPlanificacion = sim.ahora + Math.max(0, planificador.planificar());
+        }
+        return resultado;
+    }
+
+    private static void comprobarLimiteDeArranques(List<Long> arranques) {
+        for (int i = PlanificadorEscaneo.MAX_ARRANQUES; i < arranques.size(); i++) {
+            long desde = arranques.get(i - PlanificadorEscaneo.MAX_ARRANQUES);
+            assertTrue("Más de 5 arranques en 30 s en t=" + arranques.get(i),
+                    arranques.get(i) - desde >= PlanificadorEscaneo.VENTANA_ARRANQUES_MS);
+        }
+    }
+
+    @Test
+    public void sensorEstableAprendeElIntervaloYAhorraRadio() {
+        Simulador sim = new Simulador();
+        PlanificadorEscaneo planificador = new PlanificadorEscaneo(sim, sim, 4);
+        planificador.registrarSensor(0);
+
+        Resultado r = simular(sim, planificador, new SensorSimulado[]{new SensorSimulado(0, 1000, 137, 1)},
+                30 * 60 * 1000, new long[0]);
+
+        System.out.println(planificador.resumen());
+        assertEquals(1005, planificador.getIntervaloMs(0), 15);
+        comprobarLimiteDeArranques(sim.arranques);
+        assertTrue("El sensor debe oírse antes de que salte el watchdog (hueco " + r.maxHuecoMs + " ms)", r.maxHuecoMs < 60_000);
+        assertEquals(PlanificadorEscaneo.PERIODO_MAXIMO_MS, planificador.getPeriodoMs());
+        assertTrue("Debe gastar menos radio que el escaneo continuo",
+                planificador.getRadioEncendidaMs() < planificador.getRadioReferenciaMs() / 2);
+    }
+
+    @Test
+    public void losCambiosAcortanElPeriodo() {
+        Simulador sim = new Simulador();
+        PlanificadorEscaneo planificador = new PlanificadorEscaneo(sim, sim, 4);
+        planificador.registrarSensor(0);
+
+        // Lecturas cambiando cada pocos segundos durante los primeros 5 minutos
+        long[] cambios = new long[100];
+        for (int i = 0; i < cambios.length; i++) cambios[i] = i * 3000L;
+        simular(sim, planificador, new SensorSimulado[]{new SensorSimulado(0, 1000, 400, 2)}, 4 * 60 * 1000, cambios);
+        assertEquals(PlanificadorEscaneo.PERIODO_MINIMO_MS, planificador.getPeriodoMs());
+        comprobarLimiteDeArranques(sim.arranques);
+    }
+
+    @Test
+    public void dosSensoresDesfasadosSeOyenEnCadaVentana() {
+        Simulador sim = new Simulador();
+        PlanificadorEscaneo planificador = new PlanificadorEscaneo(sim, sim, 4);
+        planificador.registrarSensor(0);
+        planificador.registrarSensor(1);
+
+        Resultado r = simular(sim, planificador, new SensorSimulado[]{
+                new SensorSimulado(0, 1000, 100, 3),
+                new SensorSimulado(1, 700, 650, 4)}, 20 * 60 * 1000, new long[0]);
+
+        System.out.println(planificador.resumen());
+        comprobarLimiteDeArranques(sim.arranques);
+        assertTrue("Hueco máximo " + r.maxHuecoMs + " ms", r.maxHuecoMs < 60_000);
+        assertTrue(planificador.getRadioEncendidaMs() < planificador.getRadioReferenciaMs());
+    }
+
+    @Test
+    public void sensorLentoUsaEscaneoEquilibrado() {
+        Simulador sim = new Simulador();
+        PlanificadorEscaneo planificador = new PlanificadorEscaneo(sim, sim, 4);
+        planificador.registrarSensor(0);
+
+        simular(sim, planificador, new SensorSimulado[]{new SensorSimulado(0, 5000, 10, 5)}, 5 * 60 * 1000, new long[0]);
+        assertEquals(PlanificadorEscaneo.Modo.EQUILIBRADO, planificador.getModo());
+        assertTrue(planificador.isEscaneando());
+        comprobarLimiteDeArranques(sim.arranques);
+    }
+
+    @Test
+    public void sinSensorVuelveAlBajoConsumoContinuo() {
+        Simulador sim = new Simulador();
+        PlanificadorEscaneo planificador = new PlanificadorEscaneo(sim, sim, 4);
+        planificador.registrarSensor(0);
+
+        simular(sim, planificador, new SensorSimulado[0], 2 * 60 * 1000, new long[0]);
+        assertEquals(PlanificadorEscaneo.Modo.BAJO_CONSUMO, planificador.getModo());
+        assertTrue(planificador.isEscaneando());
+        assertTrue(sim.arranques.size() <= 2);
+        // Igual que el escaneo actual, salvo los primeros segundos buscando en BAJA_LATENCIA
+        assertTrue(planificador.getMsEnModo(PlanificadorEscaneo.Modo.BAJA_LATENCIA) <= PlanificadorEscaneo.AUSENCIA_MS + PlanificadorEscaneo.PASO_CONTINUO_MS);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PlantillaCorreoTest {
+
+    /** @brief El HTML que concatenaba JavaMailAPI.construirHTML antes de la plantilla. */
+    private static String construirHTMLAnterior(String titulo, String mensaje) {
+        return "<!DOCTYPE html>" +
+                "<html>" +
+                "<head>" +
+                "<style>" +
+                "body {font-family: Arial, sans-serif; margin: 0; padding: 0; background-color: #f4f4f4;}" +
+                ".container {max-width: 600px; margin: 20px auto; background-color: #ffffff; border-radius: 8px; overflow: hidden; box-shadow: 0 2px 5px rgba(0,0,0,0.1);}" +
+                ".header {background-color: #0E344C; color: #ffffff; padding: 20px; text-align: center;}" +
+                ".header h1 {margin: 0; font-size: 24px; letter-spacing: 2px;}" +
+                ".content {padding: 30px; color: #333333; line-height: 1.6;}" +
+                ".label {font-weight: bold; color: #0E344C; display: block; margin-top: 15px;}" +
+                ".value {background-color: #f9f9f9; padding: 10px; border-left: 4px solid #0E344C; margin-top: 5px;}" +
+                ".footer {background-color: #eeeeee; text-align: center; padding: 15px; font-size: 12px; color: #777777;}" +
+                "</style>" +
+                "</head>" +
+                "<body>" +
+                "  <div class='container'>" +
+                "    <div class='header'>" +
+                "      <h1>BREATHE TRACKING</h1>" +
+                "      <p>Sistema de Gestión de Incidencias</p>" +
+                "    </div>" +
+                "    <div class='content'>" +
+                "      <p>Hola Administrador,</p>" +
+                "      <p>Se ha recibido un nuevo reporte automático desde la aplicación móvil.</p>" +
+                "      <hr style='border: 0; border-top: 1px solid #eee; margin: 20px 0;'>" +
+                "      <span class='label'>TÍTULO:</span>" +
+                "      <div class='value'>" + titulo + "</div>" +
+                "      <span class='label'>DETALLE DEL MENSAJE:</span>" +
+                "      <div class='value'>" + mensaje + "</div>" +
+                "      <p style='margin-top: 30px; font-size: 0.9em;'><em>Por favor, revise el panel de control para más detalles técnicos del sensor afectado.</em></p>" +
+                "    </div>" +
+                "    <div class='footer'>" +
+                "      <p>Este es un mensaje automático. No responder a este correo.</p>" +
+                "      <p>&copy; 2025 Breathe Tracking System</p>" +
+                "    </div>" +
+                "  </div>" +
+                "</body>" +
+                "</html>";
+    }
+
+    @Test
+    public void elCorreoDeIncidenciaNoCambia() {
+        assertEquals(construirHTMLAnterior("Sensor caído", "No envía datos desde las 12:00"),
+                JavaMailAPI.construirHTML("Sensor caído", "No envía datos desde las 12:00"));
+        assertEquals(2, PlantillaCorreo.INCIDENCIA.getNumHuecos());
+    }
+
+    @Test
+    public void escapaLosValores() {
+        PlantillaCorreo p = new PlantillaCorreo("<p title='{{a}}'>{{b}}</p>{{ a }}", "a", "b");
+        assertEquals("<p title='&#39;x&#39;'>&lt;b&gt; &amp; &quot;c&quot;</p>&#39;x&#39;", p.generar("'x'", "<b> & \"c\""));
+        assertEquals("Un valor null se escribe vacío", "<p title=''>sin</p>", p.generar(null, "sin"));
+    }
+
+    @Test
+    public void escribeSobreUnBuilderReutilizado() {
+        PlantillaCorreo fila = new PlantillaCorreo("[{{n}}]", "n");
+        StringBuilder sb = new StringBuilder("inicio");
+        for (int i = 0; i < 3; i++) fila.escribir(sb, Integer.toString(i));
+        assertEquals("inicio[0][1][2]", sb.toString());
+    }
+
+    @Test
+    public void rechazaPlantillasMalFormadas() {
+        try {
+            new PlantillaCorreo("{{desconocido}}", "a");
+            fail("Debería rechazar el hueco");
+        } catch (IllegalArgumentException esperada) {
+            assertTrue(esperada.getMessage().contains("desconocido"));
+        }
+        try {
+            new PlantillaCorreo("abc {{a", "a");
+            fail("Debería rechazar el hueco sin cerrar");
+        } catch (IllegalArgumentException esperada) {
+            assertTrue(esperada.getMessage().contains("sin cerrar"));
+        }
+        try {
+            new PlantillaCorreo("{{a}}", "a").generar("1", "2");
+            fail("Debería rechazar el número de valores");
+        } catch (IllegalArgumentException esperada) {
+            assertTrue(esperada.getMessage().contains("Se esperaban 1"));
+        }
+    }
+
+    @Test
+    public void rendimientoFrenteALaConcatenacion() {
+        StringBuilder sb = new StringBuilder(4096);
+        long sumidero = 0;
+        for (int i = 0; i < 20_000; i++) {
+            sumidero += construirHTMLAnterior("Título " + (i & 7), "Mensaje").length();
+            sb.setLength(0);
+            sumidero += PlantillaCorreo.INCIDENCIA.escribir(sb, "Título " + (i & 7), "Mensaje").length();
+        }
+        int n = 100_000;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) sumidero += construirHTMLAnterior("Título " + (i & 7), "Mensaje").length();
+        long t1 = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            sb.setLength(0);
+            sumidero += PlantillaCorreo.INCIDENCIA.escribir(sb, "Título " + (i & 7), "Mensaje").length();
+        }
+        long t2 = System.nanoTime();
+        System.out.println("[BENCH] HTML de incidencia: concatenación " + (t1 - t0) / n + " ns, plantilla " + (t2 - t1) / n + " ns");
+        assertTrue(sumidero > 0);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PoliticaUbicacionTest {
+
+    private static final double LAT = 38.995747;
+    private static final double LON = -0.166140;
+    /** Grados de latitud por metro. */
+    private static final double GRADOS_POR_METRO = 1 / 111_320.0;
+
+    private static class RelojManual implements Reloj {
+        long ahora = 0;
+
+        @Override
+        public long ahoraMs() {
+            return ahora;
+        }
+    }
+
+    /** Reproduce fijos con el intervalo del nivel actual y la revisión periódica del servicio. */
+    private static class Guion {
+        final RelojManual reloj = new RelojManual();
+        final PoliticaUbicacion politica = new PoliticaUbicacion(reloj);
+        final Random ruido = new Random(3);
+        long proximoFijo = 0;
+        long proximaRevision = 60_000;
+        int peticiones = 1;
+
+        /** Avanza hasta \p hastaMs con el usuario en (norte, este) metros del origen, moviéndose \p velocidad m/s hacia el norte. */
+        double[] avanzar(long hastaMs, double norte, double velocidad, float precision, boolean hayFijosEnReposo) {
+            long desde = reloj.ahora;
+            while (reloj.ahora < hastaMs) {
+                reloj.ahora += 1000;
+                double posicion = norte + velocidad * (reloj.ahora - desde) / 1000.0;
+                if (reloj.ahora >= proximaRevision) {
+                    if (politica.revisar()) replanificar();
+                    proximaRevision = reloj.ahora + 60_000;
+                }
+                if (reloj.ahora >= proximoFijo) {
+                    PoliticaUbicacion.Nivel nivel = politica.getNivel();
+                    proximoFijo = reloj.ahora + nivel.intervaloMs;
+                    if (nivel == PoliticaUbicacion.Nivel.REPOSO && !hayFijosEnReposo) continue;
+                    double lat = LAT + (posicion + (ruido.nextDouble() - 0.5) * precision) * GRADOS_POR_METRO;
+                    double lon = LON + (ruido.nextDouble() - 0.5) * precision * GRADOS_POR_METRO;
+                    if (politica.registrarUbicacion(lat, lon, precision, reloj.ahora)) replanificar();
+                }
+            }
+            return new double[]{norte + velocidad * (hastaMs - desde) / 1000.0};
+        }
+
+        void replanificar() {
+            peticiones++;
+            proximoFijo = reloj.ahora + politica.getNivel().intervaloMinimoMs;
+        }
+    }
+
+    private static double[] fijo(double norteM, double esteM) {
+        return new double[]{LAT + norteM * GRADOS_POR_METRO, LON + esteM * GRADOS_POR_METRO};
+    }
+
+    @Test
+    public void laDistanciaEsAproximadamenteCorrecta() {
+        double[] a = fijo(0, 0);
+        double[] b = fijo(300, 400);
+        assertEquals(500, PoliticaUbicacion.distanciaM(a[0], a[1], b[0], b[1]), 100);
+        assertEquals(300, PoliticaUbicacion.distanciaM(a[0], a[1], LAT + 300 * GRADOS_POR_METRO, LON), 0.5);
+    }
+
+    @Test
+    public void enLaMesaBajaAQuietoYDespuesAReposo() {
+        RelojManual reloj = new RelojManual();
+        PoliticaUbicacion politica = new PoliticaUbicacion(reloj);
+        assertEquals(PoliticaUbicacion.Nivel.MOVIMIENTO, politica.getNivel());
+
+        // Fijos cada 10 s con ±5 m de ruido alrededor del mismo punto
+        boolean cambioAQuieto = false;
+        for (reloj.ahora = 0; reloj.ahora <= PoliticaUbicacion.QUIETO_TRAS_MS; reloj.ahora += 10_000) {
+            double[] f = fijo((reloj.ahora % 7) - 3, (reloj.ahora % 5) - 2);
+            cambioAQuieto |= politica.registrarUbicacion(f[0], f[1], 8f, reloj.ahora);
+        }
+        assertTrue(cambioAQuieto);
+        assertEquals(PoliticaUbicacion.Nivel.QUIETO, politica.getNivel());
+
+        for (; reloj.ahora < PoliticaUbicacion.QUIETO_TRAS_MS + PoliticaUbicacion.REPOSO_TRAS_MS + 60_000; reloj.ahora += 60_000) {
+            double[] f = fijo(2, -1);
+            politica.registrarUbicacion(f[0], f[1], 30f, reloj.ahora);
+        }
+        assertEquals(PoliticaUbicacion.Nivel.REPOSO, politica.getNivel());
+        assertEquals(2, politica.getCambios());
+    }
+
+    @Test
+    public void unSaltoAisladoDelGpsNoSubeDeNivel() {
+        RelojManual reloj = new RelojManual();
+        PoliticaUbicacion politica = new PoliticaUbicacion(reloj);
+        for (reloj.ahora = 0; reloj.ahora <= PoliticaUbicacion.QUIETO_TRAS_MS; reloj.ahora += 10_000) {
+            double[] f = fijo(0, 0);
+            politica.registrarUbicacion(f[0], f[1], 5f, reloj.ahora);
+        }
+        assertEquals(PoliticaUbicacion.Nivel.QUIETO, politica.getNivel());
+
+        // Un fijo a 150 m y el siguiente de vuelta en la mesa
+        reloj.ahora += 60_000;
+        double[] salto = fijo(150, 0);
+        assertFalse(politica.registrarUbicacion(salto[0], salto[1], 10f, reloj.ahora));
+        reloj.ahora += 60_000;
+        double[] vuelta = fijo(0, 5);
+        assertFalse(politica.registrarUbicacion(vuelta[0], vuelta[1], 10f, reloj.ahora));
+        reloj.ahora += 60_000;
+        double[] mesa = fijo(-3, 0);
+        assertFalse(politica.registrarUbicacion(mesa[0], mesa[1], 10f, reloj.ahora));
+        assertEquals(PoliticaUbicacion.Nivel.QUIETO, politica.getNivel());
+
+        // Un fijo impreciso (antena) lejos tampoco cuenta
+        reloj.ahora += 60_000;
+        double[] antena = fijo(2000, 0);
+        assertFalse(politica.registrarUbicacion(antena[0], antena[1], 1500f, reloj.ahora));
+        assertEquals(1, politica.getFijosImprecisos());
+    }
+
+    @Test
+    public void alCaminarSubeAMovimientoConDosFijos() {
+        RelojManual reloj = new RelojManual();
+        PoliticaUbicacion politica = new PoliticaUbicacion(reloj);
+        for (reloj.ahora = 0; reloj.ahora <= PoliticaUbicacion.QUIETO_TRAS_MS; reloj.ahora += 10_000) {
+            double[] f = fijo(0, 0);
+            politica.registrarUbicacion(f[0], f[1], 5f, reloj.ahora);
+        }
+        assertEquals(PoliticaUbicacion.Nivel.QUIETO, politica.getNivel());
+
+        // 1,4 m/s con fijos cada 60 s: 84 m por fijo
+        reloj.ahora += 60_000;
+        double[] f1 = fijo(84, 0);
+        assertFalse(politica.registrarUbicacion(f1[0], f1[1], 15f, reloj.ahora));
+        reloj.ahora += 60_000;
+        double[] f2 = fijo(168, 0);
+        assertTrue(politica.registrarUbicacion(f2[0], f2[1], 15f, reloj.ahora));
+        assertEquals(PoliticaUbicacion.Nivel.MOVIMIENTO, politica.getNivel());
+    }
+
+    @Test
+    public void enReposoSinFijosLanzaUnaSondaYVuelve() {
+        RelojManual reloj = new RelojManual();
+        PoliticaUbicacion politica = new PoliticaUbicacion(reloj);
+        for (reloj.ahora = 0; reloj.ahora <= PoliticaUbicacion.QUIETO_TRAS_MS + PoliticaUbicacion.REPOSO_TRAS_MS; reloj.ahora += 60_000) {
+            double[] f = fijo(0, 0);
+            politica.registrarUbicacion(f[0], f[1], 10f, reloj.ahora);
+        }
+        assertEquals(PoliticaUbicacion.Nivel.REPOSO, politica.getNivel());
+        long ultimo = reloj.ahora - 60_000;
+
+        reloj.ahora = ultimo + PoliticaUbicacion.SONDA_MS - 1;
+        assertFalse(politica.revisar());
+        reloj.ahora = ultimo + PoliticaUbicacion.SONDA_MS;
+        assertTrue(politica.revisar());
+        assertEquals(PoliticaUbicacion.Nivel.QUIETO, politica.getNivel());
+        assertEquals(1, politica.getSondas());
+
+        // La sonda encuentra al usuario en el mismo sitio
+        double[] f = fijo(3, 0);
+        assertTrue(politica.registrarUbicacion(f[0], f[1], 20f, reloj.ahora + 30_000));
+        assertEquals(PoliticaUbicacion.Nivel.REPOSO, politica.getNivel());
+    }
+
+    @Test
+    public void unaJornadaPideMuchosMenosFijos() {
+        Guion guion = new Guion();
+        // 8 h en la sala, 15 min andando a 1,4 m/s, 4 h en otra sala
+        double[] pos = guion.avanzar(8 * 3_600_000L, 0, 0, 10f, false);
+        assertEquals(PoliticaUbicacion.Nivel.REPOSO, guion.politica.getNivel());
+        pos = guion.avanzar(guion.reloj.ahora + 15 * 60_000L, pos[0], 1.4, 10f, false);
+        assertEquals(PoliticaUbicacion.Nivel.MOVIMIENTO, guion.politica.getNivel());
+        guion.avanzar(guion.reloj.ahora + 4 * 3_600_000L, pos[0], 0, 10f, false);
+        assertEquals(PoliticaUbicacion.Nivel.REPOSO, guion.politica.getNivel());
+
+        PoliticaUbicacion politica = guion.politica;
+        System.out.println("[TEST] " + politica.resumen() + " Peticiones: " + guion.peticiones);
+        assertTrue("Fijos pedidos por hora: " + politica.getSolicitadosPorHora(), politica.getSolicitadosPorHora() < 36);
+        // Fuera de las sondas (ida y vuelta a REPOSO) solo cambia al salir y al llegar
+        assertTrue("Cambios de nivel: " + politica.getCambios(), politica.getCambios() - 2 * politica.getSondas() <= 6);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class ProtocoloTramaTest {
+
+    /** @brief Anuncio con flags y datos de fabricante 0x004C cuyo payload es \p payload. */
+    static byte[] anuncio(int... payload) {
+        byte[] a = new byte[3 + 4 + payload.length + 2];
+        a[0] = 0x02;
+        a[1] = 0x01;
+        a[2] = 0x06;
+        a[3] = (byte) (3 + payload.length);
+        a[4] = (byte) 0xFF;
+        a[5] = 0x4C;
+        a[6] = 0x00;
+        for (int i = 0; i < payload.length; i++) a[7 + i] = (byte) payload[i];
+        return a;
+    }
+
+    /** @brief Trama 0xA1: O3 0.9 ppm, T -5.0 ºC, CO2 1200 ppm, BAT 80 %, CO 1.25 mg/m³, NO2 40.5 µg/m³, SO2 12.3 µg/m³. */
+    static byte[] cincoGases() {
+        return anuncio(0xA1, 0x84, 0x03, 0xCE, 0xFF, 0xB0, 0x04, 80, 125, 0, 0x95, 0x01, 123, 0);
+    }
+
+    @Test
+    public void laTramaOriginalSeDecodificaIgual() {
+        LecturaBeacon lectura = new LecturaBeacon();
+        assertTrue(DecodificadorTrama.decodificar(DecodificadorTramaTest.anuncio(900, 250, 1200, 80), lectura));
+        assertEquals(0.9f, lectura.o3, 0.0001f);
+        assertEquals(25.0f, lectura.temperatura, 0.0001f);
+        assertEquals(1200, lectura.co2);
+        assertEquals(80, lectura.bateria);
+        assertFalse("La trama original no trae CO", lectura.tiene(ProtocoloTrama.CANAL_CO));
+        assertTrue(Float.isNaN(lectura.co));
+    }
+
+    @Test
+    public void decodificaLosCincoGases() {
+        LecturaBeacon lectura = new LecturaBeacon();
+        assertTrue(DecodificadorTrama.decodificar(cincoGases(), lectura));
+        assertEquals(0.9f, lectura.o3, 0.0001f);
+        assertEquals("La temperatura del esquema 0xA1 lleva signo", -5.0f, lectura.temperatura, 0.0001f);
+        assertEquals(1200, lectura.co2);
+        assertEquals(80, lectura.bateria);
+        assertEquals(1.25f, lectura.co, 0.0001f);
+        assertEquals(40.5f, lectura.no2, 0.0001f);
+        assertEquals(12.3f, lectura.so2, 0.0001f);
+        assertEquals((1 << ProtocoloTrama.NUM_CANALES) - 1, lectura.canales);
+
+        // Una trama original después deja los gases nuevos sin valor
+        assertTrue(DecodificadorTrama.decodificar(DecodificadorTramaTest.anuncio(900, 250, 1200, 80), lectura));
+        assertFalse(lectura.tiene(ProtocoloTrama.CANAL_SO2));
+    }
+
+    @Test
+    public void lasVersionesDesconocidasSeCuentan() {
+        ProtocoloTrama protocolo = new ProtocoloTrama().registrar(new ProtocoloTrama.Esquema.Constructor(ProtocoloTrama.TIPO_HEREDADO)
+                .campo(ProtocoloTrama.CANAL_CO2, 2, false, 1f).crear());
+        LecturaBeacon lectura = new LecturaBeacon();
+        lectura.co2 = -1;
+        byte[] datos = {(byte) 0xA7, 1, 2, 3};
+        assertEquals(ProtocoloTrama.DESCONOCIDA, protocolo.decodificar(datos, 0, datos.length, lectura));
+        assertEquals(ProtocoloTrama.DESCONOCIDA, protocolo.decodificar(datos, 0, datos.length, lectura));
+        assertEquals(2, protocolo.getDesconocidas(7));
+        assertEquals(2, protocolo.getDesconocidas());
+
+        byte[] corta = {(byte) 0xAA, 1};
+        assertEquals(ProtocoloTrama.INVALIDA, protocolo.decodificar(corta, 0, corta.length, lectura));
+        assertEquals(1, protocolo.getInvalidas());
+        assertEquals("Una trama no válida no modifica la lectura", -1, lectura.co2);
+
+        byte[] buena = {(byte) 0xAA, (byte) 0xB0, 0x04};
+        assertEquals(ProtocoloTrama.COMPLETA, protocolo.decodificar(buena, 0, buena.length, lectura));
+        assertEquals(1200, lectura.co2);
+        System.out.println("[TEST] " + protocolo.resumen());
+        assertTrue(protocolo.resumen().contains("0xA7: 2"));
+
+        // El escáner sigue dejando pasar la familia para que se puedan contar
+        FiltroSensores filtro = new FiltroSensores();
+        assertTrue(filtro.acepta("rocio", null, anuncio(0xA7, 1, 2, 3)));
+    }
+
+    @Test
+    public void reensamblaUnaLecturaEnDosAnuncios() {
+        ProtocoloTrama protocolo = ProtocoloTrama.ESTANDAR;
+        ProtocoloTrama.Reensamblador r = new ProtocoloTrama.Reensamblador(protocolo, 4);
+        // Fragmento 0: O3 0.5, T 21.25 ºC (s16 /100), CO2 650, BAT 90
+        byte[] f0 = anuncio(0xA2, 7, 0x02, 0xF4, 0x01, 0x4D, 0x08, 0x8A, 0x02, 90);
+        // Fragmento 1: CO 0.80, NO2 25.0, SO2 5.0
+        byte[] f1 = anuncio(0xA2, 7, 0x12, 80, 0, 250, 0, 50, 0);
+        int i0 = DecodificadorTrama.buscarPayload(f0);
+        int i1 = DecodificadorTrama.buscarPayload(f1);
+        assertTrue(r.esFragmento(f0, i0, DecodificadorTrama.longitudPayload(f0, i0)));
+
+        LecturaBeacon lectura = new LecturaBeacon();
+        assertFalse("Un fragmento suelto no es una lectura", DecodificadorTrama.decodificar(f0, lectura));
+
+        // Llegan desordenados y repetidos (cada anuncio se emite varias veces)
+        assertEquals(0, r.agregar(2, f1, i1, DecodificadorTrama.longitudPayload(f1, i1)));
+        assertEquals(0, r.agregar(2, f1, i1, DecodificadorTrama.longitudPayload(f1, i1)));
+        int n = r.agregar(2, f0, i0, DecodificadorTrama.longitudPayload(f0, i0));
+        assertTrue(n > 0);
+        assertTrue(DecodificadorTrama.decodificar(r.getTrama(), n, lectura));
+        assertEquals(0.5f, lectura.o3, 0.0001f);
+        assertEquals(21.25f, lectura.temperatura, 0.0001f);
+        assertEquals(650, lectura.co2);
+        assertEquals(90, lectura.bateria);
+        assertEquals(0.8f, lectura.co, 0.0001f);
+        assertEquals(25.0f, lectura.no2, 0.0001f);
+        assertEquals(5.0f, lectura.so2, 0.0001f);
+        assertEquals("Una repetición tras completar no vuelve a entregar la lectura",
+                0, r.agregar(2, f0, i0, DecodificadorTrama.longitudPayload(f0, i0)));
+
+        // Una secuencia nueva abandona la anterior si estaba a medias
+        byte[] g0 = f0.clone();
+        g0[8] = 8;
+        byte[] h0 = f0.clone();
+        h0[8] = 9;
+        r.agregar(2, g0, i0, DecodificadorTrama.longitudPayload(g0, i0));
+        r.agregar(2, h0, i0, DecodificadorTrama.longitudPayload(h0, i0));
+        assertEquals(1, r.getIncompletas());
+        assertEquals(1, r.getCompletadas());
+
+        // Fragmentos de otro sensor no se mezclan
+        assertEquals(0, r.agregar(3, f1, i1, DecodificadorTrama.longitudPayload(f1, i1)));
+        System.out.println("[TEST] " + r.resumen());
+
+        // Cabecera que no encaja con el esquema
+        byte[] mal = anuncio(0xA2, 7, 0x13, 80, 0, 250, 0, 50, 0);
+        assertEquals(-1, r.agregar(2, mal, i1, DecodificadorTrama.longitudPayload(mal, i1)));
+    }
+
+    @Test
+    public void decodificarNoAsignaMemoria() {
+        byte[] trama = cincoGases();
+        LecturaBeacon lectura = new LecturaBeacon();
+        // Calentamiento para que el JIT compile el método
+        for (int i = 0; i < 200_000; i++) DecodificadorTrama.decodificar(trama, lectura);
+
+        com.sun.management.ThreadMXBean mx = beanDeAsignaciones();
+        if (mx == null) {
+            System.out.println("[TEST] JVM sin contador de asignaciones por hilo: se omite la comprobación.");
+        } else {
+            long hilo = Thread.currentThread().getId();
+            long antes = mx.getThreadAllocatedBytes(hilo);
+            for (int i = 0; i < 100_000; i++) DecodificadorTrama.decodificar(trama, lectura);
+            long asignados = mx.getThreadAllocatedBytes(hilo) - antes;
+            System.out.println("[TEST] Bytes asignados en 100000 decodificaciones: " + asignados);
+            assertTrue("La decodificación por tabla no debe asignar memoria", asignados < 1024);
+        }
+
+        int iteraciones = 1_000_000;
+        long sumidero = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iteraciones; i++) if (DecodificadorTrama.decodificar(trama, lectura)) sumidero += lectura.co2;
+        long t1 = System.nanoTime();
+        System.out.println("[BENCH] ProtocoloTrama (0xA1, 7 campos): " + (t1 - t0) / iteraciones + " ns/anuncio");
+        assertTrue(sumidero != 0);
+    }
+
+    private static com.sun.management.ThreadMXBean beanDeAsignaciones() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (!(mx instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) mx;
+        return sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled() ? sun : null;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RegistroSensoresTest {
+
+    @Test
+    public void resuelveSensoresPorNombreYPorMac() {
+        RegistroSensores registro = new RegistroSensores();
+        EstadoSensor principal = registro.registrar("12345", "rocio", null);
+        EstadoSensor sala2 = registro.registrar("67890", null, "aa:bb:cc:00:00:02");
+
+        assertSame(principal, registro.buscar("11:11:11:11:11:11", "rocio"));
+        assertSame(sala2, registro.buscar("AA:BB:CC:00:00:02", null));
+        assertNull(registro.buscar("22:22:22:22:22:22", "auriculares"));
+        assertSame("La MAC se busca normalizada", sala2, registro.buscar("aa:bb:cc:00:00:02", null));
+
+        assertTrue(principal.esPrincipal());
+        assertFalse(sala2.esPrincipal());
+        assertEquals("11:11:11:11:11:11", principal.direccion);
+        assertSame(principal, registro.principal());
+        assertSame(sala2, registro.porIndice(1));
+        assertNull(registro.porIndice(2));
+    }
+
+    @Test
+    public void registrarDosVecesDevuelveElMismoEstado() {
+        RegistroSensores registro = new RegistroSensores();
+        EstadoSensor a = registro.registrar("12345", "rocio", null);
+        a.lastUpdatedCo2 = 800;
+        EstadoSensor b = registro.registrar("12345", "rocio", null);
+        assertSame(a, b);
+        assertEquals(800, b.lastUpdatedCo2);
+        assertEquals(1, registro.tamano());
+    }
+
+    @Test
+    public void elIndiceDeDireccionesEstaAcotado() {
+        RegistroSensores registro = new RegistroSensores();
+        EstadoSensor estado = registro.registrar("12345", "rocio", null);
+
+        // Un sensor con MAC aleatoria que cambia en cada anuncio: miles de direcciones distintas
+        for (int i = 0; i < 5000; i++) {
+            assertSame(estado, registro.buscar(String.format("02:00:00:00:%02X:%02X", i >> 8, i & 0xFF), "rocio"));
+        }
+        assertTrue("La caché de direcciones no debe crecer sin límite", registro.direccionesMemorizadas() <= 512);
+        assertEquals(1, registro.tamano());
+    }
+
+    @Test
+    public void cadaSensorTieneSuPropioSuavizadoDeRssi() {
+        RegistroSensores registro = new RegistroSensores();
+        EstadoSensor a = registro.registrar("1", "a", null);
+        EstadoSensor b = registro.registrar("2", "b", null);
+
+        assertEquals(-60, a.suavizarRssi(-60, 0.2f));
+        assertEquals(-90, b.suavizarRssi(-90, 0.2f));
+        assertEquals(-66, a.suavizarRssi(-90, 0.2f));
+
+        // La desconexión reinicia el suavizado en la siguiente lectura
+        a.marcarConectado();
+        a.marcarDesconectado();
+        assertEquals(-70, a.suavizarRssi(-70, 0.2f));
+        assertEquals(-90, b.suavizarRssi(-90, 0.2f));
+    }
+
+    @Test
+    public void noSeRegistranMasSensoresQueElMaximo() {
+        RegistroSensores registro = new RegistroSensores(2);
+        assertNotNull(registro.registrar("A", "a", null));
+        assertNotNull(registro.registrar("B", "b", null));
+        assertNull("Un tercero no cabe", registro.registrar("C", "c", null));
+        assertNull(registro.buscar("11:22:33:44:55:66", "c"));
+        assertEquals(2, registro.tamano());
+        assertNotNull("Volver a registrar uno existente sigue funcionando", registro.registrar("A", "a2", null));
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class RenderizadorSensorTest {
+
+    /** @brief Vista falsa que anota cada llamada. */
+    private static class VistaFalsa implements RenderizadorSensor.Vista {
+        final List<String> llamadas = new ArrayList<>();
+
+        @Override
+        public void texto(int campo, String texto) {
+            llamadas.add("texto " + campo + " " + texto);
+        }
+
+        @Override
+        public void progreso(int barra, int valor) {
+            llamadas.add("progreso " + barra + " " + valor);
+        }
+
+        @Override
+        public void banda(int barra, int banda) {
+            llamadas.add("banda " + barra + " " + banda);
+        }
+
+        @Override
+        public void bateriaBaja(boolean baja) {
+            llamadas.add("bateriaBaja " + baja);
+        }
+
+        @Override
+        public void senal(int nivel) {
+            llamadas.add("senal " + nivel);
+        }
+
+        @Override
+        public void conectado(boolean conectado) {
+            llamadas.add("conectado " + conectado);
+        }
+    }
+
+    private long ahora = 1000;
+    private final VistaFalsa vista = new VistaFalsa();
+
+    private static InstantaneaSensor lectura(InstantaneaSensor base, float ozono, float temperatura, int co2, int rssi) {
+        return base.editar().hora("Última conex. 10:00").ozono(ozono).temperatura(temperatura).co2(co2).bateria(80)
+                .rssi(rssi).estado("Conectado").crear(base);
+    }
+
+    @Test
+    public void soloTocaLasVistasCuandoCambiaLoQueSeVe() {
+        RenderizadorSensor r = new RenderizadorSensor(vista, () -> ahora, 0, new Locale("es", "ES"));
+        InstantaneaSensor a = lectura(InstantaneaSensor.VACIA, 0.1231f, 21.54f, 700, -65);
+        assertEquals(-1, r.proponer(a));
+        assertTrue(vista.llamadas.contains("texto " + InstantaneaSensor.CAMPO_OZONO + " 0,123 ppm"));
+        assertTrue(vista.llamadas.contains("texto " + InstantaneaSensor.CAMPO_TEMPERATURA + " 21,5 ºC"));
+        assertTrue(vista.llamadas.contains("texto " + InstantaneaSensor.CAMPO_CO2 + " 700 ppm"));
+        assertTrue(vista.llamadas.contains("texto " + InstantaneaSensor.CAMPO_BATERIA + " 80%"));
+        assertTrue(vista.llamadas.contains("banda " + RenderizadorSensor.BARRA_CO2 + " " + RenderizadorSensor.BANDA_VERDE));
+        assertTrue(vista.llamadas.contains("senal 3"));
+        assertTrue(vista.llamadas.contains("conectado true"));
+
+        // Mismo texto a la precisión mostrada y mismo nivel de señal: solo cambia la barra de ozono
+        vista.llamadas.clear();
+        ahora += 10;
+        r.proponer(lectura(a, 0.1229f, 21.51f, 700, -68));
+        assertEquals("[progreso " + RenderizadorSensor.BARRA_OZONO + " 122]", vista.llamadas.toString());
+
+        // CO2 cruza de banda
+        vista.llamadas.clear();
+        r.proponer(lectura(a, 0.1229f, 21.51f, 850, -68));
+        assertEquals("[texto " + InstantaneaSensor.CAMPO_CO2 + " 850 ppm, banda " + RenderizadorSensor.BARRA_CO2 + " "
+                + RenderizadorSensor.BANDA_NARANJA + ", progreso " + RenderizadorSensor.BARRA_CO2 + " 850]", vista.llamadas.toString());
+        System.out.println("[TEST] " + r.resumen());
+        assertTrue(r.getOmitidas() > r.getAplicadas());
+    }
+
+    @Test
+    public void elPresupuestoFusionaLasInstantaneasDeUnFotograma() {
+        RenderizadorSensor r = new RenderizadorSensor(vista, () -> ahora, 100, Locale.ROOT);
+        InstantaneaSensor a = lectura(InstantaneaSensor.VACIA, 0.1f, 20, 500, -50);
+        assertEquals(-1, r.proponer(a));
+        vista.llamadas.clear();
+
+        ahora += 30;
+        InstantaneaSensor b = lectura(a, 0.1f, 20, 510, -50);
+        assertEquals(70, r.proponer(b));
+        ahora += 20;
+        InstantaneaSensor c = lectura(b, 0.1f, 20, 520, -50);
+        assertEquals(50, r.proponer(c));
+        assertTrue("Nada se pinta antes del fotograma", vista.llamadas.isEmpty());
+        assertEquals(1, r.getFusionadas());
+
+        ahora += 49;
+        assertEquals(1, r.fotograma());
+        ahora += 1;
+        assertEquals(-1, r.fotograma());
+        assertTrue("Solo se pinta la última", vista.llamadas.contains("texto " + InstantaneaSensor.CAMPO_CO2 + " 520 ppm"));
+        assertFalse(vista.llamadas.contains("texto " + InstantaneaSensor.CAMPO_CO2 + " 510 ppm"));
+        assertEquals("Sin nada pendiente", -1, r.fotograma());
+    }
+
+    @Test
+    public void desconectadoDejaLaSenalACero() {
+        RenderizadorSensor r = new RenderizadorSensor(vista, () -> ahora, 0, Locale.ROOT);
+        InstantaneaSensor a = lectura(InstantaneaSensor.VACIA, 0.1f, 20, 500, -50);
+        r.proponer(a);
+        vista.llamadas.clear();
+        InstantaneaSensor b = a.editar().estado("Desconectado").crear(a);
+        r.proponer(b);
+        assertTrue(vista.llamadas.contains("conectado false"));
+        assertTrue(vista.llamadas.contains("senal 0"));
+        vista.llamadas.clear();
+        r.proponer(b.editar().rssi(-40).crear(b));
+        assertTrue("Un RSSI suelto no enciende la señal", vista.llamadas.isEmpty());
+    }
+
+    @Test
+    public void formateaIgualQueStringFormat() {
+        RenderizadorSensor r = new RenderizadorSensor(vista, () -> ahora, 0, Locale.ROOT);
+        float[] valores = {0f, 0.005f, 0.05f, 0.123f, 0.9994f, 1.0f, 12.345f, 35.05f};
+        for (float v : valores) {
+            assertEquals(String.format(Locale.ROOT, "%.3f ppm", v), r.fijo(Math.round(v * 1000.0), 3, " ppm"));
+        }
+        assertEquals("-3.5 ºC", r.fijo(-35, 1, " ºC"));
+        assertEquals("1200 ppm", r.fijo(1200, 0, " ppm"));
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.breathe_tracking;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResumenAlertasTest {
+
+    private static final long VENTANA = 10 * 60 * 1000;
+
+    /** @brief Anota los correos que llegarían a la bandeja. */
+    private static class BandejaFalsa implements ResumenAlertas.Envio {
+        final List<String> asuntos = new ArrayList<>();
+        final List<String> cuerpos = new ArrayList<>();
+
+        @Override
+        public void enviar(String asunto, String html) {
+            asuntos.add(asunto);
+            cuerpos.add(html);
+        }
+    }
+
+    private long ahora = 0;
+    private final BandejaFalsa bandeja = new BandejaFalsa();
+    private final ResumenAlertas resumen = new ResumenAlertas(bandeja, () -> ahora, VENTANA, 8);
+
+    /** @brief Instante de la revisión programada (como el postDelayed del servicio). */
+    private long ahoraProgramado = Long.MAX_VALUE;
+
+    private long programar(long espera) {
+        ahoraProgramado = espera < 0 ? Long.MAX_VALUE : ahora + espera;
+        return espera;
+    }
+
+    private static String hora(long ms) {
+        long minutos = ms / 60_000;
+        return String.format("%02d:%02d", 12 + minutos / 60, minutos % 60);
+    }
+
+    @Test
+    public void unaRafagaDeQuinientasAlertasDaPocosCorreos() {
+        // 500 alertas en 30 minutos: 4 sensores que se desconectan y vuelven, con CO2 oscilando
+        String[] sensores = {"GTI-3A-1", "GTI-3A-2", "GTI-3A-3", "GTI-3A-4"};
+        long espera = -1;
+        for (int i = 0; i < 500; i++) {
+            ahora = i * 3_600L;
+            // El servicio llama a revisar cuando vence la espera
+            if (espera >= 0 && ahora >= ahoraProgramado) espera = programar(resumen.revisar());
+            String sensor = sensores[i % sensores.length];
+            String tipo = i % 3 == 0 ? "Alerta de Conexión" : "Alerta de CO2";
+            espera = programar(resumen.agregar(sensor, tipo, "Nivel de CO2 elevado: " + (1200 + i) + " ppm", hora(ahora), false));
+            assertTrue("Siempre hay una revisión programada con alertas pendientes", espera >= 0);
+        }
+        while (espera >= 0) {
+            ahora = ahoraProgramado;
+            espera = programar(resumen.revisar());
+        }
+
+        System.out.println("[TEST] " + resumen.resumen());
+        assertEquals(500, resumen.getRecibidas());
+        assertEquals(0, resumen.getPendientes());
+        // 30 minutos de ráfaga con ventanas de 10: como mucho un correo por ventana empezada
+        assertTrue("Correos: " + bandeja.asuntos, bandeja.asuntos.size() <= 4);
+        assertEquals(bandeja.asuntos.size(), resumen.getResumenes());
+        assertEquals("Ninguna alerta se omite con 8 grupos", 0, resumen.getOmitidas());
+        // Cada resumen lleva sus grupos: los 4 sensores x 2 tipos
+        String primero = bandeja.cuerpos.get(0);
+        assertTrue(primero.contains("GTI-3A-1 · Alerta de CO2"));
+        assertTrue(primero.contains("GTI-3A-4 · Alerta de Conexión"));
+        assertTrue(primero.startsWith("<!DOCTYPE html>"));
+        assertTrue(primero.endsWith("</html>"));
+    }
+
+    @Test
+    public void agrupaPorSensorYTipoYCuentaLasVeces() {
+        resumen.agregar("A", "Alerta de CO2", "1300 ppm", "12:00", false);
+        ahora = 60_000;
+        resumen.agregar("A", "Alerta de CO2", "1400 ppm", "12:01", false);
+        resumen.agregar("B", "Alerta de Conexión", "El sensor no está funcionando correctamente", "12:01", false);
+        assertEquals("La ventana se cuenta desde la primera alerta", VENTANA - 60_000, resumen.revisar());
+        assertTrue(bandeja.asuntos.isEmpty());
+
+        ahora = VENTANA;
+        assertEquals(-1, resumen.revisar());
+        assertEquals("[Resumen de alertas (3)]", bandeja.asuntos.toString());
+        String cuerpo = bandeja.cuerpos.get(0);
+        assertTrue(cuerpo, cuerpo.contains("<strong>3</strong> alertas de 2 sensores entre las 12:00 y las 12:01"));
+        assertTrue(cuerpo, cuerpo.contains("A · Alerta de CO2 (2 veces, 12:00 - 12:01)"));
+        assertTrue("Se muestra el último mensaje del grupo", cuerpo.contains("1400 ppm") && !cuerpo.contains("1300 ppm"));
+        assertTrue("A va antes que B", cuerpo.indexOf("A · ") < cuerpo.indexOf("B · "));
+
+        // Un solo grupo: el asunto dice cuál
+        resumen.agregar("C", "Alerta de O3", "<1 ppm & subiendo>", "12:30", false);
+        ahora += VENTANA;
+        resumen.revisar();
+        assertEquals("Alerta de O3 · C (1)", bandeja.asuntos.get(1));
+        assertTrue("Los textos se escapan", bandeja.cuerpos.get(1).contains("&lt;1 ppm &amp; subiendo&gt;"));
+    }
+
+    @Test
+    public void lasCriticasNoEsperanPeroSusRepeticionesSi() {
+        assertEquals("La crítica sale y queda pendiente de olvidarse", VENTANA,
+                resumen.agregar("A", "Monóxido", "CO 40 mg/m³", "12:00", true));
+        assertEquals("[[CRÍTICA] Monóxido · A]", bandeja.asuntos.toString());
+        assertTrue(bandeja.cuerpos.get(0).contains("12:00 - CO 40 mg/m³"));
+
+        // La misma crítica repetida (sensor que oscila en el umbral) va al resumen
+        ahora = 30_000;
+        for (int i = 0; i < 20; i++) resumen.agregar("A", "Monóxido", "CO 41 mg/m³", "12:00", true);
+        // Otra crítica distinta sí sale al momento
+        resumen.agregar("B", "Monóxido", "CO 45 mg/m³", "12:00", true);
+        assertEquals(2, resumen.getCriticas());
+        assertEquals(2, bandeja.asuntos.size());
+
+        ahora = 30_000 + VENTANA;
+        resumen.revisar();
+        assertEquals(3, bandeja.asuntos.size());
+        assertEquals("Monóxido · A (20)", bandeja.asuntos.get(2));
+
+        // Pasada la ventana, la crítica vuelve a salir sola
+        ahora += VENTANA;
+        assertEquals(-1, resumen.revisar());
+        resumen.agregar("A", "Monóxido", "CO 42 mg/m³", "12:21", true);
+        assertEquals("[CRÍTICA] Monóxido · A", bandeja.asuntos.get(3));
+        System.out.println("[TEST] " + resumen.resumen());
+    }
+
+    @Test
+    public void losGruposQueNoCabenSoloSeCuentan() {
+        for (int i = 0; i < 20; i++) resumen.agregar("S" + (char) ('A' + i), "Alerta de CO2", "1300 ppm", "12:00", false);
+        resumen.vaciar();
+        assertEquals(1, bandeja.asuntos.size());
+        assertEquals(12, resumen.getOmitidas());
+        assertTrue(bandeja.cuerpos.get(0).contains("12 alertas más de otros sensores o tipos no se detallan."));
+        assertFalse(bandeja.cuerpos.get(0).contains("SI · "));
+        resumen.vaciar();
+        assertEquals("Vaciar sin nada pendiente no envía", 1, bandeja.asuntos.size());
+    }
+}
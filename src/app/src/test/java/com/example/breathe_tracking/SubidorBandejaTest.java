@@ -0,0 +1,146 @@
+package com.example.breathe_tracking;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SubidorBandejaTest {
+
+    /** Sumidero en memoria que confirma al momento o deja la confirmación pendiente. */
+    private static class SumideroEnMemoria implements AgrupadorEscrituras.Sumidero {
+        final List<AgrupadorEscrituras.Escritura> subidas = new ArrayList<>();
+        final List<Map<String, Map<String, Object>>> merges = new ArrayList<>();
+        final List<AgrupadorEscrituras.Confirmacion> sinConfirmar = new ArrayList<>();
+        int lotes = 0;
+        boolean confirmarAlMomento = true;
+
+        @Override
+        public void confirmar(List<AgrupadorEscrituras.Escritura> lecturas, Map<String, Map<String, Object>> camposPorSensor,
+                              AgrupadorEscrituras.Confirmacion confirmacion) {
+            lotes++;
+            if (confirmarAlMomento) {
+                subidas.addAll(lecturas);
+                merges.add(camposPorSensor);
+                confirmacion.alTerminar(true, null);
+            } else {
+                sinConfirmar.add(confirmacion);
+            }
+        }
+    }
+
+    private File directorio;
+
+    @Before
+    public void crearDirectorio() throws IOException {
+        directorio = Files.createTempDirectory("subidor").toFile();
+    }
+
+    @After
+    public void borrarDirectorio() {
+        File[] ficheros = directorio.listFiles();
+        if (ficheros != null) for (File f : ficheros) f.delete();
+        directorio.delete();
+    }
+
+    private static BandejaSalidaLocal.Registro registro(String codigo, int co2) {
+        return new BandejaSalidaLocal.Registro(codigo, 1_000L * co2, 0.1f, 21f, co2, 80, "Gandia", true);
+    }
+
+    @Test
+    public void sinRedSeEncolaYAlVolverSeSubeEnOrden() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, () -> 0, 64, 8);
+        SumideroEnMemoria sumidero = new SumideroEnMemoria();
+        SubidorBandeja subidor = new SubidorBandeja(bandeja, sumidero, 50);
+
+        assertTrue("Sin red las lecturas van a la bandeja", subidor.debeEncolar());
+        for (int i = 0; i < 130; i++) bandeja.agregar(registro(i % 2 == 0 ? "A" : "B", i));
+        subidor.drenar();
+        assertEquals(0, sumidero.lotes);
+
+        subidor.setHayRed(true);
+        assertTrue("Con red, mientras quede bandeja se sigue encolando para respetar el orden", subidor.debeEncolar());
+        subidor.drenar();
+
+        assertEquals(3, sumidero.lotes);
+        assertEquals(130, sumidero.subidas.size());
+        for (int i = 0; i < 130; i++) {
+            assertEquals(i, sumidero.subidas.get(i).lectura.co2);
+            assertEquals(1_000L * i, sumidero.subidas.get(i).lectura.fecha.getTime());
+        }
+        assertEquals("Último estado de cada sensor en el lote", 48, sumidero.merges.get(0).get("A").get("co2"));
+        assertEquals(0, bandeja.getPendientes());
+        assertFalse(subidor.debeEncolar());
+        assertEquals(130, subidor.getLecturasSubidas());
+    }
+
+    @Test
+    public void unLoteFallidoSeRepiteYNoAvanzaElCursor() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, () -> 0, 64, 8);
+        SumideroEnMemoria sumidero = new SumideroEnMemoria();
+        sumidero.confirmarAlMomento = false;
+        SubidorBandeja subidor = new SubidorBandeja(bandeja, sumidero, 10);
+        for (int i = 0; i < 25; i++) bandeja.agregar(registro("A", i));
+
+        subidor.setHayRed(true);
+        subidor.drenar();
+        subidor.drenar();
+        assertEquals("Un solo lote en vuelo", 1, sumidero.lotes);
+        assertTrue(subidor.isEnVuelo());
+
+        sumidero.sinConfirmar.get(0).alTerminar(false, new Exception("sin conexión"));
+        assertEquals(25, bandeja.getPendientes());
+        assertEquals(1, subidor.getLotesFallidos());
+
+        // Reintento: la confirmación asíncrona encadena el siguiente lote
+        subidor.drenar();
+        sumidero.sinConfirmar.get(1).alTerminar(true, null);
+        assertEquals(15, bandeja.getPendientes());
+        assertEquals(3, sumidero.lotes);
+        sumidero.sinConfirmar.get(2).alTerminar(true, null);
+        sumidero.sinConfirmar.get(3).alTerminar(true, null);
+        assertEquals(0, bandeja.getPendientes());
+        assertEquals(3, subidor.getLotesSubidos());
+    }
+
+    @Test
+    public void elCorteDeRedDetieneLaSubida() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, () -> 0, 64, 8);
+        SumideroEnMemoria sumidero = new SumideroEnMemoria();
+        sumidero.confirmarAlMomento = false;
+        SubidorBandeja subidor = new SubidorBandeja(bandeja, sumidero, 10);
+        for (int i = 0; i < 30; i++) bandeja.agregar(registro("A", i));
+
+        subidor.setHayRed(true);
+        subidor.drenar();
+        subidor.setHayRed(false);
+        sumidero.sinConfirmar.get(0).alTerminar(true, null);
+        assertEquals(1, sumidero.lotes);
+        assertEquals(20, bandeja.getPendientes());
+    }
+
+    @Test
+    public void losGasesOpcionalesLleganALosCamposDirectos() throws IOException {
+        BandejaSalidaLocal bandeja = new BandejaSalidaLocal(directorio, () -> 0, 64, 8);
+        SumideroEnMemoria sumidero = new SumideroEnMemoria();
+        SubidorBandeja subidor = new SubidorBandeja(bandeja, sumidero, 50);
+        bandeja.agregar(new BandejaSalidaLocal.Registro("A", 1_000L, 0.1f, 21f, 500, 80, "Gandia", true, 2.5f, Float.NaN, 8f));
+        bandeja.agregar(registro("B", 600));
+
+        subidor.setHayRed(true);
+        subidor.drenar();
+        Map<String, Object> a = sumidero.merges.get(0).get("A");
+        assertEquals(2.5f, a.get("co"));
+        assertEquals(8f, a.get("so2"));
+        assertFalse("Un gas que no venía no se escribe", a.containsKey("no2"));
+        assertFalse(sumidero.merges.get(0).get("B").containsKey("co"));
+    }
+}